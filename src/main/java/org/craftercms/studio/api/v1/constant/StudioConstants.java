@@ -190,6 +190,7 @@ public final class StudioConstants {
      */
     public static final String REPO_COMMIT_MESSAGE_USERNAME_VAR = "{username}";
     public static final String REPO_COMMIT_MESSAGE_PATH_VAR = "{path}";
+    public static final String REPO_COMMIT_MESSAGE_COUNT_VAR = "{count}";
 
     /**
      * Session attributes
@@ -225,7 +226,6 @@ public final class StudioConstants {
     public static final String GLOBAL_REPOSITORY_GIT_LOCK = "GLOBAL_REPOSITORY_GIT_LOCK";
     public static final String SITE_SANDBOX_REPOSITORY_GIT_LOCK = "{site}_SANDBOX_REPOSITORY_GIT_LOCK";
     public static final String SITE_PUBLISHED_REPOSITORY_GIT_LOCK = "{site}_PUBLISHED_REPOSITORY_GIT_LOCK";
-    public static final String STUDIO_CLOCK_EXECUTOR_SITE_LOCK = "{site}_STUDIO_CLOCK_EXECUTOR_SITE_LOCK";
 
     private StudioConstants() {
     }
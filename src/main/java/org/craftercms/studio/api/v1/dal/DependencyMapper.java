@@ -51,13 +51,9 @@ public interface DependencyMapper {
 
     void deleteDependenciesForSiteAndPath(Map params);
 
-    List<String> getDependenciesForList(Map params);
-
-    List<String> getItemSpecificDependenciesForList(Map params);
-
-    List<String> getItemsDependingOn(Map params);
-
     List<Map<String, String>> calculatePublishingDependenciesForList(Map params);
 
     void moveDependency(Map params);
+
+    List<DependencyEntity> getSiteDependencies(Map params);
 }
@@ -34,6 +34,13 @@ public interface PublishRequestMapper {
 
     void updateItemDeploymentState(PublishRequest item);
 
+    /**
+     * Update the state of multiple publish request items in a single statement
+     *
+     * @param params SQL query parameters
+     */
+    void updateItemsDeploymentState(Map params);
+
     void markItemCompleted(PublishRequest item);
 
     void deleteDeploymentDataForSite(Map params);
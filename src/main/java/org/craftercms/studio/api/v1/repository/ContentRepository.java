@@ -27,10 +27,14 @@ import org.craftercms.studio.api.v1.exception.repository.RemoteRepositoryNotFoun
 import org.craftercms.studio.api.v1.service.deployment.DeploymentException;
 import org.craftercms.studio.api.v1.to.RemoteRepositoryInfoTO;
 import org.craftercms.studio.api.v1.to.VersionTO;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This interface represents the repository layer of Crafter Studio.  All interaction with the backend
@@ -49,6 +53,15 @@ public interface ContentRepository {
      */
     boolean contentExists(String site, String path);
 
+    /**
+     * Determine which of the given paths have content in the repository, resolving the last commit only once
+     *
+     * @param site site id where the operation will be executed
+     * @param paths paths to check if content exists
+     * @return the subset of paths that have a content object
+     */
+    Set<String> getExistingPaths(String site, Collection<String> paths);
+
     /**
      * get document from wcm content
      *
@@ -60,6 +73,17 @@ public interface ContentRepository {
      */
     InputStream getContent(String site, String path) throws ContentNotFoundException;
 
+    /**
+     * get content parsed as an XML document
+     *
+     * @param site site id where the operation will be executed
+     * @param path path of the content
+     * @return document or null if the content does not exist
+     *
+     * @throws DocumentException if the content is not a valid XML document
+     */
+    Document getContentAsDocument(String site, String path) throws DocumentException;
+
     /**
      * write content
      *
@@ -126,6 +150,17 @@ public interface ContentRepository {
      */
     String copyContent(String site, String fromPath, String toPath);
 
+    /**
+     * write all the changes of a batch in a single commit, if any operation fails none of the changes are committed
+     *
+     * @param site  site id where the operation will be executed
+     * @param batch changes to write
+     * @return Commit ID if successful, null if the batch didn't change anything
+     *
+     * @throws ServiceLayerException if error happens during write
+     */
+    String commitBatch(String site, ContentRepositoryBatch batch) throws ServiceLayerException;
+
     /**
      * get immediate children for path
      *
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v1.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+
+/**
+ * Group of changes for the sandbox repository of a site that are written as a single commit.
+ *
+ * <p>Nothing is written until the batch is passed to {@link ContentRepository#commitBatch(String,
+ * ContentRepositoryBatch)}, the operations are then applied in the same order they were added. The streams for the
+ * writes are read during the commit and must be closed by the caller afterwards, writes from a local file only open
+ * it while the commit is done.</p>
+ *
+ * @since 4.0
+ */
+public class ContentRepositoryBatch {
+
+    public enum OperationType {
+        WRITE,
+        CREATE_FOLDER,
+        DELETE,
+        MOVE
+    }
+
+    protected final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Writes a file, creating it if needed
+     * @param path the path of the file
+     * @param content the content of the file
+     * @return the same batch
+     */
+    public ContentRepositoryBatch write(String path, InputStream content) {
+        operations.add(new Operation(OperationType.WRITE, path, null, content, null));
+        return this;
+    }
+
+    /**
+     * Writes a file with the content of a local file, creating it if needed
+     * @param path the path of the file
+     * @param file the local file to read the content from
+     * @return the same batch
+     */
+    public ContentRepositoryBatch write(String path, Path file) {
+        operations.add(new Operation(OperationType.WRITE, path, null, null, file));
+        return this;
+    }
+
+    /**
+     * Writes a file with the same content of a write from another batch
+     * @param path the path of the file
+     * @param write the write to take the content from
+     * @return the same batch
+     */
+    public ContentRepositoryBatch write(String path, Operation write) {
+        operations.add(new Operation(OperationType.WRITE, path, null, write.content, write.file));
+        return this;
+    }
+
+    /**
+     * Creates a folder
+     * @param path the path of the parent folder
+     * @param name the name of the new folder
+     * @return the same batch
+     */
+    public ContentRepositoryBatch createFolder(String path, String name) {
+        operations.add(new Operation(OperationType.CREATE_FOLDER, path + FILE_SEPARATOR + name, null, null, null));
+        return this;
+    }
+
+    /**
+     * Deletes a file or a folder with all its content
+     * @param path the path to delete
+     * @return the same batch
+     */
+    public ContentRepositoryBatch delete(String path) {
+        operations.add(new Operation(OperationType.DELETE, path, null, null, null));
+        return this;
+    }
+
+    /**
+     * Moves a file or a folder, the target must not exist
+     * @param fromPath the current path
+     * @param toPath the new path
+     * @return the same batch
+     */
+    public ContentRepositoryBatch move(String fromPath, String toPath) {
+        operations.add(new Operation(OperationType.MOVE, fromPath, toPath, null, null));
+        return this;
+    }
+
+    public List<Operation> getOperations() {
+        return unmodifiableList(operations);
+    }
+
+    /**
+     * Returns all the paths changed by the batch
+     * @return the paths in the order they were added
+     */
+    public Set<String> getPaths() {
+        Set<String> paths = new LinkedHashSet<>();
+        for (Operation operation : operations) {
+            paths.add(operation.path);
+            if (operation.targetPath != null) {
+                paths.add(operation.targetPath);
+            }
+        }
+        return paths;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public static class Operation {
+
+        protected final OperationType type;
+        protected final String path;
+        protected final String targetPath;
+        protected final InputStream content;
+        protected final Path file;
+
+        protected Operation(OperationType type, String path, String targetPath, InputStream content, Path file) {
+            this.type = type;
+            this.path = path;
+            this.targetPath = targetPath;
+            this.content = content;
+            this.file = file;
+        }
+
+        public OperationType getType() {
+            return type;
+        }
+
+        /**
+         * Path of the item written, created, deleted or moved
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * New path of the item, only for moves
+         */
+        public String getTargetPath() {
+            return targetPath;
+        }
+
+        /**
+         * Content of the file, only for writes
+         */
+        public InputStream getContent() {
+            return content;
+        }
+
+        /**
+         * Local file with the content, only for writes from a file
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Opens the content of the file, only for writes. The stream must be closed after reading it
+         */
+        public InputStream openContent() throws IOException {
+            return file != null ? Files.newInputStream(file) : content;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path + (targetPath != null ? " -> " + targetPath : "");
+        }
+
+    }
+
+}
@@ -15,6 +15,11 @@
  */
 package org.craftercms.studio.api.v1.service;
 
+import org.craftercms.studio.model.monitoring.LockMetrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 public interface GeneralLockService {
 
     String MASTER_LOCK = "MASTER LOCK";
@@ -24,4 +29,19 @@ public interface GeneralLockService {
     void unlock(String objectId);
 
     boolean tryLock(String objectId);
+
+    /**
+     * Tries to get the lock waiting up to the given time
+     * @param objectId the id of the lock
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the lock was acquired
+     */
+    boolean tryLock(String objectId, long timeout, TimeUnit unit);
+
+    /**
+     * Returns the wait and hold time metrics of the most recently used locks
+     * @return the metrics for each lock id
+     */
+    Map<String, LockMetrics> getLockMetrics();
 }
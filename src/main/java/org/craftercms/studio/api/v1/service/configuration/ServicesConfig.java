@@ -20,6 +20,7 @@ import org.craftercms.studio.api.v1.to.CopyDependencyConfigTO;
 import org.craftercms.studio.api.v1.to.DeleteDependencyConfigTO;
 import org.craftercms.studio.api.v1.to.DmFolderConfigTO;
 import org.craftercms.studio.api.v1.to.FacetTO;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
 
 import java.util.List;
 import java.util.Map;
@@ -235,4 +236,12 @@ public interface ServicesConfig {
 	 * @return list of configured protected folders patterns
 	 */
     List<String> getProtectedFolderPatterns(String siteId);
+
+    /**
+     * Get the compiled classifier for the item URI patterns of the site. The classifier is cached together with the
+     * site configuration and rebuilt when the configuration changes.
+     * @param siteId site identifier
+     * @return path classifier for the site
+     */
+    PathClassifier getPathClassifier(String siteId);
 }
@@ -17,8 +17,10 @@
 package org.craftercms.studio.api.v1.service.content;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.craftercms.commons.crypto.CryptoException;
 import org.craftercms.studio.api.v1.exception.ContentNotFoundException;
@@ -27,6 +29,7 @@ import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.exception.repository.InvalidRemoteUrlException;
 import org.craftercms.studio.api.v1.exception.security.AuthenticationException;
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.to.*;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
@@ -48,6 +51,15 @@ public interface ContentService {
      */
     boolean contentExists(String site, String path);
 
+    /**
+     * Check which of the given paths have content, using a single repository lookup
+     *
+     * @param site site identifier
+     * @param paths paths of the content
+     * @return the subset of paths that have a content object
+     */
+    Set<String> getExistingPaths(String site, Collection<String> paths);
+
     /**
      * get document from wcm content
      *
@@ -117,6 +129,20 @@ public interface ContentService {
      */
     boolean writeContent(String site, String path, InputStream content) throws ServiceLayerException;
 
+    /**
+     * write all the changes of a batch in a single commit, the operations are validated against the content policy
+     * of the site and the git log is updated once for the whole batch. The items of the written files are updated
+     * and their dependencies resolved after the commit, the caller audits the writes as needed
+     *
+     * @param site  - the project ID
+     * @param batch changes to write
+     * @return commit id if successful, null if the batch didn't change anything
+     *
+     * @throws ServiceLayerException general service error, or if the batch contains unsupported operations
+     * @throws UserNotFoundException user not found
+     */
+    String commitBatch(String site, ContentRepositoryBatch batch) throws ServiceLayerException, UserNotFoundException;
+
     /**
      * create a folder
      *
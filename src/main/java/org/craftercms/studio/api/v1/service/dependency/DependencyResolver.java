@@ -16,6 +16,7 @@
 
 package org.craftercms.studio.api.v1.service.dependency;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -47,4 +48,14 @@ public interface DependencyResolver {
      */
     Map<String, Set<String>> resolve(String site, String path);
 
+    /**
+     * Resolves dependent files for the content of all given paths, checking that the dependencies exist in a
+     * single repository lookup
+     *
+     * @param site site identifier
+     * @param paths paths of the items
+     * @return dependent files of each path, by dependency type
+     */
+    Map<String, Map<String, Set<String>>> resolve(String site, List<String> paths);
+
 }
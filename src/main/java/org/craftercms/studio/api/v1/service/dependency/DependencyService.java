@@ -104,7 +104,7 @@ public interface DependencyService {
 	 * @param site Site to operate on
 	 * @param path Path to items to retrieve deps for
 	 * @param depth Depth of tree to traverse. Depth of -1 disables depth limits
-	 * @return set of hard dependencies
+	 * @return set of hard dependencies, never including the given path even if there are cyclic dependencies
 	 * @throws SiteNotFoundException Site doesn't exist
 	 * @throws ContentNotFoundException Path doesn't exist
 	 * @throws ServiceLayerException Internal error, see exception details
@@ -118,7 +118,8 @@ public interface DependencyService {
 	 * @param site Site to operate on
 	 * @param path Path to items to retrieve deps for
 	 * @param depth Depth of tree to traverse. Depth of -1 disables depth limits
-	 * @return set of items that given item depends on
+	 * @return set of items that given item depends on, never including the given path even if there are cyclic
+	 * dependencies
 	 * @throws SiteNotFoundException Site doesn't exist
 	 * @throws ContentNotFoundException Path doesn't exist
 	 * @throws ServiceLayerException Internal error, see exception details
@@ -132,7 +133,8 @@ public interface DependencyService {
 	 * @param site Site to operate on
 	 * @param path Path to items to retrieve deps for
 	 * @param depth Depth of tree to traverse. Depth of -1 disables depth limits
-	 * @return set of items depending on given item path
+	 * @return set of items depending on given item path, never including the given path even if there are cyclic
+	 * dependencies
 	 * @throws SiteNotFoundException Site doesn't exist
 	 * @throws ContentNotFoundException Path doesn't exist
 	 * @throws ServiceLayerException Internal error, see exception details
@@ -30,6 +30,13 @@ import java.util.Set;
  */
 public interface PublishingManager {
 
+    /**
+     * Get the next batch of items ready for deployment, the size of the batch is limited by the configuration and
+     * only the last package of a batch can be incomplete
+     * @param site site to use
+     * @param environment environment to use
+     * @return the items in the batch, empty if the queue has no items ready
+     */
     List<PublishRequest> getItemsReadyForDeployment(String site, String environment);
 
     DeploymentItemTO processItem(PublishRequest item) throws DeploymentException, SiteNotFoundException;
@@ -15,6 +15,8 @@
  */
 package org.craftercms.studio.api.v1.to;
 
+import org.craftercms.studio.api.v2.utils.PathClassifier;
+
 import java.io.Serializable;
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -79,6 +81,11 @@ public class SiteConfigTO implements Serializable {
      */
     protected Map<String, FacetTO> facets;
 
+    /**
+     * Compiled classifier for the repository patterns, built on first use
+     */
+    protected transient volatile PathClassifier pathClassifier;
+
     /**
      * Pattern for the plugins folder
      */
@@ -258,4 +265,12 @@ public class SiteConfigTO implements Serializable {
     public void setProtectedFolderPatterns(List<String> protectedFolderPatterns) {
         this.protectedFolderPatterns = protectedFolderPatterns;
     }
+
+    public PathClassifier getPathClassifier() {
+        return pathClassifier;
+    }
+
+    public void setPathClassifier(PathClassifier pathClassifier) {
+        this.pathClassifier = pathClassifier;
+    }
 }
@@ -21,6 +21,8 @@ import org.apache.ibatis.annotations.Param;
 import java.util.List;
 import java.util.Map;
 
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.AUDIT_LOGS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PARAMETERS;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
 
 public interface AuditDAO {
@@ -39,6 +41,19 @@ public interface AuditDAO {
 
     void insertAuditLogParams(Map params);
 
+    /**
+     * Insert a list of audit log entries with a single statement, ids are set in the given entries
+     * @param auditLogs audit log entries
+     * @return number of rows inserted
+     */
+    int insertAuditLogList(@Param(AUDIT_LOGS) List<AuditLog> auditLogs);
+
+    /**
+     * Insert a list of audit log parameters with a single statement
+     * @param parameters audit log parameters, each one with its audit id already set
+     */
+    void insertAuditLogParamsList(@Param(PARAMETERS) List<AuditLogParameter> parameters);
+
     List<AuditLog> selectUserFeedEntriesHideLive(Map params);
 
     List<AuditLog> selectUserFeedEntries(Map params);
@@ -24,11 +24,14 @@ import java.util.Map;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_LOCAL_ADDRESS;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_NODE_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.CLUSTER_STATE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.COMMIT_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.HEAD_VERSION;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.NODE_LAST_COMMIT_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.NODE_LAST_SYNCED_GITLOG_COMMIT_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.NODE_LAST_VERIFIED_GITLOG_COMMIT_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REMOTE_REPOSITORY_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.REPOSITORY;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.STATE;
 
@@ -241,4 +244,25 @@ public interface ClusterDAO {
 
     void updateNodeLastSyncedGitlogCommitId(@Param(CLUSTER_NODE_ID) long clusterNodeId, @Param(SITE_ID) long siteId,
                                              @Param(COMMIT_ID) String commitId);
+
+    /**
+     * Insert or update the head version of a repository for a cluster node
+     * @param clusterNodeId cluster node identifier
+     * @param siteId site identifier, empty for the global repository
+     * @param repository repository type
+     * @param headVersion head version
+     */
+    void upsertRepoHead(@Param(CLUSTER_NODE_ID) long clusterNodeId, @Param(SITE_ID) String siteId,
+                        @Param(REPOSITORY) String repository, @Param(HEAD_VERSION) String headVersion);
+
+    /**
+     * Get the head version of a repository for all the available cluster nodes in the given state, nodes that have
+     * not recorded a head version are included with an empty version
+     * @param siteId site identifier, empty for the global repository
+     * @param repository repository type
+     * @param state cluster node state
+     * @return list of head versions
+     */
+    List<ClusterRepoHead> getRepoHeads(@Param(SITE_ID) String siteId, @Param(REPOSITORY) String repository,
+                                       @Param(CLUSTER_STATE) String state);
 }
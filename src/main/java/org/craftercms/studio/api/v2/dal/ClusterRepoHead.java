@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+/**
+ * Head version of a repository in a cluster node
+ *
+ * @since 4.0
+ */
+public class ClusterRepoHead {
+
+    private long clusterNodeId;
+    private String siteId;
+    private String repository;
+    private String headVersion;
+
+    public long getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+    public void setClusterNodeId(long clusterNodeId) {
+        this.clusterNodeId = clusterNodeId;
+    }
+
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public void setSiteId(String siteId) {
+        this.siteId = siteId;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public void setRepository(String repository) {
+        this.repository = repository;
+    }
+
+    public String getHeadVersion() {
+        return headVersion;
+    }
+
+    public void setHeadVersion(String headVersion) {
+        this.headVersion = headVersion;
+    }
+
+}
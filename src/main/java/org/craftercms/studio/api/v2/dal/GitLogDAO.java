@@ -52,6 +52,15 @@ public interface GitLogDAO {
     void markGitLogAudited(@Param(SITE_ID) String siteId, @Param(COMMIT_ID) String commitId,
                            @Param(AUDITED) int audited);
 
+    /**
+     * Mark a list of commit ids as audited for given site
+     * @param siteId site identifier
+     * @param commitIds list of commit ids
+     * @param audited audited flag value
+     */
+    void markGitLogAuditedBulk(@Param(SITE_ID) String siteId, @Param(COMMIT_IDS) List<String> commitIds,
+                               @Param(AUDITED) int audited);
+
     void insertIgnoreGitLogList(@Param(SITE_ID) String siteId, @Param(COMMIT_IDS) List<String> commitIds);
 
     List<GitLog> getUnauditedCommits(@Param(SITE_ID) String siteId, @Param(LIMIT) int limit);
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.COMMIT_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PATH;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PATH_COMMITS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SEQ;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
+
+/**
+ * DAO for the path history index, used to find the commits that modified a path without walking the repository
+ *
+ * @since 4.0
+ */
+public interface PathCommitDAO {
+
+    /**
+     * Get the ids of the commits that modified a path, newest first
+     * @param siteId site identifier
+     * @param path git path
+     * @param seq max sequence number to include
+     * @return list of commit ids
+     */
+    List<String> getPathCommitIds(@Param(SITE_ID) String siteId, @Param(PATH) String path, @Param(SEQ) long seq);
+
+    /**
+     * Get the last commit included in the index for a site
+     * @param siteId site identifier
+     * @return the marker or null if the site has not been indexed
+     */
+    PathCommitMarker getPathCommitMarker(@Param(SITE_ID) String siteId);
+
+    /**
+     * Insert a list of index entries
+     * @param siteId site identifier
+     * @param pathCommits index entries
+     */
+    void insertPathCommitList(@Param(SITE_ID) String siteId, @Param(PATH_COMMITS) List<PathCommit> pathCommits);
+
+    /**
+     * Insert or update the last commit included in the index for a site
+     * @param siteId site identifier
+     * @param commitId commit id
+     * @param seq sequence number of the commit
+     */
+    void upsertPathCommitMarker(@Param(SITE_ID) String siteId, @Param(COMMIT_ID) String commitId,
+                                @Param(SEQ) long seq);
+
+    /**
+     * Delete the index entries written after a given sequence number
+     * @param siteId site identifier
+     * @param seq sequence number
+     */
+    void deletePathCommitsAfter(@Param(SITE_ID) String siteId, @Param(SEQ) long seq);
+
+    /**
+     * Delete all index entries for a site
+     * @param siteId site identifier
+     */
+    void deletePathCommitsForSite(@Param(SITE_ID) String siteId);
+
+    /**
+     * Delete the index marker for a site
+     * @param siteId site identifier
+     */
+    void deletePathCommitMarker(@Param(SITE_ID) String siteId);
+}
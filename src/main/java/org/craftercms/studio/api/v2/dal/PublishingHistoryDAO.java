@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.DATE_FROM;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.DATE_TO;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ENVIRONMENT;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.LIMIT;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.OFFSET;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.ORDER;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PATH;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PUBLISHER;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PUBLISHING_HISTORY_ITEMS;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
+import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SORT;
+
+/**
+ * DAO for the publishing history, one row for each path included in a publish commit
+ *
+ * @since 4.0
+ */
+public interface PublishingHistoryDAO {
+
+    /**
+     * Get a page of the publishing history of a site
+     * @param siteId site identifier
+     * @param environment environment to include, all if null
+     * @param path regular expression the paths must match, all if null
+     * @param publisher name of the publisher, all if null
+     * @param dateFrom lower bound of the published date, inclusive
+     * @param dateTo upper bound of the published date, inclusive
+     * @param sort column to sort by
+     * @param order sort order
+     * @param offset offset of the first item
+     * @param limit max number of items
+     * @return list of items
+     */
+    List<PublishingHistoryItem> getPublishingHistory(@Param(SITE_ID) String siteId,
+                                                     @Param(ENVIRONMENT) String environment,
+                                                     @Param(PATH) String path,
+                                                     @Param(PUBLISHER) String publisher,
+                                                     @Param(DATE_FROM) ZonedDateTime dateFrom,
+                                                     @Param(DATE_TO) ZonedDateTime dateTo,
+                                                     @Param(SORT) String sort, @Param(ORDER) String order,
+                                                     @Param(OFFSET) int offset, @Param(LIMIT) int limit);
+
+    /**
+     * Get the total number of items in the publishing history of a site matching the given filters
+     * @param siteId site identifier
+     * @param environment environment to include, all if null
+     * @param path regular expression the paths must match, all if null
+     * @param publisher name of the publisher, all if null
+     * @param dateFrom lower bound of the published date, inclusive
+     * @param dateTo upper bound of the published date, inclusive
+     * @return number of items
+     */
+    int getPublishingHistoryTotal(@Param(SITE_ID) String siteId, @Param(ENVIRONMENT) String environment,
+                                  @Param(PATH) String path, @Param(PUBLISHER) String publisher,
+                                  @Param(DATE_FROM) ZonedDateTime dateFrom, @Param(DATE_TO) ZonedDateTime dateTo);
+
+    /**
+     * Get the ids of the commits already included in the publishing history of a site
+     * @param siteId site identifier
+     * @return list of commit ids
+     */
+    List<String> getPublishingHistoryCommitIds(@Param(SITE_ID) String siteId);
+
+    /**
+     * Insert a list of publishing history items
+     * @param siteId site identifier
+     * @param items items to insert
+     */
+    void insertPublishingHistoryList(@Param(SITE_ID) String siteId,
+                                     @Param(PUBLISHING_HISTORY_ITEMS) List<PublishingHistoryItem> items);
+
+    /**
+     * Get the date when the existing history of a site was loaded from the published repository
+     * @param siteId site identifier
+     * @return the date or null if the history has not been loaded yet
+     */
+    ZonedDateTime getPublishingHistoryBackfillDate(@Param(SITE_ID) String siteId);
+
+    /**
+     * Mark the existing history of a site as loaded from the published repository
+     * @param siteId site identifier
+     */
+    void insertPublishingHistoryMarker(@Param(SITE_ID) String siteId);
+
+    /**
+     * Delete all publishing history items for a site
+     * @param siteId site identifier
+     */
+    void deletePublishingHistoryForSite(@Param(SITE_ID) String siteId);
+
+    /**
+     * Delete the publishing history marker for a site
+     * @param siteId site identifier
+     */
+    void deletePublishingHistoryMarker(@Param(SITE_ID) String siteId);
+}
@@ -25,6 +25,8 @@ public class PublishingHistoryItem {
     private String path;
     private String publisher;
     private ZonedDateTime publishedDate;
+    private String packageId;
+    private String commitId;
 
     public String getSiteId() {
         return siteId;
@@ -65,4 +67,20 @@ public class PublishingHistoryItem {
     public void setPublishedDate(ZonedDateTime publishedDate) {
         this.publishedDate = publishedDate;
     }
+
+    public String getPackageId() {
+        return packageId;
+    }
+
+    public void setPackageId(String packageId) {
+        this.packageId = packageId;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public void setCommitId(String commitId) {
+        this.commitId = commitId;
+    }
 }
@@ -186,8 +186,16 @@ public final class  QueryParameterNames {
 
     public static final String CLUSTER_NODE_ID = "clusterNodeId";
 
+    public static final String REPOSITORY = "repository";
+
+    public static final String HEAD_VERSION = "headVersion";
+
     public static final String INCLUDE_PARAMETERS = "includeParameters";
 
+    public static final String AUDIT_LOGS = "auditLogs";
+
+    public static final String PARAMETERS = "parameters";
+
     /* Item */
     public static final String LOCALE_CODE = "localeCode";
 
@@ -260,6 +268,16 @@ public final class  QueryParameterNames {
 
     public static final String PROCESSED = "processed";
 
+    /** Path history index */
+    public static final String SEQ = "seq";
+
+    public static final String PATH_COMMITS = "pathCommits";
+
+    /** Publishing history */
+    public static final String PUBLISHER = "publisher";
+
+    public static final String PUBLISHING_HISTORY_ITEMS = "publishingHistoryItems";
+
     public static final String UNPROCESSED = "unprocessed";
 
     /** Workflow */
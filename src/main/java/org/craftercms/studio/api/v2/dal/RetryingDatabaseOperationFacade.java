@@ -109,6 +109,12 @@ public interface RetryingDatabaseOperationFacade {
      */
     void markPublishRequestItemCompleted(PublishRequest item);
 
+    /**
+     * Update the state of multiple publishing queue items
+     * @param params SQL query parameters
+     */
+    void updateItemsDeploymentState(Map params);
+
     /**
      * Delete publish request items for site (delete site subtask)
      * @param params SQL query parameters
@@ -220,6 +226,19 @@ public interface RetryingDatabaseOperationFacade {
      */
     void insertAuditLogParams(Map params);
 
+    /**
+     * Insert a list of audit log entries
+     * @param auditLogs audit log entries
+     * @return number of rows affected
+     */
+    int insertAuditLogList(List<AuditLog> auditLogs);
+
+    /**
+     * Insert a list of audit log parameters
+     * @param parameters audit log parameters
+     */
+    void insertAuditLogParamsList(List<AuditLogParameter> parameters);
+
     /**
      * Delete audit log for site
      * @param siteId site id
@@ -327,6 +346,15 @@ public interface RetryingDatabaseOperationFacade {
      */
     void updateClusterNodeLastSyncedGitlogCommitId(long clusterNodeId, long siteId, String commitId);
 
+    /**
+     * Insert or update the head version of a repository for a cluster node
+     * @param clusterNodeId cluster node identifier
+     * @param siteId site identifier, empty for the global repository
+     * @param repository repository type
+     * @param headVersion head version
+     */
+    void upsertClusterRepoHead(long clusterNodeId, String siteId, String repository, String headVersion);
+
     // GitLog API v2
     /**
      * Insert new gitlog table row
@@ -367,6 +395,77 @@ public interface RetryingDatabaseOperationFacade {
      */
     void markGitLogAudited(String siteId, String commitId, int audited);
 
+    /**
+     * Mark list of gitlogs as audited for site
+     * @param siteId site identifier
+     * @param commitIds list of commit ids
+     * @param audited audited flag value
+     */
+    void markGitLogAuditedBulk(String siteId, List<String> commitIds, int audited);
+
+    // Path history index
+
+    /**
+     * Insert list of path history index entries
+     * @param siteId site identifier
+     * @param pathCommits index entries
+     */
+    void insertPathCommitList(String siteId, List<PathCommit> pathCommits);
+
+    /**
+     * Insert or update the last commit included in the path history index of a site
+     * @param siteId site identifier
+     * @param commitId commit id
+     * @param seq sequence number of the commit
+     */
+    void upsertPathCommitMarker(String siteId, String commitId, long seq);
+
+    /**
+     * Delete the path history index entries written after a given sequence number
+     * @param siteId site identifier
+     * @param seq sequence number
+     */
+    void deletePathCommitsAfter(String siteId, long seq);
+
+    /**
+     * Delete all path history index entries for a site
+     * @param siteId site identifier
+     */
+    void deletePathCommitsForSite(String siteId);
+
+    /**
+     * Delete the path history index marker for a site
+     * @param siteId site identifier
+     */
+    void deletePathCommitMarker(String siteId);
+
+    // Publishing history
+
+    /**
+     * Insert list of publishing history items
+     * @param siteId site identifier
+     * @param items items to insert
+     */
+    void insertPublishingHistoryList(String siteId, List<PublishingHistoryItem> items);
+
+    /**
+     * Mark the existing publishing history of a site as loaded from the published repository
+     * @param siteId site identifier
+     */
+    void insertPublishingHistoryMarker(String siteId);
+
+    /**
+     * Delete all publishing history items for a site
+     * @param siteId site identifier
+     */
+    void deletePublishingHistoryForSite(String siteId);
+
+    /**
+     * Delete the publishing history marker for a site
+     * @param siteId site identifier
+     */
+    void deletePublishingHistoryMarker(String siteId);
+
     /**
      * Insert list of gitlog rows with ignore option if it already exists
      * @param siteId site identifier
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.dal;
+
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes item and dependency rows of a single site using batched prepared statements.
+ *
+ * <p>Operations are buffered and sent to the database in batches, consecutive operations of the same kind are
+ * grouped in the same batch while still being applied in the order they were received. Parent ids are resolved for
+ * all the requested paths at once when the writer is committed. Instances are not thread safe.</p>
+ *
+ * @since 4.0
+ */
+public interface StudioDBBatchWriter {
+
+    /**
+     * Opens the connection used by the writer and starts a transaction
+     */
+    void openConnection() throws SQLException;
+
+    /**
+     * Rolls back any uncommitted work and closes the connection
+     */
+    void closeConnection();
+
+    /**
+     * Inserts an item, or updates it if there is already an item with the same path
+     * @param item the item to write, the site id of the writer is used
+     */
+    void upsertItem(Item item) throws SQLException;
+
+    /**
+     * Updates the metadata of an existing item
+     */
+    void updateItem(String path, String previewUrl, long onStatesBitMap, long offStatesBitMap, Long lastModifiedBy,
+                    ZonedDateTime lastModifiedOn, String label, String contentTypeId, String systemType,
+                    String mimeType, long size, String commitId) throws SQLException;
+
+    /**
+     * Deletes an item
+     */
+    void deleteItem(String path) throws SQLException;
+
+    /**
+     * Moves an item and all its children to a new path
+     */
+    void moveItem(String oldPath, String newPath, long onStatesBitMap, long offStatesBitMap) throws SQLException;
+
+    /**
+     * Requests the parent id of an item, and of all its ancestors, to be updated when the writer is committed
+     * @param path the path of the item
+     */
+    void updateParentId(String path);
+
+    /**
+     * Replaces the dependencies of an item
+     * @param oldSourcePath the path of the dependencies to delete, different from the source path for moved items
+     * @param sourcePath the path of the item
+     * @param dependencies the new dependencies, grouped by type
+     */
+    void replaceDependencies(String oldSourcePath, String sourcePath, Map<String, Set<String>> dependencies)
+            throws SQLException;
+
+    /**
+     * Deletes all the dependencies from or to the given path
+     */
+    void deleteDependencies(String path) throws SQLException;
+
+    /**
+     * Writes all pending operations, updates the parent ids and commits the transaction
+     */
+    void commit() throws SQLException;
+
+}
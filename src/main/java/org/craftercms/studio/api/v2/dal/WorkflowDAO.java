@@ -42,6 +42,16 @@ public interface WorkflowDAO {
     WorkflowItem getWorkflowEntryOpened(@Param(SITE_ID) String siteId, @Param(PATH) String path,
                                     @Param(STATE_OPENED) String stateOpened);
 
+    /**
+     * Get workflow entries for a list of paths
+     * @param siteId site identifier
+     * @param paths list of paths
+     * @param stateOpened state opened
+     * @return
+     */
+    List<WorkflowItem> getWorkflowEntriesOpened(@Param(SITE_ID) String siteId, @Param(PATHS) List<String> paths,
+                                                @Param(STATE_OPENED) String stateOpened);
+
     /**
      * Get workflow entry for approval
      * @param itemId item identifier
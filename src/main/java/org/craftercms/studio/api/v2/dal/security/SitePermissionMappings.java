@@ -20,7 +20,9 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.craftercms.studio.api.v2.dal.Group;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,17 +36,7 @@ public class SitePermissionMappings {
     private Map<String, List<String>> groupToRolesMapping = new HashMap<String, List<String>>();
 
     public long getAvailableActions(String username, List<Group> groups, String path) {
-        List<String> rolesList = new ArrayList<String>();
-        List<String> userRoles = groupToRolesMapping.get(username);
-        if (CollectionUtils.isNotEmpty(userRoles)) {
-            CollectionUtils.addAll(rolesList, userRoles);
-        }
-        groups.forEach(g -> {
-            List<String> groupRoles = groupToRolesMapping.get(g.getGroupName());
-            if (CollectionUtils.isNotEmpty(groupRoles)) {
-                CollectionUtils.addAll(rolesList, groupRoles);
-            }
-        });
+        List<String> rolesList = getRoles(username, groups);
 
         long availableActions = 0L;
         for (String role : rolesList) {
@@ -61,6 +53,47 @@ public class SitePermissionMappings {
         return availableActions;
     }
 
+    /**
+     * Same as {@link #getAvailableActions(String, List, String)} for a list of paths, each rule is compiled only
+     * once and then matched against all the paths
+     * @return the available actions for each path
+     */
+    public Map<String, Long> getAvailableActions(String username, List<Group> groups, Collection<String> paths) {
+        Map<String, Long> availableActions = new HashMap<String, Long>();
+        for (String path : paths) {
+            availableActions.put(path, 0L);
+        }
+        // The same role can be assigned to the user and several groups, it only needs to be checked once
+        for (String role : new LinkedHashSet<>(getRoles(username, groups))) {
+            RolePermissionMappings rolePermissionMappings = rolePermissions.get(role);
+            Map<String, Long> rulePermissions = rolePermissionMappings.getRuleContentItemPermissions();
+            for (Map.Entry<String, Long> entry : rulePermissions.entrySet()) {
+                Matcher matcher = Pattern.compile(entry.getKey()).matcher("");
+                for (Map.Entry<String, Long> pathActions : availableActions.entrySet()) {
+                    if (matcher.reset(pathActions.getKey()).matches()) {
+                        pathActions.setValue(pathActions.getValue() | entry.getValue());
+                    }
+                }
+            }
+        }
+        return availableActions;
+    }
+
+    private List<String> getRoles(String username, List<Group> groups) {
+        List<String> rolesList = new ArrayList<String>();
+        List<String> userRoles = groupToRolesMapping.get(username);
+        if (CollectionUtils.isNotEmpty(userRoles)) {
+            CollectionUtils.addAll(rolesList, userRoles);
+        }
+        groups.forEach(g -> {
+            List<String> groupRoles = groupToRolesMapping.get(g.getGroupName());
+            if (CollectionUtils.isNotEmpty(groupRoles)) {
+                CollectionUtils.addAll(rolesList, groupRoles);
+            }
+        });
+        return rolesList;
+    }
+
     public void addGroupToRolesMapping(String group, List<String> roles) {
         groupToRolesMapping.put(group, roles);
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.job;
+
+import org.craftercms.studio.model.monitoring.SchedulerMetrics;
+
+import java.util.Collection;
+
+/**
+ * Schedules the execution of the {@link SiteJob}s for all sites
+ *
+ * @since 4.0
+ */
+public interface SiteJobScheduler {
+
+    /**
+     * Updates the sites handled by the scheduler. Jobs are scheduled for the new sites and cancelled for the sites
+     * that are not included anymore
+     * @param sites the ids of all the sites
+     */
+    void setSites(Collection<String> sites);
+
+    /**
+     * Executes the jobs of the given type for a site as soon as possible, used when there is new work for the job
+     * @param site the site id
+     * @param jobType the type of the jobs
+     */
+    void wakeUp(String site, Class<? extends SiteJob> jobType);
+
+    /**
+     * Returns the current queue depth and lag metrics
+     */
+    SchedulerMetrics getMetrics();
+
+}
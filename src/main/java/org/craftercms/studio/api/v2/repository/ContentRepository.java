@@ -34,8 +34,10 @@ import org.craftercms.studio.model.rest.content.DetailedItem;
 
 import java.io.InputStream;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface ContentRepository {
 
@@ -239,6 +241,15 @@ public interface ContentRepository {
      */
     boolean contentExists(String site, String path);
 
+    /**
+     * Determine which of the given paths have content in the repository, resolving the last commit only once
+     *
+     * @param site site id where the operation will be executed
+     * @param paths paths to check if content exists
+     * @return the subset of paths that have a content object
+     */
+    Set<String> getExistingPaths(String site, Collection<String> paths);
+
     /**
      * Get last commit id from repository for given site.
      *
@@ -258,6 +269,15 @@ public interface ContentRepository {
      */
     long getContentSize(String site, String path);
 
+    /**
+     * Get a snapshot of the given files in the last commit, the commit tree is resolved only once for all of them
+     *
+     * @param site site id where the operation will be executed
+     * @param paths paths of the files to include
+     * @return the snapshot, files that do not exist are not included
+     */
+    ContentSnapshot getContentSnapshot(String site, Collection<String> paths);
+
 
     String getLastEditCommitId(String siteId, String path);
 
@@ -279,6 +299,14 @@ public interface ContentRepository {
      */
     void markGitLogAudited(String siteId, String commitId);
 
+    /**
+     * Mark Git logs as audited
+     *
+     * @param siteId   site identifier
+     * @param commitIds list of commit ids
+     */
+    void markGitLogAuditedBulk(String siteId, List<String> commitIds);
+
     /**
      * Update gitlog table with commit ids from repository
      * @param siteId site identifier
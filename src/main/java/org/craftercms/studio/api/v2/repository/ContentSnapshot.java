@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read only view of a set of files of a site, all of them taken from the same commit.
+ *
+ * <p>The commit tree is resolved once when the snapshot is created so reading many files does not require walking
+ * the tree for each one of them. Implementations are safe to use from multiple threads.</p>
+ *
+ * @since 4.0
+ */
+public interface ContentSnapshot {
+
+    /**
+     * Indicates if the file exists in the snapshot
+     * @param path the path of the file
+     * @return true if the file exists
+     */
+    boolean contentExists(String path);
+
+    /**
+     * Returns the size of a file
+     * @param path the path of the file
+     * @return the size in bytes or -1 if the file does not exist
+     */
+    long getContentSize(String path);
+
+    /**
+     * Opens the content of a file, the caller is responsible for closing the stream
+     * @param path the path of the file
+     * @return the content or null if the file does not exist
+     */
+    InputStream getContent(String path) throws IOException;
+
+}
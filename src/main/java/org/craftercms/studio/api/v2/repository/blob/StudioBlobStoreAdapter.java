@@ -18,18 +18,23 @@ package org.craftercms.studio.api.v2.repository.blob;
 import org.craftercms.core.service.Item;
 import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.to.RemoteRepositoryInfoTO;
 import org.craftercms.studio.api.v1.to.VersionTO;
 import org.craftercms.studio.api.v2.dal.GitLog;
 import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
 import org.craftercms.studio.api.v2.dal.RepoOperation;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
 import org.craftercms.studio.model.rest.content.DetailedItem;
+import org.dom4j.Document;
 
 import java.io.InputStream;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Base class for all implementations of {@link StudioBlobStore}
@@ -43,6 +48,24 @@ public interface StudioBlobStoreAdapter extends StudioBlobStore {
     // TODO: Remove when the API is split
 
     // Start API 1
+    @Override
+    default Set<String> getExistingPaths(String site, Collection<String> paths) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    default Document getContentAsDocument(String site, String path) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    default String commitBatch(String site, ContentRepositoryBatch batch) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     default RepositoryItem[] getContentChildren(String site, String path) {
         // This should be handled by the local repository
@@ -258,6 +281,12 @@ public interface StudioBlobStoreAdapter extends StudioBlobStore {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    default ContentSnapshot getContentSnapshot(String site, Collection<String> paths) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     default List<RepoOperation> getOperations(String site, String commitIdFrom, String commitIdTo) {
         // This should be handled by the local repository
@@ -326,6 +355,12 @@ public interface StudioBlobStoreAdapter extends StudioBlobStore {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    default void markGitLogAuditedBulk(String siteId, List<String> commitIds) {
+        // This should be handled by the local repository
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     default void updateGitlog(String siteId, String lastProcessedCommitId, int batchSize) throws SiteNotFoundException {
         // This should be handled by the local repository
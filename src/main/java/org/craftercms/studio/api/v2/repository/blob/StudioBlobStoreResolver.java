@@ -56,4 +56,13 @@ public interface StudioBlobStoreResolver extends BlobStoreResolver {
      */
     boolean isBlob(String site, String path) throws ServiceLayerException;
 
+    /**
+     * Indicates if a given site has any blob store configured
+     *
+     * @param site the id of the site
+     * @return true if there is at least one blob store
+     * @throws ServiceLayerException if there is any error looking up the stores
+     */
+    boolean hasBlobStores(String site) throws ServiceLayerException;
+
 }
@@ -21,6 +21,9 @@ import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v2.dal.Item;
 import org.craftercms.studio.model.rest.content.DetailedItem;
 
+import java.util.List;
+import java.util.Map;
+
 public interface SemanticsAvailableActionsResolver {
 
     /**
@@ -42,4 +45,16 @@ public interface SemanticsAvailableActionsResolver {
      */
     long calculateContentItemAvailableActions(String username, String siteId, DetailedItem detailedItem)
             throws ServiceLayerException, UserNotFoundException;
+
+    /**
+     * Calculate available actions for a list of content items, the result for each item is the same as calling
+     * {@link #calculateContentItemAvailableActions(String, String, Item)} but the permissions, configuration and
+     * workflow entries are resolved once for all the items
+     * @param username user name to apply permissions
+     * @param siteId site identifier
+     * @param items list of items
+     * @return bitmap representing available actions for each item, keyed by path
+     */
+    Map<String, Long> calculateContentItemAvailableActions(String username, String siteId, List<Item> items)
+            throws ServiceLayerException, UserNotFoundException;
 }
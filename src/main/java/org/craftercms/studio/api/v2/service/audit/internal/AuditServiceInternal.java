@@ -126,6 +126,14 @@ public interface AuditServiceInternal {
      */
     boolean insertAuditLog(AuditLog auditLog);
 
+    /**
+     * Insert a list of audit log entries, and their parameters, using multi-row inserts
+     *
+     * @param auditLogs Audit logs to insert
+     * @return true if successful, otherwise false
+     */
+    boolean insertAuditLogs(List<AuditLog> auditLogs);
+
     /**
      * Create Audit log entry and populate common properties
      *
@@ -20,6 +20,7 @@ import org.craftercms.studio.api.v2.dal.Workflow;
 import org.craftercms.studio.api.v2.dal.WorkflowItem;
 
 import java.util.List;
+import java.util.Map;
 
 public interface WorkflowServiceInternal {
 
@@ -31,6 +32,14 @@ public interface WorkflowServiceInternal {
      */
     WorkflowItem getWorkflowEntry(String siteId, String path);
 
+    /**
+     * Get workflow entries for a list of paths using a single query
+     * @param siteId site identifier
+     * @param paths list of paths
+     * @return workflow entries keyed by path, paths without an opened workflow are not included
+     */
+    Map<String, WorkflowItem> getWorkflowEntries(String siteId, List<String> paths);
+
     /**
      * Get workflow entry for approval
      * @param itemId item identifier
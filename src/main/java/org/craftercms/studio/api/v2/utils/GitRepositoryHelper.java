@@ -45,6 +45,8 @@ import org.craftercms.studio.api.v2.service.security.internal.UserServiceInterna
 import org.craftercms.studio.impl.v1.repository.StrSubstitutorVisitor;
 import org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants;
 import org.craftercms.studio.impl.v1.repository.git.TreeCopier;
+import org.craftercms.studio.impl.v2.repository.GitRepositoryRegistry;
+import org.craftercms.studio.impl.v2.utils.spring.event.BootstrapFinishedEvent;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CloneCommand;
@@ -86,6 +88,7 @@ import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.util.FS;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
 
 import java.io.File;
@@ -98,12 +101,15 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -111,7 +117,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.craftercms.studio.api.v1.constant.GitRepositories.GLOBAL;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
 import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.GLOBAL_REPOSITORY_GIT_LOCK;
@@ -129,14 +140,19 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CREATE
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CREATE_REPOSITORY_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CREATE_SANDBOX_BRANCH_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_DEFAULT_IGNORE_FILE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_REGISTRY_PREWARM_ENABLED;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_REGISTRY_PREWARM_THREADS;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_SANDBOX_BRANCH;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_BIG_FILE_THRESHOLD;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_BIG_FILE_THRESHOLD_DEFAULT;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_COMMIT_GRAPH;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_COMPRESSION;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_COMPRESSION_DEFAULT;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_FILE_MODE;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_FILE_MODE_DEFAULT;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_WRITE_COMMIT_GRAPH;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_SECTION_CORE;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_SECTION_GC;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.GIT_COMMIT_ALL_ITEMS;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.GIT_ROOT;
 import static org.eclipse.jgit.lib.Constants.HEAD;
@@ -152,53 +168,69 @@ public class GitRepositoryHelper {
     private GeneralLockService generalLockService;
     private RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
 
-    private Map<String, Repository> sandboxes = new HashMap<>();
-    private Map<String, Repository> published = new HashMap<>();
-    private Repository globalRepo = null;
+    private GitRepositoryRegistry repositoryRegistry;
 
     public Repository getRepository(String siteId, GitRepositories gitRepository) {
         return getRepository(siteId, gitRepository, null);
     }
 
     public Repository getRepository(String siteId, GitRepositories gitRepository, String sandboxBranch) {
+        return getRepository(siteId, gitRepository, sandboxBranch, false);
+    }
+
+    /**
+     * Returns a repository that will not be closed by the registry until {@link #releaseRepository(String,
+     * GitRepositories, Repository)} is called, used for long running operations
+     * @param siteId the site id, empty for the global repository
+     * @param gitRepository the type of repository
+     * @return the repository or null if it does not exist
+     */
+    public Repository acquireRepository(String siteId, GitRepositories gitRepository) {
+        return getRepository(siteId, gitRepository, null, true);
+    }
+
+    /**
+     * Releases a repository returned by {@link #acquireRepository(String, GitRepositories)}
+     * @param siteId the site id, empty for the global repository
+     * @param gitRepository the type of repository
+     * @param repo the repository, can be null
+     */
+    public void releaseRepository(String siteId, GitRepositories gitRepository, Repository repo) {
+        if (repo != null) {
+            repositoryRegistry.release(getRegistryKey(siteId, gitRepository), repo);
+        }
+    }
+
+    protected Repository getRepository(String siteId, GitRepositories gitRepository, String sandboxBranch,
+                                       boolean use) {
         Repository repo;
 
         logger.debug("getRepository invoked with site" + siteId + "Repository Type: " + gitRepository.toString());
 
         switch (gitRepository) {
             case SANDBOX:
-                repo = sandboxes.get(siteId);
-                if (repo == null) {
-                    if (buildSiteRepo(siteId)) {
-                        repo = sandboxes.get(siteId);
-                        if (StringUtils.isNotEmpty(sandboxBranch)) {
-                            checkoutSandboxBranch(siteId, repo, sandboxBranch);
-                        }
-                    } else {
-                        logger.warn("Couldn't get the sandbox repository for site: " + siteId);
+                repo = getRegisteredRepository(siteId, SANDBOX, use, () -> {
+                    Repository sandboxRepo = openRepositoryIfExists(buildRepoPath(SANDBOX, siteId).resolve(GIT_ROOT));
+                    if (sandboxRepo != null && StringUtils.isNotEmpty(sandboxBranch)) {
+                        checkoutSandboxBranch(siteId, sandboxRepo, sandboxBranch);
                     }
+                    return sandboxRepo;
+                });
+                if (repo == null) {
+                    logger.warn("Couldn't get the sandbox repository for site: " + siteId);
                 }
                 break;
             case PUBLISHED:
-                repo = published.get(siteId);
+                // The published repository is only used if the sandbox exists
+                repo = getRepository(siteId, SANDBOX) == null? null : getRegisteredRepository(siteId, PUBLISHED,
+                        use, () -> openRepositoryIfExists(buildRepoPath(PUBLISHED, siteId).resolve(GIT_ROOT)));
                 if (repo == null) {
-                    if (buildSiteRepo(siteId)) {
-                        repo = published.get(siteId);
-                    } else {
-                        logger.warn("Couldn't get the published repository for site: " + siteId);
-                    }
+                    logger.warn("Couldn't get the published repository for site: " + siteId);
                 }
                 break;
             case GLOBAL:
-                if (globalRepo == null) {
-                    Path globalConfigRepoPath = buildRepoPath(GitRepositories.GLOBAL).resolve(GIT_ROOT);
-                    try {
-                        globalRepo = openRepository(globalConfigRepoPath);
-                    } catch (IOException e) {
-                        logger.error("Error getting the global repository.", e);
-                    }
-                }
-                repo = globalRepo;
+                repo = getRegisteredRepository(StringUtils.EMPTY, GLOBAL, use,
+                        () -> openRepository(buildRepoPath(GLOBAL).resolve(GIT_ROOT)));
                 break;
             default:
                 repo = null;
@@ -214,40 +246,104 @@ public class GitRepositoryHelper {
         return repo;
     }
 
-    public boolean buildSiteRepo(String siteId) {
-        boolean toReturn = false;
-        Repository sandboxRepo;
-        Repository publishedRepo;
+    protected Repository getRegisteredRepository(String siteId, GitRepositories gitRepository, boolean use,
+                                                 GitRepositoryRegistry.RepositoryOpener opener) {
+        String key = getRegistryKey(siteId, gitRepository);
+        try {
+            return use? repositoryRegistry.acquire(key, opener) : repositoryRegistry.getRepository(key, opener);
+        } catch (IOException e) {
+            logger.error("Failed to open the " + gitRepository + " repository for site: " + siteId, e);
+            return null;
+        }
+    }
 
-        Path siteSandboxRepoPath = buildRepoPath(GitRepositories.SANDBOX, siteId).resolve(GIT_ROOT);
-        Path sitePublishedRepoPath = buildRepoPath(GitRepositories.PUBLISHED, siteId).resolve(GIT_ROOT);
+    protected String getRegistryKey(String siteId, GitRepositories gitRepository) {
+        return gitRepository + FILE_SEPARATOR + siteId;
+    }
 
-        try {
-            if (Files.exists(siteSandboxRepoPath)) {
-                // Build and put in cache
-                sandboxRepo = openRepository(siteSandboxRepoPath);
-                sandboxes.put(siteId, sandboxRepo);
-                toReturn = true;
+    protected Repository openRepositoryIfExists(Path repositoryPath) throws IOException {
+        return Files.exists(repositoryPath)? openRepository(repositoryPath) : null;
+    }
+
+    public boolean buildSiteRepo(String siteId) {
+        boolean toReturn = getRepository(siteId, SANDBOX) != null;
+        if (toReturn) {
+            getRepository(siteId, PUBLISHED);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Opens the repositories of the most recently modified sites and loads their refs and pack indexes, so the first
+     * requests after startup don't need to wait for them. The number of repositories is limited by the max number of
+     * open repositories of the registry.
+     */
+    @EventListener(BootstrapFinishedEvent.class)
+    public void prewarmRepositories() {
+        if (!studioConfiguration.getProperty(REPO_REGISTRY_PREWARM_ENABLED, Boolean.class, true)) {
+            return;
+        }
+        Path sitesPath = Paths.get(studioConfiguration.getProperty(StudioConfiguration.REPO_BASE_PATH),
+                studioConfiguration.getProperty(StudioConfiguration.SITES_REPOS_PATH));
+        List<String> sites = new ArrayList<>();
+        Map<String, Long> lastModified = new HashMap<>();
+        if (Files.isDirectory(sitesPath)) {
+            try (DirectoryStream<Path> siteFolders = Files.newDirectoryStream(sitesPath, Files::isDirectory)) {
+                for (Path siteFolder : siteFolders) {
+                    String siteId = siteFolder.getFileName().toString();
+                    Path sandboxPath = buildRepoPath(SANDBOX, siteId).resolve(GIT_ROOT);
+                    if (Files.exists(sandboxPath)) {
+                        sites.add(siteId);
+                        lastModified.put(siteId, Files.getLastModifiedTime(sandboxPath).toMillis());
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error listing the site repositories in " + sitesPath, e);
+                return;
             }
-        } catch (IOException e) {
-            logger.error("Failed to create sandbox repo for site: " + siteId + " using path " + siteSandboxRepoPath
-                    .toString(), e);
         }
+        // Each site has a sandbox and a published repository, the global repository is already open
+        int maxSites = Math.max(0, (repositoryRegistry.getMaxOpenRepositories() - 1) / 2);
+        sites.sort(Comparator.comparing(lastModified::get, Comparator.reverseOrder()));
+        prewarmRepositories(sites.subList(0, Math.min(sites.size(), maxSites)),
+                studioConfiguration.getProperty(REPO_REGISTRY_PREWARM_THREADS, Integer.class, 4));
+    }
 
+    /**
+     * Opens the sandbox and published repositories of the given sites in the background
+     * @param sites the site ids
+     * @param threads the number of threads used to open the repositories
+     * @return a future that completes when all the repositories are open
+     */
+    public CompletableFuture<Void> prewarmRepositories(Collection<String> sites, int threads) {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            if (toReturn && Files.exists(sitePublishedRepoPath)) {
-                // Build and put in cache
-                publishedRepo = openRepository(sitePublishedRepoPath);
-                published.put(siteId, publishedRepo);
+            CompletableFuture<?>[] futures = sites.stream()
+                    .map(siteId -> CompletableFuture.runAsync(() -> prewarmSiteRepositories(siteId), executor))
+                    .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(futures).thenRun(() ->
+                    logger.info("Pre-warmed the repositories of " + sites.size() + " sites in " +
+                            (System.currentTimeMillis() - start) + " ms"));
+        } finally {
+            // No new tasks are accepted but the existing ones will complete
+            executor.shutdown();
+        }
+    }
 
-                toReturn = true;
+    protected void prewarmSiteRepositories(String siteId) {
+        for (GitRepositories repoType : new GitRepositories[] { SANDBOX, PUBLISHED }) {
+            Repository repo = getRepository(siteId, repoType);
+            if (repo != null) {
+                try {
+                    repo.getRefDatabase().getRefs();
+                    // Looking for a missing object loads the index of every pack
+                    repo.getObjectDatabase().has(ObjectId.zeroId());
+                } catch (IOException e) {
+                    logger.warn("Error pre-warming the " + repoType + " repository for site: " + siteId);
+                }
             }
-        } catch (IOException e) {
-            logger.error("Failed to create published repo for site: " + siteId + " using path " +
-                    sitePublishedRepoPath.toString(), e);
         }
-
-        return toReturn;
     }
 
     /**
@@ -527,7 +623,7 @@ public class GitRepositoryHelper {
             if (toReturn) {
                 toReturn = checkoutSandboxBranch(site, sandboxRepo, sandboxBranch);
                 if (toReturn) {
-                    sandboxes.put(site, sandboxRepo);
+                    repositoryRegistry.register(getRegistryKey(site, SANDBOX), sandboxRepo);
                 }
             }
         } finally {
@@ -607,6 +703,9 @@ public class GitRepositoryHelper {
         // Set fileMode
         config.setBoolean(CONFIG_SECTION_CORE, null, CONFIG_PARAMETER_FILE_MODE,
                 CONFIG_PARAMETER_FILE_MODE_DEFAULT);
+        // Write and use commit-graph files during gc (core.commitGraph & gc.writeCommitGraph)
+        config.setBoolean(CONFIG_SECTION_CORE, null, CONFIG_PARAMETER_COMMIT_GRAPH, true);
+        config.setBoolean(CONFIG_SECTION_GC, null, CONFIG_PARAMETER_WRITE_COMMIT_GRAPH, true);
         // Save configuration changes
         config.save();
 
@@ -877,7 +976,7 @@ public class GitRepositoryHelper {
                 makeRepoOrphan(sandboxRepo, siteId);
             }
 
-            sandboxes.put(siteId, sandboxRepo);
+            repositoryRegistry.register(getRegistryKey(siteId, SANDBOX), sandboxRepo);
         } catch (InvalidRemoteException e) {
             logger.error("Invalid remote repository: " + remoteName + " (" + remoteUrl + ")", e);
             throw new InvalidRemoteRepositoryException("Invalid remote repository: " + remoteName + " (" +
@@ -988,7 +1087,7 @@ public class GitRepositoryHelper {
     }
 
     public void removeSandbox(String siteId) {
-        sandboxes.remove(siteId);
+        repositoryRegistry.remove(getRegistryKey(siteId, SANDBOX));
     }
 
     // --------------------------------------------------------------------------------------------
@@ -1004,8 +1103,8 @@ public class GitRepositoryHelper {
         Path siteRepoPath = buildRepoPath(GitRepositories.GLOBAL).resolve(GIT_ROOT);
 
         if (Files.exists(siteRepoPath)) {
-            globalRepo = openRepository(siteRepoPath);
-            toReturn = true;
+            toReturn = repositoryRegistry.getRepository(getRegistryKey(StringUtils.EMPTY, GLOBAL),
+                    () -> openRepository(siteRepoPath)) != null;
         }
 
         return toReturn;
@@ -1026,7 +1125,10 @@ public class GitRepositoryHelper {
                     Files.deleteIfExists(globalConfigPath);
                     logger.info("Bootstrapping repository...");
                     Files.createDirectories(globalConfigPath);
-                    globalRepo = createGitRepository(globalConfigPath);
+                    Repository globalRepo = createGitRepository(globalConfigPath);
+                    if (globalRepo != null) {
+                        repositoryRegistry.register(getRegistryKey(StringUtils.EMPTY, GLOBAL), globalRepo);
+                    }
                     toReturn = true;
                 } catch (IOException e) {
                     // Something very wrong has happened
@@ -1058,19 +1160,13 @@ public class GitRepositoryHelper {
         generalLockService.lock(gitLockKeySandbox);
         generalLockService.lock(gitLockKeyPublished);
         try {
-            Repository sboxRepo = sandboxes.get(site);
+            Repository sboxRepo = repositoryRegistry.remove(getRegistryKey(site, SANDBOX));
             if (sboxRepo != null) {
-                sboxRepo.close();
-                sandboxes.remove(site);
                 RepositoryCache.close(sboxRepo);
-                sboxRepo = null;
             }
-            Repository pubRepo = published.get(site);
+            Repository pubRepo = repositoryRegistry.remove(getRegistryKey(site, PUBLISHED));
             if (pubRepo != null) {
-                pubRepo.close();
-                published.remove(site);
                 RepositoryCache.close(pubRepo);
-                pubRepo = null;
             }
             FileUtils.deleteDirectory(siteFolder);
 
@@ -1257,6 +1353,14 @@ public class GitRepositoryHelper {
         this.generalLockService = generalLockService;
     }
 
+    public GitRepositoryRegistry getRepositoryRegistry() {
+        return repositoryRegistry;
+    }
+
+    public void setRepositoryRegistry(GitRepositoryRegistry repositoryRegistry) {
+        this.repositoryRegistry = repositoryRegistry;
+    }
+
     public RetryingRepositoryOperationFacade getRetryingRepositoryOperationFacade() {
         return retryingRepositoryOperationFacade;
     }
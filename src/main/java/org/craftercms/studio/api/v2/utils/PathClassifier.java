@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.api.v2.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Classifies paths using the patterns of a site, all of them compiled only once.
+ *
+ * <p>Each class gets its own pattern (the alternation of all the class patterns) and all classes are also combined
+ * in a single pattern with one named group per class, so finding the class of a path takes a single match. Classes
+ * are evaluated in the order they are given, the first one that matches wins.</p>
+ *
+ * <p>Instances are immutable and safe to share between threads.</p>
+ *
+ * @since 4.0
+ */
+public class PathClassifier {
+
+    /**
+     * Name of the class for the protected folder patterns, always evaluated after the content classes
+     */
+    public static final String PROTECTED_FOLDER = "protectedFolder";
+
+    private static final String GROUP_PREFIX = "c";
+
+    /**
+     * Shared cache of compiled patterns for the callers that only have a list of regexes
+     */
+    private static final Cache<String, Pattern> PATTERN_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    /**
+     * Ordered names of the classes included in the combined pattern
+     */
+    protected final List<String> classes;
+
+    /**
+     * Compiled pattern for each class
+     */
+    protected final Map<String, Pattern> classPatterns;
+
+    /**
+     * All classes combined, null if there are no patterns at all
+     */
+    protected final Pattern combinedPattern;
+
+    /**
+     * Creates a new classifier
+     * @param patterns the patterns for each class, in the order they should be evaluated
+     */
+    public PathClassifier(Map<String, List<String>> patterns) {
+        List<String> names = new ArrayList<>();
+        Map<String, Pattern> compiled = new HashMap<>();
+        List<String> groups = new ArrayList<>();
+        patterns.forEach((name, regexes) -> {
+            if (CollectionUtils.isNotEmpty(regexes)) {
+                String alternation = regexes.stream().map(regex -> "(?:" + regex + ")").collect(joining("|"));
+                compiled.put(name, Pattern.compile(alternation));
+                groups.add("(?<" + GROUP_PREFIX + names.size() + ">" + alternation + ")");
+                names.add(name);
+            }
+        });
+        this.classes = Collections.unmodifiableList(names);
+        this.classPatterns = Collections.unmodifiableMap(compiled);
+        this.combinedPattern = groups.isEmpty()? null : Pattern.compile(String.join("|", groups));
+    }
+
+    /**
+     * Returns the first class matching the given path
+     * @param path the path to classify
+     * @return the name of the class or null if none matches
+     */
+    public String classify(String path) {
+        if (combinedPattern == null || path == null) {
+            return null;
+        }
+        Matcher matcher = combinedPattern.matcher(path);
+        if (matcher.matches()) {
+            for (int i = 0; i < classes.size(); i++) {
+                if (matcher.start(GROUP_PREFIX + i) >= 0) {
+                    return classes.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indicates if the given path matches any of the patterns of a class
+     * @param className the name of the class
+     * @param path the path to check
+     * @return true if the path matches the class
+     */
+    public boolean matches(String className, String path) {
+        Pattern pattern = classPatterns.get(className);
+        return pattern != null && path != null && pattern.matcher(path).matches();
+    }
+
+    /**
+     * Indicates if the given path matches any of the given regexes, compiling each regex only once
+     * @param path the path to check
+     * @param patterns the regexes
+     * @return true if the path matches any of the regexes
+     */
+    public static boolean matchesAny(String path, List<String> patterns) {
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                Pattern compiled = PATTERN_CACHE.getIfPresent(pattern);
+                if (compiled == null) {
+                    compiled = Pattern.compile(pattern);
+                    PATTERN_CACHE.put(pattern, compiled);
+                }
+                if (compiled.matcher(path).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -44,8 +44,22 @@ public interface StudioConfiguration {
     String REPO_PUBLISHED_COMMIT_MESSAGE = "studio.repo.published.commitMessage";
     String REPO_PUBLISHED_LIVE = "studio.repo.published.live";
     String REPO_PUBLISHED_STAGING = "studio.repo.published.staging";
+    String REPO_PUBLISHED_INDEX_DIRECT_ENABLED = "studio.repo.published.indexDirect.enabled";
     String REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING = "studio.repo.syncDB.commitMessage.noProcessing";
+    String REPO_SYNC_DB_METADATA_EXTRACTION_PARALLELISM = "studio.repo.syncDB.metadataExtraction.parallelism";
+    String REPO_SYNC_DB_METADATA_EXTRACTION_BATCH_SIZE = "studio.repo.syncDB.metadataExtraction.batchSize";
+    String REPO_PATH_HISTORY_INDEX_MAX_LOOKUP_COMMITS = "studio.repo.pathHistoryIndex.maxLookupCommits";
+    String REPO_OBJECT_CACHE_TREES_MAX_SIZE = "studio.repo.objectCache.trees.maxSize";
+    String REPO_OBJECT_CACHE_DOCUMENTS_MAX_SIZE = "studio.repo.objectCache.documents.maxSize";
+    String REPO_REGISTRY_MAX_OPEN_REPOSITORIES = "studio.repo.registry.maxOpenRepositories";
+    String REPO_REGISTRY_IDLE_TIMEOUT = "studio.repo.registry.idleTimeout";
+    String REPO_REGISTRY_EVICTION_INTERVAL = "studio.repo.registry.evictionInterval";
+    String REPO_REGISTRY_PREWARM_ENABLED = "studio.repo.registry.prewarm.enabled";
+    String REPO_REGISTRY_PREWARM_THREADS = "studio.repo.registry.prewarm.threads";
     String REPO_CLEANUP_CRON = "studio.repo.cleanup.cron";
+    String REPO_CLEANUP_LOOSE_OBJECTS_THRESHOLD = "studio.repo.cleanup.looseObjectsThreshold";
+    String REPO_CLEANUP_PACK_FILES_THRESHOLD = "studio.repo.cleanup.packFilesThreshold";
+    String REPO_CLEANUP_TIME_BUDGET = "studio.repo.cleanup.timeBudget";
     String REPO_CREATE_REPOSITORY_COMMIT_MESSAGE = "studio.repo.createRepository.commitMessage";
     String REPO_CREATE_SANDBOX_BRANCH_COMMIT_MESSAGE = "studio.repo.createSandboxBranch.commitMessage";
     String REPO_INITIAL_COMMIT_COMMIT_MESSAGE = "studio.repo.initialCommit.commitMessage";
@@ -55,6 +69,7 @@ public interface StudioConfiguration {
     String REPO_DELETE_CONTENT_COMMIT_MESSAGE = "studio.repo.deleteContent.commitMessage";
     String REPO_MOVE_CONTENT_COMMIT_MESSAGE = "studio.repo.moveContent.commitMessage";
     String REPO_COPY_CONTENT_COMMIT_MESSAGE = "studio.repo.copyContent.commitMessage";
+    String REPO_BATCH_COMMIT_MESSAGE = "studio.repo.batch.commitMessage";
     String REPO_PULL_FROM_REMOTE_CONFLICT_NOTIFICATION_ENABLED =
             "studio.repo.pullFromRemote.conflict.notificationEnabled";
     String REPO_DEFAULT_IGNORE_FILE = "studio.repo.defaultIgnoreFile";
@@ -119,6 +134,8 @@ public interface StudioConfiguration {
             "studio.configuration.default.dependencyResolver.configBasePath";
     String CONFIGURATION_SITE_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME =
             "studio.configuration.site.dependencyResolver.configFileName";
+    String CONFIGURATION_DEPENDENCY_RESOLVER_SINGLE_PASS_SCAN_ENABLED =
+            "studio.configuration.dependencyResolver.singlePassScan.enabled";
     String CONFIGURATION_SITE_AWS_CONFIGURATION_MODULE = "studio.configuration.site.aws.configurationModule";
     String CONFIGURATION_SITE_AWS_CONFIGURATION_PATH = "studio.configuration.site.aws.configurationPath";
     String CONFIGURATION_SITE_BOX_CONFIGURATION_MODULE = "studio.configuration.site.box.configurationModule";
@@ -126,6 +143,8 @@ public interface StudioConfiguration {
     String CONFIGURATION_SITE_WEBDAV_CONFIGURATION_MODULE = "studio.configuration.site.webdav.configurationModule";
     String CONFIGURATION_SITE_WEBDAV_CONFIGURATION_PATH = "studio.configuration.site.webdav.configurationPath";
     String CONFIGURATION_DEPENDENCY_ITEM_SPECIFIC_PATTERNS = "studio.configuration.dependency.itemSpecificPatterns";
+    String CONFIGURATION_DEPENDENCY_GRAPH_MAX_SITES = "studio.configuration.dependency.graph.maxSites";
+    String CONFIGURATION_DEPENDENCY_GRAPH_MAX_AGE = "studio.configuration.dependency.graph.maxAge";
     String CONFIGURATION_SITE_ASSET_PROCESSING_CONFIGURATION_PATH =
             "studio.configuration.site.asset.processing.configurationPath";
 
@@ -145,6 +164,9 @@ public interface StudioConfiguration {
     String IMPORT_ASSIGNEE = "studio.import.assignee";
     String IMPORT_XML_CHAIN_NAME = "studio.import.xmlChainName";
     String IMPORT_ASSET_CHAIN_NAME = "studio.import.assetChainName";
+    String IMPORT_BULK_BATCH_SIZE = "studio.import.bulk.batchSize";
+    String IMPORT_BULK_BATCH_MAX_BYTES = "studio.import.bulk.batchMaxBytes";
+    String IMPORT_BULK_PARALLELISM = "studio.import.bulk.parallelism";
 
     /** Notification Service */
     String NOTIFICATION_CONFIGURATION_FILE = "studio.notification.configurationFile";
@@ -225,6 +247,8 @@ public interface StudioConfiguration {
     String PREVIEW_DISABLE_DEPLOY_CRON = "studio.preview.disableDeployCron";
     String PREVIEW_TEMPLATE_NAME = "studio.preview.templateName";
     String PREVIEW_REPO_URL = "studio.preview.repoUrl";
+    String PREVIEW_SYNC_COALESCE_WINDOW = "studio.preview.sync.coalesceWindow";
+    String PREVIEW_SYNC_EXECUTOR_POOL_SIZE = "studio.preview.sync.executor.poolSize";
 
     /** Authoring Deployer **/
     String AUTHORING_REPLACE = "studio.authoring.replace";
@@ -238,6 +262,7 @@ public interface StudioConfiguration {
     String PUBLISHING_MANAGER_INDEX_FILE = "studio.publishingManager.indexFile";
     String PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED =
             "studio.publishingManager.publishingWithoutDependencies.enabled";
+    String PUBLISHING_MANAGER_BATCH_SIZE = "studio.publishingManager.batchSize";
 
     /** Authentication Chain properties **/
     String AUTHENTICATION_CHAIN_PROVIDER_TYPE = "provider";
@@ -274,6 +299,9 @@ public interface StudioConfiguration {
 
     /** Clustering **/
     String CLUSTERING_SYNC_URL_FORMAT = "studio.clustering.sync.urlFormat";
+    String CLUSTERING_SYNC_FULL_SYNC_EVERY_N_RUNS = "studio.clustering.sync.fullSyncEveryNRuns";
+    String CLUSTERING_NOTIFICATION_URL_FORMAT = "studio.clustering.notification.urlFormat";
+    String CLUSTERING_NOTIFICATION_TIMEOUT = "studio.clustering.notification.timeout";
 
     /** Clustering Thread Pool **/
     String CLUSTERING_HEARTBEAT_JOB_INTERVAL = "studio.clustering.heartbeatJob.interval";
@@ -326,6 +354,8 @@ public interface StudioConfiguration {
     String CLOCK_JOB_TASK_EXECUTOR_CORE_POOL_SIZE = "studio.clockJob.taskExecutor.corePoolSize";
     String CLOCK_JOB_TASK_EXECUTOR_MAX_POOL_SIZE = "studio.clockJob.taskExecutor.maxPoolSize";
     String CLOCK_JOB_TASK_EXECUTOR_QUEUE_CAPACITY = "studio.clockJob.taskExecutor.queueCapacity";
+    String CLOCK_JOB_SCHEDULER_MAX_RUNNING_JOBS = "studio.clockJob.scheduler.maxRunningJobs";
+    String CLOCK_JOB_SCHEDULER_MAX_RUNNING_JOBS_PER_SITE = "studio.clockJob.scheduler.maxRunningJobsPerSite";
     String CLOCK_JOB_TASK_CLUSTER_RANDOM_OFFSET =
             "studio.clockJob.task.cluster.randomOffset";
     String CLOCK_JOB_TASK_CLUSTER_GLOBAL_REPO_SYNC_EXECUTE_EVERY_N_CYCLES =
@@ -346,12 +376,24 @@ public interface StudioConfiguration {
             "studio.clockJob.task.auditLogProcessing.batchSizeGitLog";
     String CLOCK_JOB_TASK_AUDIT_LOG_PROCESSING_BATCH_SIZE_AUDITED =
             "studio.clockJob.task.auditLogProcessing.batchSizeAudited";
+    String CLOCK_JOB_TASK_AUDIT_LOG_PROCESSING_FLUSH_SIZE =
+            "studio.clockJob.task.auditLogProcessing.flushSize";
+    String CLOCK_JOB_TASK_AUDIT_LOG_PROCESSING_FLUSH_INTERVAL =
+            "studio.clockJob.task.auditLogProcessing.flushInterval";
+    String CLOCK_JOB_TASK_PATH_HISTORY_INDEX_EXECUTE_EVERY_N_CYCLES =
+            "studio.clockJob.task.pathHistoryIndex.executeEveryNCycles";
+    String CLOCK_JOB_TASK_PUBLISHING_HISTORY_BACKFILL_EXECUTE_EVERY_N_CYCLES =
+            "studio.clockJob.task.publishingHistoryBackfill.executeEveryNCycles";
 
     String PLUGIN_BASE_PATTERN = "studio.configuration.plugin.base.pattern";
 
     // Content Service
     String CONTENT_ITEM_EDITABLE_TYPES = "studio.content.item.editableTypes";
 
+    // General Lock Service
+    String LOCK_METRICS_ENABLED = "studio.lock.metrics.enabled";
+    String LOCK_METRICS_MAX_KEYS = "studio.lock.metrics.maxKeys";
+
     void loadConfig();
 
     String getProperty(String key);
@@ -55,13 +55,6 @@ public abstract class StudioUtils {
     }
 
     public static boolean matchesPatterns(String path, List<String> patterns) {
-        if (patterns != null) {
-            for (String pattern : patterns) {
-                if (path.matches(pattern)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return PathClassifier.matchesAny(path, patterns);
     }
 }
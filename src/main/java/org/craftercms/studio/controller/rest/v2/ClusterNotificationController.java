@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.controller.rest.v2;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.exceptions.InvalidManagementTokenException;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
+import org.craftercms.studio.api.v1.service.security.SecurityService;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
+import org.craftercms.studio.api.v2.exception.InvalidParametersException;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.job.StudioClusterPublishedRepoSyncTask;
+import org.craftercms.studio.impl.v2.job.StudioClusterSandboxRepoSyncTask;
+import org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker;
+import org.craftercms.studio.model.rest.ApiResponse;
+import org.craftercms.studio.model.rest.ResponseBody;
+import org.craftercms.studio.model.rest.Result;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Controller that receives the change notifications sent by other cluster members
+ *
+ * @since 4.0
+ */
+@RestController
+@RequestMapping("/api/2/cluster")
+public class ClusterNotificationController extends ManagementTokenAware {
+
+    protected final ClusterRepoHeadTracker clusterRepoHeadTracker;
+
+    protected final SiteJobScheduler siteJobScheduler;
+
+    @ConstructorProperties({"studioConfiguration", "securityService", "clusterRepoHeadTracker", "siteJobScheduler"})
+    public ClusterNotificationController(StudioConfiguration studioConfiguration, SecurityService securityService,
+                                         ClusterRepoHeadTracker clusterRepoHeadTracker,
+                                         SiteJobScheduler siteJobScheduler) {
+        super(studioConfiguration, securityService);
+        this.clusterRepoHeadTracker = clusterRepoHeadTracker;
+        this.siteJobScheduler = siteJobScheduler;
+    }
+
+    /**
+     * Schedules the sync of the given repository as soon as possible
+     */
+    @GetMapping("/notify")
+    public ResponseBody notifyChange(@RequestParam(required = false, defaultValue = "") String siteId,
+                                     @RequestParam String repository, @RequestParam String token)
+            throws InvalidParametersException, InvalidManagementTokenException {
+        validateToken(token);
+
+        GitRepositories repo = EnumUtils.getEnum(GitRepositories.class, repository);
+        if (repo == null) {
+            throw new InvalidParametersException("Invalid repository: '" + repository + "'");
+        }
+        clusterRepoHeadTracker.notifyChange(repo == GitRepositories.GLOBAL? StringUtils.EMPTY : siteId, repo);
+        switch (repo) {
+            case SANDBOX:
+                siteJobScheduler.wakeUp(siteId, StudioClusterSandboxRepoSyncTask.class);
+                break;
+            case PUBLISHED:
+                siteJobScheduler.wakeUp(siteId, StudioClusterPublishedRepoSyncTask.class);
+                break;
+            default:
+                // the global repository is synced by the clock job
+        }
+
+        var result = new Result();
+        result.setResponse(ApiResponse.OK);
+
+        var response = new ResponseBody();
+        response.setResult(result);
+        return response;
+    }
+
+}
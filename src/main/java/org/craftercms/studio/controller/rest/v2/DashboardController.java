@@ -120,7 +120,8 @@ public class DashboardController {
             contentType = requestParameters.getFilters().getContentType();
         }
 
-        int total = 0;
+        int total = dashboardService.getPublishingHistoryTotal(requestParameters.getSiteId(), environment, path, user,
+                dateFrom, dateTo, contentType, state);
         List<PublishingDashboardItem> publishingHistory =
                 dashboardService.getPublishingHistory(requestParameters.getSiteId(), environment, path, user, dateFrom,
                         dateTo, contentType, state, requestParameters.getSortBy(), requestParameters.getOrder(),
@@ -21,9 +21,17 @@ import org.craftercms.commons.monitoring.MemoryInfo;
 import org.craftercms.commons.monitoring.StatusInfo;
 import org.craftercms.commons.monitoring.VersionInfo;
 import org.craftercms.engine.util.logging.CircularQueueLogAppender;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v2.exception.InvalidParametersException;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.deployment.PreviewDeployer;
+import org.craftercms.studio.impl.v2.repository.GitRepositoryRegistry;
+import org.craftercms.studio.model.monitoring.LockMetrics;
+import org.craftercms.studio.model.monitoring.PreviewSyncMetrics;
+import org.craftercms.studio.model.monitoring.RepositoryMetrics;
+import org.craftercms.studio.model.monitoring.SchedulerMetrics;
 import org.craftercms.studio.model.rest.ApiResponse;
 import org.craftercms.studio.model.rest.ResultList;
 import org.craftercms.studio.model.rest.ResultOne;
@@ -42,7 +50,11 @@ import static org.craftercms.commons.monitoring.rest.MonitoringRestControllerBas
 import static org.craftercms.commons.monitoring.rest.MonitoringRestControllerBase.VERSION_URL;
 import static org.craftercms.engine.controller.rest.MonitoringController.LOG_URL;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_EVENTS;
+import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_LOCKS;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_MEMORY;
+import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_PREVIEW_SYNC;
+import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_REPOSITORIES;
+import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_SCHEDULER;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_STAUS;
 import static org.craftercms.studio.controller.rest.v2.ResultConstants.RESULT_KEY_VERSION;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -55,9 +67,29 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 @RequestMapping("/api/2")
 public class MonitoringController extends ManagementTokenAware {
 
-    @ConstructorProperties({"studioConfiguration", "securityService"})
-    public MonitoringController(StudioConfiguration studioConfiguration, SecurityService securityService) {
+    public static final String LOCKS_URL = "/locks";
+    public static final String SCHEDULER_URL = "/scheduler";
+    public static final String REPOSITORIES_URL = "/repositories";
+    public static final String PREVIEW_SYNC_URL = "/preview_sync";
+
+    protected final GeneralLockService generalLockService;
+
+    protected final SiteJobScheduler siteJobScheduler;
+
+    protected final GitRepositoryRegistry gitRepositoryRegistry;
+
+    protected final PreviewDeployer previewDeployer;
+
+    @ConstructorProperties({"studioConfiguration", "securityService", "generalLockService", "siteJobScheduler",
+            "gitRepositoryRegistry", "previewDeployer"})
+    public MonitoringController(StudioConfiguration studioConfiguration, SecurityService securityService,
+                                GeneralLockService generalLockService, SiteJobScheduler siteJobScheduler,
+                                GitRepositoryRegistry gitRepositoryRegistry, PreviewDeployer previewDeployer) {
         super(studioConfiguration, securityService);
+        this.generalLockService = generalLockService;
+        this.siteJobScheduler = siteJobScheduler;
+        this.gitRepositoryRegistry = gitRepositoryRegistry;
+        this.previewDeployer = previewDeployer;
     }
 
     @GetMapping(value = ROOT_URL + MEMORY_URL)
@@ -101,4 +133,48 @@ public class MonitoringController extends ManagementTokenAware {
         return result;
     }
 
+    @GetMapping(value = ROOT_URL + LOCKS_URL, produces = APPLICATION_JSON_VALUE)
+    public ResultOne<Map<String, LockMetrics>> getLockMetrics(
+            @RequestParam(name = "token", required = false) String token)
+        throws InvalidManagementTokenException, InvalidParametersException {
+        validateToken(token);
+        ResultOne<Map<String, LockMetrics>> result = new ResultOne<>();
+        result.setResponse(ApiResponse.OK);
+        result.setEntity(RESULT_KEY_LOCKS, generalLockService.getLockMetrics());
+        return result;
+    }
+
+    @GetMapping(value = ROOT_URL + SCHEDULER_URL, produces = APPLICATION_JSON_VALUE)
+    public ResultOne<SchedulerMetrics> getSchedulerMetrics(
+            @RequestParam(name = "token", required = false) String token)
+        throws InvalidManagementTokenException, InvalidParametersException {
+        validateToken(token);
+        ResultOne<SchedulerMetrics> result = new ResultOne<>();
+        result.setResponse(ApiResponse.OK);
+        result.setEntity(RESULT_KEY_SCHEDULER, siteJobScheduler.getMetrics());
+        return result;
+    }
+
+    @GetMapping(value = ROOT_URL + REPOSITORIES_URL, produces = APPLICATION_JSON_VALUE)
+    public ResultOne<RepositoryMetrics> getRepositoryMetrics(
+            @RequestParam(name = "token", required = false) String token)
+        throws InvalidManagementTokenException, InvalidParametersException {
+        validateToken(token);
+        ResultOne<RepositoryMetrics> result = new ResultOne<>();
+        result.setResponse(ApiResponse.OK);
+        result.setEntity(RESULT_KEY_REPOSITORIES, gitRepositoryRegistry.getMetrics());
+        return result;
+    }
+
+    @GetMapping(value = ROOT_URL + PREVIEW_SYNC_URL, produces = APPLICATION_JSON_VALUE)
+    public ResultOne<PreviewSyncMetrics> getPreviewSyncMetrics(
+            @RequestParam(name = "token", required = false) String token)
+        throws InvalidManagementTokenException, InvalidParametersException {
+        validateToken(token);
+        ResultOne<PreviewSyncMetrics> result = new ResultOne<>();
+        result.setResponse(ApiResponse.OK);
+        result.setEntity(RESULT_KEY_PREVIEW_SYNC, previewDeployer.getMetrics());
+        return result;
+    }
+
 }
@@ -57,6 +57,10 @@ public final class ResultConstants {
     public static final String RESULT_KEY_VERSION = "version";
     public static final String RESULT_KEY_MEMORY = "memory";
     public static final String RESULT_KEY_EVENTS = "events";
+    public static final String RESULT_KEY_LOCKS = "locks";
+    public static final String RESULT_KEY_SCHEDULER = "scheduler";
+    public static final String RESULT_KEY_REPOSITORIES = "repositories";
+    public static final String RESULT_KEY_PREVIEW_SYNC = "previewSync";
 
     /* Repository management controller */
     public static final String RESULT_KEY_REMOTES = "remotes";
@@ -23,6 +23,7 @@ import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.to.ContentAssetInfoTO;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.ResultTO;
@@ -31,7 +32,6 @@ import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 
 import java.io.InputStream;
-import java.util.Optional;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
@@ -173,13 +173,6 @@ public class AssetDmContentProcessor extends FormDmContentProcessor {
                         assetInfo.setSizeUnit(FILE_SIZE_KB);
                     }
                 }
-                // Item
-                // TODO: get local code with API 2
-                String commitId = result.getCommitId();
-                if (StringUtils.isEmpty(commitId)) {
-                    commitId = contentRepository.getRepoLastCommitId(site);
-                }
-                itemServiceInternal.persistItemAfterWrite(site, contentPath, user, commitId, Optional.of(unlock));
                 assetInfo.setFileExtension(ext);
                 return assetInfo;
             } else {
@@ -203,15 +196,15 @@ public class AssetDmContentProcessor extends FormDmContentProcessor {
     protected void updateFile(String site, ContentItemTO contentItem, String relativePath, InputStream input,
                               String user, boolean isPreview, boolean unlock, ResultTO result)
             throws ServiceLayerException, UserNotFoundException {
-        boolean success = false;
+        String commitId;
         try {
-            success = contentService.writeContent(site, relativePath, input);
+            // the item and its dependencies are updated by the batch once the file is committed
+            commitId = contentService.commitBatch(site, new ContentRepositoryBatch().write(relativePath, input));
         } finally {
             ContentUtils.release(input);
         }
 
-        if (success) {
-            String commitId = contentRepository.getRepoLastCommitId(site);
+        if (StringUtils.isNotEmpty(commitId)) {
             result.setCommitId(commitId);
 
             // if there is anything pending and this is not a preview update, cancel workflow
@@ -224,9 +217,6 @@ public class AssetDmContentProcessor extends FormDmContentProcessor {
                     }
                 }
             }
-
-            // Item
-            itemServiceInternal.persistItemAfterWrite(site, relativePath, user, commitId, Optional.of(unlock));
         }
         if (unlock) {
             contentRepository.unLockItem(site, relativePath);
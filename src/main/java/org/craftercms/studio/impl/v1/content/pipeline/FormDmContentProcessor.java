@@ -27,13 +27,13 @@ import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.service.workflow.WorkflowService;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
 import org.craftercms.studio.api.v1.to.ResultTO;
-import org.craftercms.studio.api.v2.dal.Item;
 import org.craftercms.studio.api.v2.exception.RepositoryLockedException;
 import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
@@ -42,10 +42,8 @@ import org.craftercms.studio.impl.v1.util.ContentUtils;
 
 import java.io.InputStream;
 import java.util.List;
-import java.util.Optional;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
-import static org.craftercms.studio.api.v1.constant.StudioConstants.INDEX_FILE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_UPDATE;
 
@@ -199,16 +197,9 @@ public class FormDmContentProcessor extends PathMatchProcessor implements DmCont
             String folderPath = fileToFolder(site, parentItem.getUri());
             String itemPath = parentItem.getUri() + FILE_SEPARATOR + fileName;
             try {
-                contentService.writeContent(site, itemPath, input);
-                String commitId = contentRepository.getRepoLastCommitId(site);
+                // the item and its dependencies are updated by the batch once the file is committed
+                String commitId = contentService.commitBatch(site, new ContentRepositoryBatch().write(itemPath, input));
                 result.setCommitId(commitId);
-
-                // Item
-                // TODO: get local code with API 2
-                String parentItemPath = ContentUtils.getParentUrl(itemPath.replace(FILE_SEPARATOR + INDEX_FILE, ""));
-                Item pItem = itemServiceInternal.getItem(site, parentItemPath, true);
-                itemServiceInternal.persistItemAfterCreate(site, itemPath, user, commitId, Optional.of(unlock),
-                        pItem.getId());
             } catch (Exception e) {
                 logger.error("Error writing new file: " + fileName, e);
             } finally {
@@ -244,15 +235,15 @@ public class FormDmContentProcessor extends PathMatchProcessor implements DmCont
                               boolean isPreview, boolean unlock, ResultTO result)
             throws ServiceLayerException, UserNotFoundException {
 
-        boolean success = false;
+        String commitId;
         try {
-            success = contentService.writeContent(site, path, input);
+            // the item and its dependencies are updated by the batch once the file is committed
+            commitId = contentService.commitBatch(site, new ContentRepositoryBatch().write(path, input));
         } finally {
             ContentUtils.release(input);
         }
 
-        if (success) {
-            String commitId = contentRepository.getRepoLastCommitId(site);
+        if (StringUtils.isNotEmpty(commitId)) {
             result.setCommitId(commitId);
 
             // if there is anything pending and this is not a preview update, cancel workflow
@@ -265,10 +256,6 @@ public class FormDmContentProcessor extends PathMatchProcessor implements DmCont
                     }
                 }
             }
-
-            // Item
-            // TODO: get local code with API 2
-            itemServiceInternal.persistItemAfterWrite(site, path, user, commitId, Optional.of(unlock));
         }
 
         // unlock the content upon save if the flag is true
@@ -332,15 +319,21 @@ public class FormDmContentProcessor extends PathMatchProcessor implements DmCont
         String [] levels = path.split(FILE_SEPARATOR);
         String parentPath = "";
         ContentItemTO lastItem = null;
+        ContentRepositoryBatch batch = new ContentRepositoryBatch();
         for (String level : levels) {
             if (!StringUtils.isEmpty(level) && !level.endsWith(DmConstants.XML_PATTERN)) {
                 String currentPath = parentPath + FILE_SEPARATOR + level;
-                if (!contentService.contentExists(site, currentPath)) {
-                    contentService.createFolder(site, parentPath, level);
+                // once a folder is missing there is no need to check the ones below it
+                if (!batch.isEmpty() || !contentService.contentExists(site, currentPath)) {
+                    batch.createFolder(parentPath, level);
                 }
                 parentPath = currentPath;
             }
         }
+        if (!batch.isEmpty()) {
+            // create all the missing folders in a single commit
+            contentService.commitBatch(site, batch);
+        }
         lastItem = contentService.getContentItem(site, parentPath, 0);
         return lastItem;
     }
@@ -360,9 +353,12 @@ public class FormDmContentProcessor extends PathMatchProcessor implements DmCont
             String parentFileName = itemTO.getName();
             int dotIndex = parentFileName.indexOf(".");
             String folderName = (dotIndex > 0) ? parentFileName.substring(0, parentFileName.indexOf(".")) : parentFileName;
-            contentService.createFolder(site, folderPath, folderName);
+            ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                    .createFolder(folderPath, folderName)
+                    .move(path, folderPath + FILE_SEPARATOR + folderName + FILE_SEPARATOR + DmConstants.INDEX_FILE);
+            // create the folder and move the file in a single commit
+            contentService.commitBatch(site, batch);
             folderPath = folderPath + FILE_SEPARATOR + folderName;
-            contentService.moveContent(site, path, folderPath + FILE_SEPARATOR + DmConstants.INDEX_FILE);
             logger.debug("Changed file to folder from " + path + " to " + folderPath);
 
             return folderPath;
@@ -24,6 +24,7 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -35,12 +36,15 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.servlet.ServletContext;
@@ -78,6 +82,7 @@ import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
 import org.craftercms.studio.api.v1.service.deployment.DeploymentException;
@@ -85,9 +90,14 @@ import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.to.RemoteRepositoryInfoTO;
 import org.craftercms.studio.api.v1.to.VersionTO;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.exception.RepositoryLockedException;
 import org.craftercms.studio.api.v2.repository.RetryingRepositoryOperationFacade;
 import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.impl.v2.repository.GitPathHistoryIndex;
+import org.craftercms.studio.impl.v2.repository.GitPublishingHistoryIndex;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CommitCommand;
@@ -104,6 +114,7 @@ import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.RemoteAddCommand;
 import org.eclipse.jgit.api.RemoteListCommand;
 import org.eclipse.jgit.api.RemoteRemoveCommand;
+import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.RmCommand;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.StatusCommand;
@@ -114,6 +125,7 @@ import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
 import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.errors.LockFailedException;
 import org.eclipse.jgit.internal.storage.file.LockFile;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Constants;
@@ -138,6 +150,7 @@ import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.util.FS;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
@@ -160,6 +173,7 @@ import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_FROM
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_PATH;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_TO_PATH;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_MESSAGE_COUNT_VAR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_MESSAGE_PATH_VAR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.REPO_COMMIT_MESSAGE_USERNAME_VAR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_PUBLISHED_REPOSITORY_GIT_LOCK;
@@ -172,6 +186,7 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.BLUE_PRINTS
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.BOOTSTRAP_REPO;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_NODE_REGISTRATION;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BATCH_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COPY_CONTENT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_CREATE_FOLDER_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_DELETE_CONTENT_COMMIT_MESSAGE;
@@ -187,7 +202,6 @@ import static org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode.TRACK;
 import static org.eclipse.jgit.api.ListBranchCommand.ListMode.REMOTE;
 import static org.eclipse.jgit.lib.Constants.DEFAULT_REMOTE_NAME;
 import static org.eclipse.jgit.lib.Constants.HEAD;
-import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
 import static org.eclipse.jgit.lib.Constants.R_REMOTES;
 import static org.eclipse.jgit.merge.MergeStrategy.THEIRS;
 import static org.eclipse.jgit.revwalk.RevSort.REVERSE;
@@ -216,6 +230,9 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     protected GitRepositoryHelper helper;
     protected RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected GitPathHistoryIndex pathHistoryIndex;
+    protected GitPublishingHistoryIndex publishingHistoryIndex;
+    protected GitObjectCache objectCache;
 
     @Override
     public boolean contentExists(String site, String path) {
@@ -223,25 +240,59 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         try {
             Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
             if (repo != null) {
-                RevTree tree = helper.getTreeForLastCommit(repo);
-                try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                    // Check if the array of items is not null, and since we have an absolute path to the item,
-                    // pick the first item in the list
-                    if (tw != null && tw.getObjectId(0) != null) {
-                        toReturn = true;
-                        tw.close();
-                    } else if (tw == null) {
-                        String gitPath = helper.getGitPath(path);
-                        if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
-                            toReturn = true;
+                toReturn = objectCache.getEntry(repo, helper.getGitPath(path)) != null;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to check if content exists for site: " + site + " path: " + path, e);
+        }
+        return toReturn;
+    }
+
+    @Override
+    public Set<String> getExistingPaths(String site, Collection<String> paths) {
+        Set<String> toReturn = new HashSet<String>();
+        if (CollectionUtils.isEmpty(paths)) {
+            return toReturn;
+        }
+        // Several paths can point to the same git path, i.e. with or without trailing separators
+        Map<String, List<String>> pathsByGitPath = new HashMap<String, List<String>>();
+        Set<String> parentFolders = new HashSet<String>();
+        for (String path : paths) {
+            String gitPath = helper.getGitPath(path);
+            if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
+                toReturn.add(path);
+                continue;
+            }
+            pathsByGitPath.computeIfAbsent(gitPath, k -> new ArrayList<String>()).add(path);
+            for (int idx = gitPath.lastIndexOf('/'); idx > 0; idx = gitPath.lastIndexOf('/', idx - 1)) {
+                parentFolders.add(gitPath.substring(0, idx));
+            }
+        }
+        if (pathsByGitPath.isEmpty()) {
+            return toReturn;
+        }
+        try {
+            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+            if (repo != null) {
+                ObjectId tree = objectCache.getHeadTree(repo);
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    tw.addTree(tree);
+                    tw.setFilter(PathFilterGroup.createFromStrings(pathsByGitPath.keySet()));
+                    // Only enter the folders that contain requested paths, requested folders are not walked
+                    while (tw.next()) {
+                        String gitPath = tw.getPathString();
+                        List<String> matched = pathsByGitPath.get(gitPath);
+                        if (matched != null) {
+                            toReturn.addAll(matched);
+                        }
+                        if (tw.isSubtree() && parentFolders.contains(gitPath)) {
+                            tw.enterSubtree();
                         }
                     }
-                } catch (IOException e) {
-                    logger.info("Content not found for site: " + site + " path: " + path, e);
                 }
             }
         } catch (Exception e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
+            logger.error("Failed to check if content exists for site: " + site + " paths: " + paths, e);
         }
         return toReturn;
     }
@@ -254,26 +305,35 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
             if (repo == null) {
                 throw new ContentNotFoundException("Repository not found for site " + site);
             }
-            RevTree tree = helper.getTreeForLastCommit(repo);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-                // Check if the array of items is not null, and since we have an absolute path to the item,
-                // pick the first item in the list
-                if (tw != null && tw.getObjectId(0) != null) {
-                    ObjectId id = tw.getObjectId(0);
-                    ObjectLoader objectLoader = repo.open(id);
-                    toReturn = objectLoader.openStream();
-                    tw.close();
-                }
-            } catch (IOException e) {
-                logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+            GitObjectCache.TreeEntry entry = objectCache.getEntry(repo, helper.getGitPath(path));
+            if (entry != null) {
+                ObjectLoader objectLoader = repo.open(entry.getObjectId());
+                toReturn = objectLoader.openStream();
             }
         } catch (IOException e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
+            logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
         }
 
         return toReturn;
     }
 
+    @Override
+    public Document getContentAsDocument(String site, String path) throws DocumentException {
+        Document toReturn = null;
+        try {
+            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+            if (repo != null) {
+                GitObjectCache.TreeEntry entry = objectCache.getEntry(repo, helper.getGitPath(path));
+                if (entry != null && !entry.isTree()) {
+                    toReturn = objectCache.getDocument(repo, entry.getObjectId());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error while getting content for file at site: " + site + " path: " + path, e);
+        }
+        return toReturn;
+    }
+
     @Override
     public String writeContent(String site, String path, InputStream content) {
         // Write content to git and commit it
@@ -586,84 +646,199 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     }
 
     @Override
-    public RepositoryItem[] getContentChildren(String site, String path) {
-        // TODO: SJ: Rethink this API call for 3.1+
-        final List<RepositoryItem> retItems = new ArrayList<RepositoryItem>();
+    public String commitBatch(String site, ContentRepositoryBatch batch) throws ServiceLayerException {
+        if (batch.isEmpty()) {
+            return null;
+        }
+        String commitId = null;
+        String gitLockKey = SITE_SANDBOX_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, site);
+        generalLockService.lock(gitLockKey);
         try {
-            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
-            RevTree tree = helper.getTreeForLastCommit(repo);
-            try (TreeWalk tw = TreeWalk.forPath(repo, helper.getGitPath(path), tree)) {
-
-                if (tw != null) {
-                    // Loop for all children and gather path of item excluding the item, file/folder name, and
-                    // whether or not it's a folder
-                    ObjectLoader loader = repo.open(tw.getObjectId(0));
-                    if (loader.getType() == OBJ_TREE) {
-                        int depth = tw.getDepth();
-                        tw.enterSubtree();
-                        while (tw.next()) {
-                            if (tw.getDepth() == depth + 1) {
-
-                                RepositoryItem item = new RepositoryItem();
-                                item.name = tw.getNameString();
-
-                                String visitFolderPath = FILE_SEPARATOR + tw.getPathString();
-                                loader = repo.open(tw.getObjectId(0));
-                                item.isFolder = loader.getType() == OBJ_TREE;
-                                int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
-                                if (lastIdx > 0) {
-                                    item.path = visitFolderPath.substring(0, lastIdx);
-                                }
+            synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX)) {
+                Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+                if (repo == null) {
+                    throw new ServiceLayerException("Missing repository during batch write for site: " + site);
+                }
 
-                                if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
-                                    retItems.add(item);
-                                }
-                            }
+                Set<String> gitPaths = new LinkedHashSet<>();
+                batch.getPaths().forEach(path -> gitPaths.add(helper.getGitPath(path)));
+
+                try (Git git = new Git(repo)) {
+                    // Files and folders that didn't exist before the batch, in the order they were created
+                    List<File> createdFiles = new ArrayList<>();
+                    boolean success = false;
+                    try {
+                        for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+                            applyBatchOperation(repo, operation, createdFiles);
+                        }
+
+                        // Stage the new & modified files and then the removed ones, once for all paths
+                        AddCommand addCommand = git.add();
+                        AddCommand updateCommand = git.add().setUpdate(true);
+                        for (String gitPath : gitPaths) {
+                            addCommand.addFilepattern(gitPath);
+                            updateCommand.addFilepattern(gitPath);
+                        }
+                        retryingRepositoryOperationFacade.call(addCommand);
+                        retryingRepositoryOperationFacade.call(updateCommand);
+
+                        StatusCommand statusCommand = git.status();
+                        gitPaths.forEach(statusCommand::addPath);
+                        Status status = retryingRepositoryOperationFacade.call(statusCommand);
+                        Set<String> changes = new TreeSet<>(status.getAdded());
+                        changes.addAll(status.getChanged());
+                        changes.addAll(status.getRemoved());
+
+                        if (changes.isEmpty()) {
+                            logger.debug("Batch for site: " + site + " didn't change any file, nothing to commit");
+                        } else {
+                            PersonIdent user = helper.getCurrentUserIdent();
+                            String comment = helper.getCommitMessage(REPO_BATCH_COMMIT_MESSAGE)
+                                    .replace(REPO_COMMIT_MESSAGE_USERNAME_VAR, securityService.getCurrentUser())
+                                    .replace(REPO_COMMIT_MESSAGE_COUNT_VAR, Integer.toString(batch.size()))
+                                    .replace(REPO_COMMIT_MESSAGE_PATH_VAR, String.join("\n", batch.getPaths()));
+                            CommitCommand commitCommand =
+                                    git.commit().setAuthor(user).setCommitter(user).setMessage(comment);
+                            changes.forEach(commitCommand::setOnly);
+                            RevCommit commit = retryingRepositoryOperationFacade.call(commitCommand);
+                            commitId = commit.getName();
+                        }
+                        success = true;
+                    } catch (JGitInternalException e) {
+                        if (e.getCause() instanceof LockFailedException) {
+                            throw new RepositoryLockedException("Writing batch for site " + site + " failed " +
+                                    "because repository was locked.");
+                        }
+                        throw new ServiceLayerException("Error writing batch for site: " + site, e);
+                    } catch (IOException | GitAPIException | ServiceLayerException | UserNotFoundException e) {
+                        throw new ServiceLayerException("Error writing batch for site: " + site, e);
+                    } finally {
+                        // Any failure, including unchecked ones, leaves the working tree as it was
+                        if (!success) {
+                            rollbackBatch(git, gitPaths, createdFiles);
                         }
-                        tw.close();
-                    } else {
-                        logger.debug("Object is not tree for site: " + site + " path: " + path +
-                                " - it does not have children");
                     }
+                }
+            }
+        } finally {
+            generalLockService.unlock(gitLockKey);
+        }
+
+        return commitId;
+    }
+
+    protected void applyBatchOperation(Repository repo, ContentRepositoryBatch.Operation operation,
+                                       List<File> createdFiles) throws IOException {
+        File file = new File(repo.getDirectory().getParent(), helper.getGitPath(operation.getPath()));
+        switch (operation.getType()) {
+            case WRITE:
+                addFirstMissing(file, createdFiles);
+                FileUtils.forceMkdir(file.getParentFile());
+                if (operation.getFile() != null) {
+                    Files.copy(operation.getFile(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 } else {
-                    String gitPath = helper.getGitPath(path);
-                    if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
-                        try (TreeWalk treeWalk = new TreeWalk(repo)) {
-                            treeWalk.addTree(tree);
-
-                            while (treeWalk.next()) {
-
-                                ObjectLoader loader = repo.open(treeWalk.getObjectId(0));
-
-                                RepositoryItem item = new RepositoryItem();
-                                item.name = treeWalk.getNameString();
-
-                                String visitFolderPath = FILE_SEPARATOR + treeWalk.getPathString();
-                                loader = repo.open(treeWalk.getObjectId(0));
-                                item.isFolder = loader.getType() == OBJ_TREE;
-                                int lastIdx = visitFolderPath.lastIndexOf(FILE_SEPARATOR + item.name);
-                                if (lastIdx > 0) {
-                                    item.path = visitFolderPath.substring(0, lastIdx);
-                                } else {
-                                    item.path = EMPTY;
-                                }
+                    Files.copy(operation.getContent(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                break;
+            case CREATE_FOLDER:
+                // Git doesn't care about empty folders, so we put a 0 byte file in them
+                addFirstMissing(new File(file, EMPTY_FILE), createdFiles);
+                FileUtils.forceMkdir(file);
+                FileUtils.touch(new File(file, EMPTY_FILE));
+                break;
+            case DELETE:
+                if (file.isDirectory()) {
+                    FileUtils.deleteDirectory(file);
+                } else {
+                    Files.deleteIfExists(file.toPath());
+                }
+                break;
+            case MOVE:
+                File target = new File(repo.getDirectory().getParent(), helper.getGitPath(operation.getTargetPath()));
+                if (target.exists()) {
+                    throw new IOException("Can't move " + operation.getPath() + " to " +
+                            operation.getTargetPath() + ", the target already exists");
+                }
+                addFirstMissing(target, createdFiles);
+                FileUtils.forceMkdir(target.getParentFile());
+                Files.move(file.toPath(), target.toPath());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported batch operation " + operation);
+        }
+    }
 
-                                if (!ArrayUtils.contains(IGNORE_FILES, item.name)) {
-                                    retItems.add(item);
-                                }
-                            }
+    /**
+     * Records the file, or its first parent folder that doesn't exist yet, so it can be deleted with everything the
+     * batch creates inside it
+     */
+    protected void addFirstMissing(File file, List<File> createdFiles) {
+        File missing = null;
+        for (File current = file; current != null && !current.exists(); current = current.getParentFile()) {
+            missing = current;
+        }
+        if (missing != null) {
+            createdFiles.add(missing);
+        }
+    }
 
-                        } catch (IOException e) {
-                            logger.error("Error while getting children for site: " + site + " path: " + path, e);
-                        }
+    /**
+     * Restores the working tree and the index to the last commit for the paths of a failed batch. Only the files
+     * created by the batch are deleted, untracked files that were already there are kept
+     */
+    protected void rollbackBatch(Git git, Collection<String> gitPaths, List<File> createdFiles) {
+        // Deleted first, a tracked file deleted and then written again by the batch is restored below
+        for (int i = createdFiles.size() - 1; i >= 0; i--) {
+            FileUtils.deleteQuietly(createdFiles.get(i));
+        }
+        try {
+            ResetCommand resetCommand = git.reset();
+            gitPaths.forEach(resetCommand::addPath);
+            retryingRepositoryOperationFacade.call(resetCommand);
+
+            StatusCommand statusCommand = git.status();
+            gitPaths.forEach(statusCommand::addPath);
+            Status status = retryingRepositoryOperationFacade.call(statusCommand);
+
+            Set<String> tracked = new HashSet<>(status.getModified());
+            tracked.addAll(status.getMissing());
+            if (!tracked.isEmpty()) {
+                CheckoutCommand checkoutCommand = git.checkout();
+                tracked.forEach(checkoutCommand::addPath);
+                retryingRepositoryOperationFacade.call(checkoutCommand);
+            }
+        } catch (GitAPIException | JGitInternalException e) {
+            logger.error("Error restoring the working tree after a failed batch for paths " + gitPaths, e);
+        }
+    }
 
+    @Override
+    public RepositoryItem[] getContentChildren(String site, String path) {
+        // TODO: SJ: Rethink this API call for 3.1+
+        final List<RepositoryItem> retItems = new ArrayList<RepositoryItem>();
+        try {
+            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+            String gitPath = helper.getGitPath(path);
+            GitObjectCache.TreeEntry entry = repo != null? objectCache.getEntry(repo, gitPath) : null;
+            if (entry != null && entry.isTree()) {
+                // Gather path of item excluding the item, file/folder name, and whether or not it's a folder
+                String parentPath = StringUtils.isEmpty(gitPath) || gitPath.equals(".")?
+                        EMPTY : FILE_SEPARATOR + gitPath;
+                for (GitObjectCache.TreeEntry child : objectCache.getTree(repo, entry.getObjectId()).values()) {
+                    if (!ArrayUtils.contains(IGNORE_FILES, child.getName())) {
+                        RepositoryItem item = new RepositoryItem();
+                        item.name = child.getName();
+                        item.isFolder = child.isTree();
+                        item.path = parentPath;
+                        retItems.add(item);
                     }
                 }
-            } catch (IOException e) {
-                logger.error("Error while getting children for site: " + site + " path: " + path, e);
+            } else if (entry != null) {
+                logger.debug("Object is not tree for site: " + site + " path: " + path +
+                        " - it does not have children");
             }
         } catch (IOException e) {
-            logger.error("Failed to create RevTree for site: " + site + " path: " + path, e);
+            logger.error("Error while getting children for site: " + site + " path: " + path, e);
         }
 
         RepositoryItem[] items = new RepositoryItem[retItems.size()];
@@ -673,6 +848,33 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     @Override
     public VersionTO[] getContentVersionHistory(String site, String path) {
+        List<String> commitIds = pathHistoryIndex.getCommitIds(site, path);
+        if (CollectionUtils.isEmpty(commitIds)) {
+            // Index not available yet, or path not included (i.e. folders)
+            return getContentVersionHistoryFromLog(site, path);
+        }
+        List<VersionTO> versionHistory = new ArrayList<VersionTO>();
+        Repository repo = helper.getRepository(site, SANDBOX);
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            for (String commitId : commitIds) {
+                RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(commitId));
+                VersionTO versionTO = new VersionTO();
+                versionTO.setVersionNumber(revCommit.getName());
+                versionTO.setLastModifier(revCommit.getAuthorIdent().getName());
+                versionTO.setLastModifiedDate(Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(UTC));
+                versionTO.setComment(revCommit.getFullMessage());
+                versionHistory.add(versionTO);
+            }
+        } catch (IOException e) {
+            logger.error("Error while getting history for content item " + path + " from the path history index", e);
+            return getContentVersionHistoryFromLog(site, path);
+        }
+
+        VersionTO[] toRet = new VersionTO[versionHistory.size()];
+        return versionHistory.toArray(toRet);
+    }
+
+    private VersionTO[] getContentVersionHistoryFromLog(String site, String path) {
         List<VersionTO> versionHistory = new ArrayList<VersionTO>();
         synchronized (helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX)) {
             Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
@@ -1127,6 +1329,20 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     @Override
     public List<String> getEditCommitIds(String site, String path, String commitIdFrom, String commitIdTo) {
+        if (StringUtils.isEmpty(commitIdFrom)) {
+            commitIdFrom = getRepoFirstCommitId(site);
+        }
+        if (StringUtils.isEmpty(commitIdTo)) {
+            commitIdTo = getRepoLastCommitId(site);
+        }
+        List<String> commitIds = pathHistoryIndex.getCommitIds(site, path, commitIdFrom, commitIdTo);
+        if (commitIds == null) {
+            return getEditCommitIdsFromLog(site, path, commitIdFrom, commitIdTo);
+        }
+        return commitIds;
+    }
+
+    private List<String> getEditCommitIdsFromLog(String site, String path, String commitIdFrom, String commitIdTo) {
         List<String> commitIds = new ArrayList<String>();
         synchronized (helper.getRepository(site, SANDBOX)) {
             try {
@@ -1208,6 +1424,8 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("siteId", siteId);
         retryingDatabaseOperationFacade.deleteGitLogForSite(params);
+        pathHistoryIndex.delete(siteId);
+        publishingHistoryIndex.delete(siteId);
     }
 
     @Override
@@ -1856,8 +2074,15 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
 
     @Override
     public void reloadRepository(String siteId) {
-        helper.removeSandbox(siteId);
-        helper.getRepository(siteId, SANDBOX);
+        // The repository is closed, so it can't be in use by any git operation
+        String gitLockKey = SITE_SANDBOX_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, siteId);
+        generalLockService.lock(gitLockKey);
+        try {
+            helper.removeSandbox(siteId);
+            helper.getRepository(siteId, SANDBOX);
+        } finally {
+            generalLockService.unlock(gitLockKey);
+        }
     }
 
     protected void cleanup(String siteId, GitRepositories repository) {
@@ -1997,4 +2222,16 @@ public class GitContentRepository implements ContentRepository, ServletContextAw
     public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
         this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
     }
+
+    public void setPathHistoryIndex(GitPathHistoryIndex pathHistoryIndex) {
+        this.pathHistoryIndex = pathHistoryIndex;
+    }
+
+    public void setPublishingHistoryIndex(GitPublishingHistoryIndex publishingHistoryIndex) {
+        this.publishingHistoryIndex = publishingHistoryIndex;
+    }
+
+    public void setObjectCache(GitObjectCache objectCache) {
+        this.objectCache = objectCache;
+    }
 }
@@ -29,12 +29,15 @@ public final class  GitContentRepositoryConstants {
     /** Configuration */
     public static final String CONFIG_SECTION_CORE = "core";
     public static final String CONFIG_SECTION_REMOTE = "remote";
+    public static final String CONFIG_SECTION_GC = "gc";
     public static final String CONFIG_PARAMETER_COMPRESSION = "compression";
     public static final int CONFIG_PARAMETER_COMPRESSION_DEFAULT = 0;
     public static final String CONFIG_PARAMETER_BIG_FILE_THRESHOLD = "bigFileThreshold";
     public static final String CONFIG_PARAMETER_BIG_FILE_THRESHOLD_DEFAULT = "20m";
     public static final String CONFIG_PARAMETER_FILE_MODE = "fileMode";
     public static final boolean CONFIG_PARAMETER_FILE_MODE_DEFAULT = false;
+    public static final String CONFIG_PARAMETER_COMMIT_GRAPH = "commitGraph";
+    public static final String CONFIG_PARAMETER_WRITE_COMMIT_GRAPH = "writeCommitGraph";
     public static final String CONFIG_PARAMETER_URL = "url";
     public static final String CONFIG_PARAMETER_FETCH = "fetch";
     public static final String CONFIG_PARAMETER_FETCH_DEFAULT = "+refs/heads/*:refs/remotes/origin/*";
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.repository.git;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+/**
+ * Cache of the objects read from the HEAD of the repositories.
+ *
+ * <p>Trees and parsed XML documents are cached by object id, since git objects never change there is no need to
+ * invalidate them: a new commit only creates new ids for the trees and files it modifies while all other entries are
+ * still valid. The only state that depends on the repository is the tree of the HEAD commit, which is resolved again
+ * only when the HEAD ref points to a different commit.</p>
+ *
+ * <p>Both caches are bounded by an estimate of their size in bytes.</p>
+ *
+ * @since 4.0
+ */
+public class GitObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitObjectCache.class);
+
+    /**
+     * Estimated size of each tree entry without the name (object id, mode and map entry)
+     */
+    public static final int TREE_ENTRY_SIZE = 96;
+
+    /**
+     * Parsed documents take several times the size of the XML they were parsed from
+     */
+    public static final int DOCUMENT_SIZE_FACTOR = 4;
+
+    protected long treesMaxSize = 32 * 1024 * 1024;
+    protected long documentsMaxSize = 64 * 1024 * 1024;
+
+    /**
+     * Last known HEAD of each repository, weak keys so repositories can be closed and discarded freely
+     */
+    protected Cache<Repository, HeadTree> heads;
+    protected Cache<ObjectId, Map<String, TreeEntry>> trees;
+    protected Cache<ObjectId, CachedDocument> documents;
+
+    public void init() {
+        heads = CacheBuilder.newBuilder().weakKeys().build();
+        trees = CacheBuilder.newBuilder()
+                .maximumWeight(treesMaxSize)
+                .weigher((ObjectId id, Map<String, TreeEntry> entries) -> getWeight(entries.keySet()))
+                .build();
+        documents = CacheBuilder.newBuilder()
+                .maximumWeight(documentsMaxSize)
+                .weigher((ObjectId id, CachedDocument document) -> document.weight)
+                .build();
+    }
+
+    /**
+     * Returns the entry for the given path in the HEAD of the repository
+     * @param repository the repository
+     * @param gitPath the path relative to the root of the repository, an empty path or "." returns the root tree
+     * @return the entry or null if the path does not exist
+     * @throws IOException if there is any error reading the objects
+     */
+    public TreeEntry getEntry(Repository repository, String gitPath) throws IOException {
+        ObjectId treeId = getHeadTree(repository);
+        if (treeId == null) {
+            return null;
+        }
+        TreeEntry entry = new TreeEntry(StringUtils.EMPTY, treeId, FileMode.TREE);
+        if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
+            return entry;
+        }
+        for (String name : StringUtils.split(gitPath, '/')) {
+            if (!entry.isTree()) {
+                return null;
+            }
+            entry = getTree(repository, entry.getObjectId()).get(name);
+            if (entry == null) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the entries of a tree
+     * @param repository the repository containing the tree
+     * @param treeId the id of the tree
+     * @return the entries of the tree keyed by name, in the same order they are stored
+     * @throws IOException if there is any error reading the tree
+     */
+    public Map<String, TreeEntry> getTree(Repository repository, ObjectId treeId) throws IOException {
+        Map<String, TreeEntry> entries = trees.getIfPresent(treeId);
+        if (entries == null) {
+            Map<String, TreeEntry> parsed = new LinkedHashMap<>();
+            try (ObjectReader reader = repository.newObjectReader()) {
+                CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+                while (!parser.eof()) {
+                    String name = parser.getEntryPathString();
+                    parsed.put(name, new TreeEntry(name, parser.getEntryObjectId(), parser.getEntryFileMode()));
+                    parser.next();
+                }
+            }
+            entries = Collections.unmodifiableMap(parsed);
+            trees.put(treeId, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the XML document stored in a blob. Cached documents are shared, so a copy is always returned
+     * @param repository the repository containing the blob
+     * @param blobId the id of the blob
+     * @return the parsed document
+     * @throws IOException if there is any error reading the blob
+     * @throws DocumentException if the blob is not a valid XML document
+     */
+    public Document getDocument(Repository repository, ObjectId blobId) throws IOException, DocumentException {
+        CachedDocument cached = documents.getIfPresent(blobId);
+        if (cached == null) {
+            ObjectLoader loader = repository.open(blobId, OBJ_BLOB);
+            Document document;
+            try (InputStream is = loader.openStream()) {
+                document = createReader().read(is);
+            }
+            long weight = loader.getSize() * DOCUMENT_SIZE_FACTOR;
+            if (weight > documentsMaxSize) {
+                return document;
+            }
+            cached = new CachedDocument(document, (int) Math.min(weight, Integer.MAX_VALUE));
+            documents.put(blobId, cached);
+        }
+        return (Document) cached.document.clone();
+    }
+
+    /**
+     * Returns the id of the tree for the HEAD commit of the repository, resolving it again only if HEAD has changed
+     * @param repository the repository
+     * @return the id of the tree or null if the repository has no commits
+     * @throws IOException if there is any error reading the HEAD commit
+     */
+    public ObjectId getHeadTree(Repository repository) throws IOException {
+        Ref head = repository.exactRef(HEAD);
+        if (head == null || head.getObjectId() == null) {
+            return null;
+        }
+        ObjectId commitId = head.getObjectId();
+        HeadTree headTree = heads.getIfPresent(repository);
+        if (headTree == null || !headTree.commitId.equals(commitId)) {
+            try (RevWalk revWalk = new RevWalk(repository)) {
+                headTree = new HeadTree(commitId, revWalk.parseCommit(commitId).getTree().copy());
+            }
+            logger.debug("HEAD of repository " + repository.getDirectory() + " changed to " + commitId.name());
+            heads.put(repository, headTree);
+        }
+        return headTree.treeId;
+    }
+
+    protected SAXReader createReader() {
+        SAXReader saxReader = new SAXReader();
+        try {
+            saxReader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            saxReader.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            saxReader.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (SAXException ex) {
+            logger.error("Unable to turn off external entity loading, This could be a security risk.", ex);
+        }
+        return saxReader;
+    }
+
+    protected int getWeight(Collection<String> names) {
+        int weight = 0;
+        for (String name : names) {
+            weight += TREE_ENTRY_SIZE + name.length() * 2;
+        }
+        return weight;
+    }
+
+    public void setTreesMaxSize(long treesMaxSize) {
+        this.treesMaxSize = treesMaxSize;
+    }
+
+    public void setDocumentsMaxSize(long documentsMaxSize) {
+        this.documentsMaxSize = documentsMaxSize;
+    }
+
+    /**
+     * Entry of a tree in the repository
+     */
+    public static class TreeEntry {
+
+        protected final String name;
+        protected final ObjectId objectId;
+        protected final FileMode fileMode;
+
+        public TreeEntry(String name, ObjectId objectId, FileMode fileMode) {
+            this.name = name;
+            this.objectId = objectId;
+            this.fileMode = fileMode;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        public FileMode getFileMode() {
+            return fileMode;
+        }
+
+        public boolean isTree() {
+            return FileMode.TREE.equals(fileMode.getBits());
+        }
+
+    }
+
+    protected static class CachedDocument {
+
+        protected final Document document;
+        protected final int weight;
+
+        protected CachedDocument(Document document, int weight) {
+            this.document = document;
+            this.weight = weight;
+        }
+
+    }
+
+    protected static class HeadTree {
+
+        protected final ObjectId commitId;
+        protected final ObjectId treeId;
+
+        protected HeadTree(ObjectId commitId, ObjectId treeId) {
+            this.commitId = commitId;
+            this.treeId = treeId;
+        }
+
+    }
+
+}
@@ -16,15 +16,15 @@
 
 package org.craftercms.studio.impl.v1.repository.job;
 
-import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
-import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.impl.v2.repository.GitRepositoryMaintenance;
 import org.springframework.beans.factory.annotation.Required;
 
 /**
- * Triggers a cleanup for all repositories on all existing sites.
+ * Triggers a cleanup for all repositories on all existing sites, only the repositories that are fragmented enough
+ * are processed.
  * @author joseross
  */
 public class RepositoryCleanupJob {
@@ -32,16 +32,14 @@ public class RepositoryCleanupJob {
     protected static final Logger logger = LoggerFactory.getLogger(RepositoryCleanupJob.class);
 
     protected SiteService siteService;
-    protected ContentRepository contentRepository;
+    protected GitRepositoryMaintenance repositoryMaintenance;
 
     /**
      * Performs a cleanup for all repositories on all existing sites.
      */
     public void cleanupAllRepositories() {
-        logger.info("Starting cleanup for global repo");
-        contentRepository.cleanupRepositories(StringUtils.EMPTY);
-        logger.info("Starting cleanup for all sites");
-        siteService.getAllAvailableSites().forEach(contentRepository::cleanupRepositories);
+        logger.info("Starting cleanup for global repo and all sites");
+        repositoryMaintenance.maintainAll(siteService.getAllAvailableSites());
     }
 
     @Required
@@ -50,8 +48,8 @@ public class RepositoryCleanupJob {
     }
 
     @Required
-    public void setContentRepository(final ContentRepository contentRepository) {
-        this.contentRepository = contentRepository;
+    public void setRepositoryMaintenance(final GitRepositoryMaintenance repositoryMaintenance) {
+        this.repositoryMaintenance = repositoryMaintenance;
     }
     
 }
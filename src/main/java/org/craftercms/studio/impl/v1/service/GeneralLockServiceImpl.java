@@ -15,22 +15,45 @@
  */
 package org.craftercms.studio.impl.v1.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
 import org.craftercms.studio.api.v1.service.AbstractRegistrableService;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.model.monitoring.LockMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Implementation of {@link GeneralLockService} backed by a {@link ConcurrentHashMap} of locks.
+ *
+ * <p>Each entry counts the threads holding or waiting for its lock and it is removed from the map as soon as the
+ * count drops to zero, so ids that are no longer used do not stay in memory.</p>
+ */
 public class GeneralLockServiceImpl extends AbstractRegistrableService implements GeneralLockService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneralLockServiceImpl.class);
 
-    protected Map<String, ReentrantLock> nodeLocks = new HashMap<String, ReentrantLock>();
+    public static final long DEFAULT_METRICS_MAX_KEYS = 1000;
+
+    protected ConcurrentMap<String, LockEntry> nodeLocks = new ConcurrentHashMap<>();
+
+    protected boolean metricsEnabled = true;
+
+    /**
+     * Metrics are only kept for the most recently used ids
+     */
+    protected Cache<String, LockMetrics> lockMetrics =
+            CacheBuilder.newBuilder().maximumSize(DEFAULT_METRICS_MAX_KEYS).build();
 
     @Override
     public void register() {
@@ -40,89 +63,167 @@ public class GeneralLockServiceImpl extends AbstractRegistrableService implement
     @Override
     @ValidateParams
     public void lock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Obtaining lock for id " + objectId);
         }
-        synchronized (this) {
-            if (nodeLocks.containsKey(objectId)) {
-                nodeLock = nodeLocks.get(objectId);
-            } else {
-                nodeLock = new ReentrantLock();
-                nodeLocks.put(objectId, nodeLock);
-            }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before lock)");
-        }
+        LockEntry entry = retain(objectId);
+        long start = System.nanoTime();
+        entry.lock.lock();
+        onLocked(objectId, entry, start);
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
-        }
-        nodeLock.lock();
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after lock)");
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Locked all threads for id " + objectId);
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " +
+                    entry.lock.getHoldCount() + " for id " + objectId + " (after lock)");
         }
     }
 
     @Override
     @ValidateParams
     public boolean tryLock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Trying to get lock for id " + objectId);
         }
-        synchronized (this) {
-            if (nodeLocks.containsKey(objectId)) {
-                nodeLock = nodeLocks.get(objectId);
-            } else {
-                nodeLock = new ReentrantLock();
-                nodeLocks.put(objectId, nodeLock);
-            }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before tryLock)");
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
-        }
-        boolean toRet = nodeLock.tryLock();
-        if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after tryLock)");
-        }
+        LockEntry entry = retain(objectId);
+        long start = System.nanoTime();
+        boolean toRet = entry.lock.tryLock();
+        onTryLock(objectId, entry, start, toRet);
+        return toRet;
+    }
+
+    @Override
+    @ValidateParams
+    public boolean tryLock(@ValidateStringParam(name = "objectId") String objectId, long timeout, TimeUnit unit) {
         if (logger.isDebugEnabled()) {
-            logger.debug("[" + Thread.currentThread().getName() + "]" + " Result for tryLock on id " + objectId + " : " + toRet);
-        }
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Trying to get lock for id " + objectId +
+                    " waiting up to " + timeout + " " + unit);
+        }
+        LockEntry entry = retain(objectId);
+        long start = System.nanoTime();
+        boolean toRet = false;
+        try {
+            toRet = entry.lock.tryLock(timeout, unit);
+        } catch (InterruptedException e) {
+            logger.debug("Interrupted while waiting for lock with id " + objectId);
+            Thread.currentThread().interrupt();
+        }
+        onTryLock(objectId, entry, start, toRet);
         return toRet;
     }
 
     @Override
     @ValidateParams
     public void unlock(@ValidateStringParam(name = "objectId") String objectId) {
-        ReentrantLock nodeLock = null;
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Unlocking id " + objectId);
         }
-        synchronized (this) {
-            nodeLock = nodeLocks.get(objectId);
-        }
-        if (nodeLock != null) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (before unlock)");
+        LockEntry entry = nodeLocks.get(objectId);
+        if (entry != null) {
+            long held = entry.lock.getHoldCount() == 1? System.nanoTime() - entry.lockedAt : -1;
+            // Fails if the current thread does not hold the lock, in that case the entry is not released
+            entry.lock.unlock();
+            release(objectId, entry);
+            if (held >= 0 && metricsEnabled) {
+                getMetrics(objectId).recordHold(held);
             }
             if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock: " + nodeLock.toString());
-            }
-            nodeLock.unlock();
-            if (logger.isDebugEnabled()) {
-                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " + nodeLock.getHoldCount() + " for id " + objectId + " (after unlock)");
+                logger.debug("[" + Thread.currentThread().getName() + "]" + " Lock hold count " +
+                        entry.lock.getHoldCount() + " for id " + objectId + " (after unlock)");
             }
         }
         if (logger.isDebugEnabled()) {
             logger.debug("[" + Thread.currentThread().getName() + "]" + " Finished unlocking id " + objectId);
         }
+    }
 
+    @Override
+    public Map<String, LockMetrics> getLockMetrics() {
+        return Collections.unmodifiableMap(lockMetrics.asMap());
     }
+
+    /**
+     * Returns the number of ids that currently have an entry, only for monitoring and testing
+     */
+    public int getActiveLockCount() {
+        return nodeLocks.size();
+    }
+
+    protected LockEntry retain(String objectId) {
+        return nodeLocks.compute(objectId, (id, entry) -> {
+            if (entry == null) {
+                entry = new LockEntry();
+            }
+            entry.references++;
+            return entry;
+        });
+    }
+
+    protected void release(String objectId, LockEntry entry) {
+        nodeLocks.computeIfPresent(objectId, (id, current) -> {
+            if (current != entry) {
+                return current;
+            }
+            return --current.references == 0? null : current;
+        });
+    }
+
+    protected void onLocked(String objectId, LockEntry entry, long start) {
+        long now = System.nanoTime();
+        if (entry.lock.getHoldCount() == 1) {
+            entry.lockedAt = now;
+        }
+        if (metricsEnabled) {
+            getMetrics(objectId).recordWait(now - start);
+        }
+    }
+
+    protected void onTryLock(String objectId, LockEntry entry, long start, boolean locked) {
+        if (locked) {
+            onLocked(objectId, entry, start);
+        } else {
+            release(objectId, entry);
+            if (metricsEnabled) {
+                getMetrics(objectId).recordFailedAttempt();
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("[" + Thread.currentThread().getName() + "]" + " Result for tryLock on id " + objectId +
+                    " : " + locked);
+        }
+    }
+
+    protected LockMetrics getMetrics(String objectId) {
+        try {
+            return lockMetrics.get(objectId, LockMetrics::new);
+        } catch (ExecutionException e) {
+            // The loader never fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public void setMetricsMaxKeys(long metricsMaxKeys) {
+        this.lockMetrics = CacheBuilder.newBuilder().maximumSize(metricsMaxKeys).build();
+    }
+
+    /**
+     * Lock for a single id plus the number of threads holding or waiting for it
+     */
+    protected static class LockEntry {
+
+        protected final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Only modified inside the compute functions of the map
+         */
+        protected int references;
+
+        /**
+         * Only modified by the thread holding the lock
+         */
+        protected long lockedAt;
+
+    }
+
 }
@@ -36,6 +36,7 @@ import org.craftercms.studio.api.v1.to.FacetTO;
 import org.craftercms.studio.api.v1.to.RepositoryConfigTO;
 import org.craftercms.studio.api.v1.to.SiteConfigTO;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.dom4j.Document;
@@ -48,6 +49,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,6 +57,14 @@ import java.util.TreeMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_ASSET;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_COMPONENT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_DOCUMENT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_PAGE;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_RENDERING_TEMPLATE;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_SCRIPT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_TAXONOMY;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_TAXONOMY_REGEX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.DEFAULT_CONFIG_URL;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.MODULE_STUDIO;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_CONFIG_ELEMENT_ADMIN_EMAIL_ADDRESS;
@@ -714,6 +724,41 @@ public class ServicesConfigImpl implements ServicesConfig {
         return null;
     }
 
+    @Override
+    public PathClassifier getPathClassifier(String siteId) {
+        SiteConfigTO config = getSiteConfig(siteId);
+        if (config == null) {
+            return buildPathClassifier(null);
+        }
+        PathClassifier pathClassifier = config.getPathClassifier();
+        if (pathClassifier == null) {
+            pathClassifier = buildPathClassifier(config);
+            config.setPathClassifier(pathClassifier);
+        }
+        return pathClassifier;
+    }
+
+    protected PathClassifier buildPathClassifier(SiteConfigTO config) {
+        // The order must match the order used by ContentService.getContentTypeClass
+        Map<String, List<String>> patterns = new LinkedHashMap<>();
+        RepositoryConfigTO repositoryConfig = config != null? config.getRepositoryConfig() : null;
+        if (repositoryConfig != null) {
+            patterns.put(CONTENT_TYPE_PAGE, repositoryConfig.getPagePatterns());
+            patterns.put(CONTENT_TYPE_COMPONENT, repositoryConfig.getComponentPatterns());
+            patterns.put(CONTENT_TYPE_DOCUMENT, repositoryConfig.getDocumentPatterns());
+            patterns.put(CONTENT_TYPE_ASSET, repositoryConfig.getAssetPatterns());
+            patterns.put(CONTENT_TYPE_RENDERING_TEMPLATE, repositoryConfig.getRenderingTemplatePatterns());
+        }
+        patterns.put(CONTENT_TYPE_TAXONOMY, Collections.singletonList(CONTENT_TYPE_TAXONOMY_REGEX));
+        if (repositoryConfig != null) {
+            patterns.put(CONTENT_TYPE_SCRIPT, repositoryConfig.getScriptsPatterns());
+        }
+        if (config != null) {
+            patterns.put(PathClassifier.PROTECTED_FOLDER, config.getProtectedFolderPatterns());
+        }
+        return new PathClassifier(patterns);
+    }
+
     public void setContentService(ContentService contentService) {
 		this.contentService = contentService;
 	}
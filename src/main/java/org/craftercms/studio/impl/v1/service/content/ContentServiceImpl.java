@@ -18,14 +18,16 @@ package org.craftercms.studio.impl.v1.service.content;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,6 +59,7 @@ import org.craftercms.studio.api.v1.executor.ProcessContentExecutor;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
@@ -91,11 +94,14 @@ import org.craftercms.studio.api.v2.dal.AuditLog;
 import org.craftercms.studio.api.v2.dal.Item;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.dal.WorkflowItem;
+import org.craftercms.studio.api.v2.exception.validation.ValidationException;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.api.v2.service.policy.PolicyService;
 import org.craftercms.studio.api.v2.service.security.UserService;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.service.workflow.internal.WorkflowServiceInternal;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.api.v2.utils.StudioUtils;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
@@ -103,16 +109,17 @@ import org.craftercms.studio.impl.v1.util.ContentItemOrderComparator;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 
 import org.craftercms.studio.impl.v2.utils.spring.ContentResource;
+import org.craftercms.studio.model.policy.Action;
 import org.craftercms.studio.model.policy.Type;
+import org.craftercms.studio.model.policy.ValidationResult;
 import org.dom4j.Node;
-import org.dom4j.io.SAXReader;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.DocumentException;
 
 import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.core.io.Resource;
-import org.xml.sax.SAXException;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_ENCODING;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_ASSET;
@@ -186,6 +193,7 @@ public class ContentServiceImpl implements ContentService {
     protected ItemServiceInternal itemServiceInternal;
     protected WorkflowServiceInternal workflowServiceInternal;
     protected UserServiceInternal userServiceInternal;
+    protected ObjectFactory<PolicyService> policyService;
 
     /**
      * file and folder name patterns for copied files and folders
@@ -207,6 +215,12 @@ public class ContentServiceImpl implements ContentService {
         return this._contentRepository.contentExists(site, path);
     }
 
+    @Override
+    @ValidateParams
+    public Set<String> getExistingPaths(@ValidateStringParam(name = "site") String site, Collection<String> paths) {
+        return this._contentRepository.getExistingPaths(site, paths);
+    }
+
     @Override
     @ValidateParams
     public InputStream getContent(@ValidateStringParam(name = "site") String site,
@@ -264,39 +278,12 @@ public class ContentServiceImpl implements ContentService {
                                          @ValidateSecurePathParam(name = "path") String path)
             throws DocumentException {
         // TODO: SJ: Refactor in 4.x as this already exists in Crafter Core (which is part of the new Studio)
-        Document retDocument = null;
-        InputStream is = null;
-        try {
-            is = this.getContent(site, path);
-        } catch (ContentNotFoundException e) {
-            logger.debug("Content not found for path {0}", e, path);
-        }
-
-        if(is != null) {
-            try {
-                SAXReader saxReader = new SAXReader();
-                try {
-                    saxReader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-                    saxReader.setFeature("http://xml.org/sax/features/external-general-entities", false);
-                    saxReader.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-                }catch (SAXException ex){
-                    logger.error("Unable to turn off external entity loading, This could be a security risk.", ex);
-                }
-                retDocument = saxReader.read(is);
-            }
-            finally {
-                try {
-                    if (is != null) {
-                        is.close();
-                    }
-                }
-                catch (IOException err) {
-                    logger.debug("Error closing stream for path {0}", err, path);
-                }
-            }
+        // Documents are cached by the repository, so this does not read or parse unchanged files again
+        if (StringUtils.equals(site, studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE))) {
+            return this._contentRepository.getContentAsDocument(StringUtils.EMPTY, path);
+        } else {
+            return this._contentRepository.getContentAsDocument(site, path);
         }
-
-        return retDocument;
     }
 
     @Override
@@ -604,6 +591,177 @@ public class ContentServiceImpl implements ContentService {
         return result;
     }
 
+    @Override
+    @ValidateParams
+    public String commitBatch(@ValidateStringParam(name = "site") String site, ContentRepositoryBatch batch)
+            throws ServiceLayerException, UserNotFoundException {
+        return commitValidatedBatch(site, validateBatch(site, batch));
+    }
+
+    /**
+     * Writes a batch that has already been validated, then updates the items, the dependencies and the git log once
+     * for the whole commit
+     * @return the commit id, or null if the batch didn't change anything
+     */
+    protected String commitValidatedBatch(String site, ContentRepositoryBatch batch)
+            throws ServiceLayerException, UserNotFoundException {
+        List<String> writtenPaths = new ArrayList<>();
+        for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+            if (operation.getType() == ContentRepositoryBatch.OperationType.WRITE) {
+                writtenPaths.add(operation.getPath());
+            }
+        }
+        // Needed to tell new items from updated ones, after the commit all of them exist
+        Set<String> existingPaths = writtenPaths.isEmpty() ? Collections.emptySet() :
+                _contentRepository.getExistingPaths(site, writtenPaths);
+        String commitId = _contentRepository.commitBatch(site, batch);
+        if (StringUtils.isEmpty(commitId)) {
+            return null;
+        }
+
+        String user = securityService.getCurrentUser();
+        SiteFeed siteFeed = siteService.getSite(site);
+        for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+            String path = operation.getPath();
+            switch (operation.getType()) {
+                case WRITE:
+                    if (existingPaths.contains(path)) {
+                        itemServiceInternal.persistItemAfterWrite(site, path, user, commitId, Optional.empty());
+                    } else {
+                        String parentPath = ContentUtils.getParentUrl(
+                                path.replace(FILE_SEPARATOR + DmConstants.INDEX_FILE, ""));
+                        Item parent = itemServiceInternal.getItem(site, parentPath, true);
+                        itemServiceInternal.persistItemAfterCreate(site, path, user, commitId, Optional.empty(),
+                                parent != null ? parent.getId() : null);
+                    }
+                    break;
+                case CREATE_FOLDER:
+                    // Folders are processed in order, so the parent always exists at this point
+                    Item parentItem = itemServiceInternal.getItem(site, FilenameUtils.getFullPathNoEndSeparator(path),
+                            true);
+                    itemServiceInternal.persistItemAfterCreateFolder(site, path, FilenameUtils.getName(path), user,
+                            commitId, parentItem.getId());
+                    insertBatchAuditLog(siteFeed, user, OPERATION_CREATE, path, TARGET_TYPE_FOLDER);
+                    break;
+                case DELETE:
+                    itemServiceInternal.deleteItem(site, path);
+                    try {
+                        dependencyService.deleteItemDependencies(site, path);
+                    } catch (ServiceLayerException e) {
+                        logger.error("Error deleting dependencies for site " + site + " path " + path, e);
+                    }
+                    insertBatchAuditLog(siteFeed, user, OPERATION_DELETE, path, TARGET_TYPE_CONTENT_ITEM);
+                    break;
+                case MOVE:
+                    // Writes the same audit entry and updates the dependencies the same way as moveContent
+                    updateDatabaseOnMove(site, path, operation.getTargetPath());
+                    updateChildrenOnMove(site, path, operation.getTargetPath());
+                    itemServiceInternal.updateCommitId(site, operation.getTargetPath(), commitId);
+                    break;
+                default:
+                    logger.error("Unsupported batch operation {0} for site {1}", operation, site);
+            }
+        }
+        if (!writtenPaths.isEmpty()) {
+            // Resolved once all the files are in the repository, so references between them are found
+            try {
+                dependencyService.upsertDependencies(site, writtenPaths);
+            } catch (ServiceLayerException e) {
+                logger.error("Error updating dependencies for site " + site + " paths " + writtenPaths, e);
+            }
+        }
+
+        contentRepository.insertGitLog(site, commitId, 1, 1);
+        siteService.updateLastCommitId(site, commitId);
+
+        PreviewEventContext context = new PreviewEventContext();
+        context.setSite(site);
+        eventService.publish(EVENT_PREVIEW_SYNC, context);
+
+        return commitId;
+    }
+
+    /**
+     * Validates each operation of the batch against the content policy of the site, the same way the
+     * {@link ValidateAction} methods are validated
+     * @return the batch with the paths modified by the policy, or the same batch if nothing was modified
+     */
+    protected ContentRepositoryBatch validateBatch(String site, ContentRepositoryBatch batch)
+            throws ServiceLayerException {
+        ContentRepositoryBatch validatedBatch = new ContentRepositoryBatch();
+        boolean modified = false;
+        for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+            String path = operation.getPath();
+            switch (operation.getType()) {
+                case WRITE:
+                    String writePath = validateBatchAction(site, Type.CREATE, null, path);
+                    validatedBatch.write(writePath, operation);
+                    modified |= !writePath.equals(path);
+                    break;
+                case CREATE_FOLDER:
+                    String folderPath = validateBatchAction(site, Type.CREATE, null, path);
+                    validatedBatch.createFolder(FilenameUtils.getFullPathNoEndSeparator(folderPath),
+                            FilenameUtils.getName(folderPath));
+                    modified |= !folderPath.equals(path);
+                    break;
+                case MOVE:
+                    String targetPath = validateBatchAction(site, Type.MOVE, path, operation.getTargetPath());
+                    validatedBatch.move(path, targetPath);
+                    modified |= !targetPath.equals(operation.getTargetPath());
+                    break;
+                case DELETE:
+                    // The content policy has no rules for deletes
+                    validatedBatch.delete(path);
+                    break;
+                default:
+                    throw new ServiceLayerException("Unsupported batch operation " + operation.getType() +
+                            " for site " + site + " path " + path);
+            }
+        }
+        return modified ? validatedBatch : batch;
+    }
+
+    /**
+     * Validates a single action against the content policy of the site
+     * @return the target path, modified by the policy if needed
+     */
+    protected String validateBatchAction(String site, Type type, String sourcePath, String targetPath)
+            throws ServiceLayerException {
+        Action action = new Action();
+        action.setType(type);
+        action.setSource(sourcePath);
+        action.setTarget(targetPath);
+        action.setContentMetadata(new HashMap<>());
+
+        List<ValidationResult> results;
+        try {
+            results = policyService.getObject().validate(site, Collections.singletonList(action));
+        } catch (IOException e) {
+            throw new ServiceLayerException("Error validating " + type + " of " + targetPath + " for site " + site,
+                    e);
+        }
+        if (results.stream().anyMatch(result -> !result.isAllowed())) {
+            throw new ValidationException();
+        }
+        return results.stream()
+                .map(ValidationResult::getModifiedValue)
+                .filter(StringUtils::isNotEmpty)
+                .findFirst()
+                .orElse(targetPath);
+    }
+
+    protected void insertBatchAuditLog(SiteFeed siteFeed, String user, String operation, String path,
+                                       String targetType) {
+        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+        auditLog.setOperation(operation);
+        auditLog.setSiteId(siteFeed.getId());
+        auditLog.setActorId(user);
+        auditLog.setPrimaryTargetId(siteFeed.getSiteId() + ":" + path);
+        auditLog.setPrimaryTargetType(targetType);
+        auditLog.setPrimaryTargetValue(path);
+        auditServiceInternal.insertAuditLog(auditLog);
+    }
+
     @Override
     @ValidateParams
     @ValidateAction(type = Type.CREATE)
@@ -729,19 +887,45 @@ public class ContentServiceImpl implements ContentService {
                               @ValidateSecurePathParam(name = "fromPath") @ActionSourcePath String fromPath,
                               @ValidateSecurePathParam(name = "toPath") @ActionTargetPath String toPath)
             throws ServiceLayerException, UserNotFoundException {
-        return copyContent(site, fromPath, toPath, new HashSet<String>());
+        ContentRepositoryBatch batch = new ContentRepositoryBatch();
+        // content type of each copied file
+        Map<String, String> copiedFiles = new LinkedHashMap<>();
+        try {
+            String copyPath = copyContent(site, fromPath, toPath, new HashSet<String>(), batch, copiedFiles);
+            if (batch.isEmpty()) {
+                return copyPath;
+            }
+            // the item and all its dependencies are written in a single commit, the copy has already been validated
+            commitValidatedBatch(site, batch);
+
+            String user = securityService.getCurrentUser();
+            SiteFeed siteFeed = siteService.getSite(site);
+            for (Map.Entry<String, String> copiedFile : copiedFiles.entrySet()) {
+                String path = copiedFile.getKey();
+                itemServiceInternal.setSystemProcessing(site, path, false);
+                insertBatchAuditLog(siteFeed, user, OPERATION_CREATE, path, TARGET_TYPE_CONTENT_ITEM);
+                if (path.endsWith(DmConstants.XML_PATTERN)) {
+                    dmContentLifeCycleService.process(site, user, path, copiedFile.getValue(),
+                            DmContentLifeCycleService.ContentLifeCycleOperation.COPY, null);
+                }
+            }
+            return copyPath;
+        } finally {
+            for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+                IOUtils.closeQuietly(operation.getContent());
+            }
+        }
     }
 
     /**
      * internal method copy that handles
-     * Get dependencies is already recursive
+     * Get dependencies is already recursive. The copies are added to the batch, together with the folders they need
      */
-    protected String copyContent(String site, String fromPath, String toPath, Set<String> processedPaths)
+    protected String copyContent(String site, String fromPath, String toPath, Set<String> processedPaths,
+                                 ContentRepositoryBatch batch, Map<String, String> copiedFiles)
             throws ServiceLayerException, UserNotFoundException {
         String retNewFileName = null;
 
-        String lifecycleOp = DmContentLifeCycleService.ContentLifeCycleOperation.COPY.toString();
-        String user = securityService.getCurrentUser();
         String copyPath = null;
 
         try {
@@ -758,7 +942,7 @@ public class ContentServiceImpl implements ContentService {
                 ContentItemTO fromItem = getContentItem(site, fromPath, 0);
 
                 if (fromItem.isFolder()) {
-                    createFolder(site, copyPathOnly, copyFileName);
+                    addMissingFolders(site, copyPath, batch);
                     // copy was successful, return the new name
                     retNewFileName = copyPath;
                 } else {
@@ -810,7 +994,8 @@ public class ContentServiceImpl implements ContentService {
                                 logger.debug("Translated dependency path from {0} to {1}",
                                         dependencyPath, copyDepPath);
 
-                                String newCopyDepthPath = copyContent(site, dependencyKey, copyDepPath, processedPaths);
+                                String newCopyDepthPath = copyContent(site, dependencyKey, copyDepPath, processedPaths,
+                                        batch, copiedFiles);
                                 fromDocument = replaceCopyDependency(fromDocument, dependencyKey, newCopyDepthPath);
                             }
 
@@ -818,33 +1003,16 @@ public class ContentServiceImpl implements ContentService {
                             Document copyDocument = updateContentOnCopy(fromDocument, copyPathFileName, copyPathFolder,
                                     copyObjectIds, copyPathModifier);
 
+                            dmPageNavigationOrderService.addNavOrder(site, copyPathOnly, copyDocument);
                             copyContent = ContentUtils.convertDocumentToStream(copyDocument, CONTENT_ENCODING);
-                        }
-
-                        // This code is very similar to what is in writeContent. Consolidate this code?
-                        Map<String, String> params = new HashMap<String, String>();
-                        params.put(DmConstants.KEY_SITE, site);
-                        params.put(DmConstants.KEY_PATH, copyPathOnly);
-                        params.put(DmConstants.KEY_FILE_NAME, copyFileName);
-                        params.put(DmConstants.KEY_USER, user);
-                        params.put(DmConstants.KEY_CONTENT_TYPE, contentType);
-                        params.put(DmConstants.KEY_CREATE_FOLDERS, "true");
-                        params.put(DmConstants.KEY_EDIT, "true");
-                        params.put(DmConstants.KEY_ACTIVITY_TYPE, "false");
-                        params.put(DmConstants.KEY_SKIP_CLEAN_PREVIEW, "true");
-                        params.put(DmConstants.KEY_COPIED_CONTENT, "true");
-                        params.put(DmConstants.CONTENT_LIFECYCLE_OPERATION, lifecycleOp);
-
-                        String id = site + ":" + copyPathOnly + ":" + copyFileName + ":" + contentType;
-
-                        // processContent will close the input stream
-                        if (copyFileName.endsWith(DmConstants.XML_PATTERN)) {
-                            processContent(id, copyContent, true, params, DmConstants.CONTENT_CHAIN_FORM);
                         } else {
-                            processContent(id, fromContent, false, params, DmConstants.CONTENT_CHAIN_ASSET);
+                            copyContent = fromContent;
                         }
 
-                        itemServiceInternal.setSystemProcessing(site, copyPath, false);
+                        // the streams are closed once the batch is committed
+                        addMissingFolders(site, copyPathOnly, batch);
+                        batch.write(copyPath, copyContent);
+                        copiedFiles.put(copyPath, contentType);
 
                         // copy was successful, return the new name
                         retNewFileName = copyPath;
@@ -857,8 +1025,6 @@ public class ContentServiceImpl implements ContentService {
                     } catch (DocumentException eParseException) {
                         logger.error("General Error while copying content for site {0} from {1} to {2}," +
                                 " new name is {3}", eParseException, site, fromPath, toPath, copyPath);
-                    } finally {
-                        IOUtils.closeQuietly(copyContent);
                     }
                 }
             } else {
@@ -874,6 +1040,25 @@ public class ContentServiceImpl implements ContentService {
         return retNewFileName;
     }
 
+    /**
+     * Adds the folders of the path that don't exist yet to the batch, the same way the content pipeline creates them
+     * for a single write
+     */
+    protected void addMissingFolders(String site, String folderPath, ContentRepositoryBatch batch) {
+        Set<String> batchPaths = batch.getPaths();
+        String parentPath = "";
+        boolean missing = false;
+        for (String name : StringUtils.split(folderPath, FILE_SEPARATOR)) {
+            String currentPath = parentPath + FILE_SEPARATOR + name;
+            // once a folder is missing there is no need to check the ones below it
+            if (!batchPaths.contains(currentPath) && (missing || !contentExists(site, currentPath))) {
+                batch.createFolder(parentPath, name);
+                missing = true;
+            }
+            parentPath = currentPath;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     protected Document replaceCopyDependency(Document document, String depPath, String copyDepPath) {
         Element root = document.getRootElement();
@@ -1439,16 +1624,17 @@ public class ContentServiceImpl implements ContentService {
 
         logger.debug("Populating page props '{}'", contentPath);
         item.setLevelDescriptor(item.name.equals(servicesConfig.getLevelDescriptorName(site)));
-        item.page = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getPagePatterns(site));
+        PathClassifier pathClassifier = servicesConfig.getPathClassifier(site);
+        item.page = pathClassifier.matches(CONTENT_TYPE_PAGE, item.getUri());
         item.isPage = item.page;
         item.previewable = item.page;               // TODO: SJ: This and item below are duplicated due to UI issues
         item.isPreviewable = item.previewable;      // TODO: SJ: Fix this in 3.1+
-        item.component = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getComponentPatterns(site)) ||
+        item.component = pathClassifier.matches(CONTENT_TYPE_COMPONENT, item.getUri()) ||
                 item.isLevelDescriptor();
         item.isComponent = item.component;
-        item.asset = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getAssetPatterns(site));
+        item.asset = pathClassifier.matches(CONTENT_TYPE_ASSET, item.getUri());
         item.isAsset = item.asset;
-        item.document = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getDocumentPatterns(site));
+        item.document = pathClassifier.matches(CONTENT_TYPE_DOCUMENT, item.getUri());
         item.isDocument = item.document;
 
         item.uri = contentPath;
@@ -1710,18 +1896,19 @@ public class ContentServiceImpl implements ContentService {
             }
         } else {
             item.setLevelDescriptor(item.name.equals(servicesConfig.getLevelDescriptorName(site)));
-            item.page = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getPagePatterns(site));
+            PathClassifier pathClassifier = servicesConfig.getPathClassifier(site);
+            item.page = pathClassifier.matches(CONTENT_TYPE_PAGE, item.getUri());
             item.isPage = item.page;
             item.previewable = item.page;
             item.isPreviewable = item.previewable;
-            item.asset = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getAssetPatterns(site)) ||
-                    ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getRenderingTemplatePatterns(site)) ||
-                    ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getScriptsPatterns(site));
+            item.asset = pathClassifier.matches(CONTENT_TYPE_ASSET, item.getUri()) ||
+                    pathClassifier.matches(CONTENT_TYPE_RENDERING_TEMPLATE, item.getUri()) ||
+                    pathClassifier.matches(CONTENT_TYPE_SCRIPT, item.getUri());
             item.isAsset = item.asset;
-            item.component = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getComponentPatterns(site)) ||
+            item.component = pathClassifier.matches(CONTENT_TYPE_COMPONENT, item.getUri()) ||
                     item.isLevelDescriptor() || item.asset;
             item.isComponent = item.component;
-            item.document = ContentUtils.matchesPatterns(item.getUri(), servicesConfig.getDocumentPatterns(site));
+            item.document = pathClassifier.matches(CONTENT_TYPE_DOCUMENT, item.getUri());
             item.isDocument = item.document;
             item.browserUri =item.getUri();
             item.setContentType(getContentTypeClass(site, path));
@@ -2072,36 +2259,22 @@ public class ContentServiceImpl implements ContentService {
         // TODO: SJ: This reads: if can't guess what it is, it's a page. This is to be replaced in 3.1+
         if (uri.endsWith(FILE_SEPARATOR + servicesConfig.getLevelDescriptorName(site))) {
             return CONTENT_TYPE_LEVEL_DESCRIPTOR;
-        } else if (matchesPatterns(uri, servicesConfig.getPagePatterns(site))) {
-            return CONTENT_TYPE_PAGE;
-        } else if (matchesPatterns(uri, servicesConfig.getComponentPatterns(site))) {
-            return CONTENT_TYPE_COMPONENT;
-        } else if (matchesPatterns(uri, servicesConfig.getDocumentPatterns(site))) {
-            return CONTENT_TYPE_DOCUMENT;
-        } else if (matchesPatterns(uri, servicesConfig.getAssetPatterns(site))) {
-            return CONTENT_TYPE_ASSET;
-        } else if (matchesPatterns(uri, servicesConfig.getRenderingTemplatePatterns(site))) {
-            return CONTENT_TYPE_RENDERING_TEMPLATE;
+        }
+        String pathClass = servicesConfig.getPathClassifier(site).classify(uri);
+        if (StringUtils.equalsAny(pathClass, CONTENT_TYPE_PAGE, CONTENT_TYPE_COMPONENT, CONTENT_TYPE_DOCUMENT,
+                CONTENT_TYPE_ASSET, CONTENT_TYPE_RENDERING_TEMPLATE)) {
+            return pathClass;
         } else if (StringUtils.startsWith(uri, contentTypeService.getConfigPath())) {
             return CONTENT_TYPE_CONTENT_TYPE;
-        } else if (matchesPatterns(uri, Arrays.asList(CONTENT_TYPE_TAXONOMY_REGEX))) {
-            return CONTENT_TYPE_TAXONOMY;
-        } else if (matchesPatterns(uri, servicesConfig.getScriptsPatterns(site))) {
-            return CONTENT_TYPE_SCRIPT;
+        } else if (StringUtils.equalsAny(pathClass, CONTENT_TYPE_TAXONOMY, CONTENT_TYPE_SCRIPT)) {
+            return pathClass;
         }
 
         return CONTENT_TYPE_FILE;
     }
 
     protected boolean matchesPatterns(String uri, List<String> patterns) {
-        if (patterns != null) {
-            for (String pattern : patterns) {
-                if (uri.matches(pattern)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return ContentUtils.matchesPatterns(uri, patterns);
     }
 
     @Override
@@ -2696,4 +2869,12 @@ public class ContentServiceImpl implements ContentService {
     public void setUserServiceInternal(UserServiceInternal userServiceInternal) {
         this.userServiceInternal = userServiceInternal;
     }
-}
\ No newline at end of file
+
+    public ObjectFactory<PolicyService> getPolicyService() {
+        return policyService;
+    }
+
+    public void setPolicyService(ObjectFactory<PolicyService> policyService) {
+        this.policyService = policyService;
+    }
+}
@@ -16,25 +16,42 @@
 
 package org.craftercms.studio.impl.v1.service.content;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.ValidationException;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
 import org.craftercms.studio.api.v1.constant.DmConstants;
+import org.craftercms.studio.api.v1.dal.SiteFeed;
+import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.service.content.ContentService;
 import org.craftercms.studio.api.v1.service.content.ImportService;
 import org.craftercms.studio.api.v1.service.deployment.DmPublishService;
+import org.craftercms.studio.api.v1.service.event.EventService;
 import org.craftercms.studio.api.v1.service.security.SecurityService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v1.service.workflow.context.MultiChannelPublishingContext;
 import org.craftercms.studio.api.v1.to.ContentItemTO;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogParameter;
+import org.craftercms.studio.api.v2.dal.Item;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriter;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriterFactory;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.dependency.internal.DependencyServiceInternal;
 import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.dependency.DependencyGraphCache;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor.ContentMetadata;
 import org.craftercms.studio.impl.v1.util.ContentFormatUtils;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.dom4j.Document;
@@ -42,30 +59,62 @@ import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.Node;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
+import static org.craftercms.studio.api.v1.ebus.EBusConstants.EVENT_PREVIEW_SYNC;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CONTENT_ITEM;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_FOLDER;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_SITE;
+import static org.craftercms.studio.api.v2.dal.ItemState.DISABLED;
+import static org.craftercms.studio.api.v2.dal.ItemState.NEW;
 import static org.craftercms.studio.api.v2.dal.ItemState.SAVE_AND_CLOSE_OFF_MASK;
 import static org.craftercms.studio.api.v2.dal.ItemState.SAVE_AND_CLOSE_ON_MASK;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_ASSET_CHAIN_NAME;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_ASSIGNEE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_BATCH_MAX_BYTES;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_PARALLELISM;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_XML_CHAIN_NAME;
 
 public class ImportServiceImpl implements ImportService {
 
     private final static Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
 
+    public static final String CHECKPOINT_SUFFIX = ".import-checkpoint";
+    public static final String PENDING_CHECKPOINT_SUFFIX = ".pending";
+
     protected SiteService siteService;
     protected SecurityService securityService;
     protected ContentRepository contentRepository;
@@ -73,6 +122,16 @@ public class ImportServiceImpl implements ImportService {
     protected DmPublishService dmPublishService;
     protected StudioConfiguration studioConfiguration;
     protected ItemServiceInternal itemServiceInternal;
+    protected org.craftercms.studio.api.v2.repository.ContentRepository contentRepositoryV2;
+    protected UserServiceInternal userServiceInternal;
+    protected DependencyServiceInternal dependencyServiceInternal;
+    protected DependencyGraphCache dependencyGraphCache;
+    protected StudioDBBatchWriterFactory studioDBBatchWriterFactory;
+    protected ContentMetadataExtractor contentMetadataExtractor;
+    protected EventService eventService;
+    protected AuditServiceInternal auditServiceInternal;
+
+    protected final XMLInputFactory xmlInputFactory;
 
     /**
      * is import in progress?
@@ -88,6 +147,12 @@ public class ImportServiceImpl implements ImportService {
     /** import delay time **/
     private long currentDelayLength;
 
+    public ImportServiceImpl() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     @ValidateParams
@@ -115,9 +180,21 @@ public class ImportServiceImpl implements ImportService {
                     String delayLengthStr = siteNode.valueOf("delay-length");
                     int delayLength = (!StringUtils.isEmpty(delayLengthStr) && StringUtils.isNumeric(delayLengthStr))
                             ? Integer.valueOf(delayLengthStr) : -1;
+                    boolean bulk = ContentFormatUtils.getBooleanValue(siteNode.valueOf("bulk"));
 
-                    importFromConfigNode(name, publishingChannelGroup, foldersNode, sourceLocation, FILE_SEPARATOR,
-                            publish, chunkSize, delayInterval, delayLength);
+                    if (bulk) {
+                        if (StringUtils.isEmpty(buildDataLocation)) {
+                            throw new ServiceLayerException("[IMPORT] build-data-location is required to import "
+                                    + name + " in bulk mode");
+                        }
+                        String checkpointLocation =
+                                Paths.get(buildDataLocation, name + CHECKPOINT_SUFFIX).toString();
+                        bulkImportFromConfigNode(name, publishingChannelGroup, foldersNode, sourceLocation,
+                                FILE_SEPARATOR, publish, chunkSize, checkpointLocation);
+                    } else {
+                        importFromConfigNode(name, publishingChannelGroup, foldersNode, sourceLocation,
+                                FILE_SEPARATOR, publish, chunkSize, delayInterval, delayLength);
+                    }
                 }
             }
         }
@@ -184,6 +261,449 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    /**
+     * Imports all the files of a site in batches. The files of each batch are read and validated in parallel, written
+     * to the repository as a single commit, and their items and dependencies are written to the database at once.
+     * The paths of the finished batches are kept in a checkpoint file, if the import fails it can be resumed by
+     * running it again and only the missing files will be imported.
+     *
+     * @param site
+     *            site name
+     * @param publishChannelGroup
+     * @param node
+     *            node with the folders to import
+     * @param fileRoot
+     *            the root location of files/folders being imported
+     * @param targetRoot
+     *            the target location root
+     * @param publish
+     * @param chunkSize
+     * @param checkpointLocation
+     *            the location of the checkpoint file, it is deleted when the import finishes
+     */
+    @SuppressWarnings("unchecked")
+    protected void bulkImportFromConfigNode(String site, String publishChannelGroup, Node node, String fileRoot,
+                                            String targetRoot, boolean publish, int chunkSize,
+                                            String checkpointLocation)
+            throws ServiceLayerException, UserNotFoundException {
+        if (inProgress) {
+            logger.info("[IMPORT] an import process is currently running.");
+            return;
+        }
+        inProgress = true;
+        try {
+            boolean overWrite = ContentFormatUtils.getBooleanValue(node.valueOf("@over-write"));
+            List<BulkImportEntry> entries = new ArrayList<>();
+            planFolders(entries, node.selectNodes("folder"), fileRoot, "", overWrite);
+
+            List<String> importedPaths = bulkImport(site, entries, new File(checkpointLocation));
+            if (publish) {
+                List<String> importedFullPaths = importedPaths.stream()
+                        .map(path -> targetRoot + path)
+                        .collect(toList());
+                logger.info("Starting Publish of Imported Files (Total " + importedFullPaths.size()
+                        + " On chunkSize of " + chunkSize + " )");
+                publish(site, publishChannelGroup, targetRoot, importedFullPaths, chunkSize);
+            }
+        } finally {
+            inProgress = false;
+        }
+    }
+
+    /**
+     * Collects the folders and files to import from the configuration, following the same rules as
+     * {@link #createFolders(String, Set, List, List, String, String, String, boolean, String)}
+     */
+    @SuppressWarnings("unchecked")
+    protected void planFolders(List<BulkImportEntry> entries, List<Node> nodes, String fileRoot, String parentPath,
+                               boolean overWrite) {
+        if (nodes != null) {
+            for (Node node : nodes) {
+                String name = node.valueOf("@name");
+                String value = node.valueOf("@over-write");
+                boolean folderOverWrite = (StringUtils.isEmpty(value)) ? overWrite : ContentFormatUtils
+                        .getBooleanValue(value);
+                if (!StringUtils.isEmpty(name)) {
+                    String currentFilePath = fileRoot + FILE_SEPARATOR + name;
+                    String currentPath = parentPath + FILE_SEPARATOR + name;
+                    entries.add(new BulkImportEntry(parentPath, name, null, folderOverWrite));
+                    boolean importAll = ContentFormatUtils.getBooleanValue(node.valueOf("@import-all"));
+                    if (importAll) {
+                        planFileList(entries, new File(currentFilePath), currentPath, folderOverWrite);
+                    } else {
+                        planFolders(entries, node.selectNodes("folder"), currentFilePath, currentPath,
+                                folderOverWrite);
+                        for (Node fileNode : (List<Node>) node.selectNodes("file")) {
+                            String fileName = fileNode.valueOf("@name");
+                            String fileValue = fileNode.valueOf("@over-write");
+                            boolean fileOverWrite = (StringUtils.isEmpty(fileValue)) ? folderOverWrite :
+                                    ContentFormatUtils.getBooleanValue(fileValue);
+                            if (!StringUtils.isEmpty(fileName)) {
+                                File file = new File(currentFilePath, fileName);
+                                if (file.isFile()) {
+                                    entries.add(new BulkImportEntry(currentPath, fileName, file, fileOverWrite));
+                                } else {
+                                    logger.warn("[IMPORT] " + currentPath + FILE_SEPARATOR + fileName
+                                            + " does not exist.");
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects all the folders and files in the given folder
+     */
+    protected void planFileList(List<BulkImportEntry> entries, File folder, String parentPath, boolean overWrite) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            logger.error("[IMPORT] " + folder + " is not found.");
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                entries.add(new BulkImportEntry(parentPath, child.getName(), null, overWrite));
+                planFileList(entries, child, parentPath + FILE_SEPARATOR + child.getName(), overWrite);
+            } else {
+                entries.add(new BulkImportEntry(parentPath, child.getName(), child, overWrite));
+            }
+        }
+    }
+
+    /**
+     * Imports the given folders and files in batches
+     *
+     * @param site
+     *            site name
+     * @param entries
+     *            the folders and files to import, parents must come before their children
+     * @param checkpoint
+     *            the checkpoint file
+     * @return the paths of all the imported files, including the ones imported before resuming
+     */
+    protected List<String> bulkImport(String site, List<BulkImportEntry> entries, File checkpoint)
+            throws ServiceLayerException, UserNotFoundException {
+        File pendingCheckpoint = new File(checkpoint.getPath() + PENDING_CHECKPOINT_SUFFIX);
+        Set<String> importedPaths = readCheckpoint(checkpoint);
+        // Paths of a batch that failed after being committed, they are written again even if they already exist
+        Set<String> pendingPaths = readCheckpoint(pendingCheckpoint);
+        if (!importedPaths.isEmpty()) {
+            logger.info("[IMPORT] resuming import in " + site + ", " + importedPaths.size()
+                    + " files were already imported.");
+        }
+
+        SiteFeed siteFeed = siteService.getSite(site);
+        User user = userServiceInternal.getUserByIdOrUsername(-1, getAssignee());
+        int batchSize = getBulkBatchSize();
+        long batchMaxBytes = getBulkBatchMaxBytes();
+        long total = entries.stream()
+                .filter(entry -> !entry.isFolder() && !importedPaths.contains(entry.getPath()))
+                .count();
+        long processed = 0;
+        long startTime = System.currentTimeMillis();
+        logger.info("[IMPORT] started bulk import of " + total + " files in " + site + ", batch size: "
+                + batchSize + ", batch max bytes: " + batchMaxBytes);
+
+        ForkJoinPool pool = new ForkJoinPool(getBulkParallelism());
+        try {
+            List<BulkImportEntry> batch = new ArrayList<>();
+            int batchFiles = 0;
+            long batchBytes = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                BulkImportEntry entry = entries.get(i);
+                if (entry.isFolder()) {
+                    batch.add(entry);
+                } else if (!importedPaths.contains(entry.getPath())) {
+                    batch.add(entry);
+                    batchFiles++;
+                    batchBytes += entry.getFile().length();
+                }
+                if (!batch.isEmpty() && (batchFiles == batchSize || batchBytes >= batchMaxBytes
+                        || i == entries.size() - 1)) {
+                    importedPaths.addAll(importBatch(site, siteFeed, user, batch, pendingPaths, checkpoint,
+                            pendingCheckpoint, pool));
+                    processed += batchFiles;
+                    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                    logger.info("[IMPORT] processed " + processed + "/" + total + " files in " + site + ", time: "
+                            + elapsed + ", throughput: " + (processed * 1000 / elapsed) + " files/s");
+                    batch.clear();
+                    batchFiles = 0;
+                    batchBytes = 0;
+                }
+            }
+        } catch (ServiceLayerException e) {
+            logger.error("[IMPORT] bulk import in " + site + " failed after " + processed + " files, run it "
+                    + "again to resume from the last imported batch.", e);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        FileUtils.deleteQuietly(checkpoint);
+        logger.info("[IMPORT] finished bulk import of " + total + " files in " + site + ", time: "
+                + (System.currentTimeMillis() - startTime));
+        return new ArrayList<>(importedPaths);
+    }
+
+    /**
+     * Writes a batch of folders and files as a single commit and updates the database
+     *
+     * @return the paths of the imported files
+     */
+    protected List<String> importBatch(String site, SiteFeed siteFeed, User user, List<BulkImportEntry> entries,
+                                       Set<String> pendingPaths, File checkpoint, File pendingCheckpoint,
+                                       ForkJoinPool pool) throws ServiceLayerException {
+        Set<String> existingPaths = contentRepository.getExistingPaths(site, entries.stream()
+                .map(BulkImportEntry::getPath)
+                .collect(toList()));
+
+        ContentRepositoryBatch batch = new ContentRepositoryBatch();
+        List<BulkImportEntry> folders = new ArrayList<>();
+        List<BulkImportEntry> files = new ArrayList<>();
+        for (BulkImportEntry entry : entries) {
+            String path = entry.getPath();
+            if (existingPaths.contains(path) && !pendingPaths.contains(path)
+                    && (entry.isFolder() || !entry.isOverWrite())) {
+                logger.debug("[IMPORT] " + path + " exists and set to not to overrwite. skipping this file.");
+            } else if (entry.isFolder()) {
+                batch.createFolder(entry.getParentPath(), entry.getName());
+                folders.add(entry);
+            } else {
+                files.add(entry);
+            }
+        }
+
+        // Validate all files in parallel, invalid files are skipped. The content is copied from disk during the commit
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (BulkImportEntry file : files) {
+            tasks.add(() -> validateImportFile(file));
+        }
+        List<BulkImportEntry> importedFiles = new ArrayList<>();
+        List<Boolean> valid = invokeAll(pool, tasks, "validating files to import in site " + site);
+        for (int i = 0; i < files.size(); i++) {
+            if (valid.get(i)) {
+                batch.write(files.get(i).getPath(), files.get(i).getFile().toPath());
+                importedFiles.add(files.get(i));
+            }
+        }
+        if (batch.isEmpty()) {
+            return emptyList();
+        }
+
+        writeCheckpoint(pendingCheckpoint, batch.getPaths(), false);
+        String commitId = contentRepository.commitBatch(site, batch);
+        if (StringUtils.isEmpty(commitId)) {
+            // Nothing changed in the repository, but the items could still be missing in the database
+            commitId = contentRepository.getRepoLastCommitId(site);
+        } else {
+            contentRepositoryV2.insertGitLog(site, commitId, 1, 1);
+            siteService.updateLastCommitId(site, commitId);
+        }
+
+        writeItems(site, siteFeed, user, folders, importedFiles, existingPaths, pendingPaths, commitId, pool);
+        insertBatchAuditLog(site, siteFeed, user, folders, importedFiles);
+
+        List<String> importedPaths = importedFiles.stream()
+                .map(BulkImportEntry::getPath)
+                .collect(toList());
+        writeCheckpoint(checkpoint, importedPaths, true);
+        FileUtils.deleteQuietly(pendingCheckpoint);
+
+        PreviewEventContext context = new PreviewEventContext();
+        context.setSite(site);
+        eventService.publish(EVENT_PREVIEW_SYNC, context);
+
+        return importedPaths;
+    }
+
+    /**
+     * Writes a single audit entry for all the folders and files of a batch
+     */
+    protected void insertBatchAuditLog(String site, SiteFeed siteFeed, User user, List<BulkImportEntry> folders,
+                                       List<BulkImportEntry> files) {
+        List<AuditLogParameter> auditLogParameters = new ArrayList<>();
+        for (BulkImportEntry folder : folders) {
+            auditLogParameters.add(createAuditLogParameter(site, folder.getPath(), TARGET_TYPE_FOLDER));
+        }
+        for (BulkImportEntry file : files) {
+            auditLogParameters.add(createAuditLogParameter(site, file.getPath(), TARGET_TYPE_CONTENT_ITEM));
+        }
+        if (auditLogParameters.isEmpty()) {
+            return;
+        }
+        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+        auditLog.setOperation(OPERATION_CREATE);
+        auditLog.setSiteId(siteFeed.getId());
+        auditLog.setActorId(user.getUsername());
+        auditLog.setPrimaryTargetId(site);
+        auditLog.setPrimaryTargetType(TARGET_TYPE_SITE);
+        auditLog.setPrimaryTargetValue(site);
+        auditLog.setParameters(auditLogParameters);
+        auditServiceInternal.insertAuditLog(auditLog);
+    }
+
+    protected AuditLogParameter createAuditLogParameter(String site, String path, String targetType) {
+        AuditLogParameter auditLogParameter = new AuditLogParameter();
+        auditLogParameter.setTargetId(site + ":" + path);
+        auditLogParameter.setTargetType(targetType);
+        auditLogParameter.setTargetValue(path);
+        return auditLogParameter;
+    }
+
+    /**
+     * Checks that a file to import can be read, xml files are also parsed to check that they are well formed
+     *
+     * @return true if the file can be imported
+     */
+    protected boolean validateImportFile(BulkImportEntry entry) {
+        String path = entry.getPath();
+        if (!entry.getName().endsWith(DmConstants.XML_PATTERN)) {
+            if (!Files.isReadable(entry.getFile().toPath())) {
+                logger.error("[IMPORT] failed to read " + path + ", skipping this file.");
+                return false;
+            }
+            return true;
+        }
+        try (InputStream content = Files.newInputStream(entry.getFile().toPath())) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(content);
+            try {
+                while (reader.hasNext()) {
+                    reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("[IMPORT] failed to read " + path + ", skipping this file.", e);
+        } catch (XMLStreamException e) {
+            logger.error("[IMPORT] " + path + " is not a valid xml file, skipping this file.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Writes the items and dependencies of a batch to the database in a single transaction
+     */
+    protected void writeItems(String site, SiteFeed siteFeed, User user, List<BulkImportEntry> folders,
+                              List<BulkImportEntry> files, Set<String> existingPaths, Set<String> pendingPaths,
+                              String commitId, ForkJoinPool pool) throws ServiceLayerException {
+        List<String> paths = files.stream()
+                .map(BulkImportEntry::getPath)
+                .collect(toList());
+        Map<String, ContentMetadata> metadata = contentMetadataExtractor.extract(site, paths);
+        List<Callable<Map<String, Set<String>>>> tasks = new ArrayList<>();
+        for (String path : paths) {
+            tasks.add(() -> dependencyServiceInternal.resolveDependnecies(site, path));
+        }
+        List<Map<String, Set<String>>> dependencies =
+                invokeAll(pool, tasks, "resolving dependencies of imported files in site " + site);
+
+        ZonedDateTime now = ZonedDateTime.now();
+        StudioDBBatchWriter batchWriter = studioDBBatchWriterFactory.getDBBatchWriter(siteFeed.getId(), site);
+        try {
+            batchWriter.openConnection();
+            for (BulkImportEntry folder : folders) {
+                batchWriter.upsertItem(new Item.Builder()
+                        .withPath(folder.getPath())
+                        .withState(NEW.value)
+                        .withCreatedBy(user.getId())
+                        .withCreatedOn(now)
+                        .withLastModifiedBy(user.getId())
+                        .withLastModifiedOn(now)
+                        .withLabel(folder.getName())
+                        .withSystemType(CONTENT_TYPE_FOLDER)
+                        .withLocaleCode(Locale.US.toString())
+                        .withSize(0L)
+                        .withCommitId(commitId)
+                        .build());
+                batchWriter.updateParentId(folder.getPath());
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                String path = paths.get(i);
+                ContentMetadata contentMetadata = metadata.get(path);
+                if (contentMetadata == null) {
+                    contentMetadata = contentMetadataExtractor.extract(site, path);
+                }
+                if (existingPaths.contains(path) && !pendingPaths.contains(path)) {
+                    batchWriter.updateItem(path, contentMetadata.getPreviewUrl(), SAVE_AND_CLOSE_ON_MASK,
+                            SAVE_AND_CLOSE_OFF_MASK, user.getId(), now, contentMetadata.getLabel(),
+                            contentMetadata.getContentTypeId(), contentMetadata.getSystemType(),
+                            contentMetadata.getMimeType(), contentMetadata.getSize(), commitId);
+                } else {
+                    long state = NEW.value | SAVE_AND_CLOSE_ON_MASK;
+                    if (contentMetadata.isDisabled()) {
+                        state = state | DISABLED.value;
+                    }
+                    batchWriter.upsertItem(new Item.Builder()
+                            .withPath(path)
+                            .withPreviewUrl(contentMetadata.getPreviewUrl())
+                            .withState(state)
+                            .withCreatedBy(user.getId())
+                            .withCreatedOn(now)
+                            .withLastModifiedBy(user.getId())
+                            .withLastModifiedOn(now)
+                            .withLabel(contentMetadata.getLabel())
+                            .withContentTypeId(contentMetadata.getContentTypeId())
+                            .withSystemType(contentMetadata.getSystemType())
+                            .withMimeType(contentMetadata.getMimeType())
+                            .withLocaleCode(Locale.US.toString())
+                            .withSize(contentMetadata.getSize())
+                            .withCommitId(commitId)
+                            .build());
+                }
+                batchWriter.replaceDependencies(path, path, dependencies.get(i));
+                batchWriter.updateParentId(path);
+            }
+            batchWriter.commit();
+            dependencyGraphCache.invalidate(site);
+        } catch (SQLException e) {
+            throw new ServiceLayerException("Error writing imported items to the database for site " + site, e);
+        } finally {
+            batchWriter.closeConnection();
+        }
+    }
+
+    protected <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks, String description)
+            throws ServiceLayerException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceLayerException("Interrupted while " + description, e);
+        } catch (ExecutionException e) {
+            throw new ServiceLayerException("Error " + description, e);
+        }
+        return results;
+    }
+
+    protected Set<String> readCheckpoint(File checkpoint) throws ServiceLayerException {
+        Set<String> paths = new LinkedHashSet<>();
+        if (checkpoint.exists()) {
+            try {
+                paths.addAll(FileUtils.readLines(checkpoint, UTF_8));
+            } catch (IOException e) {
+                throw new ServiceLayerException("Error reading import checkpoint " + checkpoint, e);
+            }
+        }
+        return paths;
+    }
+
+    protected void writeCheckpoint(File checkpoint, Collection<String> paths, boolean append)
+            throws ServiceLayerException {
+        try {
+            FileUtils.writeLines(checkpoint, UTF_8.name(), paths, append);
+        } catch (IOException e) {
+            throw new ServiceLayerException("Error writing import checkpoint " + checkpoint, e);
+        }
+    }
+
     /**
      * create folders
      *
@@ -653,6 +1173,38 @@ public class ImportServiceImpl implements ImportService {
         this.itemServiceInternal = itemServiceInternal;
     }
 
+    public void setContentRepositoryV2(org.craftercms.studio.api.v2.repository.ContentRepository contentRepositoryV2) {
+        this.contentRepositoryV2 = contentRepositoryV2;
+    }
+
+    public void setUserServiceInternal(UserServiceInternal userServiceInternal) {
+        this.userServiceInternal = userServiceInternal;
+    }
+
+    public void setDependencyServiceInternal(DependencyServiceInternal dependencyServiceInternal) {
+        this.dependencyServiceInternal = dependencyServiceInternal;
+    }
+
+    public void setDependencyGraphCache(DependencyGraphCache dependencyGraphCache) {
+        this.dependencyGraphCache = dependencyGraphCache;
+    }
+
+    public void setStudioDBBatchWriterFactory(StudioDBBatchWriterFactory studioDBBatchWriterFactory) {
+        this.studioDBBatchWriterFactory = studioDBBatchWriterFactory;
+    }
+
+    public void setContentMetadataExtractor(ContentMetadataExtractor contentMetadataExtractor) {
+        this.contentMetadataExtractor = contentMetadataExtractor;
+    }
+
+    public void setEventService(EventService eventService) {
+        this.eventService = eventService;
+    }
+
+    public void setAuditServiceInternal(AuditServiceInternal auditServiceInternal) {
+        this.auditServiceInternal = auditServiceInternal;
+    }
+
     public String getAssignee() {
         return studioConfiguration.getProperty(IMPORT_ASSIGNEE);
     }
@@ -665,6 +1217,61 @@ public class ImportServiceImpl implements ImportService {
         return studioConfiguration.getProperty(IMPORT_ASSET_CHAIN_NAME);
     }
 
+    public int getBulkBatchSize() {
+        return studioConfiguration.getProperty(IMPORT_BULK_BATCH_SIZE, Integer.class, 1000);
+    }
+
+    public long getBulkBatchMaxBytes() {
+        return studioConfiguration.getProperty(IMPORT_BULK_BATCH_MAX_BYTES, Long.class, 104857600L);
+    }
+
+    public int getBulkParallelism() {
+        return studioConfiguration.getProperty(IMPORT_BULK_PARALLELISM, Integer.class, 4);
+    }
+
+    /**
+     * A folder or file to import in bulk, folders don't have a source file
+     */
+    protected static class BulkImportEntry {
+
+        protected final String parentPath;
+        protected final String name;
+        protected final File file;
+        protected final boolean overWrite;
+
+        public BulkImportEntry(String parentPath, String name, File file, boolean overWrite) {
+            this.parentPath = parentPath;
+            this.name = name;
+            this.file = file;
+            this.overWrite = overWrite;
+        }
+
+        public String getParentPath() {
+            return parentPath;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return parentPath + FILE_SEPARATOR + name;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isFolder() {
+            return file == null;
+        }
+
+        public boolean isOverWrite() {
+            return overWrite;
+        }
+
+    }
+
     /**
      * publishing channel
      * @author hyanghee
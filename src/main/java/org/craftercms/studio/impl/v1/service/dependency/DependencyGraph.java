@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy of the dependency table for a single site.
+ *
+ * <p>Paths are interned as int ids and each node keeps the ids of its dependencies and of the items depending on it,
+ * so transitive queries in both directions don't need to go to the database once per level.</p>
+ *
+ * <p>Traversals never include the paths they start from, even if they are reached again through a cycle (e.g. two
+ * components including each other). The previous queries did include them in that case.</p>
+ *
+ * @since 4.0
+ */
+public class DependencyGraph {
+
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    protected final Map<String, Integer> ids = new HashMap<>();
+    protected final List<String> paths = new ArrayList<>();
+    protected final List<IntList> dependencies = new ArrayList<>();
+    protected final List<IntList> dependents = new ArrayList<>();
+
+    protected long edges;
+
+    /**
+     * Adds a single dependency, used while loading the graph
+     * @param sourcePath the path of the item
+     * @param targetPath the path of the dependency
+     */
+    public void addDependency(String sourcePath, String targetPath) {
+        lock.writeLock().lock();
+        try {
+            link(intern(sourcePath), intern(targetPath));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces all the dependencies of an item
+     * @param sourcePath the path of the item
+     * @param targetPaths the paths of the new dependencies
+     */
+    public void setDependencies(String sourcePath, Collection<String> targetPaths) {
+        lock.writeLock().lock();
+        try {
+            removeDependencies(sourcePath);
+            if (!targetPaths.isEmpty()) {
+                int source = intern(sourcePath);
+                for (String targetPath : targetPaths) {
+                    link(source, intern(targetPath));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the dependencies of an item, the items depending on it are not changed
+     * @param sourcePath the path of the item
+     */
+    public void removeDependencies(String sourcePath) {
+        lock.writeLock().lock();
+        try {
+            Integer source = ids.get(sourcePath);
+            if (source != null) {
+                IntList targets = dependencies.get(source);
+                for (int i = 0; i < targets.size; i++) {
+                    dependents.get(targets.values[i]).remove(source);
+                    edges--;
+                }
+                targets.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the dependencies of an item and all the references to it
+     * @param path the path of the item
+     */
+    public void removePath(String path) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.get(path);
+            if (id != null) {
+                removeDependencies(path);
+                IntList sources = dependents.get(id);
+                for (int i = 0; i < sources.size; i++) {
+                    dependencies.get(sources.values[i]).remove(id);
+                    edges--;
+                }
+                sources.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves all the dependencies of an item and the references to it to a new path
+     * @param oldPath the current path of the item
+     * @param newPath the new path of the item
+     */
+    public void movePath(String oldPath, String newPath) {
+        lock.writeLock().lock();
+        try {
+            Integer oldId = ids.get(oldPath);
+            if (oldId == null || oldPath.equals(newPath)) {
+                return;
+            }
+            if (!ids.containsKey(newPath)) {
+                // The id is the same, only the path changes
+                ids.remove(oldPath);
+                ids.put(newPath, oldId);
+                paths.set(oldId, newPath);
+                return;
+            }
+            // Both paths exist, merge the old node into the new one
+            int newId = ids.get(newPath);
+            IntList targets = dependencies.get(oldId);
+            for (int i = 0; i < targets.size; i++) {
+                if (targets.values[i] != newId && targets.values[i] != oldId) {
+                    link(newId, targets.values[i]);
+                }
+            }
+            IntList sources = dependents.get(oldId);
+            for (int i = 0; i < sources.size; i++) {
+                if (sources.values[i] != newId && sources.values[i] != oldId) {
+                    link(sources.values[i], newId);
+                }
+            }
+            removePath(oldPath);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the dependencies of the given items, not including the given items themselves
+     * @param sourcePaths the paths of the items
+     * @param depth number of levels to follow, negative for all
+     * @param filter only dependencies accepted by the filter are returned and followed, can be null
+     */
+    public Set<String> getDependencies(Collection<String> sourcePaths, int depth, Predicate<String> filter) {
+        return traverse(sourcePaths, depth, filter, dependencies);
+    }
+
+    /**
+     * Returns the items that depend on the given items, not including the given items themselves
+     * @param targetPaths the paths of the items
+     * @param depth number of levels to follow, negative for all
+     */
+    public Set<String> getDependents(Collection<String> targetPaths, int depth) {
+        return traverse(targetPaths, depth, null, dependents);
+    }
+
+    public int getPathCount() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getEdgeCount() {
+        lock.readLock().lock();
+        try {
+            return edges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    protected Set<String> traverse(Collection<String> startPaths, int depth, Predicate<String> filter,
+                                   List<IntList> adjacency) {
+        Set<String> result = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            BitSet visited = new BitSet(paths.size());
+            int[] level = new int[startPaths.size()];
+            int levelSize = 0;
+            for (String path : startPaths) {
+                Integer id = ids.get(path);
+                if (id != null && !visited.get(id)) {
+                    visited.set(id);
+                    level[levelSize++] = id;
+                }
+            }
+            // Filtered out paths are only checked once
+            BitSet rejected = new BitSet();
+            while (levelSize > 0 && depth-- != 0) {
+                int[] next = new int[16];
+                int nextSize = 0;
+                for (int i = 0; i < levelSize; i++) {
+                    IntList targets = adjacency.get(level[i]);
+                    for (int j = 0; j < targets.size; j++) {
+                        int target = targets.values[j];
+                        if (visited.get(target) || rejected.get(target)) {
+                            continue;
+                        }
+                        String path = paths.get(target);
+                        if (filter != null && !filter.test(path)) {
+                            rejected.set(target);
+                            continue;
+                        }
+                        visited.set(target);
+                        result.add(path);
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = target;
+                    }
+                }
+                level = next;
+                levelSize = nextSize;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    protected int intern(String path) {
+        Integer id = ids.get(path);
+        if (id == null) {
+            id = paths.size();
+            ids.put(path, id);
+            paths.add(path);
+            dependencies.add(new IntList());
+            dependents.add(new IntList());
+        }
+        return id;
+    }
+
+    protected void link(int source, int target) {
+        // Items usually have few dependencies, the check is cheaper than keeping a set for each item
+        if (!dependencies.get(source).contains(target)) {
+            dependencies.get(source).add(target);
+            dependents.get(target).add(source);
+            edges++;
+        }
+    }
+
+    /**
+     * Growable list of node ids
+     */
+    protected static class IntList {
+
+        protected int[] values = new int[2];
+        protected int size;
+
+        protected boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        protected void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    // Order doesn't matter, move the last value to the free slot
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        protected void clear() {
+            values = new int[2];
+            size = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.DependencyMapper;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.craftercms.studio.api.v1.dal.DependencyMapper.SITE_PARAM;
+
+/**
+ * Keeps the {@link DependencyGraph} of the most used sites.
+ *
+ * <p>The graph of a site is loaded from the database the first time it is needed. After that the changes made by the
+ * dependency service are applied to it once they are committed to the database. Each site has a version that is
+ * increased on every change, if a change happens while the graph is being loaded the result is used only for the
+ * current query and it is not cached.</p>
+ *
+ * <p>Graphs also expire after a fixed time, so changes written to the database by other nodes of a cluster are picked
+ * up even if the repository sync doesn't invalidate them.</p>
+ *
+ * @since 4.0
+ */
+public class DependencyGraphCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraphCache.class);
+
+    protected DependencyMapper dependencyMapper;
+
+    /**
+     * Maximum number of sites to keep in memory
+     */
+    protected long maxSites = 50;
+
+    /**
+     * Time in minutes after which a graph is loaded again from the database
+     */
+    protected long maxAge = 30;
+
+    protected Cache<String, DependencyGraph> graphs;
+
+    protected final Map<String, SiteState> states = new ConcurrentHashMap<>();
+
+    public void init() {
+        graphs = CacheBuilder.newBuilder()
+                .maximumSize(maxSites)
+                .expireAfterWrite(maxAge, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Returns the dependency graph of a site, loading it if needed
+     * @param site the site id
+     * @return the graph
+     */
+    public DependencyGraph getGraph(String site) {
+        DependencyGraph graph = graphs.getIfPresent(site);
+        if (graph != null) {
+            return graph;
+        }
+        SiteState state = getState(site);
+        // Only one thread loads the graph, the rest wait and use it
+        synchronized (state.loadLock) {
+            graph = graphs.getIfPresent(site);
+            if (graph != null) {
+                return graph;
+            }
+            long version;
+            synchronized (state) {
+                version = state.version;
+            }
+            graph = load(site);
+            synchronized (state) {
+                if (version == state.version) {
+                    graphs.put(site, graph);
+                } else {
+                    logger.debug("Dependencies for site " + site + " changed while loading the graph, it will be " +
+                            "loaded again by the next query");
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Applies a change to the graph of a site, must be called after the change is committed to the database
+     * @param site the site id
+     * @param change the change to apply
+     */
+    public void update(String site, Consumer<DependencyGraph> change) {
+        SiteState state = getState(site);
+        synchronized (state) {
+            state.version++;
+            DependencyGraph graph = graphs.getIfPresent(site);
+            if (graph != null) {
+                change.accept(graph);
+            }
+        }
+    }
+
+    /**
+     * Discards the graph of a site, it will be loaded again by the next query
+     * @param site the site id
+     */
+    public void invalidate(String site) {
+        SiteState state = getState(site);
+        synchronized (state) {
+            state.version++;
+            graphs.invalidate(site);
+        }
+    }
+
+    protected SiteState getState(String site) {
+        return states.computeIfAbsent(site, key -> new SiteState());
+    }
+
+    protected DependencyGraph load(String site) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> params = new HashMap<>();
+        params.put(SITE_PARAM, site);
+        List<DependencyEntity> dependencies = dependencyMapper.getSiteDependencies(params);
+        DependencyGraph graph = new DependencyGraph();
+        for (DependencyEntity dependency : dependencies) {
+            graph.addDependency(dependency.getSourcePath(), dependency.getTargetPath());
+        }
+        logger.debug("Loaded dependency graph for site " + site + " with " + graph.getPathCount() + " paths and " +
+                graph.getEdgeCount() + " dependencies in " + (System.currentTimeMillis() - start) + " ms");
+        return graph;
+    }
+
+    public void setDependencyMapper(DependencyMapper dependencyMapper) {
+        this.dependencyMapper = dependencyMapper;
+    }
+
+    public void setMaxSites(long maxSites) {
+        this.maxSites = maxSites;
+    }
+
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    protected static class SiteState {
+
+        protected final Object loadLock = new Object();
+        protected long version;
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.craftercms.studio.api.v1.to.DependencyResolverConfigTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+/**
+ * Immutable, precompiled version of the dependency resolver configuration of a site.
+ *
+ * <p>Instances are built once from a {@link DependencyResolverConfigTO} and cached in the configuration cache, so
+ * no XML walking or regex compilation happens while resolving dependencies.</p>
+ */
+public class DependencyResolverRules {
+
+    protected final List<ItemTypeRules> itemTypes;
+
+    public DependencyResolverRules(DependencyResolverConfigTO config) {
+        List<ItemTypeRules> compiled = new ArrayList<>();
+        if (config.getItemTypes() != null) {
+            for (DependencyResolverConfigTO.ItemType itemType : config.getItemTypes().values()) {
+                compiled.add(new ItemTypeRules(itemType));
+            }
+        }
+        this.itemTypes = Collections.unmodifiableList(compiled);
+    }
+
+    /**
+     * Returns the rules of the first item type that includes the given path
+     * @param path the path of the content
+     * @return the item type rules or null if no dependency extraction is required for the path
+     */
+    public ItemTypeRules getItemType(String path) {
+        for (ItemTypeRules itemType : itemTypes) {
+            if (itemType.includes(path)) {
+                return itemType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiled rules for an item type
+     */
+    public static class ItemTypeRules {
+
+        protected final List<Pattern> includes;
+        protected final List<ExtractionRule> rules;
+
+        /**
+         * All the find regexes of the item type combined in a single pattern, it matches at every position where at
+         * least one of the rules matches
+         */
+        protected final Pattern combinedFind;
+
+        protected ItemTypeRules(DependencyResolverConfigTO.ItemType itemType) {
+            List<Pattern> compiledIncludes = new ArrayList<>();
+            if (itemType.getIncludes() != null) {
+                for (String include : itemType.getIncludes()) {
+                    compiledIncludes.add(Pattern.compile(include));
+                }
+            }
+            includes = Collections.unmodifiableList(compiledIncludes);
+
+            List<ExtractionRule> compiledRules = new ArrayList<>();
+            if (itemType.getDependencyTypes() != null) {
+                for (Map.Entry<String, DependencyResolverConfigTO.DependencyType> entry :
+                        itemType.getDependencyTypes().entrySet()) {
+                    DependencyResolverConfigTO.DependencyType dependencyType = entry.getValue();
+                    if (CollectionUtils.isEmpty(dependencyType.getIncludes())) {
+                        // Keep the dependency type so it is still reported with no results
+                        compiledRules.add(new ExtractionRule(dependencyType.getName(), null, null));
+                        continue;
+                    }
+                    for (DependencyResolverConfigTO.DependencyExtractionPattern pattern :
+                            dependencyType.getIncludes()) {
+                        compiledRules.add(new ExtractionRule(dependencyType.getName(), pattern.getFindRegex(),
+                                pattern.getTransforms()));
+                    }
+                }
+            }
+            rules = Collections.unmodifiableList(compiledRules);
+
+            StringBuilder combined = new StringBuilder();
+            for (ExtractionRule rule : rules) {
+                if (rule.find != null) {
+                    if (combined.length() > 0) {
+                        combined.append('|');
+                    }
+                    combined.append("(?:").append(rule.find.pattern()).append(')');
+                }
+            }
+            combinedFind = combined.length() > 0? Pattern.compile(combined.toString()) : null;
+        }
+
+        public boolean includes(String path) {
+            for (Pattern include : includes) {
+                if (include.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public List<ExtractionRule> getRules() {
+            return rules;
+        }
+
+        /**
+         * Returns the combined pattern used for single pass scanning, it only finds the positions where matches
+         * start, each rule still needs to be checked at those positions
+         */
+        public Pattern getCombinedFind() {
+            return combinedFind;
+        }
+
+    }
+
+    /**
+     * Compiled find regex and transforms for a dependency type
+     */
+    public static class ExtractionRule {
+
+        protected final String dependencyType;
+        protected final Pattern find;
+        protected final List<Pattern> transformMatches;
+        protected final List<String> transformReplaces;
+
+        protected ExtractionRule(String dependencyType, String findRegex,
+                                 List<DependencyResolverConfigTO.DependencyExtractionTransform> transforms) {
+            this.dependencyType = dependencyType;
+            this.find = findRegex != null? Pattern.compile(findRegex) : null;
+            List<Pattern> matches = new ArrayList<>();
+            List<String> replaces = new ArrayList<>();
+            if (transforms != null) {
+                for (DependencyResolverConfigTO.DependencyExtractionTransform transform : transforms) {
+                    matches.add(Pattern.compile(transform.getMatch()));
+                    replaces.add(transform.getReplace());
+                }
+            }
+            this.transformMatches = Collections.unmodifiableList(matches);
+            this.transformReplaces = Collections.unmodifiableList(replaces);
+        }
+
+        public String getDependencyType() {
+            return dependencyType;
+        }
+
+        public Pattern getFind() {
+            return find;
+        }
+
+        /**
+         * Applies all the transforms of the rule to a matched path
+         */
+        public String transform(String matchedPath) {
+            String result = matchedPath;
+            for (int i = 0; i < transformMatches.size(); i++) {
+                result = transformMatches.get(i).matcher(result).replaceAll(transformReplaces.get(i));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "ExtractionRule{dependencyType='" + dependencyType + "', find='" + find + "'}";
+        }
+
+    }
+
+}
@@ -52,6 +52,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.INDEX_FILE;
@@ -84,6 +86,7 @@ public class DependencyServiceImpl implements DependencyService {
     protected ItemDAO itemDao;
     protected GeneralLockService generalLockService;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected DependencyGraphCache dependencyGraphCache;
 
     @Override
     public Set<String> upsertDependencies(String site, String path)
@@ -108,11 +111,12 @@ public class DependencyServiceImpl implements DependencyService {
 
             try {
                 logger.debug("Delete all source dependencies for site: " + site + " path: " + path);
-                deleteAllSourceDependencies(site, path);
+                deleteSourceDependenciesFromDatabase(site, path);
                 logger.debug("Insert all extracted dependencies entries for site: " + site + " path: " + path);
                 insertDependenciesIntoDatabase(dependencyEntities);
                 logger.debug("Committing transaction.");
                 transactionManager.commit(txStatus);
+                updateDependencyGraph(site, List.of(path), dependencyEntities);
             } catch (Exception e) {
                 logger.debug("Rolling back transaction.", e);
                 transactionManager.rollback(txStatus);
@@ -132,10 +136,11 @@ public class DependencyServiceImpl implements DependencyService {
         List<DependencyEntity> dependencyEntities = new ArrayList<>();
         StringBuilder sbPaths = new StringBuilder();
         logger.debug("Resolving dependencies for list of paths.");
+        Map<String, Map<String, Set<String>>> resolved = dependencyResolver.resolve(site, paths);
         for (String path : paths) {
             sbPaths.append("\n").append(path);
             logger.debug("Resolving dependencies for content site: " + site + " path: " + path);
-            Map<String, Set<String>> dependencies = dependencyResolver.resolve(site, path);
+            Map<String, Set<String>> dependencies = resolved.get(path);
             if (dependencies != null) {
                 logger.debug("Found " + dependencies.size() + " dependencies. " +
                         "Create entities to insert into database.");
@@ -154,12 +159,13 @@ public class DependencyServiceImpl implements DependencyService {
         try {
             logger.debug("Delete all source dependencies for list of paths site: " + site);
             for (String path : paths) {
-                deleteAllSourceDependencies(site, path);
+                deleteSourceDependenciesFromDatabase(site, path);
             }
             logger.debug("Insert all extracted dependencies entries lof list of paths for site: " + site);
             insertDependenciesIntoDatabase(dependencyEntities);
             logger.debug("Committing transaction.");
             transactionManager.commit(txStatus);
+            updateDependencyGraph(site, paths, dependencyEntities);
         } catch (Exception e) {
             logger.debug("Rolling back transaction.", e);
             transactionManager.rollback(txStatus);
@@ -171,7 +177,28 @@ public class DependencyServiceImpl implements DependencyService {
         return toRet;
     }
 
+    protected void updateDependencyGraph(String site, List<String> paths, List<DependencyEntity> dependencyEntities) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        for (DependencyEntity dependencyEntity : dependencyEntities) {
+            dependencies.computeIfAbsent(dependencyEntity.getSourcePath(), key -> new HashSet<>())
+                    .add(dependencyEntity.getTargetPath());
+        }
+        dependencyGraphCache.update(site, graph -> {
+            paths.forEach(graph::removeDependencies);
+            dependencies.forEach(graph::setDependencies);
+        });
+    }
+
     public void deleteAllSourceDependencies(String site, String path) {
+        deleteSourceDependenciesFromDatabase(site, path);
+        dependencyGraphCache.update(site, graph -> graph.removeDependencies(path));
+    }
+
+    /**
+     * Deletes the dependencies of a path without updating the graph, for callers that update it once their
+     * transaction is committed
+     */
+    protected void deleteSourceDependenciesFromDatabase(String site, String path) {
         logger.debug("Delete all source dependencies for site: " + site + " path: " + path);
         Map<String, String> params = new HashMap<String, String>();
         params.put(SITE_PARAM, site);
@@ -238,39 +265,15 @@ public class DependencyServiceImpl implements DependencyService {
             throw new ContentNotFoundException();
         }
 
-        Set<String> toRet = new HashSet<String>();
-        Set<String> paths = new HashSet<String>();
-        boolean exitCondition = false;
-        paths.add(path);
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemSpecificDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!exitCondition);
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemSpecificDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-                if (exitCondition) break;
-            }
-        }
-        return toRet;
+        return dependencyGraphCache.getGraph(site)
+                .getDependencies(List.of(path), depth, getItemSpecificDependenciesFilter());
     }
 
-    private List<String> getItemSpecificDependenciesFromDB(String site, Set<String> paths) {
+    private Set<String> getDirectItemSpecificDependencies(String site, Set<String> paths) {
         if (CollectionUtils.isEmpty(paths)) {
-            return new ArrayList<String>();
+            return new HashSet<String>();
         }
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put(SITE_PARAM, site);
-        params.put(PATHS_PARAM, paths);
-        params.put(REGEX_PARAM, getItemSpecificDependenciesPatterns());
-        return dependencyMapper.getItemSpecificDependenciesForList(params);
+        return dependencyGraphCache.getGraph(site).getDependencies(paths, 1, getItemSpecificDependenciesFilter());
     }
 
     @Override
@@ -288,36 +291,14 @@ public class DependencyServiceImpl implements DependencyService {
 
         logger.debug("Get dependency items for content " + path + " for site " + site);
 
-        Set<String> toRet = new HashSet<String>();
-        Set<String> paths = new HashSet<String>();
-        paths.add(path);
-        boolean exitCondition;
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!exitCondition);
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemDependenciesFromDB(site, paths);
-                exitCondition = !toRet.addAll(deps);
-                if (exitCondition) break;
-            }
-        }
-        return toRet;
+        return dependencyGraphCache.getGraph(site).getDependencies(List.of(path), depth, null);
     }
 
-    private List<String> getItemDependenciesFromDB(String site, Set<String> paths) {
+    private Set<String> getDirectDependencies(String site, Set<String> paths) {
         if (CollectionUtils.isEmpty(paths)) {
-            return new ArrayList<String>();
+            return new HashSet<String>();
         }
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put(SITE_PARAM, site);
-        params.put(PATHS_PARAM, paths);
-        return dependencyMapper.getDependenciesForList(params);
+        return dependencyGraphCache.getGraph(site).getDependencies(paths, 1, null);
     }
 
     @Override
@@ -334,37 +315,7 @@ public class DependencyServiceImpl implements DependencyService {
         }
 
         logger.debug("Get items depending on content " + path + " for site " + site);
-        Set<String> toRet = new HashSet<String>();
-        Set<String> paths = new HashSet<String>();
-        paths.add(path);
-        if (depth < 0) {
-            do {
-                List<String> deps = getItemsDependingOnFromDB(site, paths);
-                toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            } while (!CollectionUtils.isNotEmpty(paths));
-        } else {
-            int d = depth;
-            while (d-- > 0) {
-                List<String> deps = getItemsDependingOnFromDB(site, paths);
-                toRet.addAll(deps);
-                paths.clear();
-                paths.addAll(deps);
-            }
-        }
-
-        return toRet;
-    }
-
-    private List<String> getItemsDependingOnFromDB(String site, Set<String> paths) {
-        if (CollectionUtils.isEmpty(paths)) {
-            return new ArrayList<String>();
-        }
-        Map<String, Object> params = new HashMap<String, Object>();
-        params.put(SITE_PARAM, site);
-        params.put(PATHS_PARAM, paths);
-        return dependencyMapper.getItemsDependingOn(params);
+        return dependencyGraphCache.getGraph(site).getDependents(List.of(path), depth);
     }
 
     @Override
@@ -385,6 +336,7 @@ public class DependencyServiceImpl implements DependencyService {
         params.put(OLD_PATH_PARAM, oldPath);
         params.put(NEW_PATH_PARAM, newPath);
         retryingDatabaseOperationFacade.moveDependency(params);
+        dependencyGraphCache.update(site, graph -> graph.movePath(oldPath, newPath));
 
         return getItemDependencies(site, newPath, 1);
     }
@@ -401,6 +353,7 @@ public class DependencyServiceImpl implements DependencyService {
         params.put(SITE_PARAM, site);
         params.put(PATH_PARAM, path);
         retryingDatabaseOperationFacade.deleteDependenciesForSiteAndPath(params);
+        dependencyGraphCache.update(site, graph -> graph.removePath(path));
     }
 
     @Override
@@ -409,6 +362,7 @@ public class DependencyServiceImpl implements DependencyService {
         Map<String, String> params = new HashMap<String, String>();
         params.put(SITE_PARAM, site);
         retryingDatabaseOperationFacade.deleteDependenciesForSite(params);
+        dependencyGraphCache.invalidate(site);
     }
 
     @Override
@@ -467,7 +421,7 @@ public class DependencyServiceImpl implements DependencyService {
         depsSource.addAll(children);
         Set<String> dependencies = getContentTypeFilteredDeleteDependencies(site, depsSource);
         toRet.addAll(dependencies);
-        List<String> itemSpecificcDeps = getItemSpecificDependenciesFromDB(site, depsSource);
+        Set<String> itemSpecificcDeps = getDirectItemSpecificDependencies(site, depsSource);
         toRet.addAll(itemSpecificcDeps);
         boolean doItAgain = false;
 
@@ -489,7 +443,7 @@ public class DependencyServiceImpl implements DependencyService {
 
     private Set<String> getContentTypeFilteredDeleteDependencies(String site, Set<String> paths) {
         Set<String> toRet = new HashSet<String>();
-        List<String> deps = getItemDependenciesFromDB(site, paths);
+        Set<String> deps = getDirectDependencies(site, paths);
         for (String dep : deps) {
             ContentItemTO item = contentService.getContentItem(site, dep, 0);
             List<DeleteDependencyConfigTO> deleteDependencyConfigList =
@@ -538,6 +492,17 @@ public class DependencyServiceImpl implements DependencyService {
         return itemSpecificDependenciesPatterns;
     }
 
+    /**
+     * Matches the paths the same way the RLIKE condition did when the dependencies were queried in the database
+     */
+    protected Predicate<String> getItemSpecificDependenciesFilter() {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String pattern : getItemSpecificDependenciesPatterns()) {
+            patterns.add(Pattern.compile(pattern));
+        }
+        return path -> patterns.stream().anyMatch(pattern -> pattern.matcher(path).find());
+    }
+
     @Override
     public Map<String, List<CalculateDependenciesEntityTO>> calculateDependencies(String site, List<String> paths)
             throws ServiceLayerException {
@@ -753,4 +718,12 @@ public class DependencyServiceImpl implements DependencyService {
     public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
         this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
     }
+
+    public DependencyGraphCache getDependencyGraphCache() {
+        return dependencyGraphCache;
+    }
+
+    public void setDependencyGraphCache(DependencyGraphCache dependencyGraphCache) {
+        this.dependencyGraphCache = dependencyGraphCache;
+    }
 }
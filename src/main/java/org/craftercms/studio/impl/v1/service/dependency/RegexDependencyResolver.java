@@ -16,7 +16,7 @@
 
 package org.craftercms.studio.impl.v1.service.dependency;
 
-import org.apache.commons.collections4.CollectionUtils;
+import com.google.common.cache.Cache;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
@@ -25,11 +25,11 @@ import org.craftercms.studio.api.v1.service.dependency.DependencyResolver;
 import org.craftercms.studio.api.v1.to.DependencyResolverConfigTO;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
-import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.dom4j.Document;
 import org.dom4j.Element;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,6 +43,7 @@ import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARAT
 import static org.craftercms.studio.api.v1.constant.StudioConstants.MODULE_STUDIO;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEFAULT_DEPENDENCY_RESOLVER_CONFIG_BASE_PATH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEFAULT_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEPENDENCY_RESOLVER_SINGLE_PASS_SCAN_ENABLED;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_ENVIRONMENT_ACTIVE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME;
 
@@ -50,44 +51,99 @@ public class RegexDependencyResolver implements DependencyResolver {
 
     private static final Logger logger = LoggerFactory.getLogger(RegexDependencyResolver.class);
 
+    /**
+     * Suffix for the cache key of the compiled rules, must match the suffix of the cache invalidator
+     */
+    public static final String CACHE_KEY_SUFFIX = "dependency-resolver";
+
     protected ContentService contentService;
     protected StudioConfiguration studioConfiguration;
     protected ConfigurationService configurationService;
+    protected Cache<String, Object> configurationCache;
 
     @Override
     public Map<String, Set<String>> resolve(String site, String path) {
-        Map<String, Set<String>> toRet = new HashMap<String, Set<String>>();
-        try {
-            logger.debug("Get dependency resolver configuration for site " + site);
-            DependencyResolverConfigTO config = getConfiguration(site);
-            if (config != null) {
-                logger.debug("Determine item type of content for site: " + site + ", path: " + path);
-                DependencyResolverConfigTO.ItemType itemType = getItemTypeResolverConfig(site, path, config);
-                if (itemType != null) {
-                    String content = contentService.getContentAsString(site, path);
-                    if (content != null) {
-                        Map<String, DependencyResolverConfigTO.DependencyType> dependencyTypes =
-                                itemType.getDependencyTypes();
-                        logger.debug("Get dependencies of content for site: " + site + ", path: " + path);
-                        toRet = getDependencies(site, path, content, dependencyTypes);
+        return resolve(site, Collections.singletonList(path)).get(path);
+    }
+
+    @Override
+    public Map<String, Map<String, Set<String>>> resolve(String site, List<String> paths) {
+        Map<String, Map<String, Set<String>>> toRet = new HashMap<String, Map<String, Set<String>>>();
+        Set<String> candidates = new HashSet<String>();
+        logger.debug("Get dependency resolver configuration for site " + site);
+        DependencyResolverRules rules = getRules(site);
+        for (String path : paths) {
+            Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+            try {
+                if (rules != null) {
+                    logger.debug("Determine item type of content for site: " + site + ", path: " + path);
+                    DependencyResolverRules.ItemTypeRules itemType = rules.getItemType(path);
+                    if (itemType != null) {
+                        String content = contentService.getContentAsString(site, path);
+                        if (content != null) {
+                            logger.debug("Get dependencies of content for site: " + site + ", path: " + path);
+                            dependencies = getDependencies(content, itemType);
+                            dependencies.values().forEach(candidates::addAll);
+                        } else {
+                            logger.error("Failed to extract dependencies. " +
+                                    "No content or empty content found for site: " + site + ", path: " + path);
+                        }
                     } else {
-                        logger.error("Failed to extract dependencies. " +
-                                "No content or empty content found for site: " + site + ", path: " + path);
+                        logger.debug("No dependency extraction required for site: " + site + ", path: " + path);
                     }
                 } else {
-                    logger.debug("No dependency extraction required for site: " + site + ", path: " + path);
+                    String configLocation = getConfigFileName();
+                    logger.error("Failed to load Dependency Resolver configuration. Verify that configuration " +
+                            "exists and it is valid XML file: " + configLocation);
+                }
+            } catch (Exception exc) {
+                logger.error("Unexpected error resolving dependencies for site: " + site + " path: " + path);
+            }
+            toRet.put(path, dependencies);
+        }
+
+        if (!candidates.isEmpty()) {
+            logger.debug("Check if content exists for " + candidates.size() + " matched paths in site " + site);
+            Set<String> existing = contentService.getExistingPaths(site, candidates);
+            for (Map.Entry<String, Map<String, Set<String>>> entry : toRet.entrySet()) {
+                for (Set<String> extractedPaths : entry.getValue().values()) {
+                    extractedPaths.removeIf(matchedPath -> {
+                        if (existing.contains(matchedPath)) {
+                            return false;
+                        }
+                        logger.debug("Found reference to " + matchedPath + " in content at " +
+                                entry.getKey() + " but content does not exist in referenced path for site " +
+                                site + ".\n"
+                                + "Regular expression for extracting dependencies matched " +
+                                "string, and after applying transformation rules to get value " +
+                                "for dependency path, that dependency path was not found in" +
+                                " site repository as a content.");
+                        return true;
+                    });
                 }
-            } else {
-                String configLocation = getConfigFileName();
-                logger.error("Failed to load Dependency Resolver configuration. Verify that configuration exists" +
-                        " and it is valid XML file: " + configLocation);
             }
-        } catch (Exception exc) {
-            logger.error("Unexpected error resolving dependencies for site: " + site + " path: " + path);
         }
         return toRet;
     }
 
+    /**
+     * Returns the compiled rules for the site, parsing the configuration only if they are not in the cache yet
+     */
+    protected DependencyResolverRules getRules(String site) {
+        String cacheKey = configurationService.getCacheKey(site, MODULE_STUDIO, getConfigFileName(),
+                studioConfiguration.getProperty(CONFIGURATION_ENVIRONMENT_ACTIVE), CACHE_KEY_SUFFIX);
+        DependencyResolverRules rules = (DependencyResolverRules) configurationCache.getIfPresent(cacheKey);
+        if (rules == null) {
+            logger.debug("CACHE MISS: {0}", cacheKey);
+            DependencyResolverConfigTO config = getConfiguration(site);
+            if (config != null) {
+                rules = new DependencyResolverRules(config);
+                configurationCache.put(cacheKey, rules);
+            }
+        }
+        return rules;
+    }
+
     @SuppressWarnings("unchecked")
     private DependencyResolverConfigTO getConfiguration(String site) {
         DependencyResolverConfigTO config = null;
@@ -186,71 +242,75 @@ public class RegexDependencyResolver implements DependencyResolver {
         return config;
     }
 
-    private DependencyResolverConfigTO.ItemType getItemTypeResolverConfig(String site, String path,
-                                                                          DependencyResolverConfigTO config) {
-        logger.debug("Loop through all item types to match path against include patterns");
-        Map<String, DependencyResolverConfigTO.ItemType> itemTypes = config.getItemTypes();
-        DependencyResolverConfigTO.ItemType itemType = null;
-        if (itemTypes != null) {
-            for (Map.Entry<String, DependencyResolverConfigTO.ItemType> entry : itemTypes.entrySet()) {
-                DependencyResolverConfigTO.ItemType it = entry.getValue();
-                List<String> includes = it.getIncludes();
-                if (ContentUtils.matchesPatterns(path, includes)) {
-                    itemType = it;
-                    break;
-                }
-            }
-        }
-        return itemType;
-    }
-
-    private Map<String, Set<String>> getDependencies(String site, String path, String content, Map<String,
-            DependencyResolverConfigTO.DependencyType> dependencyTypes) {
+    /**
+     * Extracts the candidate dependencies of the content, existence of the paths is not checked
+     */
+    private Map<String, Set<String>> getDependencies(String content, DependencyResolverRules.ItemTypeRules itemType) {
         Map<String, Set<String>> toRet = new HashMap<String, Set<String>>();
-        logger.debug("Loop through all dependency types");
-        for (Map.Entry<String, DependencyResolverConfigTO.DependencyType> dependencyTypeEntry :
-                dependencyTypes.entrySet()) {
-            Set<String> extractedPaths = new HashSet<String>();
-            DependencyResolverConfigTO.DependencyType dependencyType = dependencyTypeEntry.getValue();
-            List<DependencyResolverConfigTO.DependencyExtractionPattern> extractionPatterns =
-                    dependencyType.getIncludes();
-            logger.debug("Loop through all extraction patterns for " + dependencyTypeEntry.getKey());
-            for (DependencyResolverConfigTO.DependencyExtractionPattern extractionPattern :
-                    extractionPatterns) {
-                Pattern pattern = Pattern.compile(extractionPattern.getFindRegex());
-                Matcher matcher = pattern.matcher(content);
-                logger.debug("Matching content against regular expression " + extractionPattern.getFindRegex());
-                while (matcher.find()) {
-                    String matchedPath = matcher.group();
-                    logger.debug("Matched path: " + matchedPath + ". Apply transformations");
-                    if (CollectionUtils.isNotEmpty(extractionPattern.getTransforms())) {
-                        for (DependencyResolverConfigTO.DependencyExtractionTransform transform :
-                                extractionPattern.getTransforms()) {
-                            Pattern find = Pattern.compile(transform.getMatch());
-                            Matcher replaceMatcher = find.matcher(matchedPath);
-                            matchedPath = replaceMatcher.replaceAll(transform.getReplace());
-                        }
+        for (DependencyResolverRules.ExtractionRule rule : itemType.getRules()) {
+            toRet.computeIfAbsent(rule.getDependencyType(), k -> new HashSet<String>());
+        }
+        if (isSinglePassScanEnabled()) {
+            Pattern combinedFind = itemType.getCombinedFind();
+            if (combinedFind != null) {
+                logger.debug("Matching content against all the regular expressions in a single pass");
+                List<DependencyResolverRules.ExtractionRule> rules = itemType.getRules();
+                Matcher[] matchers = new Matcher[rules.size()];
+                // Matches of the same rule don't overlap, the same way as when each rule is matched separately
+                int[] nextStarts = new int[rules.size()];
+                for (int i = 0; i < rules.size(); i++) {
+                    if (rules.get(i).getFind() != null) {
+                        matchers[i] = rules.get(i).getFind().matcher(content)
+                                .useTransparentBounds(true)
+                                .useAnchoringBounds(false);
                     }
-                    if (contentService.contentExists(site, matchedPath)) {
-                        logger.debug("Content exists for matched path " + matchedPath + ". Adding to the result set");
-                        extractedPaths.add(matchedPath);
-                    } else {
-                        String message = "Found reference to " + matchedPath + " in content at " +
-                                path + " but content does not exist in referenced path for site " +
-                                site + ".\n"
-                                + "Regular expression for extracting dependencies matched " +
-                                "string, and after applying transformation rules to get value " +
-                                "for dependency path, that dependency path was not found in" +
-                                " site repository as a content.";
-                        logger.debug(message);
+                }
+                Matcher combinedMatcher = combinedFind.matcher(content);
+                int start = 0;
+                while (start <= content.length() && combinedMatcher.find(start)) {
+                    int position = combinedMatcher.start();
+                    // Text matched by more than one rule is reported for all of them
+                    for (int i = 0; i < rules.size(); i++) {
+                        Matcher matcher = matchers[i];
+                        if (matcher != null && nextStarts[i] <= position) {
+                            matcher.region(position, content.length());
+                            if (matcher.lookingAt()) {
+                                addDependency(rules.get(i), matcher.group(),
+                                        toRet.get(rules.get(i).getDependencyType()));
+                                nextStarts[i] = Math.max(matcher.end(), position + 1);
+                            }
+                        }
                     }
+                    start = position + 1;
+                }
+            }
+        } else {
+            logger.debug("Loop through all extraction rules");
+            for (DependencyResolverRules.ExtractionRule rule : itemType.getRules()) {
+                if (rule.getFind() == null) {
+                    continue;
+                }
+                Matcher matcher = rule.getFind().matcher(content);
+                logger.debug("Matching content against regular expression " + rule.getFind().pattern());
+                while (matcher.find()) {
+                    addDependency(rule, matcher.group(), toRet.get(rule.getDependencyType()));
                 }
             }
-            toRet.put(dependencyType.getName(), extractedPaths);
         }
         return toRet;
     }
 
+    private void addDependency(DependencyResolverRules.ExtractionRule rule, String matchedPath,
+                               Set<String> extractedPaths) {
+        logger.debug("Matched path: " + matchedPath + ". Apply transformations");
+        extractedPaths.add(rule.transform(matchedPath));
+    }
+
+    private boolean isSinglePassScanEnabled() {
+        return studioConfiguration.getProperty(CONFIGURATION_DEPENDENCY_RESOLVER_SINGLE_PASS_SCAN_ENABLED,
+                Boolean.class, false);
+    }
+
     private String getDefaultConfigLocation() {
         return getDefaultConfigPath() + FILE_SEPARATOR + getDefaultConfigFileName();
     }
@@ -291,4 +351,8 @@ public class RegexDependencyResolver implements DependencyResolver {
     public void setConfigurationService(ConfigurationService configurationService) {
         this.configurationService = configurationService;
     }
+
+    public void setConfigurationCache(Cache<String, Object> configurationCache) {
+        this.configurationCache = configurationCache;
+    }
 }
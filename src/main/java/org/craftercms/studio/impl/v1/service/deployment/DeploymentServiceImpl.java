@@ -50,6 +50,7 @@ import org.craftercms.studio.api.v2.dal.PublishRequestDAO;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.dal.Workflow;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
 import org.craftercms.studio.api.v1.service.deployment.DeploymentService;
 import org.craftercms.studio.api.v1.service.deployment.DmPublishService;
 import org.craftercms.studio.api.v1.service.event.EventService;
@@ -67,6 +68,7 @@ import org.craftercms.studio.api.v2.service.notification.NotificationService;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.service.workflow.internal.WorkflowServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.job.StudioPublisherTask;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 
 import java.time.ZoneOffset;
@@ -135,6 +137,7 @@ public class DeploymentServiceImpl implements DeploymentService {
     protected PublishingManager publishingManager;
     protected PublishRequestDAO publishRequestDAO;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected SiteJobScheduler siteJobScheduler;
 
     @Override
     @ValidateParams
@@ -198,6 +201,7 @@ public class DeploymentServiceImpl implements DeploymentService {
             retryingDatabaseOperationFacade.insertItemForDeployment(item);
         }
         itemServiceInternal.setSystemProcessingBulk(site, paths, false);
+        siteJobScheduler.wakeUp(site, StudioPublisherTask.class);
 
         // We need to pick up this on Inserting , not on execution!
         try {
@@ -344,6 +348,7 @@ public class DeploymentServiceImpl implements DeploymentService {
             }
         }
         itemServiceInternal.setSystemProcessingBulk(site, paths, false);
+        siteJobScheduler.wakeUp(site, StudioPublisherTask.class);
         try {
             siteService.updatePublishingStatus(site, QUEUED);
         } catch (SiteNotFoundException e) {
@@ -747,6 +752,7 @@ public class DeploymentServiceImpl implements DeploymentService {
         for (PublishRequest request : publishRequests) {
             retryingDatabaseOperationFacade.insertItemForDeployment(request);
         }
+        siteJobScheduler.wakeUp(site, StudioPublisherTask.class);
         logger.debug("Completed adding commits to publishing queue");
     }
 
@@ -1008,4 +1014,12 @@ public class DeploymentServiceImpl implements DeploymentService {
     public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
         this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
     }
+
+    public SiteJobScheduler getSiteJobScheduler() {
+        return siteJobScheduler;
+    }
+
+    public void setSiteJobScheduler(SiteJobScheduler siteJobScheduler) {
+        this.siteJobScheduler = siteJobScheduler;
+    }
 }
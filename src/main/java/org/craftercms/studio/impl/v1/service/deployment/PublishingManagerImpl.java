@@ -28,8 +28,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
@@ -60,6 +62,7 @@ import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.impl.v1.util.ContentUtils;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_PAGE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.dal.PublishRequest.State.PROCESSING;
 import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LIVE;
@@ -72,6 +75,7 @@ import static org.craftercms.studio.api.v2.dal.QueryParameterNames.PROCESSING_ST
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.READY_STATE;
 import static org.craftercms.studio.api.v2.dal.QueryParameterNames.SITE_ID;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_PUBLISHING_BLACKLIST_REGEX;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_BATCH_SIZE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_INDEX_FILE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED;
 
@@ -81,6 +85,7 @@ public class PublishingManagerImpl implements PublishingManager {
 
     private static final String LIVE_ENVIRONMENT = "live";
     private static final String PRODUCTION_ENVIRONMENT = "Production";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
 
     protected SiteService siteService;
     protected ContentService contentService;
@@ -103,7 +108,22 @@ public class PublishingManagerImpl implements PublishingManager {
         params.put("state", READY_FOR_LIVE);
         params.put("environment", environment);
         params.put("now", ZonedDateTime.now(ZoneOffset.UTC));
-        return publishRequestMapper.getItemsReadyForDeployment(params);
+        int batchSize = getBatchSize();
+        params.put("limit", batchSize);
+        List<PublishRequest> items = publishRequestMapper.getItemsReadyForDeployment(params);
+
+        // If the batch is full the last package could be incomplete, leave it for the next batch
+        if (items.size() == batchSize) {
+            String lastPackageId = items.get(items.size() - 1).getPackageId();
+            int end = items.size();
+            while (end > 0 && StringUtils.equals(items.get(end - 1).getPackageId(), lastPackageId)) {
+                end--;
+            }
+            if (end > 0) {
+                items = new ArrayList<>(items.subList(0, end));
+            }
+        }
+        return items;
     }
 
     @Override
@@ -278,8 +298,8 @@ public class PublishingManagerImpl implements PublishingManager {
         for (PublishRequest item : processedItems) {
             item.setState(PublishRequest.State.COMPLETED);
             item.setPublishedOn(publishedOn);
-            retryingDatabaseOperationFacade.markPublishRequestItemCompleted(item);
         }
+        updateItemsState(processedItems, PublishRequest.State.COMPLETED, publishedOn);
     }
 
     @Override
@@ -289,8 +309,8 @@ public class PublishingManagerImpl implements PublishingManager {
                                     List<PublishRequest> itemsToDeploy) throws DeploymentException {
         for (PublishRequest item : itemsToDeploy) {
             item.setState(PublishRequest.State.PROCESSING);
-            retryingDatabaseOperationFacade.updateItemDeploymentState(item);
         }
+        updateItemsState(itemsToDeploy, PublishRequest.State.PROCESSING, null);
     }
 
     @Override
@@ -300,8 +320,8 @@ public class PublishingManagerImpl implements PublishingManager {
                                List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
         for (PublishRequest item : copyToEnvironmentItems) {
             item.setState(READY_FOR_LIVE);
-            retryingDatabaseOperationFacade.updateItemDeploymentState(item);
         }
+        updateItemsState(copyToEnvironmentItems, READY_FOR_LIVE, null);
     }
 
     @Override
@@ -311,7 +331,21 @@ public class PublishingManagerImpl implements PublishingManager {
                                  List<PublishRequest> copyToEnvironmentItems) throws DeploymentException {
         for (PublishRequest item : copyToEnvironmentItems) {
             item.setState(PublishRequest.State.BLOCKED);
-            retryingDatabaseOperationFacade.updateItemDeploymentState(item);
+        }
+        updateItemsState(copyToEnvironmentItems, PublishRequest.State.BLOCKED, null);
+    }
+
+    /**
+     * Updates the state of the given items using one statement per batch
+     */
+    protected void updateItemsState(List<PublishRequest> items, String state, ZonedDateTime publishedOn) {
+        List<Long> ids = items.stream().map(PublishRequest::getId).collect(Collectors.toList());
+        for (List<Long> batch : ListUtils.partition(ids, getBatchSize())) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", batch);
+            params.put("state", state);
+            params.put("publishedOn", publishedOn);
+            retryingDatabaseOperationFacade.updateItemsDeploymentState(params);
         }
     }
 
@@ -326,7 +360,7 @@ public class PublishingManagerImpl implements PublishingManager {
 
         if (StringUtils.equals(item.getAction(), PublishRequest.Action.NEW) ||
                 StringUtils.equals(item.getAction(), PublishRequest.Action.MOVE)) {
-            if (ContentUtils.matchesPatterns(path, servicesConfig.getPagePatterns(site))) {
+            if (servicesConfig.getPathClassifier(site).matches(CONTENT_TYPE_PAGE, path)) {
                 Path p = Paths.get(path);
                 List<Path> parts = new LinkedList<>();
                 if (Objects.nonNull(p.getParent())) {
@@ -489,6 +523,10 @@ public class PublishingManagerImpl implements PublishingManager {
         return studioConfiguration.getProperty(PUBLISHING_MANAGER_INDEX_FILE);
     }
 
+    public int getBatchSize() {
+        return studioConfiguration.getProperty(PUBLISHING_MANAGER_BATCH_SIZE, Integer.class, DEFAULT_BATCH_SIZE);
+    }
+
     public boolean isEnablePublishingWithoutDependencies() {
         boolean toReturn = Boolean.parseBoolean(studioConfiguration.getProperty(
                 PUBLISHING_MANAGER_PUBLISHING_WITHOUT_DEPENDENCIES_ENABLED));
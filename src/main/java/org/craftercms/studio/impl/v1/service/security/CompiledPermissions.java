@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.security;
+
+import org.apache.commons.collections4.MapUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.to.PermissionsConfigTO;
+import org.dom4j.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PERMISSION_VALUE_READ;
+import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ATTR_REGEX;
+import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS;
+
+/**
+ * Immutable version of the rules in a {@link PermissionsConfigTO}, built once for each loaded configuration.
+ *
+ * <p>The regular expressions are compiled and the permission names extracted from the XML nodes ahead of time. The
+ * rules of each role are sorted so the ones granting more permissions are tried first, since the result is the union
+ * of all matching rules a rule can be skipped without evaluating its regex once all its permissions are granted.</p>
+ *
+ * <p>The fallbacks are the same used by the original evaluation: if there are no rules for the scope the ones for
+ * {@code *} are used, if there are no rules for the role the ones for the {@code *} role are used and if none of
+ * them exist the role only gets {@code read}.</p>
+ *
+ * @since 4.0
+ */
+public class CompiledPermissions {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledPermissions.class);
+
+    public static final String ANY = "*";
+
+    /**
+     * Rules by scope (site id or global) and role
+     */
+    protected final Map<String, Map<String, List<Rule>>> rules;
+
+    protected CompiledPermissions(Map<String, Map<String, List<Rule>>> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles the permissions from the given configuration
+     * @param config the loaded configuration
+     * @return the compiled permissions
+     */
+    public static CompiledPermissions compile(PermissionsConfigTO config) {
+        Map<String, Map<String, List<Rule>>> rules = new HashMap<>();
+        if (config != null && MapUtils.isNotEmpty(config.getPermissions())) {
+            config.getPermissions().forEach((scope, roles) -> {
+                Map<String, List<Rule>> compiledRoles = new HashMap<>();
+                if (roles != null) {
+                    roles.forEach((role, nodes) -> compiledRoles.put(role, compileRules(scope, role, nodes)));
+                }
+                rules.put(scope, unmodifiableMap(compiledRoles));
+            });
+        }
+        return new CompiledPermissions(unmodifiableMap(rules));
+    }
+
+    protected static List<Rule> compileRules(String scope, String role, List<Node> nodes) {
+        if (nodes == null) {
+            return Collections.emptyList();
+        }
+        List<Rule> rules = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            String regex = node.valueOf(DOCUMENT_ATTR_REGEX);
+            Set<String> permissions = new HashSet<>();
+            for (Node permissionNode : node.selectNodes(DOCUMENT_ELM_ALLOWED_PERMISSIONS)) {
+                permissions.add(permissionNode.getText().toLowerCase());
+            }
+            try {
+                rules.add(new Rule(Pattern.compile(regex), unmodifiableSet(permissions)));
+            } catch (PatternSyntaxException e) {
+                logger.error("Invalid regex {0} for role {1} in {2}, the rule will be ignored", e, regex, role,
+                        scope);
+            }
+        }
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.permissions.size()).reversed());
+        return unmodifiableList(rules);
+    }
+
+    /**
+     * Returns the permissions granted to the given roles for a path
+     * @param scope the site id or the global scope
+     * @param path the path to check
+     * @param roles the roles of the user
+     * @return the permissions
+     */
+    public Set<String> getPermissions(String scope, String path, Set<String> roles) {
+        Set<String> permissions = new HashSet<>();
+        if (roles == null || roles.isEmpty()) {
+            // If user or group did not match the roles-mapping file
+            permissions.add(PERMISSION_VALUE_READ);
+            return permissions;
+        }
+
+        Map<String, List<Rule>> scopeRules = rules.get(scope);
+        if (MapUtils.isEmpty(scopeRules)) {
+            scopeRules = rules.get(ANY);
+        }
+        if (MapUtils.isEmpty(scopeRules)) {
+            // If no default site is set
+            permissions.add(PERMISSION_VALUE_READ);
+            return permissions;
+        }
+
+        // Several roles can fallback to the same rules, evaluate each list only once
+        Map<List<Rule>, Boolean> evaluated = new IdentityHashMap<>();
+        for (String role : roles) {
+            List<Rule> roleRules = scopeRules.get(role);
+            if (roleRules == null || roleRules.isEmpty()) {
+                roleRules = scopeRules.get(ANY);
+            }
+            if (roleRules == null || roleRules.isEmpty()) {
+                // If no default role is set
+                permissions.add(PERMISSION_VALUE_READ);
+            } else if (evaluated.put(roleRules, Boolean.TRUE) == null) {
+                for (Rule rule : roleRules) {
+                    if (!permissions.containsAll(rule.permissions) && rule.pattern.matcher(path).matches()) {
+                        permissions.addAll(rule.permissions);
+                    }
+                }
+            }
+        }
+        return permissions;
+    }
+
+    protected static class Rule {
+
+        protected final Pattern pattern;
+        protected final Set<String> permissions;
+
+        protected Rule(Pattern pattern, Set<String> permissions) {
+            this.pattern = pattern;
+            this.permissions = permissions;
+        }
+
+    }
+
+}
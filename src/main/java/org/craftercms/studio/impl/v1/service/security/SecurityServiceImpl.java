@@ -17,9 +17,11 @@
 package org.craftercms.studio.impl.v1.service.security;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.validation.annotations.param.ValidateParams;
 import org.craftercms.commons.validation.annotations.param.ValidateSecurePathParam;
 import org.craftercms.commons.validation.annotations.param.ValidateStringParam;
@@ -78,6 +80,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.craftercms.studio.api.v1.constant.SecurityConstants.KEY_EMAIL;
@@ -112,6 +115,11 @@ public class SecurityServiceImpl implements SecurityService {
 
     private static final Logger logger = LoggerFactory.getLogger(SecurityServiceImpl.class);
 
+    /**
+     * Name of the request attribute used to keep the permissions already resolved during the current request
+     */
+    public static final String REQUEST_PERMISSIONS_ATTRIBUTE = SecurityServiceImpl.class.getName() + ".permissions";
+
     protected ContentTypeService contentTypeService;
     protected ContentService contentService;
     protected GeneralLockService generalLockService;
@@ -127,6 +135,12 @@ public class SecurityServiceImpl implements SecurityService {
 
     protected Cache<String, PermissionsConfigTO> cache;
 
+    /**
+     * Compiled rules for each loaded configuration, entries are removed when the configuration leaves the cache
+     */
+    protected Cache<PermissionsConfigTO, CompiledPermissions> compiledPermissions =
+            CacheBuilder.newBuilder().weakKeys().build();
+
     @Override
     public String getCurrentUser() {
         String username = null;
@@ -205,6 +219,36 @@ public class SecurityServiceImpl implements SecurityService {
     public Set<String> getUserPermissions(@ValidateStringParam(name = "site") final String site,
                                           @ValidateSecurePathParam(name = "path") String path,
                                           @ValidateStringParam(name = "user") String user, List<String> groups) {
+        // The same checks are usually repeated several times while handling a single request
+        Map<String, Set<String>> requestPermissions = getRequestPermissions();
+        if (requestPermissions == null) {
+            return resolveUserPermissions(site, path, user, groups);
+        }
+        String key = site + ":" + path + ":" + user + ":" + groups;
+        Set<String> permissions = requestPermissions.get(key);
+        if (permissions == null) {
+            permissions = resolveUserPermissions(site, path, user, groups);
+            requestPermissions.put(key, permissions);
+        }
+        return new HashSet<>(permissions);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<String, Set<String>> getRequestPermissions() {
+        RequestContext context = RequestContext.getCurrent();
+        if (context == null || context.getRequest() == null) {
+            return null;
+        }
+        var request = context.getRequest();
+        var permissions = (Map<String, Set<String>>) request.getAttribute(REQUEST_PERMISSIONS_ATTRIBUTE);
+        if (permissions == null) {
+            permissions = new ConcurrentHashMap<>();
+            request.setAttribute(REQUEST_PERMISSIONS_ATTRIBUTE, permissions);
+        }
+        return permissions;
+    }
+
+    protected Set<String> resolveUserPermissions(String site, String path, String user, List<String> groups) {
         Set<String> permissions = new HashSet<String>();
         if (StringUtils.isNotEmpty(site)) {
             PermissionsConfigTO rolesConfig = loadConfiguration(site, getRoleMappingsFileName());
@@ -276,53 +320,17 @@ public class SecurityServiceImpl implements SecurityService {
 
     protected Set<String> populateUserGlobalPermissions(String path, Set<String> roles,
                                                   PermissionsConfigTO permissionsConfig) {
-        Set<String> permissions = new HashSet<String>();
-        if (roles != null && !roles.isEmpty()) {
-            for (String role : roles) {
-                Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
-                Map<String, List<Node>> siteRoles = permissionsMap.get("###GLOBAL###");
-                if (siteRoles == null || siteRoles.isEmpty()) {
-                    siteRoles = permissionsMap.get("*");
-                }
-                if (siteRoles != null && !siteRoles.isEmpty()) {
-                    List<Node> ruleNodes = siteRoles.get(role);
-                    if (ruleNodes == null || ruleNodes.isEmpty()) {
-                        ruleNodes = siteRoles.get("*");
-                    }
-                    if (ruleNodes != null && !ruleNodes.isEmpty()) {
-                        for (Node ruleNode : ruleNodes) {
-                            String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
-                            if (path.matches(regex)) {
-                                logger.debug("Global permissions found by matching " + regex + " for " + role);
-
-                                List<Node> permissionNodes =
-                                        ruleNode.selectNodes(StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
-                                for (Node permissionNode : permissionNodes) {
-                                    String permission = permissionNode.getText().toLowerCase();
-                                    logger.debug("adding global permissions " + permission + " to " + path
-                                            + " for " + role);
-                                    permissions.add(permission);
-                                }
-                            }
-                        }
-                    } else {
-                        logger.debug("No default role is set. adding default permission: "
-                                + StudioConstants.PERMISSION_VALUE_READ);
-                        // If no default role is set
-                        permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                    }
-                } else {
-                    logger.debug("No default site is set. adding default permission: "
-                            + StudioConstants.PERMISSION_VALUE_READ);
-                    // If no default site is set
-                    permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                }
-            }
-        } else {
-            logger.debug("No user or group matching found. adding default permission: "
-                    + StudioConstants.PERMISSION_VALUE_READ);
-            // If user or group did not match the roles-mapping file
-            permissions.add(StudioConstants.PERMISSION_VALUE_READ);
+        return getCompiledPermissions(permissionsConfig).getPermissions("###GLOBAL###", path, roles);
+    }
+
+    protected CompiledPermissions getCompiledPermissions(PermissionsConfigTO permissionsConfig) {
+        if (permissionsConfig == null) {
+            return CompiledPermissions.compile(null);
+        }
+        CompiledPermissions permissions = compiledPermissions.getIfPresent(permissionsConfig);
+        if (permissions == null) {
+            permissions = CompiledPermissions.compile(permissionsConfig);
+            compiledPermissions.put(permissionsConfig, permissions);
         }
         return permissions;
     }
@@ -441,56 +449,7 @@ public class SecurityServiceImpl implements SecurityService {
      */
     protected Set<String> populateUserPermissions(String site, String path, Set<String> roles,
                                                   PermissionsConfigTO permissionsConfig) {
-        Set<String> permissions = new HashSet<String>();
-        if (roles != null && !roles.isEmpty()) {
-            for (String role : roles) {
-                Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
-                Map<String, List<Node>> siteRoles = permissionsMap.get(site);
-                if (siteRoles == null || siteRoles.isEmpty()) {
-                    siteRoles = permissionsMap.get("*");
-                }
-                if (siteRoles != null && !siteRoles.isEmpty()) {
-                    List<Node> ruleNodes = siteRoles.get(role);
-                    if (ruleNodes == null || ruleNodes.isEmpty()) {
-                        ruleNodes = siteRoles.get("*");
-                    }
-                    if (ruleNodes != null && !ruleNodes.isEmpty()) {
-                        for (Node ruleNode : ruleNodes) {
-                            String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
-                            if (path.matches(regex)) {
-                                logger.debug("Permissions found by matching " + regex + " for " + role
-                                        + " in " + site);
-
-                                List<Node> permissionNodes = ruleNode.selectNodes(
-                                        StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
-                                for (Node permissionNode : permissionNodes) {
-                                    String permission = permissionNode.getText().toLowerCase();
-                                    logger.debug("adding permissions " + permission + " to " + path + " for "
-                                            + role + " in " + site);
-                                    permissions.add(permission);
-                                }
-                            }
-                        }
-                    } else {
-                        logger.debug("No default role is set. adding default permission: "
-                                + StudioConstants.PERMISSION_VALUE_READ);
-                        // If no default role is set
-                        permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                    }
-                } else {
-                    logger.debug("No default site is set. adding default permission: "
-                            + StudioConstants.PERMISSION_VALUE_READ);
-                    // If no default site is set
-                    permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-                }
-            }
-        } else {
-            logger.debug("No user or group matching found. adding default permission: "
-                    + StudioConstants.PERMISSION_VALUE_READ);
-            // If user or group did not match the roles-mapping file
-            permissions.add(StudioConstants.PERMISSION_VALUE_READ);
-        }
-        return permissions;
+        return getCompiledPermissions(permissionsConfig).getPermissions(site, path, roles);
     }
 
     protected PermissionsConfigTO loadConfiguration(String site, String filename) {
@@ -608,8 +567,12 @@ public class SecurityServiceImpl implements SecurityService {
 
     protected PermissionsConfigTO loadGlobalRolesConfiguration() {
         String globalRolesConfigPath = getGlobalConfigPath() + FILE_SEPARATOR + getGlobalRoleMappingsFileName();
+        String cacheKey = configurationService.getCacheKey(null, null, globalRolesConfigPath, null, "object");
+        PermissionsConfigTO config = cache.getIfPresent(cacheKey);
+        if (config != null) {
+            return config;
+        }
         Document document = null;
-        PermissionsConfigTO config = null;
         try {
             document = configurationService.getGlobalConfigurationAsDocument(globalRolesConfigPath);
         } catch (ServiceLayerException e) {
@@ -627,6 +590,8 @@ public class SecurityServiceImpl implements SecurityService {
             config.setKey(globalRolesKey);
             config.setLastUpdated(ZonedDateTime.now(ZoneOffset.UTC));
 
+            cache.put(cacheKey, config);
+
         } else {
             logger.error("Global roles mapping not found (path: {0})", globalRolesConfigPath);
         }
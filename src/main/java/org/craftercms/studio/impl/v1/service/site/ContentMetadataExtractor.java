@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v1.service.site;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v2.repository.ContentRepository;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
+import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.craftercms.studio.api.v1.constant.DmConstants.ROOT_PATTERN_ASSETS;
+import static org.craftercms.studio.api.v1.constant.DmConstants.ROOT_PATTERN_PAGES;
+import static org.craftercms.studio.api.v1.constant.DmConstants.XML_PATTERN;
+import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_CONTENT_TYPE;
+import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_DISABLED;
+import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_INTERNAL_TITLE;
+
+/**
+ * Extracts the metadata needed to write items to the database for a batch of files.
+ *
+ * <p>All the files of a batch are read from a single {@link ContentSnapshot} and processed in parallel on a bounded
+ * pool. XML files are read with a streaming parser that stops as soon as the internal name, content type and disabled
+ * flag have been found, instead of building the whole document.</p>
+ *
+ * @since 4.0
+ */
+public class ContentMetadataExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentMetadataExtractor.class);
+
+    protected ContentRepository contentRepository;
+    protected ContentService contentService;
+    protected ItemServiceInternal itemServiceInternal;
+
+    /**
+     * Max number of files processed at the same time
+     */
+    protected int parallelism = 4;
+
+    /**
+     * Number of files to extract from each snapshot
+     */
+    protected int batchSize = 1000;
+
+    protected ForkJoinPool pool;
+
+    protected final XMLInputFactory xmlInputFactory;
+
+    public ContentMetadataExtractor() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public void init() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Extracts the metadata of a batch of files, all of them are read from the last commit of the site
+     * @param site the site id
+     * @param paths the paths of the files
+     * @return the metadata for each path, in the same order as the given paths
+     */
+    public Map<String, ContentMetadata> extract(String site, Collection<String> paths) {
+        Map<String, ContentMetadata> result = new LinkedHashMap<>();
+        if (paths.isEmpty()) {
+            return result;
+        }
+        long startExtractMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
+        ContentSnapshot snapshot = contentRepository.getContentSnapshot(site, paths);
+        List<Callable<ContentMetadata>> tasks = new ArrayList<>();
+        for (String path : new LinkedHashSet<>(paths)) {
+            tasks.add(() -> extract(site, path, snapshot));
+        }
+        try {
+            for (Future<ContentMetadata> future : pool.invokeAll(tasks)) {
+                ContentMetadata metadata = future.get();
+                result.put(metadata.getPath(), metadata);
+            }
+        } catch (InterruptedException e) {
+            // Missing paths will be extracted on demand by the caller
+            logger.error("Interrupted while extracting metadata for site " + site, e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Error extracting metadata for site " + site, e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Metadata extraction of " + result.size() + " files for site " + site + " finished in " +
+                    (System.currentTimeMillis() - startExtractMark) + " milliseconds");
+        }
+        return result;
+    }
+
+    /**
+     * Extracts the metadata of a single file from the last commit of the site
+     * @param site the site id
+     * @param path the path of the file
+     * @return the metadata
+     */
+    public ContentMetadata extract(String site, String path) {
+        return extract(site, path, contentRepository.getContentSnapshot(site, Collections.singletonList(path)));
+    }
+
+    protected ContentMetadata extract(String site, String path, ContentSnapshot snapshot) {
+        ContentMetadata metadata = new ContentMetadata(path);
+        metadata.label = FilenameUtils.getName(path);
+        metadata.contentTypeId = StringUtils.EMPTY;
+        if (StringUtils.endsWith(path, XML_PATTERN)) {
+            try (InputStream is = snapshot.getContent(path)) {
+                if (is != null) {
+                    readXmlMetadata(is, metadata);
+                }
+            } catch (IOException | XMLStreamException e) {
+                logger.error("Error extracting metadata from xml file " + site + ":" + path);
+            }
+        }
+        if (StringUtils.startsWith(path, ROOT_PATTERN_PAGES) || StringUtils.startsWith(path, ROOT_PATTERN_ASSETS)) {
+            metadata.previewUrl = itemServiceInternal.getBrowserUrl(site, path);
+        }
+        metadata.systemType = contentService.getContentTypeClass(site, path);
+        metadata.mimeType = StudioUtils.getMimeType(FilenameUtils.getName(path));
+        metadata.size = snapshot.getContentSize(path);
+        return metadata;
+    }
+
+    /**
+     * Reads the direct children of the root element until all the required values are found
+     */
+    protected void readXmlMetadata(InputStream is, ContentMetadata metadata) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(is);
+        try {
+            String internalName = null;
+            String contentType = null;
+            String disabled = null;
+            int depth = 0;
+            while (reader.hasNext() && (internalName == null || contentType == null || disabled == null)) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (++depth == 2) {
+                        String name = reader.getLocalName();
+                        if (internalName == null && DOCUMENT_ELM_INTERNAL_TITLE.equals(name)) {
+                            internalName = readText(reader);
+                            depth--;
+                        } else if (contentType == null && DOCUMENT_ELM_CONTENT_TYPE.equals(name)) {
+                            contentType = readText(reader);
+                            depth--;
+                        } else if (disabled == null && DOCUMENT_ELM_DISABLED.equals(name)) {
+                            disabled = readText(reader);
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && --depth == 0) {
+                    break;
+                }
+            }
+            if (StringUtils.isNotEmpty(internalName)) {
+                metadata.label = internalName;
+            }
+            metadata.contentTypeId = StringUtils.defaultString(contentType);
+            metadata.disabled = Boolean.parseBoolean(disabled);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the text of the current element, including the text of nested elements, and moves the reader to the
+     * end of the element
+     */
+    protected String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    public void setContentRepository(ContentRepository contentRepository) {
+        this.contentRepository = contentRepository;
+    }
+
+    public void setContentService(ContentService contentService) {
+        this.contentService = contentService;
+    }
+
+    public void setItemServiceInternal(ItemServiceInternal itemServiceInternal) {
+        this.itemServiceInternal = itemServiceInternal;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Metadata of a single file
+     */
+    public static class ContentMetadata {
+
+        protected final String path;
+        protected String label;
+        protected String contentTypeId;
+        protected boolean disabled;
+        protected String previewUrl;
+        protected String systemType;
+        protected String mimeType;
+        protected long size;
+
+        public ContentMetadata(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getContentTypeId() {
+            return contentTypeId;
+        }
+
+        public boolean isDisabled() {
+            return disabled;
+        }
+
+        public String getPreviewUrl() {
+            return previewUrl;
+        }
+
+        public String getSystemType() {
+            return systemType;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+    }
+
+}
@@ -18,14 +18,15 @@ package org.craftercms.studio.impl.v1.service.site;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -93,14 +94,16 @@ import org.craftercms.studio.api.v2.dal.AuditLogParameter;
 import org.craftercms.studio.api.v2.dal.ClusterDAO;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
 import org.craftercms.studio.api.v2.dal.GitLog;
+import org.craftercms.studio.api.v2.dal.Item;
 import org.craftercms.studio.api.v2.dal.RepoOperation;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
-import org.craftercms.studio.api.v2.dal.StudioDBScriptRunner;
-import org.craftercms.studio.api.v2.dal.StudioDBScriptRunnerFactory;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriter;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriterFactory;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.dal.UserDAO;
 import org.craftercms.studio.api.v2.deployment.Deployer;
 import org.craftercms.studio.api.v2.exception.MissingPluginParameterException;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
 import org.craftercms.studio.api.v2.repository.ContentRepository;
 import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
@@ -115,24 +118,23 @@ import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.api.v2.utils.StudioUtils;
 import org.craftercms.studio.impl.v1.repository.job.RebuildRepositoryMetadata;
 import org.craftercms.studio.impl.v1.repository.job.SyncDatabaseWithRepository;
+import org.craftercms.studio.impl.v1.service.dependency.DependencyGraphCache;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor.ContentMetadata;
+import org.craftercms.studio.impl.v2.job.StudioAuditLogProcessingTask;
+import org.craftercms.studio.impl.v2.job.StudioPathHistoryIndexTask;
+import org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker;
 import org.craftercms.studio.impl.v2.service.cluster.StudioClusterUtils;
 import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static org.craftercms.studio.api.v1.constant.DmConstants.ROOT_PATTERN_ASSETS;
-import static org.craftercms.studio.api.v1.constant.DmConstants.ROOT_PATTERN_PAGES;
-import static org.craftercms.studio.api.v1.constant.DmConstants.XML_PATTERN;
+import static java.util.stream.Collectors.toList;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.DEFAULT_ORGANIZATION_ID;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.REMOTE_REPOSITORY_CREATE_OPTION_CLONE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_DEFAULT_GROUPS_DESCRIPTION;
-import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_CONTENT_TYPE;
-import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_DISABLED;
-import static org.craftercms.studio.api.v1.constant.StudioXmlConstants.DOCUMENT_ELM_INTERNAL_TITLE;
 import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_DELETED;
 import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_READY;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_ADD_REMOTE;
@@ -147,14 +149,6 @@ import static org.craftercms.studio.api.v2.dal.ItemState.NEW;
 import static org.craftercms.studio.api.v2.dal.ItemState.SAVE_AND_CLOSE_OFF_MASK;
 import static org.craftercms.studio.api.v2.dal.ItemState.SAVE_AND_CLOSE_ON_MASK;
 import static org.craftercms.studio.api.v2.dal.PublishStatus.READY;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.deleteItemRow;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.insertItemRow;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.deleteDependencyRows;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.deleteDependencySourcePathRows;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.insertDependencyRow;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.moveItemRow;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.updateItemRow;
-import static org.craftercms.studio.api.v2.utils.SqlStatementGeneratorUtils.updateParentId;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.BLUE_PRINTS_PATH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEFAULT_ADMIN_GROUP;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEFAULT_GROUPS;
@@ -203,6 +197,8 @@ public class SiteServiceImpl implements SiteService {
     protected ItemServiceInternal itemServiceInternal;
     protected StudioClusterUtils studioClusterUtils;
     protected ClusterDAO clusterDao;
+    protected ClusterRepoHeadTracker clusterRepoHeadTracker;
+    protected SiteJobScheduler siteJobScheduler;
     protected UserDAO userDao;
     protected WorkflowServiceInternal workflowServiceInternal;
 
@@ -213,8 +209,10 @@ public class SiteServiceImpl implements SiteService {
 
     protected String[] configurationPatterns;
 
-    protected StudioDBScriptRunnerFactory studioDBScriptRunnerFactory;
+    protected StudioDBBatchWriterFactory studioDBBatchWriterFactory;
+    protected ContentMetadataExtractor contentMetadataExtractor;
     protected DependencyServiceInternal dependencyServiceInternal;
+    protected DependencyGraphCache dependencyGraphCache;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
 
     /**
@@ -414,7 +412,7 @@ public class SiteServiceImpl implements SiteService {
     }
 
     private void processCreatedFiles(String siteId, Map<String, String> createdFiles, String creator,
-                                     ZonedDateTime now, String lastCommitId) {
+                                     ZonedDateTime now, String lastCommitId) throws ServiceLayerException {
         long startProcessCreatedFilesMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
         SiteFeed siteFeed = null;
         try {
@@ -430,85 +428,72 @@ public class SiteServiceImpl implements SiteService {
             logger.error("Unexpected error during creation of items. User not found " + creator, e);
             return;
         }
-        StudioDBScriptRunner studioDBScriptRunner = studioDBScriptRunnerFactory.getDBScriptRunner();
-        studioDBScriptRunner.openConnection();
+        StudioDBBatchWriter batchWriter = studioDBBatchWriterFactory.getDBBatchWriter(siteFeed.getId(), siteId);
         try {
-            String createdFileScriptFilename = "createdFiles_" + UUID.randomUUID();
-            Path createdFileScriptPath = Files.createTempFile(createdFileScriptFilename, ".sql");
-            String updateParentIdScriptFilename = "updateParentId_" + UUID.randomUUID();
-            Path updateParentIdScriptPath = Files.createTempFile(updateParentIdScriptFilename, ".sql");
+            batchWriter.openConnection();
+            Set<String> processedAncestors = new HashSet<>();
+            List<String> paths = new ArrayList<>();
             for (String key : createdFiles.keySet()) {
-                String path = key;
-                if (StringUtils.equals("D", createdFiles.get(path))) {
+                if (StringUtils.equals("D", createdFiles.get(key))) {
                     continue;
                 }
-                if (createdFiles.get(path).length() > 1) {
-                    path = createdFiles.get(path);
+                paths.add(createdFiles.get(key).length() > 1 ? createdFiles.get(key) : key);
+            }
+            Map<String, ContentMetadata> metadata = Collections.emptyMap();
+            int index = 0;
+            for (String path : paths) {
+                if (index++ % contentMetadataExtractor.getBatchSize() == 0) {
+                    metadata = contentMetadataExtractor.extract(siteId, getMetadataPaths(paths.subList(index - 1,
+                            Math.min(paths.size(), index - 1 + contentMetadataExtractor.getBatchSize()))));
                 }
 
                 // Item
-                String label = FilenameUtils.getName(path);
-                String contentTypeId = StringUtils.EMPTY;
-                boolean disabled = false;
-                if (StringUtils.endsWith(path, XML_PATTERN)) {
-                    try {
-                        Document contentDoc = contentService.getContentAsDocument(siteId, path);
-                        if (contentDoc != null) {
-                            Element rootElement = contentDoc.getRootElement();
-                            String internalName = rootElement.valueOf(DOCUMENT_ELM_INTERNAL_TITLE);
-                            if (StringUtils.isNotEmpty(internalName)) {
-                                label = internalName;
-                            }
-                            contentTypeId = rootElement.valueOf(DOCUMENT_ELM_CONTENT_TYPE);
-                            disabled = Boolean.valueOf(rootElement.valueOf(DOCUMENT_ELM_DISABLED));
-                        }
-                    } catch (DocumentException e) {
-                        logger.error("Error extracting metadata from xml file " + siteId + ":" + path);
+                processAncestors(path, userObj.getId(), now, lastCommitId, processedAncestors, batchWriter);
+                if (!ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(path))) {
+                    ContentMetadata contentMetadata = getContentMetadata(siteId, path, metadata);
+                    long state = NEW.value;
+                    if (contentMetadata.isDisabled()) {
+                        state = state | DISABLED.value;
                     }
+                    batchWriter.upsertItem(new Item.Builder()
+                            .withPath(path)
+                            .withPreviewUrl(contentMetadata.getPreviewUrl())
+                            .withState(state)
+                            .withCreatedBy(userObj.getId())
+                            .withCreatedOn(now)
+                            .withLastModifiedBy(userObj.getId())
+                            .withLastModifiedOn(now)
+                            .withLabel(contentMetadata.getLabel())
+                            .withContentTypeId(contentMetadata.getContentTypeId())
+                            .withSystemType(contentMetadata.getSystemType())
+                            .withMimeType(contentMetadata.getMimeType())
+                            .withLocaleCode(Locale.US.toString())
+                            .withSize(contentMetadata.getSize())
+                            .withCommitId(lastCommitId)
+                            .build());
+                    addDependencies(siteId, path, null, batchWriter);
                 }
-                String previewUrl = null;
-                if (StringUtils.startsWith(path, ROOT_PATTERN_PAGES) ||
-                        StringUtils.startsWith(path, ROOT_PATTERN_ASSETS)) {
-                    previewUrl = itemServiceInternal.getBrowserUrl(siteId, path);
-                }
-                processAncestors(siteFeed.getId(), path, userObj.getId(), now, lastCommitId, createdFileScriptPath);
-                long state = NEW.value;
-                if (disabled) {
-                    state = state | DISABLED.value;
-                }
-
-                if (ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(path))) {
-                    addUpdateParentIdScriptSnippets(siteFeed.getId(), path, updateParentIdScriptPath);
-                } else {
-                    Files.write(createdFileScriptPath, insertItemRow(siteFeed.getId(), path, previewUrl, state,
-                            null, userObj.getId(), now, userObj.getId(), now, null, label, contentTypeId,
-                            contentService.getContentTypeClass(siteId, path),
-                            StudioUtils.getMimeType(FilenameUtils.getName(path)), Locale.US.toString(), null,
-                            contentRepositoryV2.getContentSize(siteId, path), null, lastCommitId, null).getBytes(UTF_8),
-                            StandardOpenOption.APPEND);
-                    Files.write(createdFileScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
-
-                    addUpdateParentIdScriptSnippets(siteFeed.getId(), path, updateParentIdScriptPath);
-
-                    addDependenciesScriptSnippets(siteId, path, null, createdFileScriptPath);
-                }
+                batchWriter.updateParentId(path);
             }
 
-            studioDBScriptRunner.execute(createdFileScriptPath.toFile());
-            studioDBScriptRunner.execute(updateParentIdScriptPath.toFile());
+            batchWriter.commit();
+            dependencyGraphCache.invalidate(siteId);
             if (logger.isDebugEnabled()) {
                 logger.debug("Process created files finished in " +
                         (System.currentTimeMillis() - startProcessCreatedFilesMark) + " milliseconds");
             }
-        } catch (IOException e) {
-            logger.error("Error while creating db script file for processing created files for site " + siteId);
+        } catch (SQLException e) {
+            logger.error("Error while writing created files to the database for site " + siteId, e);
+            throw new ServiceLayerException("Error while writing created files to the database for site " +
+                    siteId, e);
         } finally {
-            studioDBScriptRunner.closeConnection();
+            batchWriter.closeConnection();
         }
     }
 
-    private void processAncestors(long siteId, String path, long userId, ZonedDateTime now, String commitId,
-                                  Path createFileScriptPath) throws IOException {
+    private void processAncestors(String path, long userId, ZonedDateTime now, String commitId,
+                                  Set<String> processedAncestors, StudioDBBatchWriter batchWriter)
+            throws SQLException {
         Path p = Paths.get(path);
         List<Path> parts = new LinkedList<>();
         if (Objects.nonNull(p.getParent())) {
@@ -519,55 +504,36 @@ public class SiteServiceImpl implements SiteService {
             for (Path ancestor : parts) {
                 if (StringUtils.isNotEmpty(ancestor.toString())) {
                     currentPath = currentPath + FILE_SEPARATOR + ancestor.toString();
-                    Files.write(createFileScriptPath, insertItemRow(siteId, currentPath, null, NEW.value, null, userId
-                            , now, userId, now, null, ancestor.toString(), null, CONTENT_TYPE_FOLDER, null,
-                            Locale.US.toString(), null, 0L, null, commitId, null).getBytes(UTF_8),
-                            StandardOpenOption.APPEND);
-                    Files.write(createFileScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+                    // Siblings share their ancestors, write each folder only once
+                    if (processedAncestors.add(currentPath)) {
+                        batchWriter.upsertItem(new Item.Builder()
+                                .withPath(currentPath)
+                                .withState(NEW.value)
+                                .withCreatedBy(userId)
+                                .withCreatedOn(now)
+                                .withLastModifiedBy(userId)
+                                .withLastModifiedOn(now)
+                                .withLabel(ancestor.toString())
+                                .withSystemType(CONTENT_TYPE_FOLDER)
+                                .withLocaleCode(Locale.US.toString())
+                                .withSize(0L)
+                                .withCommitId(commitId)
+                                .build());
+                    }
                 }
             }
         }
     }
 
-    private void addUpdateParentIdScriptSnippets(long siteId, String path, Path updateParentIdScriptPath) throws IOException {
-        String parentPath = FilenameUtils.getPrefix(path) +
-                FilenameUtils.getPathNoEndSeparator(StringUtils.replace(path, "/index.xml", ""));
-        if (StringUtils.isNotEmpty(parentPath) && !StringUtils.equals(parentPath, path)) {
-            addUpdateParentIdScriptSnippets(siteId, parentPath, updateParentIdScriptPath);
-            if (StringUtils.endsWith(path, "/index.xml")) {
-                addUpdateParentIdScriptSnippets(siteId, StringUtils.replace(path, "/index.xml", ""), updateParentIdScriptPath);
-            }
-            Files.write(updateParentIdScriptPath, updateParentId(siteId, path, parentPath).getBytes(UTF_8),
-                    StandardOpenOption.APPEND);
-            Files.write(updateParentIdScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
-        }
-    }
-
-    private void addDependenciesScriptSnippets(String siteId, String path, String oldPath, Path file) throws IOException {
+    private void addDependencies(String siteId, String path, String oldPath, StudioDBBatchWriter batchWriter)
+            throws SQLException {
         long startDependencyResolver = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
         Map<String, Set<String>> dependencies = dependencyServiceInternal.resolveDependnecies(siteId, path);
         if (logger.isDebugEnabled()) {
             logger.debug("Dependency resolver for " + path + " finished in " +
                     (System.currentTimeMillis() - startDependencyResolver) + " milliseconds");
         }
-        if (StringUtils.isEmpty(oldPath)) {
-            Files.write(file, deleteDependencySourcePathRows(siteId, path).getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.APPEND);
-            Files.write(file, "\n\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
-        } else {
-            Files.write(file, deleteDependencySourcePathRows(siteId, oldPath).getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.APPEND);
-            Files.write(file, "\n\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
-        }
-        if (Objects.nonNull(dependencies) && !dependencies.isEmpty()) {
-            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
-                for (String targetPath : entry.getValue()) {
-                    Files.write(file, insertDependencyRow(siteId, path, targetPath, entry.getKey())
-                            .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
-                    Files.write(file, "\n\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
-                }
-            }
-        }
+        batchWriter.replaceDependencies(StringUtils.isEmpty(oldPath) ? path : oldPath, path, dependencies);
     }
 
     protected boolean createSiteFromBlueprintGit(String blueprintLocation, String siteId, String sandboxBranch,
@@ -995,6 +961,7 @@ public class SiteServiceImpl implements SiteService {
                 SiteFeed siteFeed = getSite(site);
                 retryingDatabaseOperationFacade.updateClusterNodeLastCommitId(clusterMember.getId(), siteFeed.getId(),
                         commitId);
+                clusterRepoHeadTracker.recordLocalHead(clusterMember.getId(), site, SANDBOX);
             }
         } catch (SiteNotFoundException e) {
             logger.error("Site not found " + site);
@@ -1002,6 +969,8 @@ public class SiteServiceImpl implements SiteService {
             generalLockService.unlock(lockKey);
         }
 
+        siteJobScheduler.wakeUp(site, StudioAuditLogProcessingTask.class);
+        siteJobScheduler.wakeUp(site, StudioPathHistoryIndexTask.class);
     }
 
     @Override
@@ -1048,45 +1017,52 @@ public class SiteServiceImpl implements SiteService {
                                                           List<GitLog> commitIds) throws IOException {
         boolean toReturn = true;
         String repoLastCommitId = contentRepository.getRepoLastCommitId(site);
-        String repoOperationsScriptFilename = "repoOperations_" + UUID.randomUUID();
-        Path repoOperationsScriptPath = Files.createTempFile(repoOperationsScriptFilename, ".sql");
-        String updateParentIdScriptFilename = "updateParentId_" + UUID.randomUUID();
-        Path updateParentIdScriptPath = Files.createTempFile(updateParentIdScriptFilename, ".sql");
+        SiteFeed siteFeed;
+        try {
+            siteFeed = getSite(site);
+        } catch (SiteNotFoundException e) {
+            logger.error("Unexpected error during sync of unprocessed commits. Site not found " + site, e);
+            return false;
+        }
         boolean success = true;
         long startUpdateDBMark = 0;
         List<String> cIds = new ArrayList<String>();
-        for (GitLog gitLog : commitIds) {
-            String commitId = gitLog.getCommitId();
-            long startGetOperationsFromDeltaMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0;
-            List<RepoOperation> repoOperationsDelta =
-                    contentRepositoryV2.getOperationsFromDelta(site, commitId + PREVIOUS_COMMIT_SUFFIX, commitId);
-            if (logger.isDebugEnabled()) {
-                logger.debug("Get Repo Operations from Delta finished in " +
-                        (System.currentTimeMillis() - startGetOperationsFromDeltaMark) + " milliseconds");
-                logger.debug("Number of Repo operations from delta " + repoOperationsDelta.size());
-            }
-            if (!CollectionUtils.isEmpty(repoOperationsDelta)) {
-                logger.debug("Syncing database with repository for site: " + site + " commitId = " + commitId);
-                logger.debug("Operations to sync: ");
+        StudioDBBatchWriter batchWriter = studioDBBatchWriterFactory.getDBBatchWriter(siteFeed.getId(), site);
+        try {
+            batchWriter.openConnection();
+            for (GitLog gitLog : commitIds) {
+                String commitId = gitLog.getCommitId();
+                long startGetOperationsFromDeltaMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0;
+                List<RepoOperation> repoOperationsDelta =
+                        contentRepositoryV2.getOperationsFromDelta(site, commitId + PREVIOUS_COMMIT_SUFFIX, commitId);
                 if (logger.isDebugEnabled()) {
-                    for (RepoOperation repoOperation : repoOperationsDelta) {
-                        logger.debug("\tOperation: " + repoOperation.getAction().toString() + " " + repoOperation.getPath());
-                    }
+                    logger.debug("Get Repo Operations from Delta finished in " +
+                            (System.currentTimeMillis() - startGetOperationsFromDeltaMark) + " milliseconds");
+                    logger.debug("Number of Repo operations from delta " + repoOperationsDelta.size());
                 }
-                startUpdateDBMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0;
+                if (!CollectionUtils.isEmpty(repoOperationsDelta)) {
+                    logger.debug("Syncing database with repository for site: " + site + " commitId = " + commitId);
+                    logger.debug("Operations to sync: ");
+                    if (logger.isDebugEnabled()) {
+                        for (RepoOperation repoOperation : repoOperationsDelta) {
+                            logger.debug("\tOperation: " + repoOperation.getAction().toString() + " " +
+                                    repoOperation.getPath());
+                        }
+                    }
+                    startUpdateDBMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0;
 
-                success = processRepoOperations(site, repoOperationsDelta, repoOperationsScriptPath,
-                        updateParentIdScriptPath);
+                    success = processRepoOperations(site, repoOperationsDelta, batchWriter);
+                }
+                toReturn = toReturn && success;
             }
-            toReturn = toReturn && success;
-        }
-        StudioDBScriptRunner studioDBScriptRunner = studioDBScriptRunnerFactory.getDBScriptRunner();
-        try {
-            studioDBScriptRunner.openConnection();
-            studioDBScriptRunner.execute(repoOperationsScriptPath.toFile());
-            studioDBScriptRunner.execute(updateParentIdScriptPath.toFile());
+            batchWriter.commit();
+            dependencyGraphCache.invalidate(site);
+        } catch (SQLException e) {
+            logger.error("Error while writing unprocessed commits to the database for site " + site, e);
+            success = false;
+            toReturn = false;
         } finally {
-            studioDBScriptRunner.closeConnection();
+            batchWriter.closeConnection();
         }
 
         // At this point we have attempted to process all operations, some may have failed
@@ -1159,21 +1135,18 @@ public class SiteServiceImpl implements SiteService {
         }
 
         long startUpdateDBMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
-        StudioDBScriptRunner studioDBScriptRunner = studioDBScriptRunnerFactory.getDBScriptRunner();
+        SiteFeed siteFeed = getSite(site);
+        StudioDBBatchWriter batchWriter = studioDBBatchWriterFactory.getDBBatchWriter(siteFeed.getId(), site);
         try {
-            studioDBScriptRunner.openConnection();
-            String repoOperationsScriptFilename = "repoOperations_" + UUID.randomUUID();
-            Path repoOperationsScriptPath = Files.createTempFile(repoOperationsScriptFilename, ".sql");
-            String updateParentIdScriptFilename = "updateParentId_" + UUID.randomUUID();
-            Path updateParentIdScriptPath = Files.createTempFile(updateParentIdScriptFilename, ".sql");
-            toReturn = processRepoOperations(site, repoOperationsDelta, repoOperationsScriptPath,
-                    updateParentIdScriptPath);
-            studioDBScriptRunner.execute(repoOperationsScriptPath.toFile());
-            studioDBScriptRunner.execute(updateParentIdScriptPath.toFile());
-        } catch (IOException e) {
-            logger.error("Error while creating DB script file for processing created files for site " + site);
+            batchWriter.openConnection();
+            toReturn = processRepoOperations(site, repoOperationsDelta, batchWriter);
+            batchWriter.commit();
+            dependencyGraphCache.invalidate(site);
+        } catch (SQLException e) {
+            logger.error("Error while writing repository operations to the database for site " + site, e);
+            toReturn = false;
         } finally {
-            studioDBScriptRunner.closeConnection();
+            batchWriter.closeConnection();
         }
         if (logger.isDebugEnabled()) {
             logger.debug("Update DB finished in " + (System.currentTimeMillis() - startUpdateDBMark) + " milliseconds");
@@ -1210,16 +1183,10 @@ public class SiteServiceImpl implements SiteService {
     }
 
     private boolean processRepoOperations(String siteId, List<RepoOperation> repoOperations,
-                                          Path repoOperationsScriptPath, Path updateParentIdScriptPath) throws IOException {
+                                          StudioDBBatchWriter batchWriter) throws SQLException {
         boolean toReturn = true;
         long startProcessRepoOperationMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
-        SiteFeed siteFeed = null;
-        try {
-            siteFeed = getSite(siteId);
-        } catch (SiteNotFoundException e) {
-            logger.error("Unexpected error during creation of items. Site not found " + siteId, e);
-            return false;
-        }
+        Set<String> processedAncestors = new HashSet<>();
         User userObj = null;
         Map<String, User> cachedUsers = new HashMap<String, User>();
         try {
@@ -1228,14 +1195,18 @@ public class SiteServiceImpl implements SiteService {
             logger.error("Unexpected error. Git repo user should be in DB", e);
         }
 
-        String label;
-        String contentTypeId;
-        String previewUrl;
-        boolean disabled = false;
+        ContentMetadata contentMetadata;
         long state;
         long onStateBitMap;
         long offStateBitmap;
+        Map<String, ContentMetadata> metadata = Collections.emptyMap();
+        int index = 0;
         for (RepoOperation repoOperation : repoOperations) {
+            if (index++ % contentMetadataExtractor.getBatchSize() == 0) {
+                // Extract the metadata of the next batch at once, it is applied below in the same order
+                metadata = contentMetadataExtractor.extract(siteId, getMetadataPaths(repoOperations.subList(index - 1,
+                        Math.min(repoOperations.size(), index - 1 + contentMetadataExtractor.getBatchSize()))));
+            }
             switch (repoOperation.getAction()) {
                 case CREATE:
                 case COPY:
@@ -1251,58 +1222,35 @@ public class SiteServiceImpl implements SiteService {
                     if (Objects.isNull(userObj)) {
                         userObj = cachedUsers.get(GIT_REPO_USER_USERNAME);
                     }
-                    label = FilenameUtils.getName(repoOperation.getPath());
-                    contentTypeId = StringUtils.EMPTY;
-                    disabled = false;
-                    if (StringUtils.endsWith(repoOperation.getPath(), XML_PATTERN)) {
-                        try {
-                            Document contentDoc = contentService.getContentAsDocument(siteId, repoOperation.getPath());
-                            if (contentDoc != null) {
-                                Element rootElement = contentDoc.getRootElement();
-                                String internalName = rootElement.valueOf(DOCUMENT_ELM_INTERNAL_TITLE);
-                                if (StringUtils.isNotEmpty(internalName)) {
-                                    label = internalName;
-                                }
-                                contentTypeId = rootElement.valueOf(DOCUMENT_ELM_CONTENT_TYPE);
-                                disabled = Boolean.valueOf(rootElement.valueOf(DOCUMENT_ELM_DISABLED));
-                            }
-                        } catch (DocumentException e) {
-                            logger.error("Error extracting metadata from xml file " + siteId + ":" + repoOperation.getPath());
+                    processAncestors(repoOperation.getPath(), userObj.getId(), repoOperation.getDateTime(),
+                            repoOperation.getCommitId(), processedAncestors, batchWriter);
+                    if (!ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath()))) {
+                        contentMetadata = getContentMetadata(siteId, repoOperation.getPath(), metadata);
+                        state = NEW.value;
+                        if (contentMetadata.isDisabled()) {
+                            state = state | DISABLED.value;
                         }
-                    }
-                    previewUrl = null;
-                    if (StringUtils.startsWith(repoOperation.getPath(), ROOT_PATTERN_PAGES) ||
-                            StringUtils.startsWith(repoOperation.getPath(), ROOT_PATTERN_ASSETS)) {
-                        previewUrl = itemServiceInternal.getBrowserUrl(siteId, repoOperation.getPath());
-                    }
-                    processAncestors(siteFeed.getId(), repoOperation.getPath(), userObj.getId(),
-                            repoOperation.getDateTime(), repoOperation.getCommitId(), repoOperationsScriptPath);
-                    state = NEW.value;
-                    if (disabled) {
-                        state = state | DISABLED.value;
-                    }
-
-                    if (ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath()))) {
-                        addUpdateParentIdScriptSnippets(siteFeed.getId(), repoOperation.getPath(),
-                                updateParentIdScriptPath);
-                    } else {
-                        Files.write(repoOperationsScriptPath, insertItemRow(siteFeed.getId(),
-                                repoOperation.getPath(), previewUrl, state, null, userObj.getId(),
-                                repoOperation.getDateTime(), userObj.getId(), repoOperation.getDateTime(),
-                                null, label, contentTypeId,
-                                contentService.getContentTypeClass(siteId, repoOperation.getPath()),
-                                StudioUtils.getMimeType(FilenameUtils.getName(repoOperation.getPath())),
-                                Locale.US.toString(), null,
-                                contentRepositoryV2.getContentSize(siteId, repoOperation.getPath()), null,
-                                repoOperation.getCommitId(), null).getBytes(UTF_8), StandardOpenOption.APPEND);
-                        Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+                        batchWriter.upsertItem(new Item.Builder()
+                                .withPath(repoOperation.getPath())
+                                .withPreviewUrl(contentMetadata.getPreviewUrl())
+                                .withState(state)
+                                .withCreatedBy(userObj.getId())
+                                .withCreatedOn(repoOperation.getDateTime())
+                                .withLastModifiedBy(userObj.getId())
+                                .withLastModifiedOn(repoOperation.getDateTime())
+                                .withLabel(contentMetadata.getLabel())
+                                .withContentTypeId(contentMetadata.getContentTypeId())
+                                .withSystemType(contentMetadata.getSystemType())
+                                .withMimeType(contentMetadata.getMimeType())
+                                .withLocaleCode(Locale.US.toString())
+                                .withSize(contentMetadata.getSize())
+                                .withCommitId(repoOperation.getCommitId())
+                                .build());
                         logger.debug("Extract dependencies for site: " + siteId + " path: " +
                                 repoOperation.getPath());
-                        addUpdateParentIdScriptSnippets(siteFeed.getId(), repoOperation.getPath(),
-                                updateParentIdScriptPath);
-                        addDependenciesScriptSnippets(siteId, repoOperation.getPath(), null,
-                                repoOperationsScriptPath);
+                        addDependencies(siteId, repoOperation.getPath(), null, batchWriter);
                     }
+                    batchWriter.updateParentId(repoOperation.getPath());
                     break;
 
                 case UPDATE:
@@ -1319,60 +1267,30 @@ public class SiteServiceImpl implements SiteService {
                         if (Objects.isNull(userObj)) {
                             userObj = cachedUsers.get(GIT_REPO_USER_USERNAME);
                         }
-                        label = FilenameUtils.getName(repoOperation.getPath());
-                        contentTypeId = StringUtils.EMPTY;
-                        disabled = false;
-                        if (StringUtils.endsWith(repoOperation.getPath(), XML_PATTERN)) {
-                            try {
-                                Document contentDoc = contentService.getContentAsDocument(siteId, repoOperation.getPath());
-                                if (contentDoc != null) {
-                                    Element rootElement = contentDoc.getRootElement();
-                                    String internalName = rootElement.valueOf(DOCUMENT_ELM_INTERNAL_TITLE);
-                                    if (StringUtils.isNotEmpty(internalName)) {
-                                        label = internalName;
-                                    }
-                                    contentTypeId = rootElement.valueOf(DOCUMENT_ELM_CONTENT_TYPE);
-                                    disabled = Boolean.valueOf(rootElement.valueOf(DOCUMENT_ELM_DISABLED));
-                                }
-                            } catch (DocumentException e) {
-                                logger.error("Error extracting metadata from xml file " + siteId + ":" + repoOperation.getPath());
-                            }
-                        }
-                        previewUrl = null;
-                        if (StringUtils.startsWith(repoOperation.getPath(), ROOT_PATTERN_PAGES) ||
-                                StringUtils.startsWith(repoOperation.getPath(), ROOT_PATTERN_ASSETS)) {
-                            previewUrl = itemServiceInternal.getBrowserUrl(siteId, repoOperation.getPath());
-                        }
+                        contentMetadata = getContentMetadata(siteId, repoOperation.getPath(), metadata);
                         onStateBitMap = SAVE_AND_CLOSE_ON_MASK;
                         offStateBitmap = SAVE_AND_CLOSE_OFF_MASK;
-                        if (disabled) {
+                        if (contentMetadata.isDisabled()) {
                             onStateBitMap = onStateBitMap | DISABLED.value;
                         } else {
                             offStateBitmap = offStateBitmap | DISABLED.value;
                         }
 
-                        Files.write(repoOperationsScriptPath, updateItemRow(siteFeed.getId(),
-                                repoOperation.getPath(), previewUrl, onStateBitMap, offStateBitmap, userObj.getId(),
-                                repoOperation.getDateTime(), label, contentTypeId,
-                                contentService.getContentTypeClass(siteId, repoOperation.getPath()),
-                                StudioUtils.getMimeType(FilenameUtils.getName(repoOperation.getPath())),
-                                contentRepositoryV2.getContentSize(siteId, repoOperation.getPath()),
-                                repoOperation.getCommitId()).getBytes(UTF_8), StandardOpenOption.APPEND);
-                        Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+                        batchWriter.updateItem(repoOperation.getPath(), contentMetadata.getPreviewUrl(),
+                                onStateBitMap, offStateBitmap, userObj.getId(), repoOperation.getDateTime(),
+                                contentMetadata.getLabel(), contentMetadata.getContentTypeId(),
+                                contentMetadata.getSystemType(), contentMetadata.getMimeType(),
+                                contentMetadata.getSize(), repoOperation.getCommitId());
                         logger.debug("Extract dependencies for site: " + siteId + " path: " +
                                 repoOperation.getPath());
-                        addDependenciesScriptSnippets(siteId, repoOperation.getPath(), null, repoOperationsScriptPath);
+                        addDependencies(siteId, repoOperation.getPath(), null, batchWriter);
                     }
                     break;
                 case DELETE:
-                    Files.write(repoOperationsScriptPath,
-                            deleteItemRow(siteFeed.getId(), repoOperation.getPath()).getBytes(UTF_8),
-                            StandardOpenOption.APPEND);
-                    Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
-                    Files.write(repoOperationsScriptPath,
-                            deleteDependencyRows(siteId, repoOperation.getPath()).getBytes(UTF_8),
-                            StandardOpenOption.APPEND);
-                    Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+                    batchWriter.deleteItem(repoOperation.getPath());
+                    batchWriter.deleteDependencies(repoOperation.getPath());
+                    // Folders may need to be written again by a later operation
+                    processedAncestors.clear();
                     break;
 
                 case MOVE:
@@ -1388,60 +1306,31 @@ public class SiteServiceImpl implements SiteService {
                     if (Objects.isNull(userObj)) {
                         userObj = cachedUsers.get(GIT_REPO_USER_USERNAME);
                     }
-                    label = FilenameUtils.getName(repoOperation.getMoveToPath());
-                    contentTypeId = StringUtils.EMPTY;
-                    disabled = false;
-                    if (StringUtils.endsWith(repoOperation.getMoveToPath(), XML_PATTERN)) {
-                        try {
-                            Document contentDoc = contentService.getContentAsDocument(siteId, repoOperation.getMoveToPath());
-                            if (contentDoc != null) {
-                                Element rootElement = contentDoc.getRootElement();
-                                String internalName = rootElement.valueOf(DOCUMENT_ELM_INTERNAL_TITLE);
-                                if (StringUtils.isNotEmpty(internalName)) {
-                                    label = internalName;
-                                }
-                                contentTypeId = rootElement.valueOf(DOCUMENT_ELM_CONTENT_TYPE);
-                                disabled = Boolean.valueOf(rootElement.valueOf(DOCUMENT_ELM_DISABLED));
-                            }
-                        } catch (DocumentException e) {
-                            logger.error("Error extracting metadata from xml file " + siteId + ":" + repoOperation.getMoveToPath());
+                    processedAncestors.clear();
+                    processAncestors(repoOperation.getMoveToPath(), userObj.getId(), repoOperation.getDateTime(),
+                            repoOperation.getCommitId(), processedAncestors, batchWriter);
+                    if (!ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath())) &&
+                            !ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getMoveToPath()))) {
+                        contentMetadata = getContentMetadata(siteId, repoOperation.getMoveToPath(), metadata);
+                        onStateBitMap = SAVE_AND_CLOSE_ON_MASK;
+                        offStateBitmap = SAVE_AND_CLOSE_OFF_MASK;
+                        if (contentMetadata.isDisabled()) {
+                            onStateBitMap = onStateBitMap | DISABLED.value;
+                        } else {
+                            offStateBitmap = offStateBitmap | DISABLED.value;
                         }
-                    }
-                    previewUrl = null;
-                    if (StringUtils.startsWith(repoOperation.getMoveToPath(), ROOT_PATTERN_PAGES) ||
-                            StringUtils.startsWith(repoOperation.getMoveToPath(), ROOT_PATTERN_ASSETS)) {
-                        previewUrl = itemServiceInternal.getBrowserUrl(siteId, repoOperation.getMoveToPath());
-                    }
-                    processAncestors(siteFeed.getId(), repoOperation.getMoveToPath(), userObj.getId(),
-                            repoOperation.getDateTime(), repoOperation.getCommitId(), repoOperationsScriptPath);
-                    onStateBitMap = SAVE_AND_CLOSE_ON_MASK;
-                    offStateBitmap = SAVE_AND_CLOSE_OFF_MASK;
-                    if (disabled) {
-                        onStateBitMap = onStateBitMap | DISABLED.value;
-                    } else {
-                        offStateBitmap = offStateBitmap | DISABLED.value;
-                    }
-                    if (ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath())) ||
-                            ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getMoveToPath()))) {
-                        addUpdateParentIdScriptSnippets(siteFeed.getId(), repoOperation.getMoveToPath(),
-                                updateParentIdScriptPath);
-                    } else {
-                        Files.write(repoOperationsScriptPath, moveItemRow(siteId, repoOperation.getPath(),
-                                repoOperation.getMoveToPath(), onStateBitMap, offStateBitmap).getBytes(UTF_8),
-                                StandardOpenOption.APPEND);
-                        Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
-                        Files.write(repoOperationsScriptPath, updateItemRow(siteFeed.getId(),
-                                repoOperation.getPath(), previewUrl, onStateBitMap, offStateBitmap, userObj.getId(),
-                                repoOperation.getDateTime(), label, contentTypeId,
+                        batchWriter.moveItem(repoOperation.getPath(), repoOperation.getMoveToPath(), onStateBitMap,
+                                offStateBitmap);
+                        batchWriter.updateItem(repoOperation.getPath(), contentMetadata.getPreviewUrl(),
+                                onStateBitMap, offStateBitmap, userObj.getId(), repoOperation.getDateTime(),
+                                contentMetadata.getLabel(), contentMetadata.getContentTypeId(),
                                 contentService.getContentTypeClass(siteId, repoOperation.getPath()),
                                 StudioUtils.getMimeType(FilenameUtils.getName(repoOperation.getPath())),
                                 contentRepositoryV2.getContentSize(siteId, repoOperation.getPath()),
-                                repoOperation.getCommitId()).getBytes(UTF_8), StandardOpenOption.APPEND);
-                        Files.write(repoOperationsScriptPath, "\n\n".getBytes(UTF_8), StandardOpenOption.APPEND);
-                        addUpdateParentIdScriptSnippets(siteFeed.getId(), repoOperation.getMoveToPath(), updateParentIdScriptPath);
-                        addDependenciesScriptSnippets(siteId, repoOperation.getMoveToPath(),
-                                repoOperation.getPath(), repoOperationsScriptPath);
+                                repoOperation.getCommitId());
+                        addDependencies(siteId, repoOperation.getMoveToPath(), repoOperation.getPath(), batchWriter);
                     }
+                    batchWriter.updateParentId(repoOperation.getMoveToPath());
                     break;
 
                 default:
@@ -1458,6 +1347,45 @@ public class SiteServiceImpl implements SiteService {
         return toReturn;
     }
 
+    /**
+     * Returns the paths of the given operations that will be written to the database
+     */
+    private List<String> getMetadataPaths(List<RepoOperation> repoOperations) {
+        List<String> paths = new ArrayList<>();
+        for (RepoOperation repoOperation : repoOperations) {
+            switch (repoOperation.getAction()) {
+                case CREATE:
+                case COPY:
+                case UPDATE:
+                    paths.add(repoOperation.getPath());
+                    break;
+                case MOVE:
+                    if (!ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath()))) {
+                        paths.add(repoOperation.getMoveToPath());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return getMetadataPaths(paths);
+    }
+
+    private List<String> getMetadataPaths(Collection<String> paths) {
+        return paths.stream()
+                .filter(path -> !ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(path)))
+                .collect(toList());
+    }
+
+    private ContentMetadata getContentMetadata(String siteId, String path, Map<String, ContentMetadata> metadata) {
+        ContentMetadata contentMetadata = metadata.get(path);
+        if (contentMetadata == null) {
+            // The batch extraction was interrupted, fall back to this file only
+            contentMetadata = contentMetadataExtractor.extract(siteId, path);
+        }
+        return contentMetadata;
+    }
+
     @Override
     @ValidateParams
     public boolean exists(@ValidateStringParam(name = "site") String site) {
@@ -1953,6 +1881,14 @@ public class SiteServiceImpl implements SiteService {
         this.clusterDao = clusterDao;
     }
 
+    public void setClusterRepoHeadTracker(ClusterRepoHeadTracker clusterRepoHeadTracker) {
+        this.clusterRepoHeadTracker = clusterRepoHeadTracker;
+    }
+
+    public void setSiteJobScheduler(SiteJobScheduler siteJobScheduler) {
+        this.siteJobScheduler = siteJobScheduler;
+    }
+
     public void setUserDao(UserDAO userDao) {
         this.userDao = userDao;
     }
@@ -1969,12 +1905,16 @@ public class SiteServiceImpl implements SiteService {
         this.workflowServiceInternal = workflowServiceInternal;
     }
 
-    public StudioDBScriptRunnerFactory getStudioDBScriptRunner() {
-        return studioDBScriptRunnerFactory;
+    public StudioDBBatchWriterFactory getStudioDBBatchWriterFactory() {
+        return studioDBBatchWriterFactory;
+    }
+
+    public void setStudioDBBatchWriterFactory(StudioDBBatchWriterFactory studioDBBatchWriterFactory) {
+        this.studioDBBatchWriterFactory = studioDBBatchWriterFactory;
     }
 
-    public void setStudioDBScriptRunner(StudioDBScriptRunnerFactory studioDBScriptRunner) {
-        this.studioDBScriptRunnerFactory = studioDBScriptRunner;
+    public void setContentMetadataExtractor(ContentMetadataExtractor contentMetadataExtractor) {
+        this.contentMetadataExtractor = contentMetadataExtractor;
     }
 
     public DependencyServiceInternal getDependencyServiceInternal() {
@@ -1985,6 +1925,10 @@ public class SiteServiceImpl implements SiteService {
         this.dependencyServiceInternal = dependencyServiceInternal;
     }
 
+    public void setDependencyGraphCache(DependencyGraphCache dependencyGraphCache) {
+        this.dependencyGraphCache = dependencyGraphCache;
+    }
+
     public RetryingDatabaseOperationFacade getRetryingDatabaseOperationFacade() {
         return retryingDatabaseOperationFacade;
     }
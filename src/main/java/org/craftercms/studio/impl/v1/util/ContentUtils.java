@@ -19,6 +19,7 @@ import org.apache.commons.io.IOUtils;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.io.SAXReader;
@@ -119,14 +120,7 @@ public class ContentUtils {
 	}
 
 	public static boolean matchesPatterns(String uri, List<String> patterns) {
-		if (patterns != null) {
-			for (String pattern : patterns) {
-				if (uri.matches(pattern)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return PathClassifier.matchesAny(uri, patterns);
 	}
 
 	public static String getParentUrl(String url) {
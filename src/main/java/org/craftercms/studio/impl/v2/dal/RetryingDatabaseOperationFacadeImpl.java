@@ -26,13 +26,18 @@ import org.craftercms.studio.api.v1.dal.SiteFeedMapper;
 import org.craftercms.studio.api.v2.annotation.RetryingDatabaseOperation;
 import org.craftercms.studio.api.v2.dal.AuditDAO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogParameter;
 import org.craftercms.studio.api.v2.dal.ClusterDAO;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
 import org.craftercms.studio.api.v2.dal.GitLogDAO;
 import org.craftercms.studio.api.v2.dal.GroupDAO;
 import org.craftercms.studio.api.v2.dal.Item;
 import org.craftercms.studio.api.v2.dal.ItemDAO;
+import org.craftercms.studio.api.v2.dal.PathCommit;
+import org.craftercms.studio.api.v2.dal.PathCommitDAO;
 import org.craftercms.studio.api.v2.dal.PublishRequestDAO;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryDAO;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
 import org.craftercms.studio.api.v2.dal.RemoteRepositoryDAO;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
 import org.craftercms.studio.api.v2.dal.SecurityDAO;
@@ -57,7 +62,9 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
     private GitLogDAO gitLogDao;
     private GroupDAO groupDao;
     private ItemDAO itemDao;
+    private PathCommitDAO pathCommitDao;
     private PublishRequestDAO publishRequestDao;
+    private PublishingHistoryDAO publishingHistoryDao;
     private RemoteRepositoryDAO remoteRepositoryDao;
     private SecurityDAO securityDao;
     private UserDAO userDao;
@@ -131,6 +138,11 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
         publishRequestMapper.markItemCompleted(item);
     }
 
+    @Override
+    public void updateItemsDeploymentState(Map params) {
+        publishRequestMapper.updateItemsDeploymentState(params);
+    }
+
     @Override
     public void deleteDeploymentDataForSite(Map params) {
         publishRequestMapper.deleteDeploymentDataForSite(params);
@@ -218,6 +230,16 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
         auditDao.insertAuditLogParams(params);
     }
 
+    @Override
+    public int insertAuditLogList(List<AuditLog> auditLogs) {
+        return auditDao.insertAuditLogList(auditLogs);
+    }
+
+    @Override
+    public void insertAuditLogParamsList(List<AuditLogParameter> parameters) {
+        auditDao.insertAuditLogParamsList(parameters);
+    }
+
     @Override
     public void deleteAuditLogForSite(long siteId) {
         auditDao.deleteAuditLogForSite(siteId);
@@ -286,6 +308,11 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
         clusterDao.updateNodeLastSyncedGitlogCommitId(clusterNodeId, siteId, commitId);
     }
 
+    @Override
+    public void upsertClusterRepoHead(long clusterNodeId, String siteId, String repository, String headVersion) {
+        clusterDao.upsertRepoHead(clusterNodeId, siteId, repository, headVersion);
+    }
+
     // GitLog API v2
     @Override
     public void insertGitLog(Map params) {
@@ -317,6 +344,58 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
         gitLogDao.markGitLogAudited(siteId, commitId, audited);
     }
 
+    @Override
+    public void markGitLogAuditedBulk(String siteId, List<String> commitIds, int audited) {
+        gitLogDao.markGitLogAuditedBulk(siteId, commitIds, audited);
+    }
+
+    // Path history index
+    @Override
+    public void insertPathCommitList(String siteId, List<PathCommit> pathCommits) {
+        pathCommitDao.insertPathCommitList(siteId, pathCommits);
+    }
+
+    @Override
+    public void upsertPathCommitMarker(String siteId, String commitId, long seq) {
+        pathCommitDao.upsertPathCommitMarker(siteId, commitId, seq);
+    }
+
+    @Override
+    public void deletePathCommitsAfter(String siteId, long seq) {
+        pathCommitDao.deletePathCommitsAfter(siteId, seq);
+    }
+
+    @Override
+    public void deletePathCommitsForSite(String siteId) {
+        pathCommitDao.deletePathCommitsForSite(siteId);
+    }
+
+    @Override
+    public void deletePathCommitMarker(String siteId) {
+        pathCommitDao.deletePathCommitMarker(siteId);
+    }
+
+    // Publishing history
+    @Override
+    public void insertPublishingHistoryList(String siteId, List<PublishingHistoryItem> items) {
+        publishingHistoryDao.insertPublishingHistoryList(siteId, items);
+    }
+
+    @Override
+    public void insertPublishingHistoryMarker(String siteId) {
+        publishingHistoryDao.insertPublishingHistoryMarker(siteId);
+    }
+
+    @Override
+    public void deletePublishingHistoryForSite(String siteId) {
+        publishingHistoryDao.deletePublishingHistoryForSite(siteId);
+    }
+
+    @Override
+    public void deletePublishingHistoryMarker(String siteId) {
+        publishingHistoryDao.deletePublishingHistoryMarker(siteId);
+    }
+
     @Override
     public void insertIgnoreGitLogList(String siteId, List<String> commitIds) {
         gitLogDao.insertIgnoreGitLogList(siteId, commitIds);
@@ -698,6 +777,14 @@ public class RetryingDatabaseOperationFacadeImpl implements RetryingDatabaseOper
         this.itemDao = itemDao;
     }
 
+    public void setPathCommitDao(PathCommitDAO pathCommitDao) {
+        this.pathCommitDao = pathCommitDao;
+    }
+
+    public void setPublishingHistoryDao(PublishingHistoryDAO publishingHistoryDao) {
+        this.publishingHistoryDao = publishingHistoryDao;
+    }
+
     public PublishRequestDAO getPublishRequestDao() {
         return publishRequestDao;
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.dal;
+
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriter;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriterFactory;
+
+import javax.sql.DataSource;
+
+public class StudioDBBatchWriterFactoryImpl implements StudioDBBatchWriterFactory {
+
+    protected DataSource dataSource;
+    protected int batchSize = 1000;
+
+    @Override
+    public StudioDBBatchWriter getDBBatchWriter(long siteId, String site) {
+        return new StudioDBBatchWriterImpl(dataSource, batchSize, siteId, site);
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.dal;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.dal.Item;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.IGNORE_FILES;
+
+public class StudioDBBatchWriterImpl implements StudioDBBatchWriter {
+
+    private final static Logger logger = LoggerFactory.getLogger(StudioDBBatchWriterImpl.class);
+
+    public static final String ITEM_UPSERT =
+            "INSERT INTO item (site_id, path, preview_url, state, owned_by, created_by, created_on, last_modified_by," +
+                    " last_modified_on, last_published_on, label, content_type_id, system_type, mime_type," +
+                    " locale_code, translation_source_id, size, parent_id, commit_id, previous_path, ignored)" +
+                    " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" +
+                    " ON DUPLICATE KEY UPDATE preview_url = VALUES(preview_url), state = VALUES(state)," +
+                    " owned_by = VALUES(owned_by), last_modified_by = VALUES(last_modified_by)," +
+                    " last_modified_on = VALUES(last_modified_on), last_published_on = VALUES(last_published_on)," +
+                    " label = VALUES(label), content_type_id = VALUES(content_type_id)," +
+                    " system_type = VALUES(system_type), mime_type = VALUES(mime_type)," +
+                    " locale_code = VALUES(locale_code), translation_source_id = VALUES(translation_source_id)," +
+                    " size = VALUES(size), parent_id = VALUES(parent_id), commit_id = VALUES(commit_id)," +
+                    " previous_path = VALUES(previous_path), ignored = VALUES(ignored)";
+
+    public static final String ITEM_UPDATE =
+            "UPDATE item SET preview_url = ?, state = state | ? & ~?, last_modified_by = ?, last_modified_on = ?," +
+                    " label = ?, content_type_id = ?, system_type = ?, mime_type = ?, size = ?, commit_id = ?," +
+                    " ignored = ? WHERE site_id = ? AND path = ?";
+
+    public static final String ITEM_DELETE = "DELETE FROM item WHERE site_id = ? AND path = ?";
+
+    public static final String ITEM_MOVE =
+            "UPDATE item SET path = REPLACE(path, ?, ?), state = state | ? & ~?" +
+                    " WHERE site_id = ? AND (path = ? OR path LIKE ?)";
+
+    public static final String ITEM_SELECT_IDS = "SELECT id, path FROM item WHERE site_id = ? AND path IN (%s)";
+
+    public static final String ITEM_UPDATE_PARENT_ID = "UPDATE item SET parent_id = ? WHERE id = ?";
+
+    public static final String DEPENDENCY_INSERT =
+            "INSERT INTO dependency (site, source_path, target_path, type) VALUES (?, ?, ?, ?)";
+
+    public static final String DEPENDENCY_DELETE_SOURCE = "DELETE FROM dependency WHERE site = ? AND source_path = ?";
+
+    public static final String DEPENDENCY_DELETE =
+            "DELETE FROM dependency WHERE site = ? AND (source_path = ? OR target_path = ?)";
+
+    private static final String INDEX_FILE = "/index.xml";
+
+    protected final DataSource dataSource;
+    protected final int batchSize;
+    protected final long siteId;
+    protected final String site;
+
+    protected Connection connection;
+
+    /**
+     * Prepared statements for the item table, reused when operations of different kinds are interleaved
+     */
+    protected final Map<String, PreparedStatement> itemStatements = new HashMap<>();
+
+    /**
+     * Statement with the pending item batch, only one at a time to keep the order of the operations
+     */
+    protected PreparedStatement currentItemStatement;
+    protected int currentItemBatchSize;
+
+    /**
+     * Pending dependency replacements: rows to insert keyed by the source path to delete first
+     */
+    protected final Map<String, List<String[]>> pendingReplacements = new LinkedHashMap<>();
+    protected final Set<String> pendingSources = new HashSet<>();
+    protected int pendingRows;
+
+    /**
+     * Pending deletes of all dependencies from or to a path
+     */
+    protected final Set<String> pendingDeletes = new LinkedHashSet<>();
+
+    /**
+     * Paths of the items that need their parent id updated on commit
+     */
+    protected final Set<String> parentIdPaths = new LinkedHashSet<>();
+
+    protected long itemOperations;
+    protected long dependencyRows;
+
+    protected StudioDBBatchWriterImpl(DataSource dataSource, int batchSize, long siteId, String site) {
+        this.dataSource = dataSource;
+        this.batchSize = Math.max(1, batchSize);
+        this.siteId = siteId;
+        this.site = site;
+    }
+
+    @Override
+    public void openConnection() throws SQLException {
+        if (Objects.isNull(connection)) {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+        }
+    }
+
+    @Override
+    public void closeConnection() {
+        for (PreparedStatement statement : itemStatements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close statement", e);
+            }
+        }
+        itemStatements.clear();
+        currentItemStatement = null;
+        currentItemBatchSize = 0;
+        if (Objects.nonNull(connection)) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+                connection.close();
+            } catch (SQLException e) {
+                logger.error("Failed to close connection with DB", e);
+            }
+            connection = null;
+        }
+    }
+
+    @Override
+    public void upsertItem(Item item) throws SQLException {
+        PreparedStatement statement = getItemStatement(ITEM_UPSERT);
+        statement.setLong(1, siteId);
+        statement.setString(2, item.getPath());
+        statement.setString(3, StringUtils.defaultIfEmpty(item.getPreviewUrl(), null));
+        statement.setLong(4, item.getState());
+        setLong(statement, 5, item.getOwnedBy());
+        setLong(statement, 6, item.getCreatedBy());
+        setTimestamp(statement, 7, item.getCreatedOn());
+        setLong(statement, 8, item.getLastModifiedBy());
+        setTimestamp(statement, 9, item.getLastModifiedOn());
+        setTimestamp(statement, 10, item.getLastPublishedOn());
+        statement.setString(11, item.getLabel());
+        statement.setString(12, item.getContentTypeId());
+        statement.setString(13, item.getSystemType());
+        statement.setString(14, item.getMimeType());
+        statement.setString(15, item.getLocaleCode());
+        setLong(statement, 16, item.getTranslationSourceId());
+        statement.setLong(17, item.getSize());
+        setLong(statement, 18, item.getParentId());
+        statement.setString(19, item.getCommitId());
+        statement.setString(20, StringUtils.defaultIfEmpty(item.getPreviousPath(), null));
+        statement.setInt(21, getIgnoredAsInt(item.getPath()));
+        addItemBatch();
+    }
+
+    @Override
+    public void updateItem(String path, String previewUrl, long onStatesBitMap, long offStatesBitMap,
+                           Long lastModifiedBy, ZonedDateTime lastModifiedOn, String label, String contentTypeId,
+                           String systemType, String mimeType, long size, String commitId) throws SQLException {
+        PreparedStatement statement = getItemStatement(ITEM_UPDATE);
+        statement.setString(1, StringUtils.defaultIfEmpty(previewUrl, null));
+        statement.setLong(2, onStatesBitMap);
+        statement.setLong(3, offStatesBitMap);
+        setLong(statement, 4, lastModifiedBy);
+        setTimestamp(statement, 5, lastModifiedOn);
+        statement.setString(6, label);
+        statement.setString(7, contentTypeId);
+        statement.setString(8, systemType);
+        statement.setString(9, mimeType);
+        statement.setLong(10, size);
+        statement.setString(11, commitId);
+        statement.setInt(12, getIgnoredAsInt(path));
+        statement.setLong(13, siteId);
+        statement.setString(14, path);
+        addItemBatch();
+    }
+
+    @Override
+    public void deleteItem(String path) throws SQLException {
+        PreparedStatement statement = getItemStatement(ITEM_DELETE);
+        statement.setLong(1, siteId);
+        statement.setString(2, path);
+        addItemBatch();
+    }
+
+    @Override
+    public void moveItem(String oldPath, String newPath, long onStatesBitMap, long offStatesBitMap)
+            throws SQLException {
+        PreparedStatement statement = getItemStatement(ITEM_MOVE);
+        statement.setString(1, oldPath);
+        statement.setString(2, newPath);
+        statement.setLong(3, onStatesBitMap);
+        statement.setLong(4, offStatesBitMap);
+        statement.setLong(5, siteId);
+        statement.setString(6, oldPath);
+        statement.setString(7, oldPath + "/%");
+        addItemBatch();
+    }
+
+    @Override
+    public void updateParentId(String path) {
+        parentIdPaths.add(path);
+    }
+
+    @Override
+    public void replaceDependencies(String oldSourcePath, String sourcePath, Map<String, Set<String>> dependencies)
+            throws SQLException {
+        // Deleting rows inserted by a pending replacement requires them to be written first
+        if (!pendingDeletes.isEmpty() || pendingSources.contains(oldSourcePath)) {
+            flushDependencies();
+        }
+        List<String[]> rows = pendingReplacements.computeIfAbsent(oldSourcePath, k -> new ArrayList<>());
+        if (Objects.nonNull(dependencies)) {
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                for (String targetPath : entry.getValue()) {
+                    rows.add(new String[] { sourcePath, targetPath, entry.getKey() });
+                    pendingSources.add(sourcePath);
+                    pendingRows++;
+                }
+            }
+        }
+        if (pendingReplacements.size() + pendingRows >= batchSize) {
+            flushDependencies();
+        }
+    }
+
+    @Override
+    public void deleteDependencies(String path) throws SQLException {
+        if (!pendingReplacements.isEmpty()) {
+            flushDependencies();
+        }
+        pendingDeletes.add(path);
+        if (pendingDeletes.size() >= batchSize) {
+            flushDependencies();
+        }
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        long startCommitMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
+        flushItems();
+        flushDependencies();
+        int parentIds = updateParentIds();
+        connection.commit();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Batch writer for site " + site + " wrote " + itemOperations + " item operations, " +
+                    dependencyRows + " dependencies and " + parentIds + " parent ids. Final flush and commit " +
+                    "finished in " + (System.currentTimeMillis() - startCommitMark) + " milliseconds");
+        }
+        itemOperations = 0;
+        dependencyRows = 0;
+    }
+
+    protected PreparedStatement getItemStatement(String sql) throws SQLException {
+        PreparedStatement statement = itemStatements.get(sql);
+        if (Objects.isNull(statement)) {
+            statement = connection.prepareStatement(sql);
+            itemStatements.put(sql, statement);
+        }
+        if (statement != currentItemStatement) {
+            flushItems();
+            currentItemStatement = statement;
+        }
+        return statement;
+    }
+
+    protected void addItemBatch() throws SQLException {
+        currentItemStatement.addBatch();
+        itemOperations++;
+        if (++currentItemBatchSize >= batchSize) {
+            flushItems();
+        }
+    }
+
+    protected void flushItems() throws SQLException {
+        if (Objects.nonNull(currentItemStatement) && currentItemBatchSize > 0) {
+            currentItemStatement.executeBatch();
+        }
+        currentItemBatchSize = 0;
+    }
+
+    protected void flushDependencies() throws SQLException {
+        if (!pendingDeletes.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(DEPENDENCY_DELETE)) {
+                for (String path : pendingDeletes) {
+                    statement.setString(1, site);
+                    statement.setString(2, path);
+                    statement.setString(3, path);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            pendingDeletes.clear();
+        }
+        if (!pendingReplacements.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(DEPENDENCY_DELETE_SOURCE)) {
+                for (String path : pendingReplacements.keySet()) {
+                    statement.setString(1, site);
+                    statement.setString(2, path);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            if (pendingRows > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(DEPENDENCY_INSERT)) {
+                    for (List<String[]> rows : pendingReplacements.values()) {
+                        for (String[] row : rows) {
+                            statement.setString(1, site);
+                            statement.setString(2, row[0]);
+                            statement.setString(3, row[1]);
+                            statement.setString(4, row[2]);
+                            statement.addBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+                dependencyRows += pendingRows;
+            }
+            pendingReplacements.clear();
+            pendingSources.clear();
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * Resolves the parent of all the requested items and their ancestors with a single lookup of ids
+     * @return the number of items updated
+     */
+    protected int updateParentIds() throws SQLException {
+        if (parentIdPaths.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> parents = new LinkedHashMap<>();
+        for (String path : parentIdPaths) {
+            addParentPaths(path, parents);
+        }
+        parentIdPaths.clear();
+
+        Set<String> paths = new LinkedHashSet<>();
+        parents.forEach((path, parentPath) -> {
+            paths.add(path);
+            paths.add(parentPath + INDEX_FILE);
+            paths.add(parentPath);
+        });
+        Map<String, Long> ids = getItemIds(paths);
+
+        int updated = 0;
+        try (PreparedStatement statement = connection.prepareStatement(ITEM_UPDATE_PARENT_ID)) {
+            int pending = 0;
+            for (Map.Entry<String, String> entry : parents.entrySet()) {
+                Long id = ids.get(entry.getKey());
+                if (Objects.isNull(id)) {
+                    continue;
+                }
+                // Pages are the parent of their children, folders only when there is no page
+                Long parentId = ids.getOrDefault(entry.getValue() + INDEX_FILE, ids.get(entry.getValue()));
+                setLong(statement, 1, parentId);
+                statement.setLong(2, id);
+                statement.addBatch();
+                updated++;
+                if (++pending >= batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+        return updated;
+    }
+
+    protected void addParentPaths(String path, Map<String, String> parents) {
+        if (parents.containsKey(path)) {
+            return;
+        }
+        String parentPath = FilenameUtils.getPrefix(path) +
+                FilenameUtils.getPathNoEndSeparator(StringUtils.replace(path, INDEX_FILE, ""));
+        if (StringUtils.isNotEmpty(parentPath) && !StringUtils.equals(parentPath, path)) {
+            addParentPaths(parentPath, parents);
+            if (StringUtils.endsWith(path, INDEX_FILE)) {
+                addParentPaths(StringUtils.replace(path, INDEX_FILE, ""), parents);
+            }
+            parents.put(path, parentPath);
+        }
+    }
+
+    protected Map<String, Long> getItemIds(Set<String> paths) throws SQLException {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> pathList = new ArrayList<>(paths);
+        for (int start = 0; start < pathList.size(); start += batchSize) {
+            List<String> chunk = pathList.subList(start, Math.min(start + batchSize, pathList.size()));
+            String sql = String.format(ITEM_SELECT_IDS, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, siteId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 2, chunk.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.put(resultSet.getString(2), resultSet.getLong(1));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    protected int getIgnoredAsInt(String path) {
+        return ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(path)) ? 1 : 0;
+    }
+
+    protected void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (Objects.isNull(value)) {
+            statement.setNull(index, Types.BIGINT);
+        } else {
+            statement.setLong(index, value);
+        }
+    }
+
+    protected void setTimestamp(PreparedStatement statement, int index, ZonedDateTime value) throws SQLException {
+        if (Objects.isNull(value)) {
+            statement.setNull(index, Types.TIMESTAMP);
+        } else {
+            statement.setTimestamp(index, new Timestamp(value.toInstant().toEpochMilli()));
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.service.event.EventService;
+import org.craftercms.studio.model.monitoring.PreviewSyncMetrics;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.http.MediaType;
@@ -31,6 +32,13 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONFIG_SITEENV_VARIABLE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONFIG_SITENAME_VARIABLE;
@@ -44,6 +52,7 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_DEF
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_DISABLE_DEPLOY_CRON;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_REPLACE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_REPO_URL;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_SYNC_COALESCE_WINDOW;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_TEMPLATE_NAME;
 
 /**
@@ -56,6 +65,10 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_TEM
  *     <li>Issues deployments to the authoring and preview target on a preview sync event</li>
  * </ul>
  *
+ * Preview sync events for the same site that arrive within the configured coalesce window are collapsed into a
+ * single deployment request per target, which is sent from a dedicated thread pool. Callers that need to wait for
+ * the deployment block until the request that covers their event has completed.
+ *
  * @author avasquez
  */
 public class PreviewDeployer extends AbstractDeployer implements BeanNameAware {
@@ -68,6 +81,14 @@ public class PreviewDeployer extends AbstractDeployer implements BeanNameAware {
 
     protected EventService eventService;
     protected String beanName;
+    protected int syncPoolSize = 1;
+
+    protected ScheduledExecutorService syncExecutor;
+    protected final Map<String, PendingSync> pendingSyncs = new ConcurrentHashMap<>();
+
+    protected final AtomicLong queuedCount = new AtomicLong();
+    protected final AtomicLong coalescedCount = new AtomicLong();
+    protected final AtomicLong dispatchedCount = new AtomicLong();
 
     @Required
     public void setEventService(EventService eventService) {
@@ -79,7 +100,45 @@ public class PreviewDeployer extends AbstractDeployer implements BeanNameAware {
         this.beanName = beanName;
     }
 
+    public void setSyncPoolSize(int syncPoolSize) {
+        this.syncPoolSize = syncPoolSize;
+    }
+
+    /**
+     * Number of preview sync events received
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Number of preview sync events that were merged into an already pending deployment
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Number of coalesced deployments sent to the deployer
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public PreviewSyncMetrics getMetrics() {
+        PreviewSyncMetrics metrics = new PreviewSyncMetrics();
+        metrics.setQueuedEvents(queuedCount.get());
+        metrics.setCoalescedEvents(coalescedCount.get());
+        metrics.setDispatchedDeployments(dispatchedCount.get());
+        metrics.setPendingSites(pendingSyncs.size());
+        return metrics;
+    }
+
     public void subscribeToPreviewSyncEvents() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, syncPoolSize));
+        executor.setRemoveOnCancelPolicy(true);
+        syncExecutor = executor;
+
         try {
             Method subscribeMethod = PreviewDeployer.class.getMethod(METHOD_PREVIEW_SYNC_LISTENER,
                                                                      PreviewEventContext.class);
@@ -89,10 +148,73 @@ public class PreviewDeployer extends AbstractDeployer implements BeanNameAware {
         }
     }
 
+    public void shutdown() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+    }
+
     @EventListener(EVENT_PREVIEW_SYNC)
     public void onPreviewSync(PreviewEventContext context) {
-        doDeployment(context.getSite(), ENV_AUTHORING, false);
-        doDeployment(context.getSite(), ENV_PREVIEW, context.isWaitTillDeploymentIsDone());
+        String site = context.getSite();
+        long coalesceWindow = studioConfiguration.getProperty(PREVIEW_SYNC_COALESCE_WINDOW, Long.class, 0L);
+        queuedCount.incrementAndGet();
+        if (coalesceWindow <= 0 || syncExecutor == null || syncExecutor.isShutdown()) {
+            doPreviewSync(site, context.isWaitTillDeploymentIsDone());
+            dispatchedCount.incrementAndGet();
+            return;
+        }
+
+        PendingSync pendingSync = scheduleSync(site, context.isWaitTillDeploymentIsDone(), coalesceWindow);
+        if (context.isWaitTillDeploymentIsDone()) {
+            try {
+                pendingSync.done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for preview sync of site " + site);
+            } catch (ExecutionException e) {
+                logger.error("Error while waiting for preview sync of site " + site, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the pending sync for the site, scheduling a new one if there is none waiting to be dispatched.
+     */
+    protected PendingSync scheduleSync(String site, boolean waitTillDone, long coalesceWindow) {
+        boolean[] created = { false };
+        PendingSync pendingSync = pendingSyncs.compute(site, (key, current) -> {
+            if (current == null) {
+                created[0] = true;
+                current = new PendingSync();
+            }
+            current.waitTillDone |= waitTillDone;
+            return current;
+        });
+        if (created[0]) {
+            syncExecutor.schedule(() -> dispatchSync(site, pendingSync), coalesceWindow, TimeUnit.MILLISECONDS);
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+        return pendingSync;
+    }
+
+    protected void dispatchSync(String site, PendingSync pendingSync) {
+        // Events received from now on will be covered by a new deployment
+        pendingSyncs.remove(site, pendingSync);
+        try {
+            doPreviewSync(site, pendingSync.waitTillDone);
+        } finally {
+            dispatchedCount.incrementAndGet();
+            pendingSync.done.complete(null);
+            logger.debug("Preview sync dispatched for site {0} (queued: {1}, coalesced: {2}, dispatched: {3})",
+                         site, queuedCount.get(), coalescedCount.get(), dispatchedCount.get());
+        }
+    }
+
+    protected void doPreviewSync(String site, boolean waitTillDone) {
+        doDeployment(site, ENV_AUTHORING, false);
+        doDeployment(site, ENV_PREVIEW, waitTillDone);
     }
 
     @Override
@@ -173,4 +295,14 @@ public class PreviewDeployer extends AbstractDeployer implements BeanNameAware {
                                   .replaceAll(CONFIG_SITEENV_VARIABLE, environment);
     }
 
+    /**
+     * Deployment waiting to be sent for a site, shared by all the events coalesced into it
+     */
+    protected static class PendingSync {
+
+        protected volatile boolean waitTillDone;
+        protected final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    }
+
 }
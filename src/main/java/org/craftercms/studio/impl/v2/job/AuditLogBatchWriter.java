@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.job;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.repository.ContentRepository;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers the audit log entries created from the repository history of a site and writes them using multi-row
+ * inserts.
+ *
+ * <p>The buffer is flushed when it reaches the max number of entries or when the oldest buffered entry has been
+ * waiting longer than the max delay. Commits are marked as audited, also in bulk, only after all of their entries
+ * have been written. Instances are not thread-safe.</p>
+ *
+ * @since 4.0
+ */
+public class AuditLogBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogBatchWriter.class);
+
+    protected final AuditServiceInternal auditServiceInternal;
+    protected final ContentRepository contentRepository;
+    protected final String siteId;
+    protected final int maxEntries;
+    protected final long maxDelay;
+
+    protected final List<AuditLog> auditLogs = new ArrayList<>();
+    protected final List<String> commitIds = new ArrayList<>();
+    protected long oldestEntryTime;
+
+    /**
+     * Creates a new writer
+     * @param auditServiceInternal the audit service used to insert the entries
+     * @param contentRepository the repository used to mark the commits as audited
+     * @param siteId the site id
+     * @param maxEntries max number of buffered entries
+     * @param maxDelay max time in milliseconds an entry can be buffered
+     */
+    public AuditLogBatchWriter(AuditServiceInternal auditServiceInternal, ContentRepository contentRepository,
+                               String siteId, int maxEntries, long maxDelay) {
+        this.auditServiceInternal = auditServiceInternal;
+        this.contentRepository = contentRepository;
+        this.siteId = siteId;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Adds an entry to the buffer, flushing it if needed
+     * @param auditLog the audit log entry
+     */
+    public void add(AuditLog auditLog) {
+        if (auditLogs.isEmpty() && commitIds.isEmpty()) {
+            oldestEntryTime = System.currentTimeMillis();
+        }
+        auditLogs.add(auditLog);
+        if (auditLogs.size() >= maxEntries || isExpired()) {
+            flush();
+        }
+    }
+
+    /**
+     * Indicates that all the entries for the given commit have been added, the commit will be marked as audited
+     * in the next flush
+     * @param commitId the commit id
+     */
+    public void commitAudited(String commitId) {
+        if (auditLogs.isEmpty() && commitIds.isEmpty()) {
+            oldestEntryTime = System.currentTimeMillis();
+        }
+        commitIds.add(commitId);
+        if (commitIds.size() >= maxEntries || isExpired()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered entries and marks the completed commits as audited
+     */
+    public void flush() {
+        if (!auditLogs.isEmpty()) {
+            logger.debug("Insert " + auditLogs.size() + " audit log entries for site " + siteId);
+            auditServiceInternal.insertAuditLogs(new ArrayList<>(auditLogs));
+            auditLogs.clear();
+        }
+        if (!commitIds.isEmpty()) {
+            logger.debug("Mark " + commitIds.size() + " commits as audited for site " + siteId);
+            contentRepository.markGitLogAuditedBulk(siteId, new ArrayList<>(commitIds));
+            commitIds.clear();
+        }
+    }
+
+    protected boolean isExpired() {
+        return System.currentTimeMillis() - oldestEntryTime >= maxDelay;
+    }
+
+}
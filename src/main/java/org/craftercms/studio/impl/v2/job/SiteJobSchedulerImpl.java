@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.job;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.job.SiteJob;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
+import org.craftercms.studio.model.monitoring.Histogram;
+import org.craftercms.studio.model.monitoring.SchedulerMetrics;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default implementation of {@link SiteJobScheduler}.
+ *
+ * <p>Each job of each site has its own execution time, a single dispatcher thread waits until the next one is due (or
+ * a job is woken up) and moves it to the ready queue of its site. Sites with ready jobs are served round-robin, one
+ * job at a time, so a site with a lot of work can't delay the jobs of the other sites. The number of jobs running at
+ * the same time is limited both globally and for each site, and jobs never sleep inside the worker threads.</p>
+ *
+ * <p>The interval of a {@link StudioClockTask} is its number of cycles multiplied by the clock frequency plus a random
+ * offset, any other job runs once per cycle.</p>
+ *
+ * @since 4.0
+ */
+public class SiteJobSchedulerImpl implements SiteJobScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteJobSchedulerImpl.class);
+
+    /**
+     * Max number of sites included in the per site metrics
+     */
+    public static final int MAX_REPORTED_SITES = 10;
+
+    protected TaskExecutor taskExecutor;
+    protected List<SiteJob> siteJobs;
+    protected long cycleDuration;
+    protected int maxRunningJobs;
+    protected int maxRunningJobsPerSite;
+
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final Condition changed = lock.newCondition();
+    protected final Map<String, SiteQueue> sites = new HashMap<>();
+    protected final PriorityQueue<JobEntry> scheduled =
+            new PriorityQueue<>(Comparator.comparingLong(entry -> entry.dueTime));
+    protected final Deque<SiteQueue> waitingSites = new ArrayDeque<>();
+    protected final Histogram lag = new Histogram();
+    protected int readyJobs;
+    protected int runningJobs;
+    protected long executedJobs;
+    protected long rejectedJobs;
+
+    protected Thread dispatcher;
+    protected volatile boolean stopped;
+
+    public void init() {
+        dispatcher = new Thread(this::dispatch, "studio-site-job-scheduler");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public void destroy() {
+        stopped = true;
+        dispatcher.interrupt();
+    }
+
+    @Override
+    public void setSites(Collection<String> siteIds) {
+        lock.lock();
+        try {
+            Set<String> removed = new HashSet<>(sites.keySet());
+            removed.removeAll(siteIds);
+            for (String site : removed) {
+                logger.debug("Cancelling jobs for site " + site);
+                SiteQueue queue = sites.remove(site);
+                queue.removed = true;
+                for (JobEntry entry : queue.jobs) {
+                    entry.cancelled = true;
+                    scheduled.remove(entry);
+                }
+                readyJobs -= queue.ready.size();
+                queue.ready.clear();
+                waitingSites.remove(queue);
+            }
+
+            long now = getNanoTime();
+            for (String site : siteIds) {
+                if (!sites.containsKey(site)) {
+                    logger.debug("Scheduling jobs for site " + site);
+                    SiteQueue queue = new SiteQueue(site);
+                    for (SiteJob job : siteJobs) {
+                        JobEntry entry = new JobEntry(queue, job);
+                        queue.jobs.add(entry);
+                        // Spread the first execution of the jobs
+                        entry.dueTime = now + getOffset(job);
+                        scheduled.add(entry);
+                    }
+                    sites.put(site, queue);
+                }
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void wakeUp(String site, Class<? extends SiteJob> jobType) {
+        lock.lock();
+        try {
+            SiteQueue queue = sites.get(site);
+            if (queue == null) {
+                return;
+            }
+            for (JobEntry entry : queue.jobs) {
+                if (!jobType.isInstance(entry.job)) {
+                    continue;
+                }
+                if (entry.running) {
+                    // Run again as soon as the current execution finishes
+                    entry.wakeUp = true;
+                } else if (scheduled.remove(entry)) {
+                    entry.dueTime = getNanoTime();
+                    makeReady(entry);
+                }
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        Map<String, Integer> queueDepth = new HashMap<>();
+        Map<String, Double> siteLag = new HashMap<>();
+        lock.lock();
+        try {
+            long now = getNanoTime();
+            metrics.setSites(sites.size());
+            metrics.setScheduledJobs(scheduled.size());
+            metrics.setReadyJobs(readyJobs);
+            metrics.setRunningJobs(runningJobs);
+            metrics.setWaitingSites(waitingSites.size());
+            metrics.setExecutedJobs(executedJobs);
+            metrics.setRejectedJobs(rejectedJobs);
+            for (SiteQueue queue : sites.values()) {
+                if (!queue.ready.isEmpty()) {
+                    queueDepth.put(queue.site, queue.ready.size());
+                    siteLag.put(queue.site, (now - queue.ready.peek().dueTime) / 1_000_000.0);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        metrics.setLag(lag);
+        metrics.setQueueDepthBySite(getTop(queueDepth));
+        metrics.setLagBySite(getTop(siteLag));
+        return metrics;
+    }
+
+    /**
+     * Main loop of the dispatcher thread
+     */
+    protected void dispatch() {
+        lock.lock();
+        try {
+            while (!stopped) {
+                long now = getNanoTime();
+                JobEntry next;
+                while ((next = scheduled.peek()) != null && next.dueTime - now <= 0) {
+                    scheduled.poll();
+                    makeReady(next);
+                }
+                long timeout = next != null? next.dueTime - now : Long.MAX_VALUE;
+                if (!startReadyJobs(now)) {
+                    // Try again in the next cycle
+                    timeout = Math.min(timeout, TimeUnit.MILLISECONDS.toNanos(getCycleDuration()));
+                }
+
+                try {
+                    if (timeout == Long.MAX_VALUE) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(timeout);
+                    }
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.debug("Site job scheduler stopped");
+    }
+
+    /**
+     * Starts ready jobs taking one from each site in turn, until there are no more free workers
+     * @return false if the executor rejected a job
+     */
+    protected boolean startReadyJobs(long now) {
+        while (runningJobs < maxRunningJobs && !waitingSites.isEmpty()) {
+            SiteQueue queue = waitingSites.poll();
+            queue.waiting = false;
+            JobEntry entry = queue.ready.poll();
+            readyJobs--;
+            entry.running = true;
+            queue.running++;
+            runningJobs++;
+            try {
+                taskExecutor.execute(() -> execute(entry));
+            } catch (TaskRejectedException e) {
+                // The executor is shared with other components, keep the job at the front of the queue
+                logger.debug("Executor is busy, delaying jobs for site " + queue.site);
+                rejectedJobs++;
+                entry.running = false;
+                queue.running--;
+                runningJobs--;
+                queue.ready.addFirst(entry);
+                readyJobs++;
+                waitingSites.addFirst(queue);
+                queue.waiting = true;
+                return false;
+            }
+            lag.record(now - entry.dueTime);
+            if (queue.canStart()) {
+                // Go to the end of the line
+                waitingSites.add(queue);
+                queue.waiting = true;
+            }
+        }
+        return true;
+    }
+
+    protected void execute(JobEntry entry) {
+        String site = entry.queue.site;
+        try {
+            if (entry.job instanceof StudioClockTask) {
+                ((StudioClockTask) entry.job).executeNow(site);
+            } else {
+                entry.job.execute(site);
+            }
+        } catch (Exception e) {
+            logger.error("Error executing job " + entry.job.getClass().getSimpleName() + " for site " + site, e);
+        } finally {
+            lock.lock();
+            try {
+                SiteQueue queue = entry.queue;
+                entry.running = false;
+                queue.running--;
+                runningJobs--;
+                executedJobs++;
+                if (!entry.cancelled) {
+                    long now = getNanoTime();
+                    if (entry.wakeUp) {
+                        entry.wakeUp = false;
+                        entry.dueTime = now;
+                        makeReady(entry);
+                    } else {
+                        entry.dueTime = now + getInterval(entry.job) + getOffset(entry.job);
+                        scheduled.add(entry);
+                    }
+                    if (!queue.waiting && queue.canStart()) {
+                        waitingSites.add(queue);
+                        queue.waiting = true;
+                    }
+                }
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    protected void makeReady(JobEntry entry) {
+        SiteQueue queue = entry.queue;
+        queue.ready.add(entry);
+        readyJobs++;
+        if (!queue.waiting && queue.canStart()) {
+            waitingSites.add(queue);
+            queue.waiting = true;
+        }
+    }
+
+    protected long getInterval(SiteJob job) {
+        int cycles = 1;
+        if (job instanceof StudioClockTask) {
+            cycles = Math.max(1, ((StudioClockTask) job).getExecuteEveryNCycles());
+        }
+        return TimeUnit.MILLISECONDS.toNanos(cycles * getCycleDuration());
+    }
+
+    protected long getOffset(SiteJob job) {
+        if (job instanceof StudioClockTask && ((StudioClockTask) job).getOffset() > 0) {
+            return TimeUnit.MILLISECONDS.toNanos(
+                    ThreadLocalRandom.current().nextLong(((StudioClockTask) job).getOffset()));
+        }
+        return 0;
+    }
+
+    protected long getCycleDuration() {
+        return cycleDuration;
+    }
+
+    /**
+     * Returns the current value of the clock used for the execution times of the jobs, in nanoseconds
+     */
+    protected long getNanoTime() {
+        return System.nanoTime();
+    }
+
+    protected <T extends Comparable<T>> Map<String, T> getTop(Map<String, T> values) {
+        Map<String, T> top = new LinkedHashMap<>();
+        values.entrySet().stream()
+                .sorted(Map.Entry.<String, T>comparingByValue().reversed())
+                .limit(MAX_REPORTED_SITES)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    public void setSiteJobs(List<SiteJob> siteJobs) {
+        this.siteJobs = siteJobs;
+    }
+
+    public void setCycleDuration(long cycleDuration) {
+        this.cycleDuration = cycleDuration;
+    }
+
+    public void setMaxRunningJobs(int maxRunningJobs) {
+        this.maxRunningJobs = maxRunningJobs;
+    }
+
+    public void setMaxRunningJobsPerSite(int maxRunningJobsPerSite) {
+        this.maxRunningJobsPerSite = maxRunningJobsPerSite;
+    }
+
+    /**
+     * Jobs of a single site
+     */
+    protected class SiteQueue {
+
+        protected final String site;
+        protected final List<JobEntry> jobs = new ArrayList<>();
+        protected final Deque<JobEntry> ready = new ArrayDeque<>();
+        protected int running;
+        protected boolean waiting;
+        protected boolean removed;
+
+        protected SiteQueue(String site) {
+            this.site = site;
+        }
+
+        protected boolean canStart() {
+            return !removed && !ready.isEmpty() && running < maxRunningJobsPerSite;
+        }
+
+    }
+
+    /**
+     * State of a single job for a site
+     */
+    protected static class JobEntry {
+
+        protected final SiteQueue queue;
+        protected final SiteJob job;
+        protected long dueTime;
+        protected boolean running;
+        protected boolean wakeUp;
+        protected boolean cancelled;
+
+        protected JobEntry(SiteQueue queue, SiteJob job) {
+            this.queue = queue;
+            this.job = job;
+        }
+
+    }
+
+}
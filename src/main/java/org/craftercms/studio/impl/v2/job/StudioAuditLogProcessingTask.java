@@ -19,7 +19,6 @@ package org.craftercms.studio.impl.v2.job;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.io.FilenameUtils;
-import org.craftercms.studio.api.v1.constant.DmConstants;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
 import org.craftercms.studio.api.v1.log.Logger;
@@ -35,9 +34,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_UUID_FILENAME;
 import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_READY;
@@ -59,6 +56,8 @@ public class StudioAuditLogProcessingTask extends StudioClockTask {
     private ContentRepository contentRepository;
     private int batchSizeGitLog = 1000;
     private int batchSizeAudited = 100;
+    private int flushSize = 500;
+    private long flushInterval = 5000L;
     private ContentService contentService;
 
     @Override
@@ -94,6 +93,8 @@ public class StudioAuditLogProcessingTask extends StudioClockTask {
         List<GitLog> unauditedGitlogs = contentRepository.getUnauditedCommits(siteId, batchSize);
         if (unauditedGitlogs != null) {
             SiteFeed siteFeed = siteService.getSite(siteId);
+            AuditLogBatchWriter batchWriter = new AuditLogBatchWriter(auditServiceInternal, contentRepository, siteId,
+                    flushSize, flushInterval);
             for (GitLog gl : unauditedGitlogs) {
                 if (contentRepository.commitIdExists(siteId, gl.getCommitId())) {
                     String prevCommitId = gl.getCommitId() + PREVIOUS_COMMIT_SUFFIX;
@@ -104,115 +105,49 @@ public class StudioAuditLogProcessingTask extends StudioClockTask {
                                 ArrayUtils.contains(IGNORE_FILES, FilenameUtils.getName(repoOperation.getPath()))) {
                             continue;
                         }
-                        Map<String, String> activityInfo = new HashMap<String, String>();
-                        String contentClass;
-                        AuditLog auditLog;
+                        String operation;
+                        String path;
                         switch (repoOperation.getAction()) {
                             case CREATE:
                             case COPY:
-                                contentClass = contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath());
-                                if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                                    activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                                }
-                                logger.debug("Insert audit log for site: " + siteId + " path: " +
-                                        repoOperation.getPath());
-                                auditLog = auditServiceInternal.createAuditLogEntry();
-                                auditLog.setOperation(OPERATION_CREATE);
-                                auditLog.setOperationTimestamp(repoOperation.getDateTime());
-                                auditLog.setSiteId(siteFeed.getId());
-                                auditLog.setActorId(repoOperation.getAuthor());
-                                auditLog.setActorDetails(repoOperation.getAuthor());
-                                auditLog.setPrimaryTargetId(siteId + ":" + repoOperation.getPath());
-                                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                                auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                                auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath()));
-                                auditLog.setOrigin(ORIGIN_GIT);
-                                auditServiceInternal.insertAuditLog(auditLog);
-
+                                operation = OPERATION_CREATE;
+                                path = repoOperation.getPath();
                                 break;
-
                             case UPDATE:
-                                contentClass = contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath());
-                                if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                                    activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                                }
-                                logger.debug("Insert audit log for site: " + siteId + " path: " +
-                                        repoOperation.getPath());
-                                auditLog = auditServiceInternal.createAuditLogEntry();
-                                auditLog.setOperation(OPERATION_UPDATE);
-                                auditLog.setOperationTimestamp(repoOperation.getDateTime());
-                                auditLog.setSiteId(siteFeed.getId());
-                                auditLog.setActorId(repoOperation.getAuthor());
-                                auditLog.setActorDetails(repoOperation.getAuthor());
-                                auditLog.setOrigin(ORIGIN_GIT);
-                                auditLog.setPrimaryTargetId(siteId + ":" + repoOperation.getPath());
-                                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                                auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                                auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath()));
-                                auditServiceInternal.insertAuditLog(auditLog);
+                                operation = OPERATION_UPDATE;
+                                path = repoOperation.getPath();
                                 break;
-
                             case DELETE:
-                                contentClass = contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath());
-                                if (repoOperation.getPath().endsWith(DmConstants.XML_PATTERN)) {
-                                    activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                                }
-                                logger.debug("Insert audit log for site: " + siteId + " path: " +
-                                        repoOperation.getPath());
-                                auditLog = auditServiceInternal.createAuditLogEntry();
-                                auditLog.setOperation(OPERATION_DELETE);
-                                auditLog.setOperationTimestamp(repoOperation.getDateTime());
-                                auditLog.setSiteId(siteFeed.getId());
-                                auditLog.setOrigin(ORIGIN_GIT);
-                                auditLog.setActorId(repoOperation.getAuthor());
-                                auditLog.setActorDetails(repoOperation.getAuthor());
-                                auditLog.setPrimaryTargetId(siteId + ":" + repoOperation.getPath());
-                                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                                auditLog.setPrimaryTargetValue(repoOperation.getPath());
-                                auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(siteId,
-                                        repoOperation.getPath()));
-                                auditServiceInternal.insertAuditLog(auditLog);
-
+                                operation = OPERATION_DELETE;
+                                path = repoOperation.getPath();
                                 break;
-
                             case MOVE:
-                                contentClass = contentService.getContentTypeClass(siteId,
-                                        repoOperation.getMoveToPath());
-                                if (repoOperation.getMoveToPath().endsWith(DmConstants.XML_PATTERN)) {
-                                    activityInfo.put(DmConstants.KEY_CONTENT_TYPE, contentClass);
-                                }
-                                logger.debug("Insert audit log for site: " + siteId + " path: " +
-                                        repoOperation.getMoveToPath());
-                                auditLog = auditServiceInternal.createAuditLogEntry();
-                                auditLog.setOperation(OPERATION_MOVE);
-                                auditLog.setOperationTimestamp(repoOperation.getDateTime());
-                                auditLog.setSiteId(siteFeed.getId());
-                                auditLog.setActorId(repoOperation.getAuthor());
-                                auditLog.setActorDetails(repoOperation.getAuthor());
-                                auditLog.setOrigin(ORIGIN_GIT);
-                                auditLog.setPrimaryTargetId(siteId + ":" + repoOperation.getMoveToPath());
-                                auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
-                                auditLog.setPrimaryTargetValue(repoOperation.getMoveToPath());
-                                auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(siteId,
-                                        repoOperation.getMoveToPath()));
-                                auditServiceInternal.insertAuditLog(auditLog);
-
+                                operation = OPERATION_MOVE;
+                                path = repoOperation.getMoveToPath();
                                 break;
-
                             default:
                                 logger.error("Error: Unknown repo operation for site " + siteId + " operation: " +
                                         repoOperation.getAction());
-                                break;
+                                continue;
                         }
+                        logger.debug("Insert audit log for site: " + siteId + " path: " + path);
+                        AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
+                        auditLog.setOperation(operation);
+                        auditLog.setOperationTimestamp(repoOperation.getDateTime());
+                        auditLog.setSiteId(siteFeed.getId());
+                        auditLog.setActorId(repoOperation.getAuthor());
+                        auditLog.setActorDetails(repoOperation.getAuthor());
+                        auditLog.setOrigin(ORIGIN_GIT);
+                        auditLog.setPrimaryTargetId(siteId + ":" + path);
+                        auditLog.setPrimaryTargetType(TARGET_TYPE_CONTENT_ITEM);
+                        auditLog.setPrimaryTargetValue(path);
+                        auditLog.setPrimaryTargetSubtype(contentService.getContentTypeClass(siteId, path));
+                        batchWriter.add(auditLog);
                     }
                 }
-                contentRepository.markGitLogAudited(siteId, gl.getCommitId());
+                batchWriter.commitAudited(gl.getCommitId());
             }
+            batchWriter.flush();
         }
     }
 
@@ -266,6 +201,22 @@ public class StudioAuditLogProcessingTask extends StudioClockTask {
         this.batchSizeAudited = batchSizeAudited;
     }
 
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
     public ContentService getContentService() {
         return contentService;
     }
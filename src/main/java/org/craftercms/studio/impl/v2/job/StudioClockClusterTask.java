@@ -17,10 +17,12 @@
 package org.craftercms.studio.impl.v2.job;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v2.repository.RetryingRepositoryOperationFacade;
+import org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker;
 import org.eclipse.jgit.api.DeleteBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
@@ -38,9 +40,34 @@ public abstract class StudioClockClusterTask extends StudioClockTask {
 
     protected ContentRepository contentRepository;
     protected RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
+    protected ClusterRepoHeadTracker clusterRepoHeadTracker;
 
     protected abstract Path buildRepoPath(String site);
 
+    /**
+     * Returns the type of the repository synced by the task
+     */
+    protected abstract GitRepositories getSyncedRepository();
+
+    @Override
+    protected synchronized boolean checkCycleCounter(String site) {
+        // Don't wait for the next scheduled run if another member notified changes for the site
+        if (clusterRepoHeadTracker != null &&
+                clusterRepoHeadTracker.consumeNotification(site, getSyncedRepository())) {
+            return true;
+        }
+        return super.checkCycleCounter(site);
+    }
+
+    @Override
+    public void executeNow(String site) {
+        // The scheduler is woken up directly by the notifications, there is no need to keep them
+        if (clusterRepoHeadTracker != null) {
+            clusterRepoHeadTracker.consumeNotification(site, getSyncedRepository());
+        }
+        super.executeNow(site);
+    }
+
     protected void removeRemote(Git git, String remoteName) throws GitAPIException {
         RemoteRemoveCommand remoteRemoveCommand = git.remoteRemove();
         remoteRemoveCommand.setRemoteName(remoteName);
@@ -80,4 +107,8 @@ public abstract class StudioClockClusterTask extends StudioClockTask {
     public void setRetryingRepositoryOperationFacade(RetryingRepositoryOperationFacade retryingRepositoryOperationFacade) {
         this.retryingRepositoryOperationFacade = retryingRepositoryOperationFacade;
     }
+
+    public void setClusterRepoHeadTracker(ClusterRepoHeadTracker clusterRepoHeadTracker) {
+        this.clusterRepoHeadTracker = clusterRepoHeadTracker;
+    }
 }
@@ -32,9 +32,8 @@ import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
 import org.craftercms.studio.api.v1.service.site.SiteService;
 import org.craftercms.studio.api.v2.deployment.Deployer;
-import org.craftercms.studio.api.v2.job.SiteJob;
+import org.craftercms.studio.api.v2.job.SiteJobScheduler;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
-import org.springframework.core.task.TaskExecutor;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -46,9 +45,7 @@ import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
-import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_UUID_FILENAME;
-import static org.craftercms.studio.api.v1.constant.StudioConstants.STUDIO_CLOCK_EXECUTOR_SITE_LOCK;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_PREVIEW_DESTROY_CONTEXT_URL;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_BASE_PATH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.SITES_REPOS_PATH;
@@ -81,13 +78,12 @@ public class StudioClockExecutor implements Job {
     }
 
     private StudioConfiguration studioConfiguration;
-    private TaskExecutor taskExecutor;
     private SiteService siteService;
     private ContentRepository contentRepository;
     private Deployer deployer;
     private GeneralLockService generalLockService;
     private List<Job> globalTasks;
-    private List<SiteJob> siteTasks;
+    private SiteJobScheduler siteJobScheduler;
     private static int threadCounter = 0;
 
     @Override
@@ -116,24 +112,9 @@ public class StudioClockExecutor implements Job {
 
         cleanupDeletedSites();
 
+        // The site jobs are executed by the scheduler, it only needs to know about new or deleted sites
         List<String> sites = siteService.getAllCreatedSites();
-        for (String site : sites) {
-            taskExecutor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    String tasksLock = STUDIO_CLOCK_EXECUTOR_SITE_LOCK.replaceAll(PATTERN_SITE, site);
-                    if (generalLockService.tryLock(tasksLock)) {
-                        try {
-                            for (SiteJob siteTask : siteTasks) {
-                                siteTask.execute(site);
-                            }
-                        } finally {
-                            generalLockService.unlock(tasksLock);
-                        }
-                    }
-                }
-            });
-        }
+        siteJobScheduler.setSites(sites);
     }
 
     private void cleanupDeletedSites() {
@@ -210,14 +191,6 @@ public class StudioClockExecutor implements Job {
         this.studioConfiguration = studioConfiguration;
     }
 
-    public TaskExecutor getTaskExecutor() {
-        return taskExecutor;
-    }
-
-    public void setTaskExecutor(TaskExecutor taskExecutor) {
-        this.taskExecutor = taskExecutor;
-    }
-
     public SiteService getSiteService() {
         return siteService;
     }
@@ -258,11 +231,11 @@ public class StudioClockExecutor implements Job {
         this.globalTasks = globalTasks;
     }
 
-    public List<SiteJob> getSiteTasks() {
-        return siteTasks;
+    public SiteJobScheduler getSiteJobScheduler() {
+        return siteJobScheduler;
     }
 
-    public void setSiteTasks(List<SiteJob> siteTasks) {
-        this.siteTasks = siteTasks;
+    public void setSiteJobScheduler(SiteJobScheduler siteJobScheduler) {
+        this.siteJobScheduler = siteJobScheduler;
     }
 }
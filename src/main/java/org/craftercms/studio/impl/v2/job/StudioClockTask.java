@@ -71,6 +71,15 @@ public abstract class StudioClockTask implements SiteJob {
         }
     }
 
+    /**
+     * Executes the task right away, used when the intervals are handled by the
+     * {@link org.craftercms.studio.api.v2.job.SiteJobScheduler}
+     * @param site the site id
+     */
+    public void executeNow(String site) {
+        executeInternal(site);
+    }
+
     protected boolean validateRepository(Repository repository) throws IOException {
         for (Ref ref : repository.getRefDatabase().getRefs()) {
             if (ref.getObjectId() == null)
@@ -27,10 +27,12 @@ import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
 import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.dal.ClusterDAO;
 import org.craftercms.studio.api.v2.dal.ClusterMember;
 import org.craftercms.studio.api.v2.repository.RetryingRepositoryOperationFacade;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker;
 import org.craftercms.studio.impl.v2.service.cluster.StudioClusterUtils;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
@@ -51,13 +53,15 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.craftercms.studio.api.v1.constant.GitRepositories.GLOBAL;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.GLOBAL_REPOSITORY_GIT_LOCK;
+import static org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker.GLOBAL_SITE;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CLUSTER_NODE_REMOTE_NAME_PREFIX;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_URL;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_SECTION_REMOTE;
@@ -68,7 +72,7 @@ import static org.eclipse.jgit.lib.Constants.HEAD;
 public class StudioClusterGlobalRepoSyncTask implements Job {
 
     private static final Logger logger = LoggerFactory.getLogger(StudioClusterGlobalRepoSyncTask.class);
-    private static Map<String, String> existingRemotes = new HashMap<String, String>();
+    private static Map<String, String> existingRemotes = new ConcurrentHashMap<String, String>();
 
     private int executeEveryNCycles;
     private int counter;
@@ -79,8 +83,14 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
     private ConfigurationService configurationService;
     private String[] configurationPatterns;
     private RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
+    private ClusterDAO clusterDao;
+    private ClusterRepoHeadTracker clusterRepoHeadTracker;
 
     private synchronized boolean checkCycleCounter() {
+        // Don't wait for the next scheduled run if another member notified changes
+        if (clusterRepoHeadTracker.consumeNotification(GLOBAL_SITE, GLOBAL)) {
+            return true;
+        }
         return !(--counter > 0);
     }
 
@@ -100,6 +110,15 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
             HierarchicalConfiguration<ImmutableNode> registrationData = studioClusterUtils.getClusterConfiguration();
             if (registrationData != null && !registrationData.isEmpty()) {
                 String localAddress = studioClusterUtils.getClusterNodeLocalAddress();
+                ClusterMember localNode = clusterDao.getMemberByLocalAddress(localAddress);
+
+                // Skip the sync if the other members don't have any changes missing in the local repository
+                clusterRepoHeadTracker.recordLocalHead(localNode.getId(), GLOBAL_SITE, GLOBAL);
+                if (!clusterRepoHeadTracker.isSyncRequired(localNode.getId(), GLOBAL_SITE, GLOBAL)) {
+                    logger.debug("Global repository is up to date with all cluster members");
+                    return;
+                }
+
                 List<ClusterMember> clusterNodes = studioClusterUtils.getClusterNodes(localAddress);
                 // Check if repo exists
                 logger.debug("Check if global repository exists");
@@ -123,7 +142,7 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
                     try {
                         // Sync with remote and update the local cache with the last commit ID to speed things up
                         logger.debug("Update content for global repo");
-                        updateContent(clusterNodes);
+                        updateContent(localNode.getId(), clusterNodes);
                     } catch (IOException | CryptoException | ServiceLayerException e) {
                         logger.error("Error while updating content for global repo on cluster node.", e);
                     }
@@ -224,7 +243,7 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
 
             try {
                 if (existingRemotes == null) {
-                    existingRemotes = new HashMap<String, String>();
+                    existingRemotes = new ConcurrentHashMap<String, String>();
                 }
 
                 String remoteUrl = member.getGitUrl().replace("/sites/{siteId}", "/global");
@@ -292,7 +311,7 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
         }
     }
 
-    protected void updateContent(List<ClusterMember> clusterNodes)
+    protected void updateContent(long localNodeId, List<ClusterMember> clusterNodes)
             throws IOException, CryptoException, ServiceLayerException {
         logger.debug("Update global repo");
 
@@ -307,16 +326,28 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
 
         try (Git git = new Git(repo)) {
             logger.debug("Update content from each active cluster member");
+            Map<Long, String> remoteHeads = clusterRepoHeadTracker.getRemoteHeads(localNodeId, GLOBAL_SITE, GLOBAL);
             for (ClusterMember remoteNode : clusterNodes) {
-                updateBranch(git, remoteNode);
+                String remoteHead = remoteHeads.get(remoteNode.getId());
+                if (!clusterRepoHeadTracker.isSyncRequired(repo, GLOBAL_SITE, GLOBAL, remoteNode.getId(),
+                        remoteHead)) {
+                    logger.debug("Global repository is up to date with cluster member " +
+                            remoteNode.getLocalAddress());
+                    continue;
+                }
+                if (updateBranch(git, remoteNode)) {
+                    clusterRepoHeadTracker.markSynced(GLOBAL_SITE, GLOBAL, remoteNode.getId(), remoteHead);
+                }
             }
+            clusterRepoHeadTracker.recordLocalHead(localNodeId, GLOBAL_SITE, GLOBAL);
         } catch (GitAPIException e) {
             logger.error("Error while syncing cluster node global repo content", e);
         }
     }
 
-    private void updateBranch(Git git, ClusterMember remoteNode) throws CryptoException, GitAPIException,
+    private boolean updateBranch(Git git, ClusterMember remoteNode) throws CryptoException, GitAPIException,
             IOException, ServiceLayerException {
+        boolean updated = false;
         if (generalLockService.tryLock(GLOBAL_REPOSITORY_GIT_LOCK)) {
             var previousCommit = git.getRepository().resolve(HEAD);
             try {
@@ -325,6 +356,7 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
                 pullCommand.setRemote(remoteNode.getGitRemoteName());
                 pullCommand = studioClusterUtils.configureAuthenticationForCommand(remoteNode, pullCommand, tempKey);
                 var result = retryingRepositoryOperationFacade.call(pullCommand);
+                updated = result.isSuccessful();
 
                 if (result.isSuccessful() && result.getMergeResult() != null) {
                     // get all changed files that match the config patterns and invalidate the cache
@@ -339,6 +371,7 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
         } else {
             logger.debug("Failed to get lock " + GLOBAL_REPOSITORY_GIT_LOCK);
         }
+        return updated;
     }
 
     public int getExecuteEveryNCycles() {
@@ -396,4 +429,12 @@ public class StudioClusterGlobalRepoSyncTask implements Job {
     public void setRetryingRepositoryOperationFacade(RetryingRepositoryOperationFacade retryingRepositoryOperationFacade) {
         this.retryingRepositoryOperationFacade = retryingRepositoryOperationFacade;
     }
+
+    public void setClusterDao(ClusterDAO clusterDao) {
+        this.clusterDao = clusterDao;
+    }
+
+    public void setClusterRepoHeadTracker(ClusterRepoHeadTracker clusterRepoHeadTracker) {
+        this.clusterRepoHeadTracker = clusterRepoHeadTracker;
+    }
 }
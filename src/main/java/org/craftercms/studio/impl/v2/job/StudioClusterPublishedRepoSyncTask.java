@@ -20,6 +20,7 @@ import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.configuration2.tree.ImmutableNode;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.SiteNotFoundException;
@@ -54,7 +55,7 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +63,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
@@ -77,7 +79,8 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
 
     private static final Logger logger = LoggerFactory.getLogger(StudioClusterPublishedRepoSyncTask.class);
 
-    protected static final Map<String, Map<String, String>> remotesMap = new HashMap<String, Map<String, String>>();
+    protected static final Map<String, Map<String, String>> remotesMap =
+            new ConcurrentHashMap<String, Map<String, String>>();
 
     private StudioClusterUtils studioClusterUtils;
     private ClusterDAO clusterDao;
@@ -96,6 +99,15 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
             if (registrationData != null && !registrationData.isEmpty()) {
                 String localAddress = studioClusterUtils.getClusterNodeLocalAddress();
                 ClusterMember localNode = clusterDao.getMemberByLocalAddress(localAddress);
+
+                // Skip the site if the other members don't have any changes missing in the local repository
+                clusterRepoHeadTracker.recordLocalHead(localNode.getId(), siteId, PUBLISHED);
+                if (!clusterRepoHeadTracker.isSyncRequired(localNode.getId(), siteId, PUBLISHED)) {
+                    logger.debug("Published repository for site " + siteId + " is up to date with all cluster " +
+                            "members");
+                    return;
+                }
+
                 List<ClusterMember> clusterNodes = studioClusterUtils.getClusterNodes(localAddress);
                 SiteFeed siteFeed = siteService.getSite(siteId);
                 List<ClusterSiteRecord> clusterSiteRecords = clusterDao.getSiteStateAcrossCluster(siteId);
@@ -145,7 +157,7 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
                     try {
                         // Sync with remote and update the local cache with the last commit ID to speed things up
                         logger.debug("Update content for site " + siteId);
-                        updateContent(siteFeed.getId(), siteId, clusterNodes, clusterSiteRecords);
+                        updateContent(localNode.getId(), siteFeed.getId(), siteId, clusterNodes, clusterSiteRecords);
                     } catch (IOException | CryptoException | ServiceLayerException e) {
                         logger.error("Error while updating content for site " + siteId + " on cluster node.", e);
                     }
@@ -220,7 +232,7 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
 
             try {
                 if (existingRemotes == null) {
-                    existingRemotes = new HashMap<String, String>();
+                    existingRemotes = new ConcurrentHashMap<String, String>();
                     remotesMap.put(siteId, existingRemotes);
                 }
 
@@ -290,7 +302,7 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
         }
     }
 
-    protected void updateContent(long sId, String siteId, List<ClusterMember> clusterNodes,
+    protected void updateContent(long localNodeId, long sId, String siteId, List<ClusterMember> clusterNodes,
                                  List<ClusterSiteRecord> clusterSiteRecords) throws IOException,
             CryptoException,
             ServiceLayerException {
@@ -310,7 +322,21 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
             logger.debug("Update published repo from all active cluster members");
             if (generalLockService.tryLock(gitLockKey)) {
                 try {
+                    // Only fetch from the members that have changes missing in the local repository
+                    Map<Long, String> remoteHeads = clusterRepoHeadTracker.getRemoteHeads(localNodeId, siteId,
+                            PUBLISHED);
+                    List<ClusterMember> changedNodes = new ArrayList<>();
                     for (ClusterMember remoteNode : clusterNodes) {
+                        if (clusterRepoHeadTracker.isSyncRequired(repo, siteId, PUBLISHED, remoteNode.getId(),
+                                remoteHeads.get(remoteNode.getId()))) {
+                            changedNodes.add(remoteNode);
+                        } else {
+                            logger.debug("Published repository for site " + siteId + " is up to date with " +
+                                    "cluster member " + remoteNode.getLocalAddress());
+                        }
+                    }
+
+                    for (ClusterMember remoteNode : changedNodes) {
                         ClusterSiteRecord csr = clusterDao.getClusterSiteRecord(remoteNode.getId(), sId);
                         if (Objects.nonNull(csr) && csr.getPublishedRepoCreated() > 0) {
                             try {
@@ -320,6 +346,8 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
                                 fetch = studioClusterUtils.configureAuthenticationForCommand(remoteNode, fetch, tempKey);
                                 retryingRepositoryOperationFacade.call(fetch);
                                 Files.delete(tempKey);
+                                clusterRepoHeadTracker.markSynced(siteId, PUBLISHED, remoteNode.getId(),
+                                        remoteHeads.get(remoteNode.getId()));
                             } catch (GitAPIException e) {
                                 logger.error("Error while fetching published repo for site " + siteId + " from remote " +
                                         remoteNode.getGitRemoteName());
@@ -329,7 +357,7 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
                     }
 
                     for (String branch : environments) {
-                        for (ClusterMember remoteNode : clusterNodes) {
+                        for (ClusterMember remoteNode : changedNodes) {
                             ClusterSiteRecord csr = clusterDao.getClusterSiteRecord(remoteNode.getId(), sId);
                             if (Objects.nonNull(csr) && csr.getPublishedRepoCreated() > 0) {
                                 try {
@@ -342,6 +370,7 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
                             }
                         }
                     }
+                    clusterRepoHeadTracker.recordLocalHead(localNodeId, siteId, PUBLISHED);
                 } finally {
                     generalLockService.unlock(gitLockKey);
                 }
@@ -388,6 +417,11 @@ public class StudioClusterPublishedRepoSyncTask extends StudioClockClusterTask {
         Files.delete(tempKey);
     }
 
+    @Override
+    protected GitRepositories getSyncedRepository() {
+        return PUBLISHED;
+    }
+
     public StudioClusterUtils getStudioClusterUtils() {
         return studioClusterUtils;
     }
@@ -22,6 +22,7 @@ import org.apache.commons.configuration2.tree.ImmutableNode;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
 import org.craftercms.studio.api.v1.constant.StudioConstants;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
@@ -41,6 +42,7 @@ import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
 import org.craftercms.studio.api.v2.deployment.Deployer;
 import org.craftercms.studio.api.v2.service.config.ConfigurationService;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.dependency.DependencyGraphCache;
 import org.craftercms.studio.impl.v2.service.cluster.StudioClusterUtils;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
@@ -61,13 +63,13 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
@@ -88,7 +90,8 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
 
     private static final Logger logger = LoggerFactory.getLogger(StudioClusterSandboxRepoSyncTask.class);
 
-    protected static final Map<String, Map<String, String>> remotesMap = new HashMap<String, Map<String, String>>();
+    protected static final Map<String, Map<String, String>> remotesMap =
+            new ConcurrentHashMap<String, Map<String, String>>();
 
     private StudioClusterUtils studioClusterUtils;
     private Deployer deployer;
@@ -99,6 +102,7 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
     private ConfigurationService configurationService;
     private String[] configurationPatterns;
     private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    private DependencyGraphCache dependencyGraphCache;
 
     @Override
     protected void executeInternal(String siteId) {
@@ -110,6 +114,14 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
             if (registrationData != null && !registrationData.isEmpty()) {
                 String localAddress = studioClusterUtils.getClusterNodeLocalAddress();
                 ClusterMember localNode = clusterDao.getMemberByLocalAddress(localAddress);
+
+                // Skip the site if the other members don't have any changes missing in the local repository
+                clusterRepoHeadTracker.recordLocalHead(localNode.getId(), siteId, SANDBOX);
+                if (!clusterRepoHeadTracker.isSyncRequired(localNode.getId(), siteId, SANDBOX)) {
+                    logger.debug("Sandbox repository for site " + siteId + " is up to date with all cluster members");
+                    return;
+                }
+
                 List<ClusterMember> clusterNodes = studioClusterUtils.getClusterNodes(localAddress);
                 SiteFeed siteFeed = siteService.getSite(siteId);
                 List<ClusterSiteRecord> clusterSiteRecords = clusterDao.getSiteStateAcrossCluster(siteId);
@@ -226,6 +238,7 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
                 retryingDatabaseOperationFacade.setClusterNodeSiteState(localNodeId, sId, STATE_READY);
             } else {
                 remotesMap.remove(siteId);
+                clusterRepoHeadTracker.clear(siteId);
                 contentRepository.deleteSite(siteId);
 
                 try {
@@ -406,7 +419,7 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
 
             try {
                 if (existingRemotes == null) {
-                    existingRemotes = new HashMap<String, String>();
+                    existingRemotes = new ConcurrentHashMap<String, String>();
                     remotesMap.put(siteId, existingRemotes);
                 }
 
@@ -491,20 +504,30 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
 
         Map<String, String> remoteLastSyncCommits = remotesMap.get(siteId);
         if (remoteLastSyncCommits == null || remoteLastSyncCommits.isEmpty()) {
-            remoteLastSyncCommits = new HashMap<String, String>();
+            remoteLastSyncCommits = new ConcurrentHashMap<String, String>();
             remotesMap.put(siteId, remoteLastSyncCommits);
         }
         try (Git git = new Git(repo)) {
             logger.debug("Update content from each active cluster member");
+            Map<Long, String> remoteHeads = clusterRepoHeadTracker.getRemoteHeads(localNodeId, siteId, SANDBOX);
             for (ClusterMember remoteNode : clusterNodes) {
+                String remoteHead = remoteHeads.get(remoteNode.getId());
+                if (!clusterRepoHeadTracker.isSyncRequired(repo, siteId, SANDBOX, remoteNode.getId(), remoteHead)) {
+                    logger.debug("Sandbox repository for site " + siteId + " is up to date with cluster member " +
+                            remoteNode.getLocalAddress());
+                    continue;
+                }
                 ClusterSiteRecord csr = clusterDao.getClusterSiteRecord(remoteNode.getId(), sId);
                 if (Objects.nonNull(csr) && StringUtils.equals(csr.getState(), STATE_READY)) {
-                    updateBranch(siteId, git, remoteNode, sandboxBranchName);
+                    if (updateBranch(siteId, git, remoteNode, sandboxBranchName)) {
+                        clusterRepoHeadTracker.markSynced(siteId, SANDBOX, remoteNode.getId(), remoteHead);
+                    }
                 }
             }
 
             String updatedCommitId = contentRepository.getRepoLastCommitId(siteId);
             retryingDatabaseOperationFacade.updateClusterNodeLastCommitId(localNodeId, sId, updatedCommitId);
+            clusterRepoHeadTracker.recordLocalHead(localNodeId, siteId, SANDBOX);
 
             PreviewEventContext context = new PreviewEventContext();
             context.setSite(siteId);
@@ -514,8 +537,9 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
         }
     }
 
-    private void updateBranch(String siteId, Git git, ClusterMember remoteNode, String sandboxBranchName)
+    private boolean updateBranch(String siteId, Git git, ClusterMember remoteNode, String sandboxBranchName)
             throws CryptoException, GitAPIException, IOException, ServiceLayerException {
+        boolean updated = false;
         String gitLockKey = SITE_SANDBOX_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, siteId);
         final Path tempKey = Files.createTempFile(UUID.randomUUID().toString(), ".tmp");
         if (generalLockService.tryLock(gitLockKey)) {
@@ -527,11 +551,17 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
                 pullCommand.setRemoteBranchName(sandboxBranchName);
                 pullCommand = studioClusterUtils.configureAuthenticationForCommand(remoteNode, pullCommand, tempKey);
                 var result = retryingRepositoryOperationFacade.call(pullCommand);
+                updated = result.isSuccessful();
 
                 if (result.isSuccessful() && result.getMergeResult() != null) {
                     // get all changed files that match the config patterns and invalidate the cache
                     getChangedFiles(git, previousCommit, result.getMergeResult().getNewHead(), configurationPatterns)
                             .forEach(path -> configurationService.invalidateConfiguration(siteId, path));
+
+                    // the dependencies of the pulled changes were written to the database by the other node
+                    if (!Objects.equals(previousCommit, result.getMergeResult().getNewHead())) {
+                        dependencyGraphCache.invalidate(siteId);
+                    }
                 }
 
             } finally {
@@ -542,6 +572,12 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
         }
 
         Files.delete(tempKey);
+        return updated;
+    }
+
+    @Override
+    protected GitRepositories getSyncedRepository() {
+        return SANDBOX;
     }
 
     public StudioClusterUtils getStudioClusterUtils() {
@@ -600,6 +636,10 @@ public class StudioClusterSandboxRepoSyncTask extends StudioClockClusterTask {
         this.configurationPatterns = configurationPatterns;
     }
 
+    public void setDependencyGraphCache(DependencyGraphCache dependencyGraphCache) {
+        this.dependencyGraphCache = dependencyGraphCache;
+    }
+
     public RetryingDatabaseOperationFacade getRetryingDatabaseOperationFacade() {
         return retryingDatabaseOperationFacade;
     }
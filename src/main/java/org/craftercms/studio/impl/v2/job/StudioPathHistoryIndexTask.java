@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.job;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.impl.v2.repository.GitPathHistoryIndex;
+
+import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_READY;
+
+/**
+ * Keeps the path history index of each site up to date. Existing repositories are backfilled the first time the
+ * task runs for them, after that only the new commits are indexed.
+ *
+ * @since 4.0
+ */
+public class StudioPathHistoryIndexTask extends StudioClockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudioPathHistoryIndexTask.class);
+
+    protected GitPathHistoryIndex pathHistoryIndex;
+
+    @Override
+    protected void executeInternal(String site) {
+        try {
+            if (StringUtils.equals(siteService.getSiteState(site), STATE_READY)) {
+                long startMark = logger.isDebugEnabled() ? System.currentTimeMillis() : 0L;
+                pathHistoryIndex.update(site);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Path history index for site " + site + " updated in " +
+                            (System.currentTimeMillis() - startMark) + " milliseconds");
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to update path history index for site " + site, e);
+        }
+    }
+
+    public GitPathHistoryIndex getPathHistoryIndex() {
+        return pathHistoryIndex;
+    }
+
+    public void setPathHistoryIndex(GitPathHistoryIndex pathHistoryIndex) {
+        this.pathHistoryIndex = pathHistoryIndex;
+    }
+}
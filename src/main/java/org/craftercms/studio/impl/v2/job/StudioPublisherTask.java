@@ -37,6 +37,7 @@ import org.craftercms.studio.api.v2.service.notification.NotificationService;
 import org.craftercms.studio.api.v2.service.publish.internal.PublishingProgressObserver;
 import org.craftercms.studio.api.v2.service.publish.internal.PublishingProgressServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.cluster.ClusterRepoHeadTracker;
 import org.craftercms.studio.impl.v2.service.cluster.StudioClusterUtils;
 import org.springframework.jdbc.UncategorizedSQLException;
 
@@ -49,6 +50,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
 import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_READY;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_PUBLISHED;
 import static org.craftercms.studio.api.v2.dal.AuditLogConstants.TARGET_TYPE_CONTENT_ITEM;
@@ -78,6 +80,7 @@ public class StudioPublisherTask extends StudioClockTask {
     private int maxRetryCounter;
     private StudioClusterUtils studioClusterUtils;
     private PublishingProgressServiceInternal publishingProgressServiceInternal;
+    private ClusterRepoHeadTracker clusterRepoHeadTracker;
 
     @Override
     protected void executeInternal(String siteId) {
@@ -101,6 +104,8 @@ public class StudioPublisherTask extends StudioClockTask {
                                 retryCounter.put(siteId, maxRetryCounter);
                             }
                             Set<String> environments = getAllPublishingEnvironments(siteId);
+                            // The queue is processed in batches, only check each commit once
+                            Set<String> presentCommits = new HashSet<>();
                             for (String environment : environments) {
                                 env = environment;
                                 logger.debug("Processing content ready for deployment for site \"{0}\"", siteId);
@@ -117,10 +122,12 @@ public class StudioPublisherTask extends StudioClockTask {
                                     boolean allCommitsPresent = true;
                                     StringBuilder sbMissingCommits = new StringBuilder();
                                     for (String commit : commitIds) {
-                                        if (StringUtils.isNotEmpty(commit)) {
+                                        if (StringUtils.isNotEmpty(commit) && !presentCommits.contains(commit)) {
                                             boolean commitPresent = contentRepository.commitIdExists(siteId,
                                                     commit);
-                                            if (!commitPresent) {
+                                            if (commitPresent) {
+                                                presentCommits.add(commit);
+                                            } else {
                                                 sbMissingCommits.append(commit).append("; ");
                                                 logger.debug("Commit with ID: " + commit + " is not present in " +
                                                         "local repo for site " + siteId + ". " +
@@ -325,7 +332,7 @@ public class StudioPublisherTask extends StudioClockTask {
             }
         }
         contentRepository.publish(site, siteFeed.getSandboxBranch(), items, environment, author, comment);
-
+        clusterRepoHeadTracker.recordLocalHead(site, PUBLISHED);
     }
 
     protected void generateWorkflowActivity(String site, String environment, Set<String> packageIds, String username,
@@ -437,6 +444,10 @@ public class StudioPublisherTask extends StudioClockTask {
         this.studioClusterUtils = studioClusterUtils;
     }
 
+    public void setClusterRepoHeadTracker(ClusterRepoHeadTracker clusterRepoHeadTracker) {
+        this.clusterRepoHeadTracker = clusterRepoHeadTracker;
+    }
+
     public PublishingProgressServiceInternal getPublishingProgressServiceInternal() {
         return publishingProgressServiceInternal;
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.job;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.impl.v2.repository.GitPublishingHistoryIndex;
+
+import static org.craftercms.studio.api.v1.dal.SiteFeed.STATE_READY;
+
+/**
+ * Loads the publishing history of existing sites from their published repositories, once per site. New publishes
+ * are added to the history as they happen, so the task does nothing for sites that have already been loaded.
+ *
+ * @since 4.0
+ */
+public class StudioPublishingHistoryBackfillTask extends StudioClockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudioPublishingHistoryBackfillTask.class);
+
+    protected GitPublishingHistoryIndex publishingHistoryIndex;
+
+    @Override
+    protected void executeInternal(String site) {
+        try {
+            if (!publishingHistoryIndex.isAvailable(site) &&
+                    StringUtils.equals(siteService.getSiteState(site), STATE_READY)) {
+                publishingHistoryIndex.backfill(site);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to load publishing history for site " + site, e);
+        }
+    }
+
+    public GitPublishingHistoryIndex getPublishingHistoryIndex() {
+        return publishingHistoryIndex;
+    }
+
+    public void setPublishingHistoryIndex(GitPublishingHistoryIndex publishingHistoryIndex) {
+        this.publishingHistoryIndex = publishingHistoryIndex;
+    }
+}
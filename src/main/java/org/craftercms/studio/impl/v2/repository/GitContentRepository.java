@@ -57,6 +57,7 @@ import org.craftercms.studio.api.v2.dal.RepoOperation;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
 import org.craftercms.studio.api.v2.dal.User;
 import org.craftercms.studio.api.v2.repository.ContentRepository;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
 import org.craftercms.studio.api.v2.repository.RetryingRepositoryOperationFacade;
 import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
 import org.craftercms.studio.api.v2.service.publish.internal.PublishingProgressServiceInternal;
@@ -84,13 +85,19 @@ import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
@@ -104,6 +111,8 @@ import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.springframework.dao.DuplicateKeyException;
 
 import java.io.File;
@@ -117,15 +126,16 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -151,6 +161,7 @@ import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COMMIT
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_COMMIT_MESSAGE_PROLOGUE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_INITIAL_COMMIT_COMMIT_MESSAGE;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_PUBLISHED_COMMIT_MESSAGE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_PUBLISHED_INDEX_DIRECT_ENABLED;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_SANDBOX_BRANCH;
 import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_SYNC_DB_COMMIT_MESSAGE_NO_PROCESSING;
 import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.EMPTY_FILE;
@@ -190,6 +201,7 @@ public class GitContentRepository implements ContentRepository {
     private RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
     private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
     private PublishingProgressServiceInternal publishingProgressServiceInternal;
+    private GitPublishingHistoryIndex publishingHistoryIndex;
 
     @Override
     public List<String> getSubtreeItems(String site, String path) {
@@ -718,6 +730,7 @@ public class GitContentRepository implements ContentRepository {
                                                             String publisher, ZonedDateTime fromDate,
                                                             ZonedDateTime toDate, int limit) {
         List<PublishingHistoryItem> toRet = new ArrayList<PublishingHistoryItem>();
+        Pattern pattern = StringUtils.isNotEmpty(pathRegex) ? Pattern.compile(pathRegex) : null;
         Repository publishedRepo = helper.getRepository(siteId, PUBLISHED);
         if (publishedRepo != null) {
             int counter = 0;
@@ -759,15 +772,7 @@ public class GitContentRepository implements ContentRepository {
                                 Path path = Paths.get(file);
                                 String fileName = path.getFileName().toString();
                                 if (!ArrayUtils.contains(IGNORE_FILES, fileName)) {
-                                    boolean addFile = false;
-                                    if (StringUtils.isNotEmpty(pathRegex)) {
-                                        Pattern pattern = Pattern.compile(pathRegex);
-                                        Matcher matcher = pattern.matcher(file);
-                                        addFile = matcher.matches();
-                                    } else {
-                                        addFile = true;
-                                    }
-                                    if (addFile) {
+                                    if (pattern == null || pattern.matcher(file).matches()) {
                                         PublishingHistoryItem phi = new PublishingHistoryItem();
                                         phi.setSiteId(siteId);
                                         phi.setPath(file);
@@ -899,6 +904,14 @@ public class GitContentRepository implements ContentRepository {
                                 "sandbox for site " + site);
                     }
 
+                    if (isIndexDirectPublishEnabled() && Objects.nonNull(repo.exactRef(R_HEADS + environment))) {
+                        publishIndexDirect(site, git, deploymentItems, environment, author, comment);
+                        if (repoCreated) {
+                            siteService.setPublishedRepoCreated(site);
+                        }
+                        return;
+                    }
+
                     // checkout environment branch
                     logger.debug("Checkout environment branch " + environment + " for site " + site);
                     try {
@@ -957,23 +970,10 @@ public class GitContentRepository implements ContentRepository {
                     AddCommand addCommand = git.add();
                     String currentPackageId = deploymentItems.get(0).getPackageId();
                     for (DeploymentItemTO deploymentItem : deploymentItems) {
-                        commitId = deploymentItem.getCommitId();
                         path = helper.getGitPath(deploymentItem.getPath());
-                        if (Objects.isNull(commitId) || !commitIdExists(site, PUBLISHED, commitId)) {
-                            if (contentExists(site, path)) {
-                                if (Objects.isNull(commitId)) {
-                                    logger.warn("Commit ID is NULL for content " + path +
-                                            ". Was the git repo reset at some point?" );
-                                } else {
-                                    logger.warn("Commit ID " + commitId + " does not exist for content " + path +
-                                            ". Was the git repo reset at some point?" );
-                                }
-                                logger.info("Publishing content from HEAD for " + path);
-                                commitId = getRepoLastCommitId(site);
-                            } else {
-                                logger.warn("Skipping file " + path + " because commit id is null");
-                                continue;
-                            }
+                        commitId = resolvePublishCommitId(site, deploymentItem.getCommitId(), path);
+                        if (Objects.isNull(commitId)) {
+                            continue;
                         }
                         logger.debug("Checking out file " + path + " from commit id " + commitId +
                                 " for site " + site);
@@ -1019,8 +1019,6 @@ public class GitContentRepository implements ContentRepository {
                     logger.debug("Checkout deployed files completed.");
 
                     // commit all deployed files
-                    String commitMessage = studioConfiguration.getProperty(REPO_PUBLISHED_COMMIT_MESSAGE);
-
                     logger.debug("Get Author Ident started.");
                     User user = userServiceInternal.getUserByIdOrUsername(-1, author);
                     PersonIdent authorIdent = helper.getAuthorIdent(user);
@@ -1030,53 +1028,22 @@ public class GitContentRepository implements ContentRepository {
                     retryingRepositoryOperationFacade.call(addCommand);
                     logger.debug("Git add all published items completed.");
 
-                    commitMessage = commitMessage.replace("{username}", author);
-                    commitMessage =
-                            commitMessage.replace("{datetime}",
-                                    ZonedDateTime.now(UTC).format(
-                                            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX")));
-                    commitMessage = commitMessage.replace("{source}", "UI");
-                    commitMessage = commitMessage.replace("{message}", comment);
-                    StringBuilder sb = new StringBuilder();
-                    for (String c : deployedCommits) {
-                        sb.append(c).append(" ");
-                    }
-                    StringBuilder sbPackage = new StringBuilder();
-                    for (String p : deployedPackages) {
-                        sbPackage.append(p).append(" ");
-                    }
-                    commitMessage = commitMessage.replace("{commit_id}", sb.toString().trim());
-                    commitMessage = commitMessage.replace("{package_id}", sbPackage.toString().trim());
+                    String commitMessage = getPublishCommitMessage(author, comment, deployedCommits, deployedPackages);
                     logger.debug("Git commit all published items started.");
-                    String prologue = studioConfiguration.getProperty(REPO_COMMIT_MESSAGE_PROLOGUE);
-                    String postscript = studioConfiguration.getProperty(REPO_COMMIT_MESSAGE_POSTSCRIPT);
-                    StringBuilder sbCommitMessage = new StringBuilder();
-                    if (StringUtils.isNotEmpty(prologue)) {
-                        sbCommitMessage.append(prologue).append("\n\n");
-                    }
-                    sbCommitMessage.append(commitMessage);
-                    if (StringUtils.isNotEmpty(postscript)) {
-                        sbCommitMessage.append("\n\n").append(postscript);
-                    }
                     CommitCommand commitCommand =
-                            git.commit().setMessage(sbCommitMessage.toString()).setAuthor(authorIdent);
+                            git.commit().setMessage(addCommitMessagePrologueAndPostscript(commitMessage))
+                                    .setAuthor(authorIdent);
                     RevCommit revCommit = retryingRepositoryOperationFacade.call(commitCommand);
                     logger.debug("Git commit all published items completed.");
-                    int commitTime = revCommit.getCommitTime();
 
                     // tag
-                    ZonedDateTime tagDate2 = Instant.ofEpochSecond(commitTime).atZone(UTC);
-                    ZonedDateTime publishDate = ZonedDateTime.now(UTC);
-                    String tagName2 = tagDate2.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX")) +
-                            "_published_on_" + publishDate.format(
-                            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX"));
                     logger.debug("Get Author Ident started.");
                     PersonIdent authorIdent2 = helper.getAuthorIdent(user);
                     logger.debug("Get Author Ident completed.");
 
                     logger.debug("Git tag started.");
-                    TagCommand tagCommand =
-                            git.tag().setTagger(authorIdent2).setName(tagName2).setMessage(commitMessage);
+                    TagCommand tagCommand = git.tag().setTagger(authorIdent2)
+                            .setName(getPublishTagName(revCommit)).setMessage(commitMessage);
                     retryingRepositoryOperationFacade.call(tagCommand);
                     logger.debug("Git tag completed.");
 
@@ -1094,6 +1061,8 @@ public class GitContentRepository implements ContentRepository {
                     MergeCommand mergeCommand = git.merge().setCommit(true).include(branchRef);
                     retryingRepositoryOperationFacade.call(mergeCommand);
 
+                    recordPublishingHistory(site, environment, repo, revCommit, deploymentItems);
+
                     // clean up
                     logger.debug("Delete in-progress branch (clean up) for site " + site);
                     DeleteBranchCommand deleteBranchCommand =
@@ -1114,6 +1083,305 @@ public class GitContentRepository implements ContentRepository {
         }
     }
 
+    /**
+     * Adds the items included in a publish commit to the publishing history. Errors are only logged since the
+     * content has already been published at this point.
+     */
+    private void recordPublishingHistory(String site, String environment, Repository repo, RevCommit revCommit,
+                                         List<DeploymentItemTO> deploymentItems) {
+        try {
+            Map<String, String> packageIds = new HashMap<>();
+            for (DeploymentItemTO deploymentItem : deploymentItems) {
+                if (StringUtils.isNotEmpty(deploymentItem.getPackageId())) {
+                    packageIds.put(FILE_SEPARATOR + helper.getGitPath(deploymentItem.getPath()),
+                            deploymentItem.getPackageId());
+                    if (StringUtils.isNotEmpty(deploymentItem.getOldPath())) {
+                        packageIds.put(FILE_SEPARATOR + helper.getGitPath(deploymentItem.getOldPath()),
+                                deploymentItem.getPackageId());
+                    }
+                }
+            }
+            publishingHistoryIndex.record(site, environment, repo, revCommit, packageIds);
+        } catch (Exception e) {
+            logger.error("Error adding commit " + revCommit.getName() + " to the publishing history of site " +
+                    site, e);
+        }
+    }
+
+    /**
+     * Resolves the commit that the given item should be published from. Falls back to the sandbox HEAD if the
+     * commit recorded for the item does not exist anymore.
+     *
+     * @param site site identifier
+     * @param commitId commit id recorded for the deployment item
+     * @param path git path of the deployment item
+     * @return commit id to publish from, or null if the item should be skipped
+     */
+    private String resolvePublishCommitId(String site, String commitId, String path) {
+        if (Objects.isNull(commitId) || !commitIdExists(site, PUBLISHED, commitId)) {
+            if (contentExists(site, path)) {
+                if (Objects.isNull(commitId)) {
+                    logger.warn("Commit ID is NULL for content " + path +
+                            ". Was the git repo reset at some point?" );
+                } else {
+                    logger.warn("Commit ID " + commitId + " does not exist for content " + path +
+                            ". Was the git repo reset at some point?" );
+                }
+                logger.info("Publishing content from HEAD for " + path);
+                return getRepoLastCommitId(site);
+            } else {
+                logger.warn("Skipping file " + path + " because commit id is null");
+                return null;
+            }
+        }
+        return commitId;
+    }
+
+    private String getPublishCommitMessage(String author, String comment, Set<String> deployedCommits,
+                                           Set<String> deployedPackages) {
+        String commitMessage = studioConfiguration.getProperty(REPO_PUBLISHED_COMMIT_MESSAGE);
+        commitMessage = commitMessage.replace("{username}", author);
+        commitMessage =
+                commitMessage.replace("{datetime}",
+                        ZonedDateTime.now(UTC).format(
+                                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX")));
+        commitMessage = commitMessage.replace("{source}", "UI");
+        commitMessage = commitMessage.replace("{message}", comment);
+        StringBuilder sb = new StringBuilder();
+        for (String c : deployedCommits) {
+            sb.append(c).append(" ");
+        }
+        StringBuilder sbPackage = new StringBuilder();
+        for (String p : deployedPackages) {
+            sbPackage.append(p).append(" ");
+        }
+        commitMessage = commitMessage.replace("{commit_id}", sb.toString().trim());
+        commitMessage = commitMessage.replace("{package_id}", sbPackage.toString().trim());
+        return commitMessage;
+    }
+
+    private String addCommitMessagePrologueAndPostscript(String commitMessage) {
+        String prologue = studioConfiguration.getProperty(REPO_COMMIT_MESSAGE_PROLOGUE);
+        String postscript = studioConfiguration.getProperty(REPO_COMMIT_MESSAGE_POSTSCRIPT);
+        StringBuilder sbCommitMessage = new StringBuilder();
+        if (StringUtils.isNotEmpty(prologue)) {
+            sbCommitMessage.append(prologue).append("\n\n");
+        }
+        sbCommitMessage.append(commitMessage);
+        if (StringUtils.isNotEmpty(postscript)) {
+            sbCommitMessage.append("\n\n").append(postscript);
+        }
+        return sbCommitMessage.toString();
+    }
+
+    private String getPublishTagName(RevCommit revCommit) {
+        ZonedDateTime tagDate = Instant.ofEpochSecond(revCommit.getCommitTime()).atZone(UTC);
+        ZonedDateTime publishDate = ZonedDateTime.now(UTC);
+        return tagDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX")) +
+                "_published_on_" + publishDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmssSSSX"));
+    }
+
+    private boolean isIndexDirectPublishEnabled() {
+        return Boolean.parseBoolean(studioConfiguration.getProperty(REPO_PUBLISHED_INDEX_DIRECT_ENABLED));
+    }
+
+    /**
+     * Publishes the deployment items by building the new environment branch tree in memory. Blobs are looked up
+     * once per sandbox commit, the deployment items are applied in order over the current environment tree and
+     * the result is written as a single commit on top of the environment branch, without checking out any file in
+     * the published repository working tree.
+     */
+    private void publishIndexDirect(String site, Git git, List<DeploymentItemTO> deploymentItems,
+                                    String environment, String author, String comment)
+            throws IOException, GitAPIException, ServiceLayerException, UserNotFoundException {
+        Repository repo = git.getRepository();
+        Ref environmentRef = repo.exactRef(R_HEADS + environment);
+
+        // Resolve the commit to publish from for every item and group the paths by commit
+        logger.debug("Resolve deployed files started.");
+        List<DeploymentItemTO> itemsToPublish = new ArrayList<>();
+        List<String> commitIds = new ArrayList<>();
+        Map<String, Set<String>> pathsByCommit = new HashMap<>();
+        for (DeploymentItemTO deploymentItem : deploymentItems) {
+            String path = helper.getGitPath(deploymentItem.getPath());
+            String commitId = resolvePublishCommitId(site, deploymentItem.getCommitId(), path);
+            if (Objects.isNull(commitId)) {
+                continue;
+            }
+            itemsToPublish.add(deploymentItem);
+            commitIds.add(commitId);
+            pathsByCommit.computeIfAbsent(commitId, k -> new HashSet<>()).add(path);
+        }
+        logger.debug("Resolve deployed files completed.");
+
+        try (ObjectReader reader = repo.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             ObjectInserter inserter = repo.newObjectInserter()) {
+            Map<String, NavigableMap<String, DirCacheEntry>> entriesByCommit = new HashMap<>();
+            for (Map.Entry<String, Set<String>> commitPaths : pathsByCommit.entrySet()) {
+                RevTree tree = revWalk.parseCommit(repo.resolve(commitPaths.getKey())).getTree();
+                entriesByCommit.put(commitPaths.getKey(),
+                        readTreeEntries(reader, tree, PathFilterGroup.createFromStrings(commitPaths.getValue())));
+            }
+            NavigableMap<String, DirCacheEntry> environmentEntries =
+                    readTreeEntries(reader, revWalk.parseCommit(environmentRef.getObjectId()).getTree(), null);
+
+            Set<String> deployedCommits = new HashSet<String>();
+            Set<String> deployedPackages = new HashSet<String>();
+            logger.debug("Apply deployed files started.");
+            String currentPackageId = deploymentItems.get(0).getPackageId();
+            for (int i = 0; i < itemsToPublish.size(); i++) {
+                DeploymentItemTO deploymentItem = itemsToPublish.get(i);
+                String commitId = commitIds.get(i);
+                String path = helper.getGitPath(deploymentItem.getPath());
+                logger.debug("Applying file " + path + " from commit id " + commitId + " for site " + site);
+
+                NavigableMap<String, DirCacheEntry> commitEntries = entriesByCommit.get(commitId);
+                if (commitEntries.containsKey(path)) {
+                    environmentEntries.put(path, commitEntries.get(path));
+                }
+                environmentEntries.putAll(getSubtreeEntries(commitEntries, path));
+
+                if (deploymentItem.isMove()) {
+                    if (!StringUtils.equals(deploymentItem.getPath(), deploymentItem.getOldPath())) {
+                        String oldPath = helper.getGitPath(deploymentItem.getOldPath());
+                        removeEntries(environmentEntries, oldPath);
+                        cleanUpMoveFolders(environmentEntries, oldPath);
+                    }
+                }
+
+                if (deploymentItem.isDelete()) {
+                    boolean isPage = path.endsWith(FILE_SEPARATOR + INDEX_FILE);
+                    removeEntries(environmentEntries, path);
+                    if (StringUtils.contains(path, FILE_SEPARATOR)) {
+                        deleteParentFolder(environmentEntries,
+                                StringUtils.substringBeforeLast(path, FILE_SEPARATOR), isPage);
+                    }
+                }
+                deployedCommits.add(commitId);
+                String packageId = deploymentItem.getPackageId();
+                if (StringUtils.isNotEmpty(packageId)) {
+                    deployedPackages.add(deploymentItem.getPackageId());
+                }
+
+                itemServiceInternal.updateLastPublishedOn(site, deploymentItem.getPath(), ZonedDateTime.now(UTC));
+
+                if (!StringUtils.equals(currentPackageId, deploymentItem.getPackageId())) {
+                    currentPackageId = deploymentItem.getPackageId();
+                    publishingProgressServiceInternal.updateObserver(site, currentPackageId);
+                } else {
+                    publishingProgressServiceInternal.updateObserver(site);
+                }
+            }
+            logger.debug("Apply deployed files completed.");
+
+            logger.debug("Write published tree started.");
+            DirCache dirCache = DirCache.newInCore();
+            DirCacheBuilder builder = dirCache.builder();
+            environmentEntries.values().forEach(builder::add);
+            builder.finish();
+            ObjectId treeId = dirCache.writeTree(inserter);
+            logger.debug("Write published tree completed.");
+
+            logger.debug("Get Author Ident started.");
+            User user = userServiceInternal.getUserByIdOrUsername(-1, author);
+            PersonIdent authorIdent = helper.getAuthorIdent(user);
+            logger.debug("Get Author Ident completed.");
+
+            logger.debug("Git commit all published items started.");
+            String commitMessage = getPublishCommitMessage(author, comment, deployedCommits, deployedPackages);
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(treeId);
+            commitBuilder.setParentId(environmentRef.getObjectId());
+            commitBuilder.setAuthor(authorIdent);
+            commitBuilder.setCommitter(new PersonIdent(repo));
+            commitBuilder.setMessage(addCommitMessagePrologueAndPostscript(commitMessage));
+            ObjectId newCommitId = inserter.insert(commitBuilder);
+            inserter.flush();
+            RevCommit revCommit = revWalk.parseCommit(newCommitId);
+
+            RefUpdate refUpdate = repo.updateRef(R_HEADS + environment);
+            refUpdate.setNewObjectId(newCommitId);
+            refUpdate.setExpectedOldObjectId(environmentRef.getObjectId());
+            refUpdate.setRefLogMessage("commit: " + revCommit.getShortMessage(), false);
+            RefUpdate.Result result = refUpdate.update(revWalk);
+            if (result != RefUpdate.Result.FAST_FORWARD && result != RefUpdate.Result.NEW) {
+                throw new IOException("Failed to update branch " + environment + " for site " + site +
+                        " (" + result.name() + ")");
+            }
+            logger.debug("Git commit all published items completed.");
+
+            recordPublishingHistory(site, environment, repo, revCommit, deploymentItems);
+
+            logger.debug("Git tag started.");
+            TagCommand tagCommand = git.tag().setObjectId(revCommit).setTagger(helper.getAuthorIdent(user))
+                    .setName(getPublishTagName(revCommit)).setMessage(commitMessage);
+            retryingRepositoryOperationFacade.call(tagCommand);
+            logger.debug("Git tag completed.");
+        }
+    }
+
+    private NavigableMap<String, DirCacheEntry> readTreeEntries(ObjectReader reader, RevTree tree,
+                                                                TreeFilter filter) throws IOException {
+        NavigableMap<String, DirCacheEntry> entries = new TreeMap<>();
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(true);
+            if (Objects.nonNull(filter)) {
+                treeWalk.setFilter(filter);
+            }
+            while (treeWalk.next()) {
+                DirCacheEntry entry = new DirCacheEntry(treeWalk.getPathString());
+                entry.setFileMode(treeWalk.getFileMode(0));
+                entry.setObjectId(treeWalk.getObjectId(0));
+                entries.put(entry.getPathString(), entry);
+            }
+        }
+        return entries;
+    }
+
+    private NavigableMap<String, DirCacheEntry> getSubtreeEntries(NavigableMap<String, DirCacheEntry> entries,
+                                                                  String folder) {
+        // '0' is the character right after '/', so this range covers every path under the folder
+        return entries.subMap(folder + FILE_SEPARATOR, true, folder + "0", false);
+    }
+
+    /**
+     * Removes the entry for the given path and, like {@code git rm}, every entry under it if it is a folder
+     */
+    private void removeEntries(NavigableMap<String, DirCacheEntry> entries, String path) {
+        entries.remove(path);
+        getSubtreeEntries(entries, path).clear();
+    }
+
+    private void cleanUpMoveFolders(NavigableMap<String, DirCacheEntry> entries, String path) {
+        if (!StringUtils.contains(path, FILE_SEPARATOR)) {
+            return;
+        }
+        String parentToDelete = StringUtils.substringBeforeLast(path, FILE_SEPARATOR);
+        boolean isPage = path.endsWith(FILE_SEPARATOR + INDEX_FILE);
+        deleteParentFolder(entries, parentToDelete, isPage);
+        if (getSubtreeEntries(entries, parentToDelete).isEmpty()) {
+            cleanUpMoveFolders(entries, parentToDelete);
+        }
+    }
+
+    private void deleteParentFolder(NavigableMap<String, DirCacheEntry> entries, String parentFolder,
+                                    boolean wasPage) {
+        NavigableMap<String, DirCacheEntry> children = getSubtreeEntries(entries, parentFolder);
+        if (wasPage) {
+            children.clear();
+            return;
+        }
+        String prefix = parentFolder + FILE_SEPARATOR;
+        boolean hasFolders = children.keySet().stream()
+                .anyMatch(child -> child.indexOf(FILE_SEPARATOR, prefix.length()) > 0);
+        if (!hasFolders && (children.isEmpty() || children.size() < 2 &&
+                StringUtils.equals(children.firstKey().substring(prefix.length()), EMPTY_FILE))) {
+            children.clear();
+        }
+    }
+
     private void cleanUpMoveFolders(Git git, String path) throws GitAPIException, IOException {
         Path parentToDelete = Paths.get(path).getParent();
         boolean isPage = path.endsWith(FILE_SEPARATOR + INDEX_FILE);
@@ -1374,6 +1642,34 @@ public class GitContentRepository implements ContentRepository {
         return toReturn;
     }
 
+    @Override
+    public Set<String> getExistingPaths(String site, Collection<String> paths) {
+        Set<String> toReturn = new HashSet<String>();
+        try {
+            Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+            if (repo != null) {
+                RevTree tree = helper.getTreeForLastCommit(repo);
+                for (String path : paths) {
+                    String gitPath = helper.getGitPath(path);
+                    if (StringUtils.isEmpty(gitPath) || gitPath.equals(".")) {
+                        toReturn.add(path);
+                        continue;
+                    }
+                    try (TreeWalk tw = TreeWalk.forPath(repo, gitPath, tree)) {
+                        if (tw != null && tw.getObjectId(0) != null) {
+                            toReturn.add(path);
+                        }
+                    } catch (IOException e) {
+                        logger.info("Content not found for site: " + site + " path: " + path, e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to create RevTree for site: " + site, e);
+        }
+        return toReturn;
+    }
+
     @Override
     public String getRepoLastCommitId(final String site) {
         String toReturn = EMPTY;
@@ -1418,6 +1714,40 @@ public class GitContentRepository implements ContentRepository {
         return -1L;
     }
 
+    @Override
+    public ContentSnapshot getContentSnapshot(String site, Collection<String> paths) {
+        Map<String, ObjectId> objectIds = new HashMap<>();
+        Repository repo = helper.getRepository(site, StringUtils.isEmpty(site) ? GLOBAL : SANDBOX);
+        // Several paths can point to the same git path, i.e. with or without a leading separator
+        Map<String, List<String>> pathsByGitPath = new HashMap<>();
+        for (String path : paths) {
+            String gitPath = helper.getGitPath(path);
+            if (StringUtils.isNotEmpty(gitPath) && !gitPath.equals(".")) {
+                pathsByGitPath.computeIfAbsent(gitPath, k -> new ArrayList<>()).add(path);
+            }
+        }
+        if (repo != null && !pathsByGitPath.isEmpty()) {
+            try {
+                RevTree tree = helper.getTreeForLastCommit(repo);
+                try (TreeWalk tw = new TreeWalk(repo)) {
+                    tw.addTree(tree);
+                    tw.setRecursive(true);
+                    tw.setFilter(PathFilterGroup.createFromStrings(pathsByGitPath.keySet()));
+                    while (tw.next()) {
+                        List<String> matched = pathsByGitPath.get(tw.getPathString());
+                        if (matched != null) {
+                            ObjectId id = tw.getObjectId(0);
+                            matched.forEach(path -> objectIds.put(path, id));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error while getting content snapshot for site: " + site, e);
+            }
+        }
+        return new GitContentSnapshot(repo, objectIds);
+    }
+
     @Override
     public String getLastEditCommitId(String siteId, String path) {
         String toReturn = EMPTY;
@@ -1569,6 +1899,23 @@ public class GitContentRepository implements ContentRepository {
         }
     }
 
+    @Override
+    public void markGitLogAuditedBulk(String siteId, List<String> commitIds) {
+        if (CollectionUtils.isNotEmpty(commitIds)) {
+            String lockKey = "GitLogLock:" + siteId;
+            generalLockService.lock(lockKey);
+            try {
+                int batchSize = studioUtils.getBulkOperationsBatchSize();
+                for (int i = 0; i < commitIds.size(); i = i + batchSize) {
+                    retryingDatabaseOperationFacade.markGitLogAuditedBulk(siteId,
+                            commitIds.subList(i, Math.min(i + batchSize, commitIds.size())), 1);
+                }
+            } finally {
+                generalLockService.unlock(lockKey);
+            }
+        }
+    }
+
     @Override
     public void updateGitlog(String siteId, String lastProcessedCommitId, int batchSize) throws SiteNotFoundException {
         RingBuffer<RevCommit> commitIds = new RingBuffer<RevCommit>(batchSize);
@@ -1966,4 +2313,8 @@ public class GitContentRepository implements ContentRepository {
     public void setPublishingProgressServiceInternal(PublishingProgressServiceInternal publishingProgressServiceInternal) {
         this.publishingProgressServiceInternal = publishingProgressServiceInternal;
     }
+
+    public void setPublishingHistoryIndex(GitPublishingHistoryIndex publishingHistoryIndex) {
+        this.publishingHistoryIndex = publishingHistoryIndex;
+    }
 }
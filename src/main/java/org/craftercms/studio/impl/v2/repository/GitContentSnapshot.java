@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link ContentSnapshot} backed by the object ids resolved from a single git tree. Objects are opened with a new
+ * reader each time so the snapshot can be shared between threads.
+ *
+ * @since 4.0
+ */
+public class GitContentSnapshot implements ContentSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitContentSnapshot.class);
+
+    protected final Repository repository;
+    protected final Map<String, ObjectId> objectIds;
+
+    public GitContentSnapshot(Repository repository, Map<String, ObjectId> objectIds) {
+        this.repository = repository;
+        this.objectIds = Collections.unmodifiableMap(objectIds);
+    }
+
+    @Override
+    public boolean contentExists(String path) {
+        return objectIds.containsKey(path);
+    }
+
+    @Override
+    public long getContentSize(String path) {
+        ObjectId id = objectIds.get(path);
+        if (id != null) {
+            try {
+                return repository.open(id).getSize();
+            } catch (IOException e) {
+                logger.error("Error while getting size for file at path: " + path, e);
+            }
+        }
+        return -1L;
+    }
+
+    @Override
+    public InputStream getContent(String path) throws IOException {
+        ObjectId id = objectIds.get(path);
+        return id != null? repository.open(id).openStream() : null;
+    }
+
+}
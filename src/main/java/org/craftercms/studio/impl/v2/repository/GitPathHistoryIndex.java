@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.dal.PathCommit;
+import org.craftercms.studio.api.v2.dal.PathCommitDAO;
+import org.craftercms.studio.api.v2.dal.PathCommitMarker;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+
+/**
+ * Index of the commits that modified each path of a site sandbox, stored in the database.
+ *
+ * <p>The index is updated incrementally from the last indexed commit up to HEAD, so the history of a path can be
+ * resolved with a single query instead of walking (and diffing) the whole repository history. A commit is included
+ * for a path when the path is different from all of its parents.</p>
+ *
+ * <p>Merges are handled per commit, the index doesn't simplify the history like {@code git log <path>} does. When a
+ * merge keeps the version of the path from one parent, {@code git log} only follows that parent and hides the
+ * commits of the other parents that changed the path, while the index still includes them. For histories without
+ * such merges both return the same commits.</p>
+ *
+ * <p>Sites that have not been indexed yet are indexed by the {@code StudioPathHistoryIndexTask}, until then lookups
+ * return {@code null} and callers should fall back to walking the repository.</p>
+ *
+ * @since 4.0
+ */
+public class GitPathHistoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitPathHistoryIndex.class);
+
+    private static final String LOCK_KEY_PREFIX = "PathHistoryIndexLock:";
+
+    protected GitRepositoryHelper helper;
+    protected PathCommitDAO pathCommitDao;
+    protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected GeneralLockService generalLockService;
+
+    /**
+     * Max number of new commits indexed during a lookup, bigger updates are left to the background task
+     */
+    protected int maxLookupCommits = 1000;
+
+    /**
+     * Number of index entries written with each insert
+     */
+    protected int batchSize = 1000;
+
+    /**
+     * Returns the ids of the commits that modified the given path, newest first
+     * @param site the site id
+     * @param path the path
+     * @return the commit ids or null if the index is not available for the site
+     */
+    public List<String> getCommitIds(String site, String path) {
+        PathCommitMarker marker = update(site, maxLookupCommits, false);
+        if (marker == null) {
+            return null;
+        }
+        return pathCommitDao.getPathCommitIds(site, helper.getGitPath(path), marker.getSeq());
+    }
+
+    /**
+     * Returns the ids of the commits that modified the given path after {@code commitIdFrom} and up to
+     * {@code commitIdTo}, oldest first. Only the commits are walked, and the walk stops as soon as all the indexed
+     * commits of the path have been found.
+     * @param site the site id
+     * @param path the path
+     * @param commitIdFrom the commit id where the range starts, not included
+     * @param commitIdTo the commit id where the range ends
+     * @return the commit ids or null if the index is not available for the site or the path, or the range has more
+     * than {@code maxLookupCommits} commits to walk
+     */
+    public List<String> getCommitIds(String site, String path, String commitIdFrom, String commitIdTo) {
+        PathCommitMarker marker = update(site, maxLookupCommits, false);
+        if (marker == null) {
+            return null;
+        }
+        List<String> pathCommitIds = pathCommitDao.getPathCommitIds(site, helper.getGitPath(path), marker.getSeq());
+        if (pathCommitIds.isEmpty()) {
+            return null;
+        }
+        Repository repo = helper.getRepository(site, SANDBOX);
+        try (RevWalk walk = new RevWalk(repo)) {
+            ObjectId from = repo.resolve(commitIdFrom);
+            ObjectId to = repo.resolve(commitIdTo);
+            List<String> commitIds = new ArrayList<>();
+            if (from == null || to == null || from.equals(to)) {
+                return commitIds;
+            }
+            RevCommit fromCommit = walk.parseCommit(from);
+            Set<String> range;
+            if (fromCommit.getParentCount() == 0 && StringUtils.equals(to.getName(), marker.getCommitId())) {
+                // All the indexed commits are reachable from the last one, and only the root from the root
+                range = new HashSet<>(pathCommitIds);
+                range.remove(from.getName());
+            } else {
+                range = getCommitsInRange(walk, fromCommit, walk.parseCommit(to), pathCommitIds);
+                if (range == null) {
+                    logger.debug("More than " + maxLookupCommits + " commits between " + commitIdFrom + " and " +
+                            commitIdTo + " in site " + site + ", falling back to the repository");
+                    return null;
+                }
+            }
+            for (int i = pathCommitIds.size() - 1; i >= 0; i--) {
+                if (range.contains(pathCommitIds.get(i))) {
+                    commitIds.add(pathCommitIds.get(i));
+                }
+            }
+            return commitIds;
+        } catch (IOException e) {
+            logger.error("Error getting commit ids for site " + site + " and path " + path +
+                    " from commit ID: " + commitIdFrom + " to commit ID: " + commitIdTo, e);
+            return null;
+        }
+    }
+
+    /**
+     * Indexes all the commits of the site sandbox not yet included in the index
+     * @param site the site id
+     */
+    public void update(String site) {
+        update(site, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Deletes the whole index of a site
+     * @param site the site id
+     */
+    public void delete(String site) {
+        retryingDatabaseOperationFacade.deletePathCommitMarker(site);
+        retryingDatabaseOperationFacade.deletePathCommitsForSite(site);
+    }
+
+    /**
+     * Brings the index up to HEAD
+     * @param site the site id
+     * @param maxCommits max number of commits to index
+     * @param wait indicates if the call should wait for a concurrent update to finish
+     * @return the marker once the index includes HEAD, null otherwise
+     */
+    protected PathCommitMarker update(String site, int maxCommits, boolean wait) {
+        if (StringUtils.isEmpty(site)) {
+            return null;
+        }
+        Repository repo = helper.getRepository(site, SANDBOX);
+        if (repo == null) {
+            return null;
+        }
+        String lockKey = LOCK_KEY_PREFIX + site;
+        if (wait) {
+            generalLockService.lock(lockKey);
+        } else if (!generalLockService.tryLock(lockKey)) {
+            return null;
+        }
+        try {
+            ObjectId head = repo.resolve(HEAD);
+            PathCommitMarker marker = pathCommitDao.getPathCommitMarker(site);
+            if (head == null || (marker == null && !wait)) {
+                return null;
+            }
+            if (marker != null && StringUtils.equals(marker.getCommitId(), head.getName())) {
+                return marker;
+            }
+            try (RevWalk walk = new RevWalk(repo)) {
+                List<RevCommit> commits = getNewCommits(walk, head, marker);
+                if (commits == null) {
+                    if (!wait) {
+                        // Lookups only fall back to the repository, the rebuild is left to the background task
+                        logger.debug("HEAD of site " + site + " is not a descendant of the last indexed commit " +
+                                marker.getCommitId() + ", leaving the rebuild to the background task");
+                        return null;
+                    }
+                    logger.info("HEAD of site " + site + " is not a descendant of the last indexed commit " +
+                            marker.getCommitId() + ", the path history index will be rebuilt");
+                    delete(site);
+                    return update(site, maxCommits, true);
+                }
+                if (commits.size() > maxCommits) {
+                    logger.debug("Too many new commits for site " + site + ", leaving them to the background task");
+                    return null;
+                }
+                return index(site, repo, walk, commits, marker);
+            }
+        } catch (IOException e) {
+            logger.error("Error updating path history index for site " + site, e);
+            return null;
+        } finally {
+            generalLockService.unlock(lockKey);
+        }
+    }
+
+    /**
+     * Returns the commits between the marker and HEAD, parents first
+     * @return the commits or null if the marker is not an ancestor of HEAD
+     */
+    protected List<RevCommit> getNewCommits(RevWalk walk, ObjectId head, PathCommitMarker marker)
+            throws IOException {
+        walk.sort(RevSort.TOPO);
+        walk.sort(RevSort.REVERSE, true);
+        walk.markStart(walk.parseCommit(head));
+        ObjectId markerId = null;
+        if (marker != null) {
+            try {
+                markerId = ObjectId.fromString(marker.getCommitId());
+                walk.markUninteresting(walk.parseCommit(markerId));
+            } catch (MissingObjectException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        List<RevCommit> commits = new ArrayList<>();
+        // The marker is an ancestor of HEAD only if it is the parent of one of the new commits
+        boolean markerFound = markerId == null;
+        for (RevCommit commit : walk) {
+            commits.add(commit);
+            if (!markerFound) {
+                for (RevCommit parent : commit.getParents()) {
+                    if (parent.equals(markerId)) {
+                        markerFound = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return markerFound ? commits : null;
+    }
+
+    /**
+     * Walks the commits between two commits until all the given commits have been found
+     * @return the given commits that are in the range, or null if the walk reached {@code maxLookupCommits}
+     */
+    protected Set<String> getCommitsInRange(RevWalk walk, RevCommit from, RevCommit to, List<String> commitIds)
+            throws IOException {
+        Set<String> remaining = new HashSet<>(commitIds);
+        Set<String> range = new HashSet<>();
+        walk.markStart(to);
+        walk.markUninteresting(from);
+        int walked = 0;
+        for (RevCommit commit : walk) {
+            if (remaining.remove(commit.getName())) {
+                range.add(commit.getName());
+                if (remaining.isEmpty()) {
+                    break;
+                }
+            }
+            if (++walked >= maxLookupCommits) {
+                return null;
+            }
+        }
+        return range;
+    }
+
+    protected PathCommitMarker index(String site, Repository repo, RevWalk walk, List<RevCommit> commits,
+                                     PathCommitMarker marker) throws IOException {
+        long seq = marker != null ? marker.getSeq() : 0;
+        // Entries written by an update that did not finish
+        retryingDatabaseOperationFacade.deletePathCommitsAfter(site, seq);
+        List<PathCommit> batch = new ArrayList<>();
+        for (RevCommit commit : commits) {
+            seq++;
+            addChangedPaths(repo, walk, commit, seq, batch);
+            if (batch.size() >= batchSize) {
+                retryingDatabaseOperationFacade.insertPathCommitList(site, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            retryingDatabaseOperationFacade.insertPathCommitList(site, batch);
+        }
+        RevCommit last = commits.get(commits.size() - 1);
+        retryingDatabaseOperationFacade.upsertPathCommitMarker(site, last.getName(), seq);
+        logger.debug("Indexed " + commits.size() + " commits for site " + site);
+
+        PathCommitMarker updated = new PathCommitMarker();
+        updated.setSiteId(site);
+        updated.setCommitId(last.getName());
+        updated.setSeq(seq);
+        return updated;
+    }
+
+    /**
+     * Adds an entry for each path that is different from all the parents of the commit
+     */
+    protected void addChangedPaths(Repository repo, RevWalk walk, RevCommit commit, long seq,
+                                   List<PathCommit> entries) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(commit.getTree());
+            for (RevCommit parent : commit.getParents()) {
+                treeWalk.addTree(walk.parseCommit(parent).getTree());
+            }
+            if (commit.getParentCount() > 0) {
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            }
+            while (treeWalk.next()) {
+                boolean changed = true;
+                for (int i = 1; i < treeWalk.getTreeCount() && changed; i++) {
+                    changed = !treeWalk.idEqual(0, i);
+                }
+                if (changed) {
+                    entries.add(new PathCommit(treeWalk.getPathString(), commit.getName(), seq));
+                }
+            }
+        }
+    }
+
+    public void setHelper(GitRepositoryHelper helper) {
+        this.helper = helper;
+    }
+
+    public void setPathCommitDao(PathCommitDAO pathCommitDao) {
+        this.pathCommitDao = pathCommitDao;
+    }
+
+    public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
+        this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
+    }
+
+    public void setGeneralLockService(GeneralLockService generalLockService) {
+        this.generalLockService = generalLockService;
+    }
+
+    public void setMaxLookupCommits(int maxLookupCommits) {
+        this.maxLookupCommits = maxLookupCommits;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryDAO;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
+import org.eclipse.jgit.revwalk.filter.NotRevFilter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.time.ZoneOffset.UTC;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.IN_PROGRESS_BRANCH_NAME_SUFFIX;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_PUBLISHED_REPOSITORY_GIT_LOCK;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.IGNORE_FILES;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+
+/**
+ * Publishing history of each site, stored in the database so it can be filtered and paginated with a single query
+ * instead of walking (and diffing) the log of every environment branch of the published repository.
+ *
+ * <p>A row is written for each path included in a publish commit, right after the commit is created and while the
+ * published repository lock is still held. The history that existed before the table is loaded once per site by the
+ * {@code StudioPublishingHistoryBackfillTask}, until then the history is not available and callers should fall back
+ * to walking the repository.</p>
+ *
+ * @since 4.0
+ */
+public class GitPublishingHistoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitPublishingHistoryIndex.class);
+
+    private static final String INITIAL_COMMIT_MESSAGE = "Initial commit.";
+
+    public static final String SORT_PATH = "path";
+    public static final String SORT_PUBLISHER = "publisher";
+    public static final String SORT_ENVIRONMENT = "environment";
+    public static final String SORT_PUBLISHED_DATE = "published_date";
+
+    protected GitRepositoryHelper helper;
+    protected PublishingHistoryDAO publishingHistoryDao;
+    protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected GeneralLockService generalLockService;
+    protected UserServiceInternal userServiceInternal;
+
+    /**
+     * Number of history items written with each insert
+     */
+    protected int batchSize = 1000;
+
+    /**
+     * Sites known to have the history loaded, avoids querying the marker on every publish
+     */
+    protected final Set<String> backfilledSites = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Indicates if the publishing history of a site has been loaded
+     * @param site the site id
+     * @return true if the history can be queried
+     */
+    public boolean isAvailable(String site) {
+        if (backfilledSites.contains(site)) {
+            return true;
+        }
+        if (publishingHistoryDao.getPublishingHistoryBackfillDate(site) != null) {
+            backfilledSites.add(site);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a page of the publishing history of a site, newest first unless a different sort is requested
+     * @param site the site id
+     * @param environment the environment, all if empty
+     * @param pathRegex regular expression the paths must match, all if empty
+     * @param publisher username of the publisher, all if empty
+     * @param dateFrom lower bound of the published date
+     * @param dateTo upper bound of the published date
+     * @param sortBy the field to sort by
+     * @param order the sort order
+     * @param offset offset of the first item
+     * @param limit max number of items
+     * @return the items
+     */
+    public List<PublishingHistoryItem> getHistory(String site, String environment, String pathRegex,
+                                                  String publisher, ZonedDateTime dateFrom, ZonedDateTime dateTo,
+                                                  String sortBy, String order, int offset, int limit) {
+        String publisherName = null;
+        if (StringUtils.isNotEmpty(publisher)) {
+            publisherName = getPublisherName(publisher);
+            if (publisherName == null) {
+                return Collections.emptyList();
+            }
+        }
+        return publishingHistoryDao.getPublishingHistory(site, StringUtils.defaultIfEmpty(environment, null),
+                StringUtils.defaultIfEmpty(pathRegex, null), publisherName, dateFrom, dateTo, getSortColumn(sortBy),
+                StringUtils.equalsIgnoreCase("ASC", order) ? "ASC" : "DESC", offset, limit);
+    }
+
+    /**
+     * Returns the number of items in the publishing history of a site matching the given filters
+     * @param site the site id
+     * @param environment the environment, all if empty
+     * @param pathRegex regular expression the paths must match, all if empty
+     * @param publisher username of the publisher, all if empty
+     * @param dateFrom lower bound of the published date
+     * @param dateTo upper bound of the published date
+     * @return the number of items
+     */
+    public int getTotal(String site, String environment, String pathRegex, String publisher, ZonedDateTime dateFrom,
+                        ZonedDateTime dateTo) {
+        String publisherName = null;
+        if (StringUtils.isNotEmpty(publisher)) {
+            publisherName = getPublisherName(publisher);
+            if (publisherName == null) {
+                return 0;
+            }
+        }
+        return publishingHistoryDao.getPublishingHistoryTotal(site, StringUtils.defaultIfEmpty(environment, null),
+                StringUtils.defaultIfEmpty(pathRegex, null), publisherName, dateFrom, dateTo);
+    }
+
+    /**
+     * Adds the paths included in a publish commit to the history. Must be called while holding the published
+     * repository lock of the site, so it doesn't overlap with the backfill.
+     * @param site the site id
+     * @param environment the environment branch the commit was added to
+     * @param repo the published repository
+     * @param commit the publish commit
+     * @param packageIds the package id of each published path
+     */
+    public void record(String site, String environment, Repository repo, RevCommit commit,
+                       Map<String, String> packageIds) {
+        if (!isAvailable(site)) {
+            // The commit will be included by the backfill
+            return;
+        }
+        List<PublishingHistoryItem> items = getItems(repo, commit, environment, packageIds);
+        for (List<PublishingHistoryItem> batch : ListUtils.partition(items, batchSize)) {
+            retryingDatabaseOperationFacade.insertPublishingHistoryList(site, batch);
+        }
+    }
+
+    /**
+     * Loads the publishing history of a site from the published repository, if it has not been done yet. If a
+     * publish is in progress nothing is done and the backfill should be tried again later.
+     * @param site the site id
+     */
+    public void backfill(String site) {
+        if (isAvailable(site)) {
+            return;
+        }
+        String gitLockKey = SITE_PUBLISHED_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, site);
+        if (!generalLockService.tryLock(gitLockKey)) {
+            logger.debug("Published repository for site " + site + " is locked, the publishing history will be " +
+                    "loaded later");
+            return;
+        }
+        try {
+            if (publishingHistoryDao.getPublishingHistoryBackfillDate(site) == null) {
+                // Items written by a backfill that did not finish
+                retryingDatabaseOperationFacade.deletePublishingHistoryForSite(site);
+                Repository repo = helper.getRepository(site, PUBLISHED);
+                if (repo != null) {
+                    load(site, repo);
+                }
+                retryingDatabaseOperationFacade.insertPublishingHistoryMarker(site);
+            }
+            backfilledSites.add(site);
+        } catch (IOException e) {
+            logger.error("Error loading the publishing history for site " + site, e);
+        } finally {
+            generalLockService.unlock(gitLockKey);
+        }
+    }
+
+    /**
+     * Deletes the whole publishing history of a site
+     * @param site the site id
+     */
+    public void delete(String site) {
+        backfilledSites.remove(site);
+        retryingDatabaseOperationFacade.deletePublishingHistoryMarker(site);
+        retryingDatabaseOperationFacade.deletePublishingHistoryForSite(site);
+    }
+
+    protected void load(String site, Repository repo) throws IOException {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (Ref ref : repo.getRefDatabase().getRefsByPrefix(R_HEADS)) {
+            String environment = ref.getName().substring(R_HEADS.length());
+            if (StringUtils.equals(MASTER, environment) || environment.endsWith(IN_PROGRESS_BRANCH_NAME_SUFFIX)) {
+                continue;
+            }
+            List<PublishingHistoryItem> batch = new ArrayList<>();
+            try (RevWalk walk = new RevWalk(repo)) {
+                walk.setRevFilter(NotRevFilter.create(MessageRevFilter.create(INITIAL_COMMIT_MESSAGE)));
+                walk.markStart(walk.parseCommit(ref.getObjectId()));
+                for (RevCommit commit : walk) {
+                    batch.addAll(getItems(repo, commit, environment, null));
+                    if (batch.size() >= batchSize) {
+                        count += insert(site, batch);
+                    }
+                }
+            }
+            count += insert(site, batch);
+        }
+        logger.info("Loaded " + count + " publishing history items for site " + site + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    protected int insert(String site, List<PublishingHistoryItem> items) {
+        int count = items.size();
+        for (List<PublishingHistoryItem> batch : ListUtils.partition(items, batchSize)) {
+            retryingDatabaseOperationFacade.insertPublishingHistoryList(site, batch);
+        }
+        items.clear();
+        return count;
+    }
+
+    /**
+     * Builds the history items for the paths changed by a commit, same as the ones listed by the repository walk
+     */
+    protected List<PublishingHistoryItem> getItems(Repository repo, RevCommit commit, String environment,
+                                                   Map<String, String> packageIds) {
+        List<PublishingHistoryItem> items = new ArrayList<>();
+        ZonedDateTime publishedDate = Instant.ofEpochSecond(commit.getCommitTime()).atZone(UTC);
+        String publisher = commit.getAuthorIdent().getName();
+        for (String path : helper.getFilesInCommit(repo, commit)) {
+            if (ArrayUtils.contains(IGNORE_FILES, Paths.get(path).getFileName().toString())) {
+                continue;
+            }
+            PublishingHistoryItem item = new PublishingHistoryItem();
+            item.setEnvironment(environment);
+            item.setPath(path);
+            item.setCommitId(commit.getName());
+            item.setPublisher(publisher);
+            item.setPublishedDate(publishedDate);
+            if (packageIds != null) {
+                item.setPackageId(packageIds.get(path));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Commits store the full name of the publisher instead of the username
+     */
+    protected String getPublisherName(String publisher) {
+        try {
+            User user = userServiceInternal.getUserByIdOrUsername(-1, publisher);
+            return helper.getAuthorIdent(user).getName();
+        } catch (UserNotFoundException | ServiceLayerException e) {
+            logger.debug("Publisher " + publisher + " not found, the publishing history will be empty");
+            return null;
+        }
+    }
+
+    protected String getSortColumn(String sortBy) {
+        if (StringUtils.equalsIgnoreCase(SORT_PATH, sortBy)) {
+            return SORT_PATH;
+        } else if (StringUtils.equalsIgnoreCase(SORT_PUBLISHER, sortBy)) {
+            return SORT_PUBLISHER;
+        } else if (StringUtils.equalsIgnoreCase(SORT_ENVIRONMENT, sortBy)) {
+            return SORT_ENVIRONMENT;
+        }
+        return SORT_PUBLISHED_DATE;
+    }
+
+    public void setHelper(GitRepositoryHelper helper) {
+        this.helper = helper;
+    }
+
+    public void setPublishingHistoryDao(PublishingHistoryDAO publishingHistoryDao) {
+        this.publishingHistoryDao = publishingHistoryDao;
+    }
+
+    public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
+        this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
+    }
+
+    public void setGeneralLockService(GeneralLockService generalLockService) {
+        this.generalLockService = generalLockService;
+    }
+
+    public void setUserServiceInternal(UserServiceInternal userServiceInternal) {
+        this.userServiceInternal = userServiceInternal;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.repository.RetryingRepositoryOperationFacade;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Comparator.comparingLong;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.GLOBAL;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.GLOBAL_REPOSITORY_GIT_LOCK;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.PATTERN_SITE;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_PUBLISHED_REPOSITORY_GIT_LOCK;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.SITE_SANDBOX_REPOSITORY_GIT_LOCK;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_COMMIT_GRAPH;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_PARAMETER_WRITE_COMMIT_GRAPH;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_SECTION_CORE;
+import static org.craftercms.studio.impl.v1.repository.git.GitContentRepositoryConstants.CONFIG_SECTION_GC;
+
+/**
+ * Runs the garbage collection of the global, sandbox and published repositories once they become fragmented.
+ *
+ * <p>Repositories are selected by their number of loose objects and pack files, the most fragmented ones are
+ * processed first. The garbage collection repacks all objects in a single pack with bitmaps, packs the refs and
+ * writes the commit-graph when supported by JGit. Each run has a time budget, a collection still running when the
+ * budget is exhausted is cancelled and the remaining repositories are left for the next run.</p>
+ *
+ * <p>A repository is only processed if its git locks can be acquired right away, so sites that are being edited or
+ * published are skipped. The sandbox also requires the lock of the published repository because publishing reads
+ * objects from the sandbox.</p>
+ *
+ * @since 4.0
+ */
+public class GitRepositoryMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitRepositoryMaintenance.class);
+
+    protected GitRepositoryHelper helper;
+    protected GeneralLockService generalLockService;
+    protected RetryingRepositoryOperationFacade retryingRepositoryOperationFacade;
+
+    /**
+     * Number of loose objects that triggers the maintenance of a repository, same default as git's gc.auto
+     */
+    protected long looseObjectsThreshold = 6700;
+
+    /**
+     * Number of pack files that triggers the maintenance of a repository, same default as git's gc.autoPackLimit
+     */
+    protected long packFilesThreshold = 50;
+
+    /**
+     * Max time in seconds for each run
+     */
+    protected long timeBudget = 3600;
+
+    /**
+     * Runs the maintenance of the global repository and the repositories of the given sites that need it
+     * @param sites the site ids
+     * @return the reports of the repositories processed, in the order they were processed
+     */
+    public List<MaintenanceReport> maintainAll(Collection<String> sites) {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeBudget);
+        List<MaintenanceReport> candidates = new ArrayList<>();
+        addCandidate(candidates, StringUtils.EMPTY, GLOBAL);
+        for (String site : sites) {
+            addCandidate(candidates, site, SANDBOX);
+            addCandidate(candidates, site, PUBLISHED);
+        }
+        candidates.sort(comparingLong((MaintenanceReport candidate) -> candidate.before.numberOfLooseObjects)
+                .reversed());
+        logger.info("Found {0} repositories that need maintenance", candidates.size());
+
+        List<MaintenanceReport> reports = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (System.currentTimeMillis() >= deadline) {
+                logger.info("Maintenance time budget exhausted, {0} repositories left for the next run",
+                        candidates.size() - i);
+                break;
+            }
+            MaintenanceReport candidate = candidates.get(i);
+            MaintenanceReport report = maintain(candidate.siteId, candidate.repository, deadline);
+            if (report != null) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Indicates if a repository has enough loose objects or pack files to run the maintenance
+     */
+    public boolean needsMaintenance(RepoStatistics statistics) {
+        return statistics.numberOfLooseObjects >= looseObjectsThreshold ||
+                statistics.numberOfPackFiles >= packFilesThreshold;
+    }
+
+    /**
+     * Runs the garbage collection of a single repository, regardless of its statistics
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository
+     * @param deadline the time in milliseconds when the garbage collection will be cancelled
+     * @return the report or null if the repository could not be processed
+     */
+    public MaintenanceReport maintain(String siteId, GitRepositories repository, long deadline) {
+        List<String> lockKeys = getLockKeys(siteId, repository);
+        List<String> acquiredKeys = new ArrayList<>();
+        Repository repo = null;
+        try {
+            for (String lockKey : lockKeys) {
+                if (!generalLockService.tryLock(lockKey)) {
+                    logger.info("Skipping maintenance of the {0} repository for site {1} because it is in use",
+                            repository, siteId);
+                    return null;
+                }
+                acquiredKeys.add(lockKey);
+            }
+
+            // The repository can't be evicted from the registry while the pack files are being rewritten
+            repo = helper.acquireRepository(siteId, repository);
+            if (!(repo instanceof FileRepository)) {
+                return null;
+            }
+            MaintenanceReport report = new MaintenanceReport(siteId, repository, getStatistics(repo));
+            DeadlineProgressMonitor monitor = new DeadlineProgressMonitor(deadline);
+            long startTime = System.currentTimeMillis();
+            boolean completed = false;
+            try (Git git = new Git(repo)) {
+                enableCommitGraph(repo);
+                retryingRepositoryOperationFacade.call(git.gc().setProgressMonitor(monitor));
+                completed = !monitor.isCancelled();
+            } catch (Exception e) {
+                if (monitor.isCancelled()) {
+                    logger.debug("Maintenance of the {0} repository for site {1} was cancelled", repository, siteId);
+                } else {
+                    logger.error("Error running maintenance of the {0} repository for site {1}", e, repository,
+                            siteId);
+                }
+            }
+            report.time = System.currentTimeMillis() - startTime;
+            report.completed = completed;
+            report.after = getStatistics(repo);
+            logger.info("Maintenance of the {0} repository for site {1} {2} in {3} ms. Loose objects: {4} -> {5}, " +
+                    "pack files: {6} -> {7}, loose refs: {8} -> {9}", repository, siteId,
+                    completed ? "finished" : "was interrupted", report.time, report.before.numberOfLooseObjects,
+                    report.after.numberOfLooseObjects, report.before.numberOfPackFiles,
+                    report.after.numberOfPackFiles, report.before.numberOfLooseRefs,
+                    report.after.numberOfLooseRefs);
+            logger.debug("Statistics of the {0} repository for site {1} before maintenance: {2} after: {3}",
+                    repository, siteId, report.before, report.after);
+            return report;
+        } catch (IOException e) {
+            logger.error("Error reading statistics of the {0} repository for site {1}", e, repository, siteId);
+            return null;
+        } finally {
+            helper.releaseRepository(siteId, repository, repo);
+            acquiredKeys.forEach(generalLockService::unlock);
+        }
+    }
+
+    /**
+     * Returns the object statistics of a repository
+     */
+    public RepoStatistics getStatistics(Repository repo) throws IOException {
+        return new GC((FileRepository) repo).getStatistics();
+    }
+
+    protected void addCandidate(List<MaintenanceReport> candidates, String siteId, GitRepositories repository) {
+        try {
+            Repository repo = helper.getRepository(siteId, repository);
+            if (repo instanceof FileRepository) {
+                RepoStatistics statistics = getStatistics(repo);
+                if (needsMaintenance(statistics)) {
+                    candidates.add(new MaintenanceReport(siteId, repository, statistics));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error reading statistics of the {0} repository for site {1}", e, repository, siteId);
+        }
+    }
+
+    protected List<String> getLockKeys(String siteId, GitRepositories repository) {
+        List<String> lockKeys = new ArrayList<>();
+        switch (repository) {
+            case GLOBAL:
+                lockKeys.add(GLOBAL_REPOSITORY_GIT_LOCK);
+                break;
+            case SANDBOX:
+                lockKeys.add(SITE_SANDBOX_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, siteId));
+                lockKeys.add(SITE_PUBLISHED_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, siteId));
+                break;
+            case PUBLISHED:
+                lockKeys.add(SITE_PUBLISHED_REPOSITORY_GIT_LOCK.replaceAll(PATTERN_SITE, siteId));
+                break;
+            default:
+                break;
+        }
+        return lockKeys;
+    }
+
+    /**
+     * Enables the commit-graph for repositories created before it was part of the default configuration
+     */
+    protected void enableCommitGraph(Repository repo) throws IOException {
+        StoredConfig config = repo.getConfig();
+        if (!config.getBoolean(CONFIG_SECTION_GC, null, CONFIG_PARAMETER_WRITE_COMMIT_GRAPH, false)) {
+            config.setBoolean(CONFIG_SECTION_CORE, null, CONFIG_PARAMETER_COMMIT_GRAPH, true);
+            config.setBoolean(CONFIG_SECTION_GC, null, CONFIG_PARAMETER_WRITE_COMMIT_GRAPH, true);
+            config.save();
+        }
+    }
+
+    public void setHelper(GitRepositoryHelper helper) {
+        this.helper = helper;
+    }
+
+    public void setGeneralLockService(GeneralLockService generalLockService) {
+        this.generalLockService = generalLockService;
+    }
+
+    public void setRetryingRepositoryOperationFacade(
+            RetryingRepositoryOperationFacade retryingRepositoryOperationFacade) {
+        this.retryingRepositoryOperationFacade = retryingRepositoryOperationFacade;
+    }
+
+    public void setLooseObjectsThreshold(long looseObjectsThreshold) {
+        this.looseObjectsThreshold = looseObjectsThreshold;
+    }
+
+    public void setPackFilesThreshold(long packFilesThreshold) {
+        this.packFilesThreshold = packFilesThreshold;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Cancels the garbage collection once the deadline is reached
+     */
+    protected static class DeadlineProgressMonitor extends EmptyProgressMonitor {
+
+        protected final long deadline;
+
+        public DeadlineProgressMonitor(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return System.currentTimeMillis() >= deadline;
+        }
+
+    }
+
+    /**
+     * Object statistics of a repository before and after the maintenance
+     */
+    public static class MaintenanceReport {
+
+        protected final String siteId;
+        protected final GitRepositories repository;
+        protected final RepoStatistics before;
+        protected RepoStatistics after;
+        protected long time;
+        protected boolean completed;
+
+        public MaintenanceReport(String siteId, GitRepositories repository, RepoStatistics before) {
+            this.siteId = siteId;
+            this.repository = repository;
+            this.before = before;
+        }
+
+        public String getSiteId() {
+            return siteId;
+        }
+
+        public GitRepositories getRepository() {
+            return repository;
+        }
+
+        public RepoStatistics getBefore() {
+            return before;
+        }
+
+        public RepoStatistics getAfter() {
+            return after;
+        }
+
+        /**
+         * Time in milliseconds spent in the garbage collection
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Indicates if the garbage collection finished before the deadline
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+    }
+
+}
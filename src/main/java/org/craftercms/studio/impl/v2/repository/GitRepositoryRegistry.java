@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.model.monitoring.Histogram;
+import org.craftercms.studio.model.monitoring.RepositoryMetrics;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Registry of the open git repositories, shared by all threads.
+ *
+ * <p>Each repository is opened only once, concurrent requests for the same repository wait for the first one to open
+ * it while requests for other repositories are not blocked.</p>
+ *
+ * <p>Open repositories keep file handles for their pack files, so the number of open repositories is limited. Once
+ * the limit is exceeded the least recently used repositories that have been idle for some time are closed, at most
+ * once every few seconds so requests don't scan the whole registry while it stays over the limit. Evicted
+ * repositories are kept in the registry and returned again on the next request, JGit opens their files again when
+ * needed. This keeps a single instance per repository for the whole life of the application, which callers rely on
+ * for synchronization and caching. Repositories used by long running operations can be acquired and released, they
+ * are not evicted while they are in use.</p>
+ *
+ * @since 4.0
+ */
+public class GitRepositoryRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitRepositoryRegistry.class);
+
+    /**
+     * Max number of repositories kept open before evicting the idle ones
+     */
+    protected int maxOpenRepositories = 1000;
+
+    /**
+     * Time in seconds a repository needs to be idle before it can be evicted
+     */
+    protected long idleTimeout = 600;
+
+    /**
+     * Min time in seconds between evictions triggered by requests
+     */
+    protected long evictionInterval = 5;
+
+    protected final ConcurrentMap<String, RegisteredRepository> repositories = new ConcurrentHashMap<>();
+    protected final AtomicInteger openRepositories = new AtomicInteger();
+    protected final AtomicBoolean evicting = new AtomicBoolean();
+    protected final AtomicLong lastEviction = new AtomicLong();
+
+    protected final LongAdder openCount = new LongAdder();
+    protected final LongAdder reopenCount = new LongAdder();
+    protected final LongAdder evictionCount = new LongAdder();
+    protected final LongAdder hitCount = new LongAdder();
+    protected final Histogram openTime = new Histogram();
+
+    /**
+     * Returns the repository for the given key, opening it if needed
+     * @param key the key of the repository
+     * @param opener opens the repository if it is not registered yet, can return null if it does not exist
+     * @return the repository or null if it does not exist
+     * @throws IOException if there is any error opening the repository
+     */
+    public Repository getRepository(String key, RepositoryOpener opener) throws IOException {
+        return getRepository(key, opener, false);
+    }
+
+    /**
+     * Returns the repository for the given key, opening it if needed, and marks it as in use until
+     * {@link #release(String, Repository)} is called
+     * @param key the key of the repository
+     * @param opener opens the repository if it is not registered yet, can return null if it does not exist
+     * @return the repository or null if it does not exist
+     * @throws IOException if there is any error opening the repository
+     */
+    public Repository acquire(String key, RepositoryOpener opener) throws IOException {
+        return getRepository(key, opener, true);
+    }
+
+    /**
+     * Marks a repository returned by {@link #acquire(String, RepositoryOpener)} as no longer in use
+     * @param key the key of the repository
+     * @param repository the repository
+     */
+    public void release(String key, Repository repository) {
+        RegisteredRepository registered = repositories.get(key);
+        // The repository could have been removed or registered again while in use
+        if (registered != null && registered.repository == repository) {
+            registered.endUse();
+        }
+    }
+
+    protected Repository getRepository(String key, RepositoryOpener opener, boolean use) throws IOException {
+        RegisteredRepository registered;
+        Repository repository;
+        do {
+            registered = repositories.computeIfAbsent(key, k -> new RegisteredRepository());
+            repository = registered.acquire(opener, use);
+            // If the repository was removed by another thread try again with a new instance
+        } while (repository == null && registered.removed);
+        if (repository == null) {
+            repositories.remove(key, registered);
+        } else if (openRepositories.get() > maxOpenRepositories) {
+            long now = System.currentTimeMillis();
+            long last = lastEviction.get();
+            // Only one of the threads that see the registry over the limit after the interval does the eviction
+            if (now - last >= TimeUnit.SECONDS.toMillis(evictionInterval) && lastEviction.compareAndSet(last, now)) {
+                evictIdle();
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Registers a repository that was just created, any previous repository for the same key is closed
+     * @param key the key of the repository
+     * @param repository the repository
+     */
+    public void register(String key, Repository repository) {
+        RegisteredRepository previous = repositories.put(key, new RegisteredRepository(repository));
+        openRepositories.incrementAndGet();
+        if (previous != null) {
+            boolean previousOpen = previous.detach();
+            if (previous.repository != repository) {
+                if (previousOpen) {
+                    previous.repository.close();
+                }
+            } else if (!previousOpen) {
+                // The same instance was evicted, it needs to be open again
+                repository.incrementOpen();
+            }
+        }
+    }
+
+    /**
+     * Removes and closes a repository
+     * @param key the key of the repository
+     * @return the repository or null if it was not registered
+     */
+    public Repository remove(String key) {
+        RegisteredRepository registered = repositories.remove(key);
+        if (registered == null) {
+            return null;
+        }
+        registered.remove();
+        return registered.repository;
+    }
+
+    /**
+     * Closes the least recently used repositories that have been idle for the configured time and are not in use,
+     * until the number of open repositories is within the limit
+     * @return the number of repositories evicted
+     */
+    public int evictIdle() {
+        // Only one thread needs to do the eviction, the others can continue using the repositories
+        if (!evicting.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int excess = openRepositories.get() - maxOpenRepositories;
+            if (excess <= 0) {
+                return 0;
+            }
+            long idleSince = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleTimeout);
+            // Only the least recently used candidates are kept, the most recent one is at the head of the queue. The
+            // access time is copied because it can change while the queue is built
+            Comparator<Pair<Long, RegisteredRepository>> byAccess = comparingLong(Pair::getLeft);
+            PriorityQueue<Pair<Long, RegisteredRepository>> candidates =
+                    new PriorityQueue<>(Math.min(excess, repositories.size()) + 1, byAccess.reversed());
+            for (RegisteredRepository registered : repositories.values()) {
+                long lastAccess = registered.lastAccess;
+                if (!registered.open || registered.uses.get() > 0 || lastAccess > idleSince) {
+                    continue;
+                }
+                if (candidates.size() < excess) {
+                    candidates.add(Pair.of(lastAccess, registered));
+                } else if (lastAccess < candidates.peek().getLeft()) {
+                    candidates.poll();
+                    candidates.add(Pair.of(lastAccess, registered));
+                }
+            }
+            int evicted = 0;
+            for (Pair<Long, RegisteredRepository> candidate : candidates) {
+                if (candidate.getRight().evict(idleSince)) {
+                    evicted++;
+                }
+            }
+            if (evicted < excess) {
+                logger.debug("{0} repositories are open, {1} over the limit but in use or not idle for long enough",
+                        openRepositories.get(), excess - evicted);
+            }
+            return evicted;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Closes all repositories
+     */
+    public void shutdown() {
+        repositories.keySet().forEach(this::remove);
+    }
+
+    public RepositoryMetrics getMetrics() {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        metrics.setRegisteredRepositories(repositories.size());
+        metrics.setOpenRepositories(openRepositories.get());
+        metrics.setMaxOpenRepositories(maxOpenRepositories);
+        metrics.setOpenCount(openCount.sum());
+        metrics.setReopenCount(reopenCount.sum());
+        metrics.setEvictionCount(evictionCount.sum());
+        metrics.setHitCount(hitCount.sum());
+        metrics.setOpenTime(openTime);
+        return metrics;
+    }
+
+    public int getMaxOpenRepositories() {
+        return maxOpenRepositories;
+    }
+
+    public void setMaxOpenRepositories(int maxOpenRepositories) {
+        this.maxOpenRepositories = maxOpenRepositories;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * Opens a repository that is not registered yet
+     */
+    @FunctionalInterface
+    public interface RepositoryOpener {
+
+        Repository open() throws IOException;
+
+    }
+
+    /**
+     * Holds a repository and its state, the repository is only opened by the first thread requesting it
+     */
+    protected class RegisteredRepository {
+
+        protected volatile Repository repository;
+        protected volatile boolean open;
+        protected volatile long lastAccess = System.currentTimeMillis();
+        protected volatile boolean removed;
+        protected final AtomicInteger uses = new AtomicInteger();
+
+        public RegisteredRepository() {
+        }
+
+        public RegisteredRepository(Repository repository) {
+            this.repository = repository;
+            this.open = true;
+        }
+
+        public Repository acquire(RepositoryOpener opener, boolean use) throws IOException {
+            lastAccess = System.currentTimeMillis();
+            if (open && !use) {
+                hitCount.increment();
+                return repository;
+            }
+            synchronized (this) {
+                if (removed) {
+                    return null;
+                }
+                if (!open) {
+                    long start = System.nanoTime();
+                    if (repository == null) {
+                        Repository opened = opener.open();
+                        if (opened == null) {
+                            return null;
+                        }
+                        repository = opened;
+                        openCount.increment();
+                    } else {
+                        // Evicted repositories are reused so callers always get the same instance
+                        repository.incrementOpen();
+                        reopenCount.increment();
+                    }
+                    openTime.record(System.nanoTime() - start);
+                    openRepositories.incrementAndGet();
+                    open = true;
+                } else {
+                    hitCount.increment();
+                }
+                if (use) {
+                    // Incremented while holding the lock so the repository can't be evicted before it is returned
+                    uses.incrementAndGet();
+                }
+                return repository;
+            }
+        }
+
+        /**
+         * Marks the repository as no longer in use by one of the callers that acquired it
+         */
+        public void endUse() {
+            lastAccess = System.currentTimeMillis();
+            // The count starts again when the same instance is registered again while in use
+            uses.updateAndGet(count -> Math.max(0, count - 1));
+        }
+
+        public synchronized boolean evict(long idleSince) {
+            if (open && uses.get() == 0 && lastAccess <= idleSince) {
+                close();
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+
+        public synchronized void remove() {
+            if (detach()) {
+                repository.close();
+            }
+        }
+
+        /**
+         * Marks the repository as removed from the registry without closing it
+         * @return true if the repository was open
+         */
+        public synchronized boolean detach() {
+            removed = true;
+            return release();
+        }
+
+        public synchronized void close() {
+            if (release()) {
+                repository.close();
+            }
+        }
+
+        /**
+         * Marks the repository as closed without closing it
+         * @return true if the repository was open
+         */
+        public synchronized boolean release() {
+            if (open) {
+                open = false;
+                openRepositories.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -18,6 +18,7 @@ package org.craftercms.studio.impl.v2.repository.blob;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoException;
@@ -36,6 +37,7 @@ import org.craftercms.studio.api.v1.exception.repository.RemoteRepositoryNotFoun
 import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
 import org.craftercms.studio.api.v1.repository.RepositoryItem;
 import org.craftercms.studio.api.v1.service.deployment.DeploymentException;
 import org.craftercms.studio.api.v1.to.DeploymentItemTO;
@@ -45,17 +47,23 @@ import org.craftercms.studio.api.v2.dal.GitLog;
 import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
 import org.craftercms.studio.api.v2.dal.RepoOperation;
 import org.craftercms.studio.api.v2.exception.RepositoryLockedException;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
 import org.craftercms.studio.api.v2.repository.blob.StudioBlobStore;
 import org.craftercms.studio.api.v2.repository.blob.StudioBlobStoreResolver;
 import org.craftercms.studio.impl.v1.repository.git.GitContentRepository;
+import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.craftercms.studio.model.rest.content.DetailedItem;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Paths;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -93,6 +101,8 @@ public class BlobAwareContentRepository implements ContentRepository,
 
     protected StudioBlobStoreResolver blobStoreResolver;
 
+    protected BlobPointerIndex pointerIndex;
+
     protected final ObjectMapper objectMapper = new XmlMapper().enable(SerializationFeature.INDENT_OUTPUT);
 
     public void setFileExtension(String fileExtension) {
@@ -111,6 +121,10 @@ public class BlobAwareContentRepository implements ContentRepository,
         this.blobStoreResolver = blobStoreResolver;
     }
 
+    public void setPointerIndex(BlobPointerIndex pointerIndex) {
+        this.pointerIndex = pointerIndex;
+    }
+
     protected String getOriginalPath(String path) {
         return StringUtils.removeEnd(path, "." + fileExtension);
     }
@@ -140,23 +154,114 @@ public class BlobAwareContentRepository implements ContentRepository,
         return (StudioBlobStore) blobStoreResolver.getByPaths(site, paths);
     }
 
+    /**
+     * Indicates if the site has any blob store configured, sites without them can't have pointers so there is no need
+     * to look for them
+     */
+    protected boolean hasBlobStores(String site) {
+        if (isEmpty(site)) {
+            return false;
+        }
+        try {
+            return blobStoreResolver.hasBlobStores(site);
+        } catch (ServiceLayerException e) {
+            // Let the regular lookup handle the error
+            logger.error("Error checking blob stores for site {0}", e, site);
+            return true;
+        }
+    }
+
     protected boolean pointersExist(String siteId, String... paths) {
+        if (!hasBlobStores(siteId)) {
+            return false;
+        }
         return Stream.of(paths).
                 allMatch(path -> {
                     // Check if the pointer path is not the same (this happens for folders)
-                    String pointerPath = getPointerPath(siteId, path);
-                    return !StringUtils.equals(path, pointerPath)
-                            && localRepositoryV1.contentExists(siteId, pointerPath);
+                    String pointerPath = StringUtils.appendIfMissing(path, "." + fileExtension);
+                    try {
+                        return !StringUtils.equals(path, pointerPath)
+                                && pointerIndex.contains(siteId, pointerPath)
+                                && !isFolder(siteId, path);
+                    } catch (IOException e) {
+                        logger.error("Error checking pointer for {0} in site {1}", e, path, siteId);
+                        return false;
+                    }
                 });
     }
 
+    /**
+     * {@link ContentSnapshot} that reads the files from the blob stores when the snapshot includes their pointers
+     */
+    protected class BlobAwareContentSnapshot implements ContentSnapshot {
+
+        protected final String site;
+        protected final ContentSnapshot localSnapshot;
+
+        protected BlobAwareContentSnapshot(String site, ContentSnapshot localSnapshot) {
+            this.site = site;
+            this.localSnapshot = localSnapshot;
+        }
+
+        protected StudioBlobStore getStore(String path) throws ServiceLayerException {
+            String pointerPath = StringUtils.appendIfMissing(path, "." + fileExtension);
+            if (!StringUtils.equals(path, pointerPath) && localSnapshot.contentExists(pointerPath)) {
+                return getBlobStore(site, path);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean contentExists(String path) {
+            try {
+                StudioBlobStore store = getStore(path);
+                if (store != null) {
+                    return store.contentExists(site, normalize(path));
+                }
+            } catch (Exception e) {
+                logger.error("Error checking if content {0} exist in site {1}", e, path, site);
+                return false;
+            }
+            return localSnapshot.contentExists(path);
+        }
+
+        @Override
+        public long getContentSize(String path) {
+            try {
+                StudioBlobStore store = getStore(path);
+                if (store != null) {
+                    return store.getContentSize(site, normalize(path));
+                }
+            } catch (Exception e) {
+                logger.error("Error getting size for content {0} in site {1}", e, path, site);
+                return -1L;
+            }
+            return localSnapshot.getContentSize(path);
+        }
+
+        @Override
+        public InputStream getContent(String path) throws IOException {
+            try {
+                StudioBlobStore store = getStore(path);
+                if (store != null) {
+                    return store.getContent(site, normalize(path));
+                }
+            } catch (Exception e) {
+                logger.error("Error getting content {0} in site {1}", e, path, site);
+                return null;
+            }
+            return localSnapshot.getContent(path);
+        }
+
+    }
+
     // Start API 1
 
     @Override
     public boolean contentExists(String site, String path) {
         logger.debug("Checking if {0} exists in site {1}", path, site);
         try {
-            if (!isFolder(site, path) && pointersExist(site, path)) {
+            if (pointersExist(site, path)) {
                 StudioBlobStore store = getBlobStore(site, path);
                 if (store != null) {
                     return store.contentExists(site, normalize(path));
@@ -169,11 +274,44 @@ public class BlobAwareContentRepository implements ContentRepository,
         }
     }
 
+    @Override
+    public Set<String> getExistingPaths(String site, Collection<String> paths) {
+        logger.debug("Checking if {0} paths exist in site {1}", paths.size(), site);
+        if (!hasBlobStores(site)) {
+            return localRepositoryV1.getExistingPaths(site, paths);
+        }
+        Set<String> toReturn = new HashSet<>();
+        // Check the paths and their pointers with a single lookup
+        Set<String> lookupPaths = new HashSet<>(paths);
+        paths.forEach(path -> lookupPaths.add(StringUtils.appendIfMissing(path, "." + fileExtension)));
+        Set<String> localPaths = localRepositoryV1.getExistingPaths(site, lookupPaths);
+        for (String path : paths) {
+            String pointerPath = StringUtils.appendIfMissing(path, "." + fileExtension);
+            try {
+                if (!StringUtils.equals(path, pointerPath) && localPaths.contains(pointerPath)) {
+                    StudioBlobStore store = getBlobStore(site, path);
+                    if (store != null) {
+                        if (store.contentExists(site, normalize(path))) {
+                            toReturn.add(path);
+                        }
+                        continue;
+                    }
+                }
+                if (localPaths.contains(path)) {
+                    toReturn.add(path);
+                }
+            } catch (Exception e) {
+                logger.error("Error checking if content {0} exist in site {1}", e, path, site);
+            }
+        }
+        return toReturn;
+    }
+
     @Override
     public InputStream getContent(String site, String path) {
         logger.debug("Getting content of {0} in site {1}", path, site);
         try {
-            if (!isFolder(site, path) && pointersExist(site, path)) {
+            if (pointersExist(site, path)) {
                 StudioBlobStore store = getBlobStore(site, path);
                 if (store != null) {
                     return store.getContent(site, normalize(path));
@@ -186,6 +324,27 @@ public class BlobAwareContentRepository implements ContentRepository,
         }
     }
 
+    @Override
+    public Document getContentAsDocument(String site, String path) throws DocumentException {
+        logger.debug("Getting document {0} in site {1}", path, site);
+        try {
+            if (pointersExist(site, path)) {
+                StudioBlobStore store = getBlobStore(site, path);
+                if (store != null) {
+                    try (InputStream is = store.getContent(site, normalize(path))) {
+                        return is != null? ContentUtils.convertStreamToXml(is) : null;
+                    }
+                }
+            }
+        } catch (DocumentException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error getting document {0} in site {1}", e, path, site);
+            return null;
+        }
+        return localRepositoryV1.getContentAsDocument(site, path);
+    }
+
     @Override
     public long getContentSize(String site, String path) {
         logger.debug("Getting size of {0} in site {1}", path, site);
@@ -203,6 +362,19 @@ public class BlobAwareContentRepository implements ContentRepository,
         }
     }
 
+    @Override
+    public ContentSnapshot getContentSnapshot(String site, Collection<String> paths) {
+        logger.debug("Getting snapshot of {0} paths in site {1}", paths.size(), site);
+        if (!hasBlobStores(site)) {
+            return localRepositoryV2.getContentSnapshot(site, paths);
+        }
+        // Include the pointers in the same snapshot
+        Set<String> lookupPaths = new HashSet<>(paths);
+        paths.forEach(path -> lookupPaths.add(StringUtils.appendIfMissing(path, "." + fileExtension)));
+        ContentSnapshot localSnapshot = localRepositoryV2.getContentSnapshot(site, lookupPaths);
+        return new BlobAwareContentSnapshot(site, localSnapshot);
+    }
+
     @Override
     public String writeContent(String site, String path, InputStream content) throws ServiceLayerException {
         logger.debug("Writing {0} in site {1}", path, site);
@@ -321,6 +493,85 @@ public class BlobAwareContentRepository implements ContentRepository,
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Changes for a blob store are applied to it right away, only the pointers are part of the local commit so
+     * they are not reverted if the commit fails</p>
+     */
+    @Override
+    public String commitBatch(String site, ContentRepositoryBatch batch) throws ServiceLayerException {
+        logger.debug("Writing batch of {0} changes in site {1}", batch.size(), site);
+        if (!hasBlobStores(site)) {
+            return localRepositoryV1.commitBatch(site, batch);
+        }
+        try {
+            ContentRepositoryBatch localBatch = new ContentRepositoryBatch();
+            for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+                String path = operation.getPath();
+                switch (operation.getType()) {
+                    case WRITE: {
+                        StudioBlobStore store = getBlobStore(site, path);
+                        if (store != null) {
+                            try (InputStream content = operation.openContent()) {
+                                store.writeContent(site, normalize(path), content);
+                            }
+                            Blob reference = store.getReference(normalize(path));
+                            localBatch.write(getPointerPath(site, path),
+                                    new ByteArrayInputStream(objectMapper.writeValueAsBytes(reference)));
+                        } else {
+                            localBatch.write(path, operation);
+                        }
+                        break;
+                    }
+                    case CREATE_FOLDER: {
+                        String parent = FilenameUtils.getFullPathNoEndSeparator(path);
+                        String name = FilenameUtils.getName(path);
+                        StudioBlobStore store = getBlobStore(site, path);
+                        if (store != null) {
+                            store.createFolder(site, normalize(parent), name);
+                        }
+                        localBatch.createFolder(parent, name);
+                        break;
+                    }
+                    case DELETE: {
+                        StudioBlobStore store = getBlobStore(site, path);
+                        if (store != null && store.deleteContent(site, normalize(path), null) != null) {
+                            localBatch.delete(getPointerPath(site, path));
+                        } else {
+                            localBatch.delete(path);
+                        }
+                        break;
+                    }
+                    case MOVE: {
+                        String targetPath = operation.getTargetPath();
+                        StudioBlobStore store = getBlobStore(site, path, targetPath);
+                        if (store != null &&
+                                store.moveContent(site, normalize(path), normalize(targetPath), null) != null) {
+                            boolean isFolder = isFolder(site, path);
+                            localBatch.move(isFolder ? path : getPointerPath(site, path),
+                                    isFolder ? targetPath : getPointerPath(site, targetPath));
+                        } else {
+                            localBatch.move(path, targetPath);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unsupported batch operation " + operation);
+                }
+            }
+            return localRepositoryV1.commitBatch(site, localBatch);
+        } catch (BlobStoreConfigurationMissingException e) {
+            logger.debug("No blob store configuration found for site {0}, writing batch to local repository", site);
+            return localRepositoryV1.commitBatch(site, batch);
+        } catch (ServiceLayerException | RepositoryLockedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error writing batch in site {0}", e, site);
+            throw new ServiceLayerException(e);
+        }
+    }
+
     @Override
     public RepositoryItem[] getContentChildren(String site, String path) {
         RepositoryItem[] children = localRepositoryV1.getContentChildren(site, path);
@@ -396,6 +647,7 @@ public class BlobAwareContentRepository implements ContentRepository,
 
     @Override
     public boolean deleteSite(String siteId) {
+        pointerIndex.remove(siteId);
         return localRepositoryV1.deleteSite(siteId);
     }
 
@@ -656,6 +908,11 @@ public class BlobAwareContentRepository implements ContentRepository,
         localRepositoryV2.markGitLogAudited(siteId, commitId);
     }
 
+    @Override
+    public void markGitLogAuditedBulk(String siteId, List<String> commitIds) {
+        localRepositoryV2.markGitLogAuditedBulk(siteId, commitIds);
+    }
+
     @Override
     public void updateGitlog(String siteId, String lastProcessedCommitId, int batchSize) throws SiteNotFoundException {
         localRepositoryV2.updateGitlog(siteId, lastProcessedCommitId, batchSize);
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository.blob;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.impl.v1.repository.git.GitObjectCache;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+
+/**
+ * In-memory index of the blob pointer files of each site sandbox.
+ *
+ * <p>The index of a site is built from the HEAD tree the first time it is used. After that it is kept in sync by
+ * diffing the indexed tree with the new HEAD tree, so it includes all the changes made to the repository, not only
+ * the ones made through the {@link BlobAwareContentRepository}. Since unchanged folders have the same tree id the
+ * diff only visits the folders that were actually modified.</p>
+ *
+ * @since 4.0
+ */
+public class BlobPointerIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobPointerIndex.class);
+
+    protected GitRepositoryHelper helper;
+    protected GitObjectCache objectCache;
+
+    /**
+     * The extension for the blob files
+     */
+    protected String fileExtension;
+
+    protected final Map<String, SitePointers> sites = new ConcurrentHashMap<>();
+
+    /**
+     * Indicates if a pointer file exists in the sandbox of a site
+     * @param site the site id
+     * @param pointerPath the path of the pointer file
+     * @return true if the pointer exists
+     * @throws IOException if there is any error reading the repository
+     */
+    public boolean contains(String site, String pointerPath) throws IOException {
+        Repository repo = helper.getRepository(site, SANDBOX);
+        if (repo == null) {
+            return false;
+        }
+        SitePointers pointers = sites.computeIfAbsent(site, key -> new SitePointers());
+        ObjectId treeId = objectCache.getHeadTree(repo);
+        if (treeId == null) {
+            return false;
+        }
+        if (!treeId.equals(pointers.treeId)) {
+            update(site, repo, pointers, treeId);
+        }
+        return pointers.paths.contains(helper.getGitPath(pointerPath));
+    }
+
+    /**
+     * Removes the index of a site
+     * @param site the site id
+     */
+    public void remove(String site) {
+        sites.remove(site);
+    }
+
+    protected void update(String site, Repository repo, SitePointers pointers, ObjectId treeId) throws IOException {
+        synchronized (pointers) {
+            if (treeId.equals(pointers.treeId)) {
+                return;
+            }
+            if (pointers.treeId != null) {
+                try {
+                    applyChanges(repo, pointers, treeId);
+                    pointers.treeId = treeId;
+                    return;
+                } catch (MissingObjectException e) {
+                    // The previous tree is not in the repository anymore, i.e. the site was recreated
+                    logger.debug("Tree " + pointers.treeId.name() + " not found, rebuilding blob pointer index " +
+                            "for site " + site);
+                }
+            }
+            pointers.paths.clear();
+            try (TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.addTree(treeId);
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(PathSuffixFilter.create("." + fileExtension));
+                while (treeWalk.next()) {
+                    pointers.paths.add(treeWalk.getPathString());
+                }
+            }
+            pointers.treeId = treeId;
+            logger.debug("Built blob pointer index for site " + site + " with " + pointers.paths.size() +
+                    " pointers");
+        }
+    }
+
+    protected void applyChanges(Repository repo, SitePointers pointers, ObjectId treeId) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(pointers.treeId);
+            treeWalk.addTree(treeId);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathSuffixFilter.create("." + fileExtension),
+                    TreeFilter.ANY_DIFF));
+            while (treeWalk.next()) {
+                if (treeWalk.getFileMode(1) == FileMode.MISSING) {
+                    pointers.paths.remove(treeWalk.getPathString());
+                } else {
+                    pointers.paths.add(treeWalk.getPathString());
+                }
+            }
+        }
+    }
+
+    public void setHelper(GitRepositoryHelper helper) {
+        this.helper = helper;
+    }
+
+    public void setObjectCache(GitObjectCache objectCache) {
+        this.objectCache = objectCache;
+    }
+
+    public void setFileExtension(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Pointers of a single site and the tree they were read from
+     */
+    protected static class SitePointers {
+
+        protected volatile ObjectId treeId;
+        protected final Set<String> paths = ConcurrentHashMap.newKeySet();
+
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository.blob;
+
+import org.craftercms.commons.file.blob.exception.BlobStoreException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Exception thrown when some of the items of a bulk blob store operation fail
+ *
+ * @since 4.0
+ */
+public class BulkOperationException extends BlobStoreException {
+
+    /**
+     * Max number of failed items included in the message
+     */
+    public static final int MAX_REPORTED_ITEMS = 10;
+
+    protected final Map<String, Exception> failures;
+
+    public BulkOperationException(String message, Map<String, Exception> failures) {
+        super(getMessage(message, failures), failures.values().iterator().next());
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * Returns the errors of all the failed items, keyed by item
+     */
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    protected static String getMessage(String message, Map<String, Exception> failures) {
+        String items = failures.entrySet().stream()
+                .limit(MAX_REPORTED_ITEMS)
+                .map(entry -> entry.getKey() + " (" + entry.getValue().getMessage() + ")")
+                .collect(joining(", "));
+        return message + ", " + failures.size() + " items failed: " + items +
+                (failures.size() > MAX_REPORTED_ITEMS? ", ..." : "");
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.repository.blob;
+
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs the same operation for many items with a bounded number of concurrent calls, used by the blob stores for
+ * bulk operations that need one remote call per item.
+ *
+ * <p>The calling thread always works on the items too, so operations still complete (only slower) if the shared
+ * executor is busy. Failures do not stop the operation, all items are processed and the errors are returned to the
+ * caller.</p>
+ *
+ * @since 4.0
+ */
+public class BulkOperationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkOperationExecutor.class);
+
+    protected AsyncTaskExecutor taskExecutor;
+
+    /**
+     * Executes an operation for all the given items
+     * @param items the items to process
+     * @param concurrency the max number of items processed at the same time
+     * @param keyMapper function that returns the key used to report the errors of an item
+     * @param operation the operation to execute
+     * @param <T> the type of the items
+     * @return the errors of the items that failed, keyed by item, empty if all items succeeded
+     */
+    public <T> Map<String, Exception> execute(Collection<T> items, int concurrency, Function<T, String> keyMapper,
+                                              ItemOperation<T> operation) {
+        Map<String, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        if (items.isEmpty()) {
+            return failures;
+        }
+        Queue<T> queue = new ConcurrentLinkedQueue<>(items);
+        Runnable worker = () -> {
+            T item;
+            while ((item = queue.poll()) != null) {
+                try {
+                    operation.execute(item);
+                } catch (Exception e) {
+                    String key = keyMapper.apply(item);
+                    logger.debug("Operation failed for {0}", e, key);
+                    failures.put(key, e);
+                }
+            }
+        };
+
+        // The calling thread is one of the workers
+        int extraWorkers = taskExecutor != null? Math.min(concurrency, items.size()) - 1 : 0;
+        List<Future<?>> futures = new ArrayList<>(Math.max(extraWorkers, 0));
+        try {
+            for (int i = 0; i < extraWorkers; i++) {
+                futures.add(taskExecutor.submit(worker));
+            }
+        } catch (TaskRejectedException e) {
+            logger.debug("Executor is busy, continuing with {0} workers", futures.size() + 1);
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Leave the remaining items for the reported errors
+                queue.forEach(item -> failures.put(keyMapper.apply(item), e));
+                queue.clear();
+            } catch (ExecutionException e) {
+                // Errors are handled by the workers, this should never happen
+                logger.error("Unexpected error in bulk operation worker", e);
+            }
+        }
+        return failures;
+    }
+
+    public void setTaskExecutor(AsyncTaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Operation executed for each item
+     * @param <T> the type of the items
+     */
+    @FunctionalInterface
+    public interface ItemOperation<T> {
+
+        void execute(T item) throws Exception;
+
+    }
+
+}
@@ -105,11 +105,7 @@ public class StudioBlobStoreResolverImpl extends BlobStoreResolverImpl implement
         logger.debug("Looking blob store for paths {} for site {}", Arrays.toString(paths), site);
         HierarchicalConfiguration config;
         try {
-            var cacheKey1 = configurationService.getCacheKey(site, configModule, configPath, getEnvironment());
-            config = (HierarchicalConfiguration) cache.get(cacheKey1, () -> {
-                logger.debug("Cache miss: {}", cacheKey1);
-                return getConfiguration(new ConfigurationProviderImpl(site));
-            });
+            config = getSiteConfiguration(site);
             String storeId = findStoreId(config, store -> paths[0].matches(store.getString(CONFIG_KEY_PATTERN)));
             if (isNotEmpty(storeId)) {
                 var cacheKey2 = join(":", site, CACHE_KEY_STORE, storeId);
@@ -141,6 +137,26 @@ public class StudioBlobStoreResolverImpl extends BlobStoreResolverImpl implement
         }
     }
 
+    @Override
+    public boolean hasBlobStores(String site) throws ServiceLayerException {
+        try {
+            return isNotEmpty(findStoreId(getSiteConfiguration(site), store -> true));
+        } catch (BlobStoreConfigurationMissingException e) {
+            logger.debug("Blob store configuration is missing or invalid");
+            return false;
+        } catch (ExecutionException e) {
+            throw new ServiceLayerException("Error looking for blob stores", e);
+        }
+    }
+
+    protected HierarchicalConfiguration getSiteConfiguration(String site) throws ExecutionException {
+        var cacheKey = configurationService.getCacheKey(site, configModule, configPath, getEnvironment());
+        return (HierarchicalConfiguration) cache.get(cacheKey, () -> {
+            logger.debug("Cache miss: {}", cacheKey);
+            return getConfiguration(new ConfigurationProviderImpl(site));
+        });
+    }
+
     protected String getEnvironment() {
         return studioConfiguration.getProperty(StudioConfiguration.CONFIGURATION_ENVIRONMENT_ACTIVE);
     }
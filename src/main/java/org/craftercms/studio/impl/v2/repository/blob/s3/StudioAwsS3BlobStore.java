@@ -16,7 +16,11 @@
 package org.craftercms.studio.impl.v2.repository.blob.s3;
 
 import com.amazonaws.services.s3.model.*;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.lang3.ArrayUtils;
+import org.craftercms.commons.config.ConfigurationException;
 import org.craftercms.commons.file.blob.Blob;
 import org.craftercms.commons.file.blob.exception.BlobStoreException;
 import org.craftercms.commons.file.blob.impl.s3.AwsS3BlobStore;
@@ -25,13 +29,20 @@ import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v1.to.DeploymentItemTO;
 import org.craftercms.studio.api.v2.repository.blob.StudioBlobStoreAdapter;
 import org.craftercms.studio.api.v2.repository.blob.StudioBlobStore;
+import org.craftercms.studio.impl.v2.repository.blob.BulkOperationException;
+import org.craftercms.studio.impl.v2.repository.blob.BulkOperationExecutor;
 
 import java.io.InputStream;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.io.FilenameUtils.getExtension;
@@ -51,6 +62,43 @@ public class StudioAwsS3BlobStore extends AwsS3BlobStore implements StudioBlobSt
 
     public static final String OK = "OK";
 
+    public static final String CONFIG_KEY_CONCURRENCY = "configuration.concurrency";
+
+    /**
+     * Max number of keys accepted by S3 in a single delete request
+     */
+    public static final int MAX_DELETE_KEYS = 1000;
+
+    /**
+     * Status and error code returned by S3 when the source of a copy is too large for a single request
+     */
+    public static final int COPY_TOO_LARGE_STATUS = 400;
+    public static final String COPY_TOO_LARGE_ERROR_CODE = "InvalidRequest";
+
+    protected BulkOperationExecutor bulkOperationExecutor;
+
+    /**
+     * The max number of objects copied at the same time by a single operation, can be overridden for each store
+     */
+    protected int concurrency = 8;
+
+    /**
+     * Objects larger than this size are copied using multipart requests
+     */
+    protected long multipartCopyThreshold = 5L * 1024 * 1024 * 1024;
+
+    /**
+     * The size of each part for multipart copies
+     */
+    protected long multipartCopyPartSize = 100L * 1024 * 1024;
+
+    @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void init(HierarchicalConfiguration config) throws ConfigurationException {
+        super.init(config);
+        concurrency = Math.max(config.getInt(CONFIG_KEY_CONCURRENCY, concurrency), 1);
+    }
+
     protected boolean isFolder(String path) {
         return isEmpty(getExtension(path));
     }
@@ -59,6 +107,89 @@ public class StudioAwsS3BlobStore extends AwsS3BlobStore implements StudioBlobSt
         return mapping.target + "/" + getKey(mapping,path);
     }
 
+    /**
+     * Copies an object, using a multipart copy if it is too large for a single request
+     * @param sourceBucket the source bucket
+     * @param sourceKey the source key
+     * @param targetBucket the target bucket
+     * @param targetKey the target key
+     * @param size the size of the object if it is already known, or a negative value to avoid an additional request
+     *             for the metadata of objects that can be copied with a single request
+     * @throws InterruptedException if the thread is interrupted while waiting for a multipart copy
+     */
+    protected void copyObject(String sourceBucket, String sourceKey, String targetBucket, String targetKey, long size)
+            throws InterruptedException {
+        logger.debug("Copying content from {0}/{1} to {2}/{3}", sourceBucket, sourceKey, targetBucket, targetKey);
+        if (size <= multipartCopyThreshold) {
+            try {
+                getClient().copyObject(sourceBucket, sourceKey, targetBucket, targetKey);
+                return;
+            } catch (AmazonS3Exception e) {
+                if (size >= 0 || e.getStatusCode() != COPY_TOO_LARGE_STATUS ||
+                        !COPY_TOO_LARGE_ERROR_CODE.equals(e.getErrorCode())) {
+                    throw e;
+                }
+                logger.debug("Content at {0}/{1} is too large for a single copy, using multipart copy",
+                        sourceBucket, sourceKey);
+            }
+        }
+        TransferManager transferManager = TransferManagerBuilder.standard()
+                .withS3Client(getClient())
+                .withMultipartCopyThreshold(multipartCopyThreshold)
+                .withMultipartCopyPartSize(multipartCopyPartSize)
+                .build();
+        try {
+            transferManager.copy(new CopyObjectRequest(sourceBucket, sourceKey, targetBucket, targetKey))
+                    .waitForCopyResult();
+        } finally {
+            // The client is shared with the rest of the store
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    /**
+     * Deletes the given keys using as few requests as possible
+     * @param bucket the bucket
+     * @param keys the keys to delete
+     * @return the errors for the keys that could not be deleted
+     */
+    protected Map<String, Exception> deleteObjects(String bucket, List<String> keys) {
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i += MAX_DELETE_KEYS) {
+            List<String> batch = keys.subList(i, Math.min(i + MAX_DELETE_KEYS, keys.size()));
+            logger.debug("Deleting contents at {0} from bucket {1}", batch, bucket);
+            try {
+                getClient().deleteObjects(new DeleteObjectsRequest(bucket)
+                        .withKeys(batch.toArray(new String[0])));
+            } catch (MultiObjectDeleteException e) {
+                e.getErrors().forEach(error -> failures.put(bucket + "/" + error.getKey(),
+                        new BlobStoreException(error.getCode() + ": " + error.getMessage(), e)));
+            } catch (Exception e) {
+                batch.forEach(key -> failures.put(bucket + "/" + key, e));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Copies all the objects in a listing page to a new folder
+     * @param mapping the mapping for the bucket
+     * @param fromPath the path of the source folder
+     * @param toPath the path of the target folder
+     * @param objects the objects to copy
+     * @return the errors for the objects that could not be copied
+     */
+    protected Map<String, Exception> copyObjects(Mapping mapping, String fromPath, String toPath,
+                                                 List<S3ObjectSummary> objects) {
+        String fromKey = getKey(mapping, fromPath);
+        return bulkOperationExecutor.execute(objects, concurrency, object -> mapping.target + "/" + object.getKey(),
+                object -> {
+                    String filePath = Paths.get(fromKey).relativize(Paths.get(object.getKey())).toString();
+                    copyObject(mapping.target, object.getKey(), mapping.target,
+                            getKey(mapping, toPath + "/" + filePath), object.getSize());
+                });
+    }
+
     @Override
     public Blob getReference(String path) {
         Mapping mapping = getMapping(publishingTargetResolver.getPublishingTarget());
@@ -178,45 +309,37 @@ public class StudioAwsS3BlobStore extends AwsS3BlobStore implements StudioBlobSt
                 ListObjectsV2Request request = new ListObjectsV2Request()
                         .withBucketName(previewMapping.target)
                         .withPrefix(appendIfMissing(getKey(previewMapping, fromPath), "/"));
+                Map<String, Exception> failures = new LinkedHashMap<>();
                 do {
+                    ListObjectsV2Result result;
                     try {
-                        ListObjectsV2Result result = getClient().listObjectsV2(request);
-                        request.setContinuationToken(result.getContinuationToken());
-
-                        String[] keys = result.getObjectSummaries().stream()
-                                .map(S3ObjectSummary::getKey)
-                                .collect(toList())
-                                .toArray(new String[]{});
-
-                        for (String key : keys) {
-                            String filePath =
-                                    Paths.get(getKey(previewMapping, fromPath)).relativize(Paths.get(key)).toString();
-                            logger.debug("Moving content from {0} to {1}",
-                                    getFullKey(previewMapping, key), getFullKey(previewMapping, toPath + "/" + filePath));
-                            try {
-                                getClient().copyObject(previewMapping.target, key, previewMapping.target,
-                                        getKey(previewMapping, toPath + "/" + filePath));
-                            } catch (Exception e) {
-                                throw new BlobStoreException("Error copying content from " +
-                                        getFullKey(previewMapping, key) + " to " +
-                                        getFullKey(previewMapping, toPath + "/" + filePath), e);
-                            }
-                        }
-                        try {
-                            getClient().deleteObjects(new DeleteObjectsRequest(previewMapping.target).withKeys(keys));
-                        } catch (Exception e) {
-                            throw new BlobStoreException("Error deleting content at " + Arrays.toString(keys) +
-                                    " from bucket " + previewMapping.target, e);
-                        }
+                        result = getClient().listObjectsV2(request);
                     } catch (Exception e) {
                         throw new BlobStoreException("Error listing content at " +
                                 getFullKey(previewMapping, fromPath), e);
                     }
+                    request.setContinuationToken(result.getContinuationToken());
+
+                    Map<String, Exception> copyFailures =
+                            copyObjects(previewMapping, fromPath, toPath, result.getObjectSummaries());
+                    failures.putAll(copyFailures);
+
+                    // Only delete the objects that were copied successfully
+                    List<String> keys = result.getObjectSummaries().stream()
+                            .map(S3ObjectSummary::getKey)
+                            .filter(key -> !copyFailures.containsKey(previewMapping.target + "/" + key))
+                            .collect(toList());
+                    failures.putAll(deleteObjects(previewMapping.target, keys));
                 } while(isNotEmpty(request.getContinuationToken()));
+                if (!failures.isEmpty()) {
+                    throw new BulkOperationException("Error moving content from " +
+                            getFullKey(previewMapping, fromPath) + " to " + getFullKey(previewMapping, toPath),
+                            failures);
+                }
             } else {
                 try {
-                    getClient().copyObject(previewMapping.target, getKey(previewMapping, fromPath),
-                            previewMapping.target, getKey(previewMapping, toPath));
+                    copyObject(previewMapping.target, getKey(previewMapping, fromPath),
+                            previewMapping.target, getKey(previewMapping, toPath), -1);
                     getClient().deleteObject(previewMapping.target, getKey(previewMapping, fromPath));
                 } catch (Exception e) {
                     throw new BlobStoreException("Error moving content from " + getFullKey(previewMapping, fromPath)
@@ -239,38 +362,26 @@ public class StudioAwsS3BlobStore extends AwsS3BlobStore implements StudioBlobSt
             ListObjectsV2Request request = new ListObjectsV2Request()
                     .withBucketName(previewMapping.target)
                     .withPrefix(appendIfMissing(getKey(previewMapping, fromPath), "/"));
+            Map<String, Exception> failures = new LinkedHashMap<>();
             do {
+                ListObjectsV2Result result;
                 try {
-                    ListObjectsV2Result result = getClient().listObjectsV2(request);
-                    request.setContinuationToken(result.getContinuationToken());
-
-                    String[] keys = result.getObjectSummaries().stream()
-                            .map(S3ObjectSummary::getKey)
-                            .collect(toList())
-                            .toArray(new String[]{});
-
-                    for (String key : keys) {
-                        String filePath =
-                                Paths.get(getKey(previewMapping, fromPath)).relativize(Paths.get(key)).toString();
-                        logger.debug("Copying content from {0} to {1}",
-                                getFullKey(previewMapping, key), getFullKey(previewMapping, toPath + "/" + filePath));
-                        try {
-                            getClient().copyObject(previewMapping.target, key, previewMapping.target,
-                                    getKey(previewMapping, toPath + "/" + filePath));
-                        } catch (Exception e) {
-                            throw new BlobStoreException("Error copying content from " +
-                                    getFullKey(previewMapping, key) + " to " +
-                                    getFullKey(previewMapping, toPath + "/" + filePath), e);
-                        }
-                    }
+                    result = getClient().listObjectsV2(request);
                 } catch (Exception e) {
                     throw new BlobStoreException("Error listing content at " + getFullKey(previewMapping, fromPath), e);
                 }
+                request.setContinuationToken(result.getContinuationToken());
+
+                failures.putAll(copyObjects(previewMapping, fromPath, toPath, result.getObjectSummaries()));
             } while(isNotEmpty(request.getContinuationToken()));
+            if (!failures.isEmpty()) {
+                throw new BulkOperationException("Error copying content from " +
+                        getFullKey(previewMapping, fromPath) + " to " + getFullKey(previewMapping, toPath), failures);
+            }
         } else {
             try {
-                getClient().copyObject(previewMapping.target, getKey(previewMapping, fromPath),
-                                       previewMapping.target, getKey(previewMapping, toPath));
+                copyObject(previewMapping.target, getKey(previewMapping, fromPath),
+                           previewMapping.target, getKey(previewMapping, toPath), -1);
             } catch (Exception e) {
                 throw new BlobStoreException("Error copying content from " + getFullKey(previewMapping, fromPath)
                         + " to " + getFullKey(previewMapping, toPath), e);
@@ -285,44 +396,73 @@ public class StudioAwsS3BlobStore extends AwsS3BlobStore implements StudioBlobSt
         Mapping previewMapping = getMapping(publishingTargetResolver.getPublishingTarget());
         Mapping envMapping = getMapping(environment);
         logger.debug("Publishing content from bucket {0} to bucket {1}", previewMapping.target, envMapping.target);
+        publish(previewMapping, envMapping, deploymentItems);
+    }
+
+    /**
+     * Publishes the items in three phases, each one with concurrent requests: moves, copies and deletes. Moves go
+     * first so new content published to the old path of a moved item is not moved too, and keys that are the target
+     * of a copy or a move are never deleted, even if the package also deletes them.
+     * @param previewMapping the mapping of the preview bucket
+     * @param envMapping the mapping of the bucket for the environment
+     * @param deploymentItems the items to publish
+     */
+    protected void publish(Mapping previewMapping, Mapping envMapping, List<DeploymentItemTO> deploymentItems) {
+        List<DeploymentItemTO> copies = new ArrayList<>();
+        List<DeploymentItemTO> moves = new ArrayList<>();
+        Set<String> deletes = new LinkedHashSet<>();
+        Set<String> targets = new HashSet<>();
         for(DeploymentItemTO item : deploymentItems) {
             if (item.isDelete()) {
-                logger.debug("Deleting content at {0}", getFullKey(envMapping, item.getPath()));
-                try {
-                    getClient().deleteObject(envMapping.target, getKey(envMapping, item.getPath()));
-                    if (isNotEmpty(item.getOldPath())) {
-                        logger.debug("Deleting content at {0}", getFullKey(envMapping, item.getOldPath()));
-                        getClient().deleteObject(envMapping.target, getKey(envMapping, item.getOldPath()));
-                    }
-                } catch (Exception e) {
-                    throw new BlobStoreException("Error deleting content at " +
-                            getFullKey(previewMapping, item.getPath()), e);
+                deletes.add(getKey(envMapping, item.getPath()));
+                if (isNotEmpty(item.getOldPath())) {
+                    deletes.add(getKey(envMapping, item.getOldPath()));
                 }
             } else if (item.isMove()) {
-                logger.debug("Moving content from {0} to {1}",
-                        getFullKey(envMapping, item.getOldPath()), getFullKey(envMapping, item.getPath()));
-                try {
-                    getClient().copyObject(envMapping.target, getKey(envMapping, item.getOldPath()),
-                            envMapping.target, getKey(envMapping, item.getPath()));
-                    getClient().deleteObject(envMapping.target, getKey(envMapping, item.getOldPath()));
-                } catch (Exception e) {
-                    throw new BlobStoreException("Error moving content from " +
-                            getFullKey(envMapping, item.getOldPath()) + " to " +
-                            getFullKey(envMapping, item.getPath()), e);
-                }
+                moves.add(item);
+                targets.add(getKey(envMapping, item.getPath()));
             } else {
-                logger.debug("Copying content from {0} to {1}",
-                        getFullKey(previewMapping, item.getPath()), getFullKey(envMapping, item.getPath()));
-                try {
-                    getClient().copyObject(previewMapping.target, getKey(previewMapping, item.getPath()),
-                            envMapping.target, getKey(envMapping, item.getPath()));
-                } catch (Exception e) {
-                    throw new BlobStoreException("Error copying content from " +
-                            getFullKey(previewMapping, item.getPath()) + " to " +
-                            getFullKey(envMapping, item.getPath()), e);
-                }
+                copies.add(item);
+                targets.add(getKey(envMapping, item.getPath()));
             }
         }
+
+        Map<String, Exception> moveFailures =
+                bulkOperationExecutor.execute(moves, concurrency, item -> getFullKey(envMapping, item.getOldPath()),
+                        item -> copyObject(envMapping.target, getKey(envMapping, item.getOldPath()),
+                                envMapping.target, getKey(envMapping, item.getPath()), -1));
+        Map<String, Exception> failures = new LinkedHashMap<>(moveFailures);
+        // Only delete the old objects that were copied successfully
+        moves.stream()
+                .filter(item -> !moveFailures.containsKey(getFullKey(envMapping, item.getOldPath())))
+                .forEach(item -> deletes.add(getKey(envMapping, item.getOldPath())));
+
+        failures.putAll(
+                bulkOperationExecutor.execute(copies, concurrency, item -> getFullKey(previewMapping, item.getPath()),
+                        item -> copyObject(previewMapping.target, getKey(previewMapping, item.getPath()),
+                                envMapping.target, getKey(envMapping, item.getPath()), -1)));
+
+        deletes.removeAll(targets);
+        failures.putAll(deleteObjects(envMapping.target, new ArrayList<>(deletes)));
+        if (!failures.isEmpty()) {
+            throw new BulkOperationException("Error publishing content to bucket " + envMapping.target, failures);
+        }
+    }
+
+    public void setBulkOperationExecutor(BulkOperationExecutor bulkOperationExecutor) {
+        this.bulkOperationExecutor = bulkOperationExecutor;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void setMultipartCopyThreshold(long multipartCopyThreshold) {
+        this.multipartCopyThreshold = multipartCopyThreshold;
+    }
+
+    public void setMultipartCopyPartSize(long multipartCopyPartSize) {
+        this.multipartCopyPartSize = multipartCopyPartSize;
     }
 
 }
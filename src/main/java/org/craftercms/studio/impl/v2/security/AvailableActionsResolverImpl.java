@@ -36,6 +36,7 @@ import org.dom4j.Element;
 import org.dom4j.Node;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -173,6 +174,25 @@ public class AvailableActionsResolverImpl implements AvailableActionsResolver {
         return calculateAvailableActions(username, path, sitePermissionMappings);
     }
 
+    @Override
+    public Map<String, Long> getContentItemAvailableActions(String username, String siteId, Collection<String> paths)
+            throws ServiceLayerException, UserNotFoundException {
+        SitePermissionMappings sitePermissionMappings = findSitePermissionMappings(siteId);
+        Map<String, Long> toReturn = new HashMap<String, Long>();
+        List<Group> groups = userServiceInternal.getUserGroups(-1, username);
+        if (CollectionUtils.isNotEmpty(groups)) {
+            List<String> groupNames = groups.stream().map(g -> g.getGroupName()).collect(Collectors.toList());
+            if (groupNames.contains(SYSTEM_ADMIN_GROUP)) {
+                paths.forEach(path -> toReturn.put(path, -1L));
+            } else {
+                toReturn.putAll(sitePermissionMappings.getAvailableActions(username, groups, paths));
+            }
+        } else {
+            paths.forEach(path -> toReturn.put(path, 0L));
+        }
+        return toReturn;
+    }
+
     private SitePermissionMappings findSitePermissionMappings(final String site) throws ServiceLayerException {
         var cacheKey = site + CACHE_KEY;
         SitePermissionMappings mappings = cache.getIfPresent(cacheKey);
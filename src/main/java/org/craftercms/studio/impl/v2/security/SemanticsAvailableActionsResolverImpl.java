@@ -30,13 +30,21 @@ import org.craftercms.studio.api.v2.service.content.internal.ContentServiceInter
 import org.craftercms.studio.api.v2.service.security.SecurityService;
 import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
 import org.craftercms.studio.api.v2.service.workflow.internal.WorkflowServiceInternal;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 import org.craftercms.studio.api.v2.utils.StudioUtils;
-import org.craftercms.studio.impl.v1.util.ContentUtils;
 import org.craftercms.studio.model.rest.content.DetailedItem;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_ASSET;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.HOME_PAGE_PATH;
 import static org.craftercms.studio.api.v2.dal.ItemState.isInWorkflow;
@@ -53,6 +61,7 @@ import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsC
 import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsConstants.PUBLISH_SCHEDULE;
 import static org.craftercms.studio.api.v2.security.ContentItemPossibleActionsConstants.getPossibleActionsForItemState;
 import static org.craftercms.studio.api.v2.security.ContentItemPossibleActionsConstants.getPossibleActionsForObject;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_ITEM_EDITABLE_TYPES;
 
 public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailableActionsResolver {
 
@@ -72,7 +81,8 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
         long workflowStateBitmap = getPossibleActionsForItemState(item.getState(), username == item.getOwner());
 
         long result = (userPermissionsBitmap & systemTypeBitmap) & workflowStateBitmap;
-        long toReturn = applySpecialUseCaseFilters(username, siteId, item, result);
+        FilterContext context = getFilterContext(username, siteId, Collections.singletonList(item));
+        long toReturn = applySpecialUseCaseFilters(context, item, result);
         return toReturn;
     }
 
@@ -89,8 +99,59 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
         return toReturn;
     }
 
-    private long applySpecialUseCaseFilters(String username, String siteId, Item item, long availableActions)
+    @Override
+    public Map<String, Long> calculateContentItemAvailableActions(String username, String siteId, List<Item> items)
+            throws ServiceLayerException, UserNotFoundException {
+        Map<String, Long> toReturn = new HashMap<String, Long>();
+        if (CollectionUtils.isEmpty(items)) {
+            return toReturn;
+        }
+        Set<String> paths = items.stream().map(Item::getPath).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Long> userPermissions = securityService.getAvailableActions(username, siteId, paths);
+
+        // Everything that doesn't depend on the item is resolved once for the whole list
+        FilterContext context = getFilterContext(username, siteId, items);
+
+        for (Item item : items) {
+            long systemTypeBitmap = getPossibleActionsForObject(item.getSystemType());
+            long workflowStateBitmap = getPossibleActionsForItemState(item.getState(), username == item.getOwner());
+            long result = (userPermissions.get(item.getPath()) & systemTypeBitmap) & workflowStateBitmap;
+            toReturn.put(item.getPath(), applySpecialUseCaseFilters(context, item, result));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Resolves everything needed by the special use case filters that doesn't depend on the item
+     * @param username the user
+     * @param siteId the site id
+     * @param items the items that will be filtered, used to fetch their workflow entries in a single query
+     */
+    private FilterContext getFilterContext(String username, String siteId, List<Item> items)
             throws ServiceLayerException, UserNotFoundException {
+        FilterContext context = new FilterContext();
+        context.username = username;
+        context.siteId = siteId;
+        context.pathClassifier = servicesConfig.getPathClassifier(siteId);
+        context.hasBlobStores = studioBlobStoreResolver.hasBlobStores(siteId);
+        context.editableMimeTypes =
+                Arrays.asList(studioConfiguration.getArray(CONTENT_ITEM_EDITABLE_TYPES, String.class));
+        context.requirePeerReview = servicesConfig.isRequirePeerReview(siteId);
+        context.workflows = Collections.emptyMap();
+        if (context.requirePeerReview) {
+            List<String> workflowPaths = items.stream()
+                    .filter(item -> isInWorkflow(item.getState()))
+                    .map(Item::getPath)
+                    .collect(Collectors.toList());
+            if (!workflowPaths.isEmpty()) {
+                context.workflows = workflowServiceInternal.getWorkflowEntries(siteId, workflowPaths);
+                context.user = userServiceInternal.getUserByIdOrUsername(-1, username);
+            }
+        }
+        return context;
+    }
+
+    private long applySpecialUseCaseFilters(FilterContext context, Item item, long availableActions) {
         long result = availableActions;
 
         if (StringUtils.equals(item.getPath(), HOME_PAGE_PATH)) {
@@ -99,39 +160,37 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
             result = result & ~CONTENT_RENAME;
         }
 
-        List<String> protectedFolderPatterns = servicesConfig.getProtectedFolderPatterns(siteId);
-        if (CollectionUtils.isNotEmpty(protectedFolderPatterns) &&
-                ContentUtils.matchesPatterns(item.getPath(), protectedFolderPatterns)) {
+        if (context.pathClassifier.matches(PathClassifier.PROTECTED_FOLDER, item.getPath())) {
             result = result & ~CONTENT_DELETE;
             result = result & ~CONTENT_CUT;
             result = result & ~CONTENT_RENAME;
         }
 
-        if (studioBlobStoreResolver.isBlob(siteId, item.getPath())) {
+        // Without blob stores no path can be a blob, skip resolving the store for each item
+        if (context.hasBlobStores && studioBlobStoreResolver.isBlob(context.siteId, item.getPath())) {
             result = result & ~CONTENT_READ_VERSION_HISTORY;
             result = result & ~CONTENT_REVERT;
         }
 
-        if ((result & CONTENT_EDIT) > 0 && (!contentServiceInternal.isEditable(item))) {
+        if ((result & CONTENT_EDIT) > 0 && (!isEditable(item, context.editableMimeTypes))) {
             result = result & ~CONTENT_EDIT;
         }
 
         if ((result & CONTENT_UPLOAD) > 0 &&
                 (StringUtils.equals(item.getSystemType(), CONTENT_TYPE_FOLDER) ||
-                        !StudioUtils.matchesPatterns(item.getPath(), servicesConfig.getAssetPatterns(siteId)))) {
+                        !context.pathClassifier.matches(CONTENT_TYPE_ASSET, item.getPath()))) {
             result = result & ~CONTENT_UPLOAD;
         }
 
-        if (servicesConfig.isRequirePeerReview(siteId)) {
-            if (StringUtils.equals(username, item.getModifier())) {
+        if (context.requirePeerReview) {
+            if (StringUtils.equals(context.username, item.getModifier())) {
                 result = result & ~PUBLISH_SCHEDULE;
                 result = result & ~PUBLISH;
             }
 
             if (isInWorkflow(item.getState())) {
-                WorkflowItem workflow = workflowServiceInternal.getWorkflowEntry(siteId, item.getPath());
-                User user = userServiceInternal.getUserByIdOrUsername(-1, username);
-                if (user.getId() == workflow.getId()) {
+                WorkflowItem workflow = context.workflows.get(item.getPath());
+                if (workflow != null && context.user.getId() == workflow.getId()) {
                     result = result & ~PUBLISH_APPROVE;
                     result = result & ~PUBLISH_SCHEDULE;
                     result = result & ~PUBLISH_REJECT;
@@ -143,6 +202,17 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
         return result;
     }
 
+    /**
+     * Same check as {@link ContentServiceInternal#isEditable(Item)} without reading the configuration for each item
+     */
+    private boolean isEditable(Item item, List<String> editableMimeTypes) {
+        String mimeType = item.getMimeType();
+        if (StringUtils.isEmpty(mimeType)) {
+            mimeType = StudioUtils.getMimeType(item.getPath());
+        }
+        return editableMimeTypes.contains(mimeType);
+    }
+
     private long applySpecialUseCaseFilters(String username, String siteId, DetailedItem detailedItem,
                                             long availableActions)
             throws ServiceLayerException, UserNotFoundException {
@@ -154,9 +224,8 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
             result = result & ~CONTENT_RENAME;
         }
 
-        List<String> protectedFolderPatterns = servicesConfig.getProtectedFolderPatterns(siteId);
-        if (CollectionUtils.isNotEmpty(protectedFolderPatterns) &&
-                ContentUtils.matchesPatterns(detailedItem.getPath(), protectedFolderPatterns)) {
+        PathClassifier pathClassifier = servicesConfig.getPathClassifier(siteId);
+        if (pathClassifier.matches(PathClassifier.PROTECTED_FOLDER, detailedItem.getPath())) {
             result = result & ~CONTENT_DELETE;
             result = result & ~CONTENT_CUT;
             result = result & ~CONTENT_RENAME;
@@ -173,7 +242,7 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
 
         if ((result & CONTENT_UPLOAD) > 0 &&
                 (!StringUtils.equals(detailedItem.getSystemType(), CONTENT_TYPE_FOLDER) ||
-                        !StudioUtils.matchesPatterns(detailedItem.getPath(), servicesConfig.getAssetPatterns(siteId)))) {
+                        !pathClassifier.matches(CONTENT_TYPE_ASSET, detailedItem.getPath()))) {
             result = result & ~CONTENT_UPLOAD;
         }
 
@@ -253,4 +322,21 @@ public class SemanticsAvailableActionsResolverImpl implements SemanticsAvailable
     public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
         this.studioConfiguration = studioConfiguration;
     }
+
+    /**
+     * Values used by the special use case filters that are the same for all the items of a request
+     */
+    private static class FilterContext {
+
+        private String username;
+        private String siteId;
+        private PathClassifier pathClassifier;
+        private boolean hasBlobStores;
+        private List<String> editableMimeTypes;
+        private boolean requirePeerReview;
+        private Map<String, WorkflowItem> workflows;
+        private User user;
+
+    }
+
 }
@@ -16,6 +16,7 @@
 
 package org.craftercms.studio.impl.v2.security.authentication.headers;
 
+import com.google.common.cache.Cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
@@ -90,6 +91,7 @@ public class HeadersAuthenticationProvider implements AuthenticationProvider {
     protected UserDAO userDao;
     protected GroupDAO groupDao;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected Cache<String, List<Group>> userGroupsCache;
 
     @ConstructorProperties({"studioConfiguration", "siteService", "userServiceInternal", "auditServiceInternal",
             "userDao", "groupDao", "retryingDatabaseOperationFacade"})
@@ -260,6 +262,9 @@ public class HeadersAuthenticationProvider implements AuthenticationProvider {
 
             try {
                 retryingDatabaseOperationFacade.addGroupMembers(params);
+                if (userGroupsCache != null) {
+                    userGroupsCache.invalidate(user.getUsername());
+                }
                 AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
                 auditLog.setOperation(OPERATION_ADD_MEMBERS);
                 auditLog.setSiteId(siteFeed.getId());
@@ -303,5 +308,8 @@ public class HeadersAuthenticationProvider implements AuthenticationProvider {
         this.groupsHeader = groupsHeader;
     }
 
+    public void setUserGroupsCache(Cache<String, List<Group>> userGroupsCache) {
+        this.userGroupsCache = userGroupsCache;
+    }
 
 }
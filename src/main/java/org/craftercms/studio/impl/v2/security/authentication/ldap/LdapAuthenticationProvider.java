@@ -15,6 +15,7 @@
  */
 package org.craftercms.studio.impl.v2.security.authentication.ldap;
 
+import com.google.common.cache.Cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.dal.SiteFeed;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
@@ -109,6 +110,7 @@ public class LdapAuthenticationProvider implements AuthenticationProvider {
     protected UserDAO userDao;
     protected GroupDAO groupDao;
     protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected Cache<String, List<Group>> userGroupsCache;
 
     @ConstructorProperties({"studioConfiguration", "siteService", "auditServiceInternal", "userServiceInternal",
             "userDao", "groupDao", "retryingDatabaseOperationFacade"})
@@ -334,6 +336,9 @@ public class LdapAuthenticationProvider implements AuthenticationProvider {
             params.put(GROUP_ID, group.getId());
             try {
                 retryingDatabaseOperationFacade.addGroupMembers(params);
+                if (userGroupsCache != null) {
+                    userGroupsCache.invalidate(user.getUsername());
+                }
                 SiteFeed siteFeed =
                         siteService.getSite(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_SYSTEM_SITE));
                 AuditLog auditLog = auditServiceInternal.createAuditLogEntry();
@@ -399,4 +404,8 @@ public class LdapAuthenticationProvider implements AuthenticationProvider {
         this.emailLdapAttribute = emailLdapAttribute;
     }
 
+    public void setUserGroupsCache(Cache<String, List<Group>> userGroupsCache) {
+        this.userGroupsCache = userGroupsCache;
+    }
+
 }
@@ -25,6 +25,7 @@ import org.craftercms.studio.api.v1.log.Logger;
 import org.craftercms.studio.api.v1.log.LoggerFactory;
 import org.craftercms.studio.api.v2.dal.AuditDAO;
 import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.AuditLogParameter;
 import org.craftercms.studio.api.v2.dal.ItemState;
 import org.craftercms.studio.api.v2.dal.QueryParameterNames;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
@@ -32,6 +33,7 @@ import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -298,6 +300,27 @@ public class AuditServiceInternalImpl implements AuditServiceInternal {
         return result > 0;
     }
 
+    @Override
+    public boolean insertAuditLogs(List<AuditLog> auditLogs) {
+        if (CollectionUtils.isEmpty(auditLogs)) {
+            return true;
+        }
+        int result = retryingDatabaseOperationFacade.insertAuditLogList(auditLogs);
+        List<AuditLogParameter> parameters = new ArrayList<>();
+        for (AuditLog auditLog : auditLogs) {
+            if (CollectionUtils.isNotEmpty(auditLog.getParameters())) {
+                for (AuditLogParameter parameter : auditLog.getParameters()) {
+                    parameter.setAuditId(auditLog.getId());
+                    parameters.add(parameter);
+                }
+            }
+        }
+        if (!parameters.isEmpty()) {
+            retryingDatabaseOperationFacade.insertAuditLogParamsList(parameters);
+        }
+        return result == auditLogs.size();
+    }
+
     @Override
     public AuditLog createAuditLogEntry() {
         AuditLog auditLog = new AuditLog();
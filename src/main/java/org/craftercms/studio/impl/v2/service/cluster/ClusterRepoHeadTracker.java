@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.impl.v2.service.cluster;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.craftercms.studio.api.v1.constant.GitRepositories;
+import org.craftercms.studio.api.v1.log.Logger;
+import org.craftercms.studio.api.v1.log.LoggerFactory;
+import org.craftercms.studio.api.v2.dal.ClusterDAO;
+import org.craftercms.studio.api.v2.dal.ClusterMember;
+import org.craftercms.studio.api.v2.dal.ClusterRepoHead;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_NOTIFICATION_TIMEOUT;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_NOTIFICATION_URL_FORMAT;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_SYNC_FULL_SYNC_EVERY_N_RUNS;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_MANAGEMENT_AUTHORIZATION_TOKEN;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+
+/**
+ * Keeps track of the head version of the repositories in each cluster node, so the sync tasks only fetch from the
+ * members that actually have new changes.
+ *
+ * <p>Every node records the head version of its own repositories in the database when they change. The head version
+ * of a repository with a single branch is the id of its last commit, for repositories with several branches (like
+ * the published repository) it is a hash of all the branches. A remote node needs to be synced only when its head
+ * version is different from the one synced last time and it is not already included in the local repository.</p>
+ *
+ * <p>Optionally the node that recorded a new head version can notify the other members, so they sync on the next
+ * clock cycle instead of waiting for the next scheduled run.</p>
+ *
+ * @since 4.0
+ */
+public class ClusterRepoHeadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRepoHeadTracker.class);
+
+    /**
+     * Site id used for the global repository
+     */
+    public static final String GLOBAL_SITE = StringUtils.EMPTY;
+
+    public static final String URL_FORMAT_LOCAL_ADDRESS = "{localAddress}";
+    public static final String PARAM_SITE_ID = "siteId";
+    public static final String PARAM_REPOSITORY = "repository";
+    public static final String PARAM_TOKEN = "token";
+
+    protected ClusterDAO clusterDao;
+    protected RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    protected StudioClusterUtils studioClusterUtils;
+    protected StudioConfiguration studioConfiguration;
+    protected GitRepositoryHelper gitRepositoryHelper;
+    protected TaskExecutor taskExecutor;
+
+    /**
+     * Head versions recorded for the local repositories
+     */
+    protected final Map<String, String> recordedHeads = new ConcurrentHashMap<>();
+
+    /**
+     * Head versions of the remote repositories that have already been synced
+     */
+    protected final Map<String, String> syncedHeads = new ConcurrentHashMap<>();
+
+    /**
+     * Repositories changed in other nodes that have not been synced yet
+     */
+    protected final Set<String> notifications = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of runs left for each repository before forcing a complete sync
+     */
+    protected final Map<String, Integer> runsUntilFullSync = new ConcurrentHashMap<>();
+
+    /**
+     * Records the head version of a local repository if it has changed, notifying the other cluster members
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     */
+    public void recordLocalHead(String siteId, GitRepositories repository) {
+        String localAddress = studioClusterUtils.getClusterNodeLocalAddress();
+        if (StringUtils.isEmpty(localAddress)) {
+            return;
+        }
+        String headVersion = getLocalHeadVersion(siteId, repository);
+        if (headVersion == null || headVersion.equals(recordedHeads.get(getKey(siteId, repository)))) {
+            return;
+        }
+        ClusterMember localNode = clusterDao.getMemberByLocalAddress(localAddress);
+        if (localNode != null) {
+            recordLocalHead(localNode.getId(), siteId, repository, headVersion);
+        }
+    }
+
+    /**
+     * Records the head version of a local repository if it has changed, notifying the other cluster members
+     * @param localNodeId the id of the local node
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     */
+    public void recordLocalHead(long localNodeId, String siteId, GitRepositories repository) {
+        String headVersion = getLocalHeadVersion(siteId, repository);
+        if (headVersion != null && !headVersion.equals(recordedHeads.get(getKey(siteId, repository)))) {
+            recordLocalHead(localNodeId, siteId, repository, headVersion);
+        }
+    }
+
+    protected void recordLocalHead(long localNodeId, String siteId, GitRepositories repository,
+                                   String headVersion) {
+        logger.debug("Recording head version " + headVersion + " for " + repository + " repository of site '" +
+                siteId + "'");
+        retryingDatabaseOperationFacade.upsertClusterRepoHead(localNodeId, siteId, repository.name(), headVersion);
+        recordedHeads.put(getKey(siteId, repository), headVersion);
+        notifyMembers(siteId, repository);
+    }
+
+    /**
+     * Indicates if a repository needs to be synced with any of the other cluster members
+     * @param localNodeId the id of the local node
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     * @return true if the repository does not exist locally, a complete sync is due, or any of the other members has
+     *         changes that are not included in the local repository
+     */
+    public boolean isSyncRequired(long localNodeId, String siteId, GitRepositories repository) {
+        String key = getKey(siteId, repository);
+        int runs = runsUntilFullSync.getOrDefault(key, 0) - 1;
+        if (runs < 0) {
+            runsUntilFullSync.put(key,
+                    studioConfiguration.getProperty(CLUSTERING_SYNC_FULL_SYNC_EVERY_N_RUNS, Integer.class, 1) - 1);
+            return true;
+        }
+        runsUntilFullSync.put(key, runs);
+
+        Repository repo = getRepository(siteId, repository);
+        if (repo == null) {
+            return true;
+        }
+        Map<Long, String> heads = getRemoteHeads(localNodeId, siteId, repository);
+        for (Map.Entry<Long, String> head : heads.entrySet()) {
+            if (isSyncRequired(repo, siteId, repository, head.getKey(), head.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the head versions of a repository for all the other active cluster members
+     * @param localNodeId the id of the local node
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     * @return the head versions keyed by cluster node id, the version is null for members that have not recorded it
+     */
+    public Map<Long, String> getRemoteHeads(long localNodeId, String siteId, GitRepositories repository) {
+        List<ClusterRepoHead> heads = clusterDao.getRepoHeads(siteId, repository.name(),
+                ClusterMember.State.ACTIVE.toString());
+        Map<Long, String> result = new HashMap<>();
+        for (ClusterRepoHead head : heads) {
+            if (head.getClusterNodeId() != localNodeId) {
+                result.put(head.getClusterNodeId(), StringUtils.trimToNull(head.getHeadVersion()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indicates if a repository needs to be synced with a given cluster member
+     * @param repo the local repository
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     * @param remoteNodeId the id of the remote node
+     * @param remoteHead the head version of the remote node
+     * @return true if the remote head version has not been synced yet
+     */
+    public boolean isSyncRequired(Repository repo, String siteId, GitRepositories repository, long remoteNodeId,
+                                  String remoteHead) {
+        if (remoteHead == null) {
+            // The member has not recorded its head, it needs to be synced every time
+            return true;
+        }
+        String key = getKey(siteId, repository, remoteNodeId);
+        if (remoteHead.equals(syncedHeads.get(key))) {
+            return false;
+        }
+        try {
+            if (remoteHead.equals(getHeadVersion(repo)) || isMerged(repo, remoteHead)) {
+                syncedHeads.put(key, remoteHead);
+                return false;
+            }
+        } catch (IOException e) {
+            logger.debug("Error checking head version " + remoteHead + " in " + repository + " repository of site '" +
+                    siteId + "'", e);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the head version of a remote repository as synced
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     * @param remoteNodeId the id of the remote node
+     * @param remoteHead the head version of the remote node
+     */
+    public void markSynced(String siteId, GitRepositories repository, long remoteNodeId, String remoteHead) {
+        if (remoteHead != null) {
+            syncedHeads.put(getKey(siteId, repository, remoteNodeId), remoteHead);
+        }
+    }
+
+    /**
+     * Registers a notification from another member indicating that one of its repositories has changed
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     */
+    public void notifyChange(String siteId, GitRepositories repository) {
+        logger.debug("Received change notification for " + repository + " repository of site '" + siteId + "'");
+        notifications.add(getKey(siteId, repository));
+    }
+
+    /**
+     * Indicates if a notification has been received for a repository, removing it
+     * @param siteId the site id, empty for the global repository
+     * @param repository the repository type
+     * @return true if there was a pending notification
+     */
+    public boolean consumeNotification(String siteId, GitRepositories repository) {
+        return notifications.remove(getKey(siteId, repository));
+    }
+
+    /**
+     * Removes all the state of a site, used when the local repositories are created or deleted
+     * @param siteId the site id
+     */
+    public void clear(String siteId) {
+        String prefix = siteId + ":";
+        recordedHeads.keySet().removeIf(key -> key.startsWith(prefix));
+        syncedHeads.keySet().removeIf(key -> key.startsWith(prefix));
+        runsUntilFullSync.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Returns the head version of a repository
+     * @param repo the repository
+     * @return the id of the last commit if the repository has only one branch, otherwise a hash of all branches.
+     *         Null if the repository has no commits
+     * @throws IOException if there is any error reading the refs
+     */
+    public String getHeadVersion(Repository repo) throws IOException {
+        List<Ref> branches = new ArrayList<>(repo.getRefDatabase().getRefsByPrefix(R_HEADS));
+        branches.removeIf(ref -> ref.getObjectId() == null);
+        if (branches.isEmpty()) {
+            return null;
+        }
+        if (branches.size() == 1) {
+            return branches.get(0).getObjectId().name();
+        }
+        branches.sort(Comparator.comparing(Ref::getName));
+        StringBuilder sb = new StringBuilder();
+        for (Ref branch : branches) {
+            sb.append(branch.getName()).append(' ').append(branch.getObjectId().name()).append('\n');
+        }
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            return formatter.idFor(OBJ_BLOB, sb.toString().getBytes(UTF_8)).name();
+        }
+    }
+
+    protected String getLocalHeadVersion(String siteId, GitRepositories repository) {
+        Repository repo = getRepository(siteId, repository);
+        if (repo == null) {
+            return null;
+        }
+        try {
+            return getHeadVersion(repo);
+        } catch (IOException e) {
+            logger.error("Error reading head version for " + repository + " repository of site '" + siteId + "'", e);
+            return null;
+        }
+    }
+
+    protected Repository getRepository(String siteId, GitRepositories repository) {
+        return gitRepositoryHelper.getRepository(siteId, repository);
+    }
+
+    /**
+     * Checks if the given version is a commit already included in the current branch of the local repository
+     */
+    protected boolean isMerged(Repository repo, String headVersion) throws IOException {
+        if (!ObjectId.isId(headVersion)) {
+            return false;
+        }
+        ObjectId commitId = ObjectId.fromString(headVersion);
+        ObjectId localHead = repo.resolve(HEAD);
+        if (localHead == null || !repo.getObjectDatabase().has(commitId)) {
+            return false;
+        }
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            return revWalk.isMergedInto(revWalk.parseCommit(commitId), revWalk.parseCommit(localHead));
+        } catch (IOException e) {
+            // Not a commit (i.e. a hash of several branches)
+            return false;
+        }
+    }
+
+    protected void notifyMembers(String siteId, GitRepositories repository) {
+        String urlFormat = studioConfiguration.getProperty(CLUSTERING_NOTIFICATION_URL_FORMAT);
+        if (StringUtils.isEmpty(urlFormat)) {
+            return;
+        }
+        List<ClusterMember> members =
+                studioClusterUtils.getClusterNodes(studioClusterUtils.getClusterNodeLocalAddress());
+        for (ClusterMember member : members) {
+            try {
+                taskExecutor.execute(() -> notifyMember(urlFormat, member, siteId, repository));
+            } catch (TaskRejectedException e) {
+                // The member will pick up the changes in the next scheduled run
+                logger.debug("Unable to notify cluster member " + member.getLocalAddress(), e);
+            }
+        }
+    }
+
+    protected void notifyMember(String urlFormat, ClusterMember member, String siteId,
+                                GitRepositories repository) {
+        int timeout = studioConfiguration.getProperty(CLUSTERING_NOTIFICATION_TIMEOUT, Integer.class, 2000);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+        try (CloseableHttpClient client = HttpClientBuilder.create().setDefaultRequestConfig(requestConfig).build()) {
+            URI uri = new URIBuilder(urlFormat.replace(URL_FORMAT_LOCAL_ADDRESS, member.getLocalAddress()))
+                    .addParameter(PARAM_SITE_ID, siteId)
+                    .addParameter(PARAM_REPOSITORY, repository.name())
+                    .addParameter(PARAM_TOKEN,
+                            studioConfiguration.getProperty(CONFIGURATION_MANAGEMENT_AUTHORIZATION_TOKEN))
+                    .build();
+            try (CloseableHttpResponse response = client.execute(new HttpGet(uri))) {
+                logger.debug("Notified cluster member " + member.getLocalAddress() + " of changes in " + repository +
+                        " repository of site '" + siteId + "', response status " +
+                        response.getStatusLine().getStatusCode());
+            }
+        } catch (IOException | URISyntaxException e) {
+            logger.debug("Error notifying cluster member " + member.getLocalAddress() + " of changes in " +
+                    repository + " repository of site '" + siteId + "'", e);
+        }
+    }
+
+    protected String getKey(String siteId, GitRepositories repository) {
+        return siteId + ":" + repository;
+    }
+
+    protected String getKey(String siteId, GitRepositories repository, long remoteNodeId) {
+        return getKey(siteId, repository) + ":" + remoteNodeId;
+    }
+
+    public void setClusterDao(ClusterDAO clusterDao) {
+        this.clusterDao = clusterDao;
+    }
+
+    public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
+        this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
+    }
+
+    public void setStudioClusterUtils(StudioClusterUtils studioClusterUtils) {
+        this.studioClusterUtils = studioClusterUtils;
+    }
+
+    public void setStudioConfiguration(StudioConfiguration studioConfiguration) {
+        this.studioConfiguration = studioConfiguration;
+    }
+
+    public void setGitRepositoryHelper(GitRepositoryHelper gitRepositoryHelper) {
+        this.gitRepositoryHelper = gitRepositoryHelper;
+    }
+
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+}
@@ -46,6 +46,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
 import static org.craftercms.studio.api.v1.constant.StudioConstants.FILE_SEPARATOR;
@@ -110,10 +112,11 @@ public class ContentServiceInternalImpl implements ContentServiceInternal {
         GetChildrenResult toRet = new GetChildrenResult();
         String user = securityService.getCurrentUser();
         if (resultSet != null && resultSet.size() > 0) {
+            Map<String, Long> availableActions =
+                    semanticsAvailableActionsResolver.calculateContentItemAvailableActions(user, siteId, resultSet);
             int idx = 0;
             Item item = resultSet.get(idx);
-            item.setAvailableActions(
-                    semanticsAvailableActionsResolver.calculateContentItemAvailableActions(user, siteId, item));
+            item.setAvailableActions(availableActions.get(item.getPath()));
             if (StringUtils.endsWith(item.getPath(), FILE_SEPARATOR +
                     servicesConfig.getLevelDescriptorName(siteId))) {
                 toRet.setLevelDescriptor(SandboxItem.getInstance(item));
@@ -122,8 +125,7 @@ public class ContentServiceInternalImpl implements ContentServiceInternal {
             List<SandboxItem> children = new ArrayList<SandboxItem>();
             while (idx < resultSet.size()) {
                 Item child = resultSet.get(idx);
-                child.setAvailableActions(
-                        semanticsAvailableActionsResolver.calculateContentItemAvailableActions(user, siteId, child));
+                child.setAvailableActions(availableActions.get(child.getPath()));
                 children.add(SandboxItem.getInstance(child));
                 idx++;
             }
@@ -266,15 +268,22 @@ public class ContentServiceInternalImpl implements ContentServiceInternal {
         List<SandboxItem> toRet = new ArrayList<SandboxItem>();
         if (CollectionUtils.isNotEmpty(items)) {
             String user = securityService.getCurrentUser();
+            Set<String> existingPaths = contentRepository.getExistingPaths(siteId,
+                    items.stream().map(Item::getPath).collect(Collectors.toList()));
+            List<Item> existingItems = new ArrayList<Item>();
             for (Item item : items) {
-                if (!contentRepository.contentExists(siteId, item.getPath())) {
+                if (!existingPaths.contains(item.getPath())) {
                     logger.warn("Content not found at path " + item.getPath() + " site " + siteId);
                 } else {
-                    item.setAvailableActions(
-                            semanticsAvailableActionsResolver.calculateContentItemAvailableActions(user, siteId, item));
-                    toRet.add(SandboxItem.getInstance(item));
+                    existingItems.add(item);
                 }
             }
+            Map<String, Long> availableActions =
+                    semanticsAvailableActionsResolver.calculateContentItemAvailableActions(user, siteId, existingItems);
+            for (Item item : existingItems) {
+                item.setAvailableActions(availableActions.get(item.getPath()));
+                toRet.add(SandboxItem.getInstance(item));
+            }
         }
         return toRet;
     }
@@ -27,6 +27,7 @@ import org.craftercms.studio.api.v2.dal.PublishingPackageDetails;
 import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
 import org.craftercms.studio.api.v2.repository.ContentRepository;
 import org.craftercms.studio.api.v2.service.publish.internal.PublishServiceInternal;
+import org.craftercms.studio.impl.v2.repository.GitPublishingHistoryIndex;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -44,6 +45,7 @@ public class PublishServiceInternalImpl implements PublishServiceInternal {
     private ContentRepository contentRepository;
     private DmFilterWrapper dmFilterWrapper;
     private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    private GitPublishingHistoryIndex publishingHistoryIndex;
 
     @Override
     public int getPublishingPackagesTotal(String siteId, String environment, String path, List<String> states) {
@@ -90,7 +92,10 @@ public class PublishServiceInternalImpl implements PublishServiceInternal {
     @Override
     public int getPublishingHistoryTotal(String siteId, String environment, String path, String publisher,
                                          ZonedDateTime dateFrom, ZonedDateTime dateTo, String contentType, long state) {
-        return 0;
+        if (!publishingHistoryIndex.isAvailable(siteId)) {
+            return 0;
+        }
+        return publishingHistoryIndex.getTotal(siteId, environment, path, publisher, dateFrom, dateTo);
     }
 
     @Override
@@ -98,7 +103,13 @@ public class PublishServiceInternalImpl implements PublishServiceInternal {
                                                             String publisher, ZonedDateTime dateFrom,
                                                             ZonedDateTime dateTo, String contentType, long state,
                                                             String sortBy, String order, int offset, int limit) {
-        return contentRepository.getPublishingHistory(siteId, environment, path, publisher, dateFrom, dateTo, limit);
+        if (!publishingHistoryIndex.isAvailable(siteId)) {
+            // The history has not been loaded in the database yet
+            return contentRepository.getPublishingHistory(siteId, environment, path, publisher, dateFrom, dateTo,
+                    limit);
+        }
+        return publishingHistoryIndex.getHistory(siteId, environment, path, publisher, dateFrom, dateTo, sortBy, order,
+                offset, limit);
     }
 
     @Override
@@ -173,4 +184,12 @@ public class PublishServiceInternalImpl implements PublishServiceInternal {
     public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
         this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
     }
+
+    public GitPublishingHistoryIndex getPublishingHistoryIndex() {
+        return publishingHistoryIndex;
+    }
+
+    public void setPublishingHistoryIndex(GitPublishingHistoryIndex publishingHistoryIndex) {
+        this.publishingHistoryIndex = publishingHistoryIndex;
+    }
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.google.common.cache.Cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
 import org.craftercms.studio.api.v1.exception.security.GroupAlreadyExistsException;
@@ -54,6 +55,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
     private UserServiceInternal userServiceInternal;
     private ConfigurationService configurationService;
     private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+    private Cache<String, List<Group>> userGroupsCache;
 
     @Override
     public Group getGroup(long groupId) throws GroupNotFoundException, ServiceLayerException {
@@ -194,6 +196,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             retryingDatabaseOperationFacade.updateGroup(params);
+            invalidateUserGroups(null);
 
             return group;
         } catch (Exception e) {
@@ -214,6 +217,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             retryingDatabaseOperationFacade.deleteGroups(params);
+            invalidateUserGroups(null);
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -268,6 +272,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             retryingDatabaseOperationFacade.addGroupMembers(params);
+            invalidateUserGroups(users);
 
             return users;
         } catch (Exception e) {
@@ -290,6 +295,7 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
 
         try {
             retryingDatabaseOperationFacade.removeGroupMembers(params);
+            invalidateUserGroups(users);
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -310,6 +316,19 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
         return groups;
     }
 
+    /**
+     * Removes the cached groups of the given users, or of all users if null
+     */
+    protected void invalidateUserGroups(List<User> users) {
+        if (userGroupsCache != null) {
+            if (users == null) {
+                userGroupsCache.invalidateAll();
+            } else {
+                userGroupsCache.invalidateAll(users.stream().map(User::getUsername).collect(Collectors.toList()));
+            }
+        }
+    }
+
     public GroupDAO getGroupDao() {
         return groupDao;
     }
@@ -341,4 +360,8 @@ public class GroupServiceInternalImpl implements GroupServiceInternal {
     public void setRetryingDatabaseOperationFacade(RetryingDatabaseOperationFacade retryingDatabaseOperationFacade) {
         this.retryingDatabaseOperationFacade = retryingDatabaseOperationFacade;
     }
+
+    public void setUserGroupsCache(Cache<String, List<Group>> userGroupsCache) {
+        this.userGroupsCache = userGroupsCache;
+    }
 }
@@ -16,6 +16,7 @@
 
 package org.craftercms.studio.impl.v2.service.security.internal;
 
+import com.google.common.cache.Cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.crypto.CryptoUtils;
 import org.craftercms.studio.api.v1.exception.ServiceLayerException;
@@ -39,6 +40,7 @@ import org.craftercms.studio.api.v2.service.security.internal.UserServiceInterna
 import org.craftercms.studio.api.v2.utils.StudioConfiguration;
 
 import java.beans.ConstructorProperties;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -80,6 +82,11 @@ public class UserServiceInternalImpl implements UserServiceInternal {
     private SecurityService securityService;
     private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
 
+    /**
+     * Groups by username, shared with the services that change the group members
+     */
+    private Cache<String, List<Group>> userGroupsCache;
+
     @ConstructorProperties({"userDao", "groupServiceInternal", "studioConfiguration", "siteService", "securityService",
             "accessTokenService", "retryingDatabaseOperationFacade"})
     public UserServiceInternalImpl(UserDAO userDao, GroupServiceInternal groupServiceInternal,
@@ -256,6 +263,10 @@ public class UserServiceInternalImpl implements UserServiceInternal {
 
             // Cleanup user properties...
             retryingDatabaseOperationFacade.deleteUserPropertiesByUserIds(ids);
+
+            if (userGroupsCache != null) {
+                userGroupsCache.invalidateAll(users.stream().map(User::getUsername).collect(Collectors.toList()));
+            }
         } catch (Exception e) {
             throw new ServiceLayerException("Unknown database error", e);
         }
@@ -282,6 +293,23 @@ public class UserServiceInternalImpl implements UserServiceInternal {
     @Override
     public List<Group> getUserGroups(long userId, String username)
             throws UserNotFoundException, ServiceLayerException {
+        // Permission checks always look up the groups by username, only those are cached
+        if (userGroupsCache == null || userId > 0 || StringUtils.isEmpty(username)) {
+            return loadUserGroups(userId, username);
+        }
+        List<Group> groups = userGroupsCache.getIfPresent(username);
+        if (groups == null) {
+            groups = loadUserGroups(userId, username);
+            if (groups == null) {
+                return null;
+            }
+            userGroupsCache.put(username, groups);
+        }
+        return new ArrayList<>(groups);
+    }
+
+    protected List<Group> loadUserGroups(long userId, String username)
+            throws UserNotFoundException, ServiceLayerException {
         if (!userExists(userId, username)) {
             throw new UserNotFoundException("No user found for username '" + username + "' or id '" + userId + "'");
         }
@@ -465,4 +493,8 @@ public class UserServiceInternalImpl implements UserServiceInternal {
         }
     }
 
+    public void setUserGroupsCache(Cache<String, List<Group>> userGroupsCache) {
+        this.userGroupsCache = userGroupsCache;
+    }
+
 }
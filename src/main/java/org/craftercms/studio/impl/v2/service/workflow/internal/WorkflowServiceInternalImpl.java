@@ -22,7 +22,9 @@ import org.craftercms.studio.api.v2.dal.WorkflowDAO;
 import org.craftercms.studio.api.v2.dal.WorkflowItem;
 import org.craftercms.studio.api.v2.service.workflow.internal.WorkflowServiceInternal;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.craftercms.studio.api.v2.dal.Workflow.STATE_OPENED;
 
@@ -36,6 +38,18 @@ public class WorkflowServiceInternalImpl implements WorkflowServiceInternal {
         return workflowDao.getWorkflowEntryOpened(siteId, path, STATE_OPENED);
     }
 
+    @Override
+    public Map<String, WorkflowItem> getWorkflowEntries(String siteId, List<String> paths) {
+        Map<String, WorkflowItem> toRet = new HashMap<String, WorkflowItem>();
+        if (!paths.isEmpty()) {
+            for (WorkflowItem workflowItem : workflowDao.getWorkflowEntriesOpened(siteId, paths, STATE_OPENED)) {
+                // Keep the first entry like the single path query does
+                toRet.putIfAbsent(workflowItem.getItem().getPath(), workflowItem);
+            }
+        }
+        return toRet;
+    }
+
     @Override
     public Workflow getWorkflowEntryForApproval(Long itemId) {
         return workflowDao.getWorkflowEntryForApproval(itemId, STATE_OPENED);
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.model.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wait and hold time histograms for a single lock id
+ *
+ * @since 4.0
+ */
+public class LockMetrics {
+
+    protected final Histogram waitTime = new Histogram();
+    protected final Histogram holdTime = new Histogram();
+    protected final LongAdder failedAttempts = new LongAdder();
+
+    public void recordWait(long nanos) {
+        waitTime.record(nanos);
+    }
+
+    public void recordHold(long nanos) {
+        holdTime.record(nanos);
+    }
+
+    public void recordFailedAttempt() {
+        failedAttempts.increment();
+    }
+
+    public long getAcquisitions() {
+        return waitTime.getCount();
+    }
+
+    public long getFailedAttempts() {
+        return failedAttempts.sum();
+    }
+
+    public Histogram getWaitTime() {
+        return waitTime;
+    }
+
+    public Histogram getHoldTime() {
+        return holdTime;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.model.monitoring;
+
+/**
+ * Snapshot of the preview sync events handled by the preview deployer
+ *
+ * @since 4.0
+ */
+public class PreviewSyncMetrics {
+
+    protected long queuedEvents;
+    protected long coalescedEvents;
+    protected long dispatchedDeployments;
+    protected int pendingSites;
+
+    /**
+     * Number of preview sync events received
+     */
+    public long getQueuedEvents() {
+        return queuedEvents;
+    }
+
+    public void setQueuedEvents(long queuedEvents) {
+        this.queuedEvents = queuedEvents;
+    }
+
+    /**
+     * Number of preview sync events that were merged into an already pending deployment
+     */
+    public long getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    public void setCoalescedEvents(long coalescedEvents) {
+        this.coalescedEvents = coalescedEvents;
+    }
+
+    /**
+     * Number of deployments sent to the deployer
+     */
+    public long getDispatchedDeployments() {
+        return dispatchedDeployments;
+    }
+
+    public void setDispatchedDeployments(long dispatchedDeployments) {
+        this.dispatchedDeployments = dispatchedDeployments;
+    }
+
+    /**
+     * Number of sites with a deployment waiting for the coalesce window to end
+     */
+    public int getPendingSites() {
+        return pendingSites;
+    }
+
+    public void setPendingSites(int pendingSites) {
+        this.pendingSites = pendingSites;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.model.monitoring;
+
+/**
+ * Snapshot of the state of the git repository registry
+ *
+ * @since 4.0
+ */
+public class RepositoryMetrics {
+
+    protected int registeredRepositories;
+    protected int openRepositories;
+    protected int maxOpenRepositories;
+    protected long openCount;
+    protected long reopenCount;
+    protected long evictionCount;
+    protected long hitCount;
+    protected Histogram openTime;
+
+    /**
+     * Number of repositories in the registry, including the evicted ones
+     */
+    public int getRegisteredRepositories() {
+        return registeredRepositories;
+    }
+
+    public void setRegisteredRepositories(int registeredRepositories) {
+        this.registeredRepositories = registeredRepositories;
+    }
+
+    public int getOpenRepositories() {
+        return openRepositories;
+    }
+
+    public void setOpenRepositories(int openRepositories) {
+        this.openRepositories = openRepositories;
+    }
+
+    public int getMaxOpenRepositories() {
+        return maxOpenRepositories;
+    }
+
+    public void setMaxOpenRepositories(int maxOpenRepositories) {
+        this.maxOpenRepositories = maxOpenRepositories;
+    }
+
+    /**
+     * Number of times a repository was opened for the first time
+     */
+    public long getOpenCount() {
+        return openCount;
+    }
+
+    public void setOpenCount(long openCount) {
+        this.openCount = openCount;
+    }
+
+    /**
+     * Number of times an evicted repository was open again
+     */
+    public long getReopenCount() {
+        return reopenCount;
+    }
+
+    public void setReopenCount(long reopenCount) {
+        this.reopenCount = reopenCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public void setEvictionCount(long evictionCount) {
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Number of requests for a repository that was already open
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    /**
+     * Time spent opening repositories
+     */
+    public Histogram getOpenTime() {
+        return openTime;
+    }
+
+    public void setOpenTime(Histogram openTime) {
+        this.openTime = openTime;
+    }
+
+}
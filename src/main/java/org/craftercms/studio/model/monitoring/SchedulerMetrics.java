@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.studio.model.monitoring;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the state of the site job scheduler
+ *
+ * @since 4.0
+ */
+public class SchedulerMetrics {
+
+    protected int sites;
+    protected int scheduledJobs;
+    protected int readyJobs;
+    protected int runningJobs;
+    protected int waitingSites;
+    protected long executedJobs;
+    protected long rejectedJobs;
+    protected Histogram lag;
+    protected Map<String, Integer> queueDepthBySite;
+    protected Map<String, Double> lagBySite;
+
+    /**
+     * Number of sites handled by the scheduler
+     */
+    public int getSites() {
+        return sites;
+    }
+
+    public void setSites(int sites) {
+        this.sites = sites;
+    }
+
+    /**
+     * Number of jobs waiting for their next execution time
+     */
+    public int getScheduledJobs() {
+        return scheduledJobs;
+    }
+
+    public void setScheduledJobs(int scheduledJobs) {
+        this.scheduledJobs = scheduledJobs;
+    }
+
+    /**
+     * Number of jobs that are due and waiting for a free worker
+     */
+    public int getReadyJobs() {
+        return readyJobs;
+    }
+
+    public void setReadyJobs(int readyJobs) {
+        this.readyJobs = readyJobs;
+    }
+
+    public int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public void setRunningJobs(int runningJobs) {
+        this.runningJobs = runningJobs;
+    }
+
+    /**
+     * Number of sites with ready jobs that can be started right away
+     */
+    public int getWaitingSites() {
+        return waitingSites;
+    }
+
+    public void setWaitingSites(int waitingSites) {
+        this.waitingSites = waitingSites;
+    }
+
+    public long getExecutedJobs() {
+        return executedJobs;
+    }
+
+    public void setExecutedJobs(long executedJobs) {
+        this.executedJobs = executedJobs;
+    }
+
+    /**
+     * Number of times a job could not be submitted because the executor was full
+     */
+    public long getRejectedJobs() {
+        return rejectedJobs;
+    }
+
+    public void setRejectedJobs(long rejectedJobs) {
+        this.rejectedJobs = rejectedJobs;
+    }
+
+    /**
+     * Time between the execution time of the jobs and the moment they were started
+     */
+    public Histogram getLag() {
+        return lag;
+    }
+
+    public void setLag(Histogram lag) {
+        this.lag = lag;
+    }
+
+    /**
+     * Number of ready jobs for the sites with the deepest queues
+     */
+    public Map<String, Integer> getQueueDepthBySite() {
+        return queueDepthBySite;
+    }
+
+    public void setQueueDepthBySite(Map<String, Integer> queueDepthBySite) {
+        this.queueDepthBySite = queueDepthBySite;
+    }
+
+    /**
+     * Current lag in milliseconds of the oldest ready job for the sites with the highest lag
+     */
+    public Map<String, Double> getLagBySite() {
+        return lagBySite;
+    }
+
+    public void setLagBySite(Map<String, Double> lagBySite) {
+        this.lagBySite = lagBySite;
+    }
+
+}
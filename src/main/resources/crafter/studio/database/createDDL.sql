@@ -197,7 +197,7 @@ CREATE TABLE _meta (
   PRIMARY KEY (`version`)
 ) ;
 
-INSERT INTO _meta (version, studio_id) VALUES ('4.0.0.30', UUID()) ;
+INSERT INTO _meta (version, studio_id) VALUES ('4.0.0.35', UUID()) ;
 
 CREATE TABLE IF NOT EXISTS `audit` (
   `id`                        BIGINT(20)    NOT NULL AUTO_INCREMENT,
@@ -287,7 +287,8 @@ CREATE TABLE IF NOT EXISTS `publish_request` (
   INDEX `publish_request_environment_idx` (`environment` ASC),
   INDEX `publish_request_path_idx` (`path`(1000) ASC),
   INDEX `publish_request_sitepath_idx` (`site` ASC, `path`(900) ASC),
-  INDEX `publish_request_state_idx` (`state` ASC)
+  INDEX `publish_request_state_idx` (`state` ASC),
+  INDEX `publish_request_queue_idx` (`site`, `environment`, `state`, `scheduleddate`)
 )
   ENGINE = InnoDB
   DEFAULT CHARSET = utf8
@@ -480,13 +481,16 @@ CREATE TABLE IF NOT EXISTS `item` (
   `commit_id`               VARCHAR(128)    NULL,
   `previous_path`           VARCHAR(2048)   NULL,
   `ignored`                 INT             NOT NULL    DEFAULT 0,
+  `depth`                   INT             AS (CHAR_LENGTH(`path`) - CHAR_LENGTH(REPLACE(`path`, '/', '')) -
+                                                IF(`path` LIKE '%/index.xml', 1, 0)) STORED,
   PRIMARY KEY (`id`),
   FOREIGN KEY item_ix_created_by(`created_by`) REFERENCES `user` (`id`),
   FOREIGN KEY item_ix_last_modified_by(`last_modified_by`) REFERENCES `user` (`id`),
   FOREIGN KEY item_ix_owned_by(`owned_by`) REFERENCES `user` (`id`),
   FOREIGN KEY item_ix_site_id(`site_id`) REFERENCES `site` (`id`),
   FOREIGN KEY item_ix_parent(`parent_id`) REFERENCES `item` (`id`) ON DELETE CASCADE ,
-  UNIQUE uq_i_site_path (`site_id`, `path`(900))
+  UNIQUE uq_i_site_path (`site_id`, `path`(900)),
+  INDEX ix_i_site_depth_path (`site_id`, `depth`, `path`(900))
 )
     ENGINE = InnoDB
     DEFAULT CHARSET = utf8
@@ -544,6 +548,62 @@ CREATE TABLE IF NOT EXISTS gitlog
   DEFAULT CHARSET = utf8
   ROW_FORMAT = DYNAMIC ;
 
+CREATE TABLE IF NOT EXISTS `path_commit`
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`     VARCHAR(50)   NOT NULL,
+  `path`        VARCHAR(2000) NOT NULL,
+  `commit_id`   VARCHAR(50)   NOT NULL,
+  `seq`         BIGINT(20)    NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `ix_pc_site_path_seq` (`site_id`, `path`(900), `seq`),
+  INDEX `ix_pc_site_seq` (`site_id`, `seq`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `path_commit_marker`
+(
+  `site_id`     VARCHAR(50)   NOT NULL,
+  `commit_id`   VARCHAR(50)   NOT NULL,
+  `seq`         BIGINT(20)    NOT NULL,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `publishing_history`
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `environment`     VARCHAR(20)   NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `package_id`      VARCHAR(50)   NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `publisher`       VARCHAR(255)  NULL,
+  `published_date`  TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  INDEX `ix_ph_site_date` (`site_id`, `published_date`),
+  INDEX `ix_ph_site_environment_date` (`site_id`, `environment`, `published_date`),
+  INDEX `ix_ph_site_publisher_date` (`site_id`, `publisher`, `published_date`),
+  INDEX `ix_ph_site_commit` (`site_id`, `commit_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `publishing_history_marker`
+(
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `backfilled_on`   TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
 CREATE TABLE IF NOT EXISTS remote_repository
 (
   `id`                    BIGINT(20)    NOT NULL AUTO_INCREMENT,
@@ -619,6 +679,22 @@ CREATE TABLE IF NOT EXISTS cluster_site_sync_repo
     DEFAULT CHARSET = utf8
     ROW_FORMAT = DYNAMIC ;
 
+CREATE TABLE IF NOT EXISTS cluster_repo_head
+(
+    `cluster_node_id`   BIGINT(20)      NOT NULL,
+    `site_id`           VARCHAR(50)     NOT NULL,
+    `repository`        VARCHAR(20)     NOT NULL,
+    `head_version`      VARCHAR(50)     NOT NULL,
+    `last_updated`      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`cluster_node_id`, `site_id`, `repository`),
+    INDEX `ix_crh_site_repository` (`site_id`, `repository`),
+    FOREIGN KEY cluster_repo_head_ix_cluster_id(`cluster_node_id`) REFERENCES `cluster` (`id`)
+        ON DELETE CASCADE
+)
+    ENGINE = InnoDB
+    DEFAULT CHARSET = utf8
+    ROW_FORMAT = DYNAMIC ;
+
 CREATE TABLE IF NOT EXISTS `refresh_token`
 (
     `user_id` BIGINT(20) PRIMARY KEY, -- Add FK
@@ -0,0 +1,21 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+call addColumnIfNotExists('crafter', 'item', 'depth', 'INT AS (CHAR_LENGTH(`path`) - CHAR_LENGTH(REPLACE(`path`, ''/'', '''')) - IF(`path` LIKE ''%/index.xml'', 1, 0)) STORED') ;
+
+call addIndexIfNotExists('crafter', 'item', 'ix_i_site_depth_path', '(`site_id`, `depth`, `path`(900))') ;
+
+UPDATE _meta SET version = '4.0.0.31' ;
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+CREATE TABLE IF NOT EXISTS `path_commit`
+(
+  `id`          BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`     VARCHAR(50)   NOT NULL,
+  `path`        VARCHAR(2000) NOT NULL,
+  `commit_id`   VARCHAR(50)   NOT NULL,
+  `seq`         BIGINT(20)    NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `ix_pc_site_path_seq` (`site_id`, `path`(900), `seq`),
+  INDEX `ix_pc_site_seq` (`site_id`, `seq`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `path_commit_marker`
+(
+  `site_id`     VARCHAR(50)   NOT NULL,
+  `commit_id`   VARCHAR(50)   NOT NULL,
+  `seq`         BIGINT(20)    NOT NULL,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '4.0.0.32' ;
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+CREATE TABLE IF NOT EXISTS cluster_repo_head
+(
+    `cluster_node_id`   BIGINT(20)      NOT NULL,
+    `site_id`           VARCHAR(50)     NOT NULL,
+    `repository`        VARCHAR(20)     NOT NULL,
+    `head_version`      VARCHAR(50)     NOT NULL,
+    `last_updated`      TIMESTAMP       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`cluster_node_id`, `site_id`, `repository`),
+    INDEX `ix_crh_site_repository` (`site_id`, `repository`),
+    FOREIGN KEY cluster_repo_head_ix_cluster_id(`cluster_node_id`) REFERENCES `cluster` (`id`)
+        ON DELETE CASCADE
+)
+    ENGINE = InnoDB
+    DEFAULT CHARSET = utf8
+    ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '4.0.0.33' ;
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+CREATE TABLE IF NOT EXISTS `publishing_history`
+(
+  `id`              BIGINT(20)    NOT NULL AUTO_INCREMENT,
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `environment`     VARCHAR(20)   NOT NULL,
+  `path`            VARCHAR(2000) NOT NULL,
+  `package_id`      VARCHAR(50)   NULL,
+  `commit_id`       VARCHAR(50)   NOT NULL,
+  `publisher`       VARCHAR(255)  NULL,
+  `published_date`  TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  INDEX `ix_ph_site_date` (`site_id`, `published_date`),
+  INDEX `ix_ph_site_environment_date` (`site_id`, `environment`, `published_date`),
+  INDEX `ix_ph_site_publisher_date` (`site_id`, `publisher`, `published_date`),
+  INDEX `ix_ph_site_commit` (`site_id`, `commit_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+CREATE TABLE IF NOT EXISTS `publishing_history_marker`
+(
+  `site_id`         VARCHAR(50)   NOT NULL,
+  `backfilled_on`   TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`site_id`)
+)
+  ENGINE = InnoDB
+  DEFAULT CHARSET = utf8
+  ROW_FORMAT = DYNAMIC ;
+
+UPDATE _meta SET version = '4.0.0.35' ;
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.api.v2.utils;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PathClassifierTest {
+
+    public static final List<String> PAGE_PATTERNS = Collections.singletonList("/site/website/([^<]+)\\.xml");
+
+    public static final List<String> COMPONENT_PATTERNS = Arrays.asList("/site/components/([^<]+)\\.xml",
+            "/site/([^<]+)\\.xml");
+
+    public static final List<String> ASSET_PATTERNS = Arrays.asList("/static-assets/([^<]+)",
+            "(?i)/TEMPLATES/web/.*\\.js");
+
+    public static final List<String> TEMPLATE_PATTERNS = Collections.singletonList("/templates/([^<]+)\\.ftl");
+
+    public static final List<String> PATHS = Arrays.asList(
+            "/site/website/index.xml",
+            "/site/website/articles/2021/index.xml",
+            "/site/components/header.xml",
+            "/site/taxonomy/categories.xml",
+            "/static-assets/images/logo.png",
+            "/templates/web/page.ftl",
+            "/templates/web/script.js",
+            "/scripts/rest/hello.get.groovy",
+            "/config/studio/site-config.xml");
+
+    private Map<String, List<String>> patterns;
+
+    private PathClassifier classifier;
+
+    @BeforeMethod
+    public void setUp() {
+        patterns = new LinkedHashMap<>();
+        patterns.put("page", PAGE_PATTERNS);
+        patterns.put("component", COMPONENT_PATTERNS);
+        patterns.put("document", null);
+        patterns.put("asset", ASSET_PATTERNS);
+        patterns.put("renderingTemplate", TEMPLATE_PATTERNS);
+        classifier = new PathClassifier(patterns);
+    }
+
+    @Test
+    public void classifyReturnsFirstMatchingClassTest() {
+        for (String path : PATHS) {
+            String expected = null;
+            for (Map.Entry<String, List<String>> entry : patterns.entrySet()) {
+                if (entry.getValue() != null && entry.getValue().stream().anyMatch(path::matches)) {
+                    expected = entry.getKey();
+                    break;
+                }
+            }
+            assertEquals(classifier.classify(path), expected, "Wrong class for " + path);
+        }
+    }
+
+    @Test
+    public void matchesIsEquivalentToStringMatchesTest() {
+        for (String path : PATHS) {
+            for (Map.Entry<String, List<String>> entry : patterns.entrySet()) {
+                boolean expected = entry.getValue() != null && entry.getValue().stream().anyMatch(path::matches);
+                assertEquals(classifier.matches(entry.getKey(), path), expected,
+                        "Wrong match of " + entry.getKey() + " for " + path);
+                assertEquals(PathClassifier.matchesAny(path, entry.getValue()), expected);
+            }
+        }
+    }
+
+    @Test
+    public void inlineFlagsDoNotLeakTest() {
+        assertTrue(classifier.matches("asset", "/templates/web/script.js"));
+        assertFalse(classifier.matches("renderingTemplate", "/TEMPLATES/page.ftl"));
+    }
+
+    @Test
+    public void emptyClassifierTest() {
+        PathClassifier empty = new PathClassifier(Collections.emptyMap());
+        assertNull(empty.classify("/site/website/index.xml"));
+        assertFalse(empty.matches("page", "/site/website/index.xml"));
+    }
+
+}
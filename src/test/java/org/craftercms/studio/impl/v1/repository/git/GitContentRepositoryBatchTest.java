@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.repository.git;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v1.service.security.SecurityService;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.impl.v2.repository.RetryingRepositoryOperationFacadeImpl;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Writes 1000 files one by one and as a single batch, and checks the batch operations on a real repository
+ */
+public class GitContentRepositoryBatchTest {
+
+    public static final String SITE = "test";
+
+    public static final int FILES = 1000;
+
+    public static final String INDEX = "/site/website/index.xml";
+
+    private File dir;
+
+    private Git git;
+
+    private GeneralLockService generalLockService;
+
+    private GitContentRepository repository;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("batch").toFile();
+        git = Git.init().setDirectory(dir).call();
+        write(INDEX, "<page/>");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Initial commit.").call();
+
+        generalLockService = mock(GeneralLockService.class);
+        SecurityService securityService = mock(SecurityService.class);
+        when(securityService.getCurrentUser()).thenReturn("jane");
+
+        GitRepositoryHelper helper = spy(new GitRepositoryHelper());
+        helper.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+        helper.setGeneralLockService(generalLockService);
+        doReturn(git.getRepository()).when(helper).getRepository(SITE, SANDBOX);
+        doReturn(new PersonIdent("Jane Doe", "jane@example.com")).when(helper).getCurrentUserIdent();
+        doReturn("Commit").when(helper).getCommitMessage(anyString());
+
+        repository = new GitContentRepository();
+        repository.setHelper(helper);
+        repository.setGeneralLockService(generalLockService);
+        repository.setSecurityService(securityService);
+        repository.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void singleWritesVsBatchTest() throws Exception {
+        int commits = countCommits();
+        for (int i = 0; i < FILES; i++) {
+            assertTrue(repository.writeContent(SITE, "/static-assets/single/file" + i + ".txt",
+                    content("single " + i)) != null);
+        }
+        assertEquals(countCommits(), commits + FILES);
+
+        ContentRepositoryBatch batch = new ContentRepositoryBatch();
+        for (int i = 0; i < FILES; i++) {
+            batch.write("/static-assets/batch/file" + i + ".txt", content("batch " + i));
+        }
+        String commitId = repository.commitBatch(SITE, batch);
+
+        assertEquals(countCommits(), commits + FILES + 1);
+        assertEquals(git.getRepository().resolve("HEAD").getName(), commitId);
+        Set<String> files = getFiles();
+        for (int i = 0; i < FILES; i++) {
+            assertTrue(files.contains("static-assets/single/file" + i + ".txt"));
+            assertTrue(files.contains("static-assets/batch/file" + i + ".txt"));
+        }
+        assertTrue(git.status().call().isClean());
+        // The single writes lock the site twice per file, the batch only once
+        verify(generalLockService, times(FILES * 2 + 1)).lock(anyString());
+    }
+
+    @Test
+    public void operationsTest() throws Exception {
+        write("/static-assets/images/a.jpg", "a");
+        write("/static-assets/images/b.jpg", "b");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Images").call();
+        int commits = countCommits();
+
+        ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                .createFolder("/site/website", "articles")
+                .write("/site/website/articles/index.xml", content("<page/>"))
+                .write(INDEX, content("<page><title>Home</title></page>"))
+                .move("/static-assets/images/a.jpg", "/static-assets/photos/a.jpg")
+                .delete("/static-assets/images/b.jpg");
+        assertEquals(batch.size(), 5);
+
+        String commitId = repository.commitBatch(SITE, batch);
+
+        assertEquals(countCommits(), commits + 1);
+        assertEquals(git.getRepository().resolve("HEAD").getName(), commitId);
+        Set<String> files = getFiles();
+        assertTrue(files.contains("site/website/articles/" + GitContentRepositoryConstants.EMPTY_FILE));
+        assertTrue(files.contains("site/website/articles/index.xml"));
+        assertTrue(files.contains("static-assets/photos/a.jpg"));
+        assertFalse(files.contains("static-assets/images/a.jpg"));
+        assertFalse(files.contains("static-assets/images/b.jpg"));
+        assertEquals(read(INDEX), "<page><title>Home</title></page>");
+        assertTrue(git.status().call().isClean());
+
+        // Writing the same content again doesn't create a commit
+        assertNull(repository.commitBatch(SITE, new ContentRepositoryBatch().write(INDEX,
+                content("<page><title>Home</title></page>"))));
+        assertEquals(countCommits(), commits + 1);
+    }
+
+    @Test
+    public void rollbackTest() throws Exception {
+        int commits = countCommits();
+        ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                .write(INDEX, content("<page><title>Changed</title></page>"))
+                .write("/site/website/new/index.xml", content("<page/>"))
+                .move("/site/website/missing.xml", "/site/website/moved.xml");
+        try {
+            repository.commitBatch(SITE, batch);
+            fail("The batch should fail because the file to move doesn't exist");
+        } catch (ServiceLayerException e) {
+            // expected
+        }
+
+        assertEquals(countCommits(), commits);
+        assertEquals(read(INDEX), "<page/>");
+        assertFalse(new File(dir, "site/website/new/index.xml").exists());
+        assertTrue(git.status().call().isClean());
+        verify(generalLockService).unlock(anyString());
+    }
+
+    @Test
+    public void untrackedFilesRollbackTest() throws Exception {
+        // Left by a failed operation or an external tool, not known to git
+        write("/site/website/drafts/notes.txt", "notes");
+        write("/site/website/old.xml", "<page/>");
+        ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                .createFolder("/site/website", "drafts")
+                .write("/site/website/drafts/index.xml", content("<page/>"))
+                .write("/site/website/old.xml", content("<page><title>Old</title></page>"))
+                .createFolder("/site/website/articles", "2021")
+                .move("/site/website/missing.xml", "/site/website/moved.xml");
+        try {
+            repository.commitBatch(SITE, batch);
+            fail("The batch should fail because the file to move doesn't exist");
+        } catch (ServiceLayerException e) {
+            // expected
+        }
+
+        assertTrue(new File(dir, "site/website/drafts/notes.txt").exists());
+        assertTrue(new File(dir, "site/website/old.xml").exists());
+        assertFalse(new File(dir, "site/website/drafts/index.xml").exists());
+        assertFalse(new File(dir, "site/website/drafts/" + GitContentRepositoryConstants.EMPTY_FILE).exists());
+        assertFalse(new File(dir, "site/website/articles").exists());
+        assertEquals(git.status().call().getUntracked(), Set.of("site/website/drafts/notes.txt",
+                "site/website/old.xml"));
+    }
+
+    @Test
+    public void uncheckedExceptionRollbackTest() throws Exception {
+        int commits = countCommits();
+        InputStream failingContent = new InputStream() {
+
+            @Override
+            public int read() {
+                throw new IllegalStateException("Upload interrupted");
+            }
+
+        };
+        ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                .write(INDEX, content("<page><title>Changed</title></page>"))
+                .write("/static-assets/images/new.jpg", failingContent);
+        try {
+            repository.commitBatch(SITE, batch);
+            fail("The batch should fail because the content can't be read");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(countCommits(), commits);
+        assertEquals(read(INDEX), "<page/>");
+        assertFalse(new File(dir, "static-assets").exists());
+        assertTrue(git.status().call().isClean());
+        verify(generalLockService).unlock(anyString());
+    }
+
+    private int countCommits() throws Exception {
+        int count = 0;
+        for (RevCommit ignored : git.log().call()) {
+            count++;
+        }
+        return count;
+    }
+
+    private Set<String> getFiles() throws Exception {
+        Set<String> files = new HashSet<>();
+        Repository repo = git.getRepository();
+        try (TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(repo.parseCommit(repo.resolve("HEAD")).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                files.add(treeWalk.getPathString());
+            }
+        }
+        return files;
+    }
+
+    private ByteArrayInputStream content(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+
+    private void write(String path, String content) throws Exception {
+        File file = new File(dir, path);
+        FileUtils.writeStringToFile(file, content, UTF_8);
+    }
+
+    private String read(String path) throws Exception {
+        return FileUtils.readFileToString(new File(dir, path), UTF_8);
+    }
+
+}
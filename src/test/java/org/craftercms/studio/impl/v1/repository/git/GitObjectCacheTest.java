@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.repository.git;
+
+import org.apache.commons.io.FileUtils;
+import org.dom4j.Document;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class GitObjectCacheTest {
+
+    public static final String PAGE_PATH = "site/website/index.xml";
+
+    public static final String NEW_PAGE_PATH = "site/website/about/index.xml";
+
+    private File dir;
+
+    private Git git;
+
+    private GitObjectCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("object-cache").toFile();
+        git = Git.init().setDirectory(dir).call();
+        write(PAGE_PATH, "<page><title>Home</title></page>");
+        write("static-assets/css/main.css", "body {}");
+        commit();
+
+        cache = new GitObjectCache();
+        cache.init();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void entriesMatchTreeWalkTest() throws Exception {
+        Repository repo = git.getRepository();
+        assertEquals(cache.getEntry(repo, PAGE_PATH).getObjectId(), getObjectId(PAGE_PATH));
+        assertTrue(cache.getEntry(repo, "site/website").isTree());
+        assertTrue(cache.getEntry(repo, ".").isTree());
+        assertNull(cache.getEntry(repo, "site/missing.xml"));
+        assertNull(cache.getEntry(repo, PAGE_PATH + "/child.xml"));
+
+        Map<String, GitObjectCache.TreeEntry> root = cache.getTree(repo, cache.getEntry(repo, "").getObjectId());
+        assertEquals(root.keySet().toArray(), new String[] { "site", "static-assets" });
+    }
+
+    @Test
+    public void headChangesAreDetectedTest() throws Exception {
+        Repository repo = git.getRepository();
+        ObjectId oldPage = cache.getEntry(repo, PAGE_PATH).getObjectId();
+        assertNull(cache.getEntry(repo, NEW_PAGE_PATH));
+
+        write(PAGE_PATH, "<page><title>Updated</title></page>");
+        write(NEW_PAGE_PATH, "<page><title>About</title></page>");
+        commit();
+
+        assertNotNull(cache.getEntry(repo, NEW_PAGE_PATH));
+        ObjectId newPage = cache.getEntry(repo, PAGE_PATH).getObjectId();
+        assertNotEquals(newPage, oldPage);
+        assertEquals(newPage, getObjectId(PAGE_PATH));
+    }
+
+    @Test
+    public void documentsAreCopiedTest() throws Exception {
+        Repository repo = git.getRepository();
+        ObjectId id = cache.getEntry(repo, PAGE_PATH).getObjectId();
+        Document document = cache.getDocument(repo, id);
+        assertEquals(document.getRootElement().elementText("title"), "Home");
+
+        document.getRootElement().element("title").setText("Modified");
+        Document cached = cache.getDocument(repo, id);
+        assertNotSame(cached, document);
+        assertEquals(cached.getRootElement().elementText("title"), "Home");
+        assertFalse(cached.getRootElement().elements().isEmpty());
+    }
+
+    private ObjectId getObjectId(String path) throws Exception {
+        Repository repo = git.getRepository();
+        try (TreeWalk tw = TreeWalk.forPath(repo, path, repo.parseCommit(repo.resolve("HEAD")).getTree())) {
+            return tw.getObjectId(0);
+        }
+    }
+
+    private void write(String path, String content) throws Exception {
+        File file = new File(dir, path);
+        FileUtils.writeStringToFile(file, content, UTF_8);
+    }
+
+    private void commit() throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("test").call();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service;
+
+import org.craftercms.studio.model.monitoring.LockMetrics;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class GeneralLockServiceImplTest {
+
+    public static final int THREADS = 64;
+
+    public static final int SITES = 200;
+
+    public static final int ITERATIONS = 2000;
+
+    public static final String LOCK_ID = "GitLogLock:mySite";
+
+    private GeneralLockServiceImpl lockService;
+
+    @BeforeMethod
+    public void setUp() {
+        lockService = new GeneralLockServiceImpl();
+    }
+
+    @Test
+    public void contendedLocksAreExclusiveAndEvictedTest() throws InterruptedException {
+        AtomicIntegerArray owners = new AtomicIntegerArray(SITES);
+        AtomicInteger violations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    int site = ThreadLocalRandom.current().nextInt(SITES);
+                    String lockId = "GitLogLock:site" + site;
+                    lockService.lock(lockId);
+                    try {
+                        if (owners.incrementAndGet(site) != 1) {
+                            violations.incrementAndGet();
+                        }
+                        owners.decrementAndGet(site);
+                    } finally {
+                        lockService.unlock(lockId);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(violations.get(), 0);
+        assertEquals(lockService.getActiveLockCount(), 0, "All lock entries should have been evicted");
+        long acquisitions = lockService.getLockMetrics().values().stream()
+                .mapToLong(LockMetrics::getAcquisitions)
+                .sum();
+        assertEquals(acquisitions, (long) THREADS * ITERATIONS);
+    }
+
+    @Test
+    public void reentrantLockIsEvictedAfterLastUnlockTest() {
+        lockService.lock(LOCK_ID);
+        lockService.lock(LOCK_ID);
+        lockService.unlock(LOCK_ID);
+        assertEquals(lockService.getActiveLockCount(), 1);
+        lockService.unlock(LOCK_ID);
+        assertEquals(lockService.getActiveLockCount(), 0);
+
+        LockMetrics metrics = lockService.getLockMetrics().get(LOCK_ID);
+        assertEquals(metrics.getAcquisitions(), 2);
+        assertEquals(metrics.getHoldTime().getCount(), 1);
+    }
+
+    @Test
+    public void timedTryLockTest() throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread owner = new Thread(() -> {
+            lockService.lock(LOCK_ID);
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lockService.unlock(LOCK_ID);
+            }
+        });
+        owner.start();
+        locked.await();
+
+        assertFalse(lockService.tryLock(LOCK_ID));
+        assertFalse(lockService.tryLock(LOCK_ID, 50, TimeUnit.MILLISECONDS));
+        assertEquals(lockService.getLockMetrics().get(LOCK_ID).getFailedAttempts(), 2);
+
+        release.countDown();
+        assertTrue(lockService.tryLock(LOCK_ID, 10, TimeUnit.SECONDS));
+        lockService.unlock(LOCK_ID);
+        owner.join();
+
+        assertEquals(lockService.getActiveLockCount(), 0);
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.craftercms.studio.api.v1.dal.SiteFeed;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
+import org.craftercms.studio.api.v1.service.dependency.DependencyService;
+import org.craftercms.studio.api.v1.service.event.EventService;
+import org.craftercms.studio.api.v1.service.security.SecurityService;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.Item;
+import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.api.v2.service.policy.PolicyService;
+import org.craftercms.studio.model.policy.Action;
+import org.craftercms.studio.model.policy.ValidationResult;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Writes files through a batch and checks that the items and dependencies are updated once the commit is done
+ */
+public class ContentServiceImplBatchTest {
+
+    public static final String SITE = "test";
+
+    public static final String USER = "admin";
+
+    public static final String COMMIT_ID = "commit";
+
+    public static final String PAGE = "/site/website/articles/index.xml";
+
+    public static final String COMPONENT = "/site/components/header.xml";
+
+    public static final long PARENT_ID = 5;
+
+    private ContentRepository repository;
+
+    private ItemServiceInternal itemServiceInternal;
+
+    private DependencyService dependencyService;
+
+    private PolicyService policyService;
+
+    private ContentServiceImpl contentService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        repository = mock(ContentRepository.class);
+        when(repository.getExistingPaths(eq(SITE), any(Collection.class))).thenReturn(singleton(COMPONENT));
+        when(repository.commitBatch(eq(SITE), any(ContentRepositoryBatch.class))).thenReturn(COMMIT_ID);
+
+        SecurityService securityService = mock(SecurityService.class);
+        when(securityService.getCurrentUser()).thenReturn(USER);
+
+        SiteService siteService = mock(SiteService.class);
+        SiteFeed siteFeed = new SiteFeed();
+        siteFeed.setId(1);
+        siteFeed.setSiteId(SITE);
+        when(siteService.getSite(SITE)).thenReturn(siteFeed);
+
+        itemServiceInternal = mock(ItemServiceInternal.class);
+        Item parentItem = new Item();
+        parentItem.setId(PARENT_ID);
+        when(itemServiceInternal.getItem(SITE, "/site/website", true)).thenReturn(parentItem);
+
+        dependencyService = mock(DependencyService.class);
+
+        // Everything is allowed unless a test says otherwise
+        policyService = mock(PolicyService.class);
+        when(policyService.validate(eq(SITE), anyList())).thenAnswer(invocation ->
+                ((List<Action>) invocation.getArguments()[1]).stream()
+                        .map(ValidationResult::allowed)
+                        .collect(Collectors.toList()));
+
+        contentService = new ContentServiceImpl();
+        contentService.setContentRepository(repository);
+        contentService.setContentRepositoryV2(mock(org.craftercms.studio.api.v2.repository.ContentRepository.class));
+        contentService.setSecurityService(securityService);
+        contentService.setSiteService(siteService);
+        contentService.setItemServiceInternal(itemServiceInternal);
+        contentService.setDependencyService(dependencyService);
+        contentService.setEventService(mock(EventService.class));
+        contentService.setPolicyService(() -> policyService);
+    }
+
+    @Test
+    public void writeTest() throws Exception {
+        ContentRepositoryBatch batch = new ContentRepositoryBatch()
+                .write(PAGE, content("<page/>"))
+                .write(COMPONENT, content("<component/>"));
+
+        assertEquals(contentService.commitBatch(SITE, batch), COMMIT_ID);
+
+        InOrder order = inOrder(repository, itemServiceInternal, dependencyService);
+        order.verify(repository).commitBatch(SITE, batch);
+        order.verify(itemServiceInternal).persistItemAfterCreate(SITE, PAGE, USER, COMMIT_ID, Optional.empty(),
+                PARENT_ID);
+        order.verify(itemServiceInternal).persistItemAfterWrite(SITE, COMPONENT, USER, COMMIT_ID, Optional.empty());
+        // The dependencies of all the files are resolved together
+        order.verify(dependencyService).upsertDependencies(SITE, Arrays.asList(PAGE, COMPONENT));
+    }
+
+    @Test
+    public void modifiedPathTest() throws Exception {
+        String path = "/site/components/Header.xml";
+        when(policyService.validate(eq(SITE), anyList())).thenAnswer(invocation ->
+                ((List<Action>) invocation.getArguments()[1]).stream()
+                        .map(action -> ValidationResult.allowedWithModifications(action, COMPONENT))
+                        .collect(Collectors.toList()));
+
+        contentService.commitBatch(SITE, new ContentRepositoryBatch().write(path, content("<component/>")));
+
+        ArgumentCaptor<ContentRepositoryBatch> batch = ArgumentCaptor.forClass(ContentRepositoryBatch.class);
+        verify(repository).commitBatch(eq(SITE), batch.capture());
+        assertEquals(batch.getValue().getPaths(), singleton(COMPONENT));
+        verify(itemServiceInternal).persistItemAfterWrite(SITE, COMPONENT, USER, COMMIT_ID, Optional.empty());
+        verify(itemServiceInternal, never()).persistItemAfterWrite(eq(SITE), eq(path), anyString(), anyString(),
+                any(Optional.class));
+    }
+
+    private ByteArrayInputStream content(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.content;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.DependencyMapper;
+import org.craftercms.studio.api.v1.dal.SiteFeed;
+import org.craftercms.studio.api.v1.exception.ServiceLayerException;
+import org.craftercms.studio.api.v1.repository.ContentRepository;
+import org.craftercms.studio.api.v1.repository.ContentRepositoryBatch;
+import org.craftercms.studio.api.v1.service.event.EventService;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.dal.Item;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriter;
+import org.craftercms.studio.api.v2.dal.StudioDBBatchWriterFactory;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.craftercms.studio.api.v2.service.dependency.internal.DependencyServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v1.service.dependency.DependencyGraphCache;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor.ContentMetadata;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.craftercms.studio.api.v2.dal.AuditLogConstants.OPERATION_CREATE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_ASSIGNEE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_BATCH_MAX_BYTES;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_BATCH_SIZE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.IMPORT_BULK_PARALLELISM;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Imports a synthetic tree of 30k files from a local folder in bulk mode, and checks that a failed import can be
+ * resumed from the checkpoint
+ */
+public class ImportServiceImplBulkTest {
+
+    public static final String SITE = "test";
+
+    public static final int FOLDERS = 30;
+
+    public static final int FILES_PER_FOLDER = 1000;
+
+    public static final String HOME_PAGE = "/site/website/index.xml";
+
+    private File dir;
+
+    private ContentRepository contentRepository;
+
+    private StudioConfiguration studioConfiguration;
+
+    private StudioDBBatchWriter batchWriter;
+
+    private AuditServiceInternal auditServiceInternal;
+
+    private DependencyServiceInternal dependencyServiceInternal;
+
+    private DependencyGraphCache dependencyGraphCache;
+
+    /**
+     * Dependencies committed by the batch writer
+     */
+    private List<DependencyEntity> dependencies;
+
+    private ImportServiceImpl importService;
+
+    /**
+     * Paths written to the repository, in order
+     */
+    private List<String> writtenPaths;
+
+    private AtomicInteger commits;
+
+    private int failOnCommit;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("import").toFile();
+        writtenPaths = new ArrayList<>();
+        commits = new AtomicInteger();
+        failOnCommit = -1;
+
+        contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getExistingPaths(eq(SITE), any(Collection.class)))
+                .thenReturn(new HashSet<>(Arrays.asList("/site", "/site/website")));
+        when(contentRepository.commitBatch(eq(SITE), any(ContentRepositoryBatch.class))).thenAnswer(invocation -> {
+            if (commits.get() == failOnCommit) {
+                throw new ServiceLayerException("Repository failure");
+            }
+            ContentRepositoryBatch batch = (ContentRepositoryBatch) invocation.getArguments()[1];
+            for (ContentRepositoryBatch.Operation operation : batch.getOperations()) {
+                if (operation.getType() == ContentRepositoryBatch.OperationType.WRITE) {
+                    // Files are not loaded in memory, their content is read from disk during the commit
+                    assertNotNull(operation.getFile());
+                    try (InputStream content = operation.openContent()) {
+                        IOUtils.toByteArray(content);
+                    }
+                    writtenPaths.add(operation.getPath());
+                }
+            }
+            return "commit" + commits.incrementAndGet();
+        });
+
+        studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(IMPORT_ASSIGNEE)).thenReturn("admin");
+        when(studioConfiguration.getProperty(eq(IMPORT_BULK_BATCH_SIZE), eq(Integer.class), anyInt()))
+                .thenReturn(FILES_PER_FOLDER);
+        when(studioConfiguration.getProperty(eq(IMPORT_BULK_BATCH_MAX_BYTES), eq(Long.class), anyLong()))
+                .thenReturn(Long.MAX_VALUE);
+        when(studioConfiguration.getProperty(eq(IMPORT_BULK_PARALLELISM), eq(Integer.class), anyInt()))
+                .thenReturn(4);
+
+        SiteService siteService = mock(SiteService.class);
+        SiteFeed siteFeed = new SiteFeed();
+        siteFeed.setId(1);
+        when(siteService.getSite(SITE)).thenReturn(siteFeed);
+
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        User user = new User();
+        user.setId(1);
+        when(userServiceInternal.getUserByIdOrUsername(-1, "admin")).thenReturn(user);
+
+        ContentMetadataExtractor contentMetadataExtractor = mock(ContentMetadataExtractor.class);
+        when(contentMetadataExtractor.extract(eq(SITE), any(Collection.class))).thenAnswer(invocation -> {
+            Map<String, ContentMetadata> metadata = new LinkedHashMap<>();
+            for (Object path : (Collection<?>) invocation.getArguments()[1]) {
+                metadata.put((String) path, new ContentMetadata((String) path));
+            }
+            return metadata;
+        });
+
+        auditServiceInternal = mock(AuditServiceInternal.class);
+        when(auditServiceInternal.createAuditLogEntry()).thenAnswer(invocation -> new AuditLog());
+
+        dependencies = new ArrayList<>();
+        DependencyMapper dependencyMapper = mock(DependencyMapper.class);
+        when(dependencyMapper.getSiteDependencies(anyMap())).thenAnswer(invocation -> new ArrayList<>(dependencies));
+        dependencyGraphCache = new DependencyGraphCache();
+        dependencyGraphCache.setDependencyMapper(dependencyMapper);
+        dependencyGraphCache.init();
+        dependencyServiceInternal = mock(DependencyServiceInternal.class);
+
+        batchWriter = mock(StudioDBBatchWriter.class);
+        List<DependencyEntity> pendingDependencies = new ArrayList<>();
+        doAnswer(invocation -> {
+            Map<String, Set<String>> resolved = (Map<String, Set<String>>) invocation.getArguments()[2];
+            resolved.forEach((type, targetPaths) -> targetPaths.forEach(targetPath -> {
+                DependencyEntity dependency = new DependencyEntity();
+                dependency.setSite(SITE);
+                dependency.setSourcePath((String) invocation.getArguments()[1]);
+                dependency.setTargetPath(targetPath);
+                dependency.setType(type);
+                pendingDependencies.add(dependency);
+            }));
+            return null;
+        }).when(batchWriter).replaceDependencies(anyString(), anyString(), anyMap());
+        doAnswer(invocation -> {
+            dependencies.addAll(pendingDependencies);
+            pendingDependencies.clear();
+            return null;
+        }).when(batchWriter).commit();
+        StudioDBBatchWriterFactory studioDBBatchWriterFactory = mock(StudioDBBatchWriterFactory.class);
+        when(studioDBBatchWriterFactory.getDBBatchWriter(anyLong(), anyString())).thenReturn(batchWriter);
+
+        importService = new ImportServiceImpl();
+        importService.setContentRepository(contentRepository);
+        importService.setContentRepositoryV2(mock(org.craftercms.studio.api.v2.repository.ContentRepository.class));
+        importService.setStudioConfiguration(studioConfiguration);
+        importService.setSiteService(siteService);
+        importService.setUserServiceInternal(userServiceInternal);
+        importService.setContentMetadataExtractor(contentMetadataExtractor);
+        importService.setDependencyServiceInternal(dependencyServiceInternal);
+        importService.setDependencyGraphCache(dependencyGraphCache);
+        importService.setStudioDBBatchWriterFactory(studioDBBatchWriterFactory);
+        importService.setEventService(mock(EventService.class));
+        importService.setAuditServiceInternal(auditServiceInternal);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void bulkImportTest() throws Exception {
+        createTree(FOLDERS, FILES_PER_FOLDER);
+        String config = createConfig();
+
+        importService.importSite(config);
+        int files = FOLDERS * FILES_PER_FOLDER;
+
+        assertEquals(commits.get(), FOLDERS);
+        assertEquals(writtenPaths.size(), files);
+        assertEquals(new HashSet<>(writtenPaths).size(), files);
+        verify(batchWriter, times(FOLDERS)).commit();
+        verify(batchWriter, times(files + FOLDERS)).upsertItem(any(Item.class));
+        assertFalse(new File(dir, SITE + ImportServiceImpl.CHECKPOINT_SUFFIX).exists());
+
+        // One audit entry per batch with the folder and all its files
+        ArgumentCaptor<AuditLog> auditLogs = ArgumentCaptor.forClass(AuditLog.class);
+        verify(auditServiceInternal, times(FOLDERS)).insertAuditLog(auditLogs.capture());
+        for (AuditLog auditLog : auditLogs.getAllValues()) {
+            assertEquals(auditLog.getOperation(), OPERATION_CREATE);
+            assertEquals(auditLog.getPrimaryTargetValue(), SITE);
+            assertEquals(auditLog.getParameters().size(), FILES_PER_FOLDER + 1);
+        }
+    }
+
+    @Test
+    public void missingBuildDataLocationTest() throws Exception {
+        File config = new File(dir, "import-config.xml");
+        FileUtils.writeStringToFile(config, "<import><site><name>" + SITE + "</name><bulk>true</bulk><folders>"
+                + "<folder name=\"site\" import-all=\"true\"/></folders></site></import>", UTF_8);
+        try {
+            importService.importSite(config.getAbsolutePath());
+            fail("The import should fail without a build data location");
+        } catch (ServiceLayerException e) {
+            // expected
+        }
+        assertEquals(commits.get(), 0);
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        when(studioConfiguration.getProperty(eq(IMPORT_BULK_BATCH_SIZE), eq(Integer.class), anyInt()))
+                .thenReturn(100);
+        createTree(5, 100);
+        FileUtils.writeStringToFile(new File(dir, SITE + "/site/website/folder0/invalid.xml"), "<page>", UTF_8);
+        String config = createConfig();
+        File checkpoint = new File(dir, SITE + ImportServiceImpl.CHECKPOINT_SUFFIX);
+
+        failOnCommit = 2;
+        try {
+            importService.importSite(config);
+            fail("The import should fail on the third batch");
+        } catch (ServiceLayerException e) {
+            // expected
+        }
+        assertEquals(commits.get(), 2);
+        Set<String> firstRun = new HashSet<>(writtenPaths);
+        assertEquals(new HashSet<>(FileUtils.readLines(checkpoint, UTF_8)), firstRun);
+        assertTrue(new File(checkpoint.getPath() + ImportServiceImpl.PENDING_CHECKPOINT_SUFFIX).exists());
+
+        failOnCommit = -1;
+        writtenPaths.clear();
+        importService.importSite(config);
+
+        for (String path : writtenPaths) {
+            assertFalse(firstRun.contains(path), path + " was imported twice");
+        }
+        assertEquals(firstRun.size() + writtenPaths.size(), 500);
+        assertFalse(writtenPaths.contains("/site/website/folder0/invalid.xml"));
+        assertFalse(checkpoint.exists());
+        assertFalse(new File(checkpoint.getPath() + ImportServiceImpl.PENDING_CHECKPOINT_SUFFIX).exists());
+    }
+
+    @Test
+    public void batchMaxBytesTest() throws Exception {
+        // Every file is bigger than the limit, so each one is written in its own commit
+        when(studioConfiguration.getProperty(eq(IMPORT_BULK_BATCH_MAX_BYTES), eq(Long.class), anyLong()))
+                .thenReturn(1L);
+        createTree(2, 5);
+
+        importService.importSite(createConfig());
+
+        assertEquals(commits.get(), 10);
+        assertEquals(writtenPaths.size(), 10);
+    }
+
+    @Test
+    public void dependencyGraphTest() throws Exception {
+        when(dependencyServiceInternal.resolveDependnecies(eq(SITE), anyString()))
+                .thenAnswer(invocation -> singletonMap("page", singleton(HOME_PAGE)));
+        // The graph is already loaded when the import starts
+        assertTrue(dependencyGraphCache.getGraph(SITE).getDependents(singleton(HOME_PAGE), 1).isEmpty());
+
+        createTree(2, 10);
+        importService.importSite(createConfig());
+
+        assertEquals(dependencyGraphCache.getGraph(SITE).getDependents(singleton(HOME_PAGE), 1).size(), 20);
+    }
+
+    private void createTree(int folders, int filesPerFolder) throws Exception {
+        for (int i = 0; i < folders; i++) {
+            File folder = new File(dir, SITE + "/site/website/folder" + i);
+            FileUtils.forceMkdir(folder);
+            for (int j = 0; j < filesPerFolder; j++) {
+                FileUtils.writeStringToFile(new File(folder, "page" + j + ".xml"),
+                        "<page><internal-name>Page " + j + "</internal-name></page>", UTF_8);
+            }
+        }
+    }
+
+    private String createConfig() throws Exception {
+        File config = new File(dir, "import-config.xml");
+        FileUtils.writeStringToFile(config, "<import><site><name>" + SITE + "</name><build-data-location>"
+                + dir.getAbsolutePath() + "</build-data-location><bulk>true</bulk><folders>"
+                + "<folder name=\"site\" import-all=\"true\"/></folders></site></import>", UTF_8);
+        return config.getAbsolutePath();
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import org.craftercms.studio.api.v1.dal.DependencyEntity;
+import org.craftercms.studio.api.v1.dal.DependencyMapper;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singletonList;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Computes the items depending on a heavily shared component in a site with 100k dependencies and compares the
+ * in-memory graph with the previous approach of running one query per level
+ */
+public class DependencyGraphTest {
+
+    public static final String SITE = "site";
+
+    public static final String SHARED_COMPONENT = "/site/components/shared/header.xml";
+
+    public static final int COMPONENTS = 500;
+
+    public static final int NESTED_COMPONENTS = 1500;
+
+    public static final int PAGES = 20000;
+
+    public static final int COMPONENTS_PER_PAGE = 4;
+
+    private final List<DependencyEntity> table = new ArrayList<>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private DependencyServiceImpl dependencyService;
+
+    @BeforeMethod
+    public void setUp() {
+        DependencyMapper dependencyMapper = mock(DependencyMapper.class);
+        when(dependencyMapper.getSiteDependencies(anyMap())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(table);
+        });
+
+        SiteService siteService = mock(SiteService.class);
+        when(siteService.exists(anyString())).thenReturn(true);
+        ContentService contentService = mock(ContentService.class);
+        when(contentService.contentExists(anyString(), anyString())).thenReturn(true);
+
+        DependencyGraphCache dependencyGraphCache = new DependencyGraphCache();
+        dependencyGraphCache.setDependencyMapper(dependencyMapper);
+        dependencyGraphCache.init();
+
+        dependencyService = new DependencyServiceImpl();
+        dependencyService.setSiteService(siteService);
+        dependencyService.setContentService(contentService);
+        dependencyService.setDependencyGraphCache(dependencyGraphCache);
+    }
+
+    @Test
+    public void sharedComponentClosureTest() throws Exception {
+        Random random = new Random(42);
+        // Components including the shared one, nested components including some of them and pages including both
+        for (int i = 0; i < COMPONENTS; i++) {
+            add(getComponent(i), SHARED_COMPONENT);
+        }
+        for (int i = 0; i < NESTED_COMPONENTS; i++) {
+            add(getNestedComponent(i), getComponent(random.nextInt(COMPONENTS)));
+            add(getNestedComponent(i), getComponent(random.nextInt(COMPONENTS)));
+        }
+        for (int i = 0; i < PAGES; i++) {
+            for (int j = 0; j < COMPONENTS_PER_PAGE; j++) {
+                add(getPage(i), getNestedComponent(random.nextInt(NESTED_COMPONENTS)));
+            }
+            add(getPage(i), "/static-assets/images/page" + i + ".jpg");
+        }
+        assertTrue(table.size() >= 100000);
+
+        AtomicInteger queries = new AtomicInteger();
+        Set<String> expected = getItemsDependingOnPerLevel(SHARED_COMPONENT, queries);
+        Set<String> cold = dependencyService.getItemsDependingOn(SITE, SHARED_COMPONENT, -1);
+        Set<String> warm = dependencyService.getItemsDependingOn(SITE, SHARED_COMPONENT, -1);
+
+        assertEquals(cold, expected);
+        assertEquals(warm, expected);
+        assertEquals(loads.get(), 1);
+        assertEquals(queries.get(), 4);
+        assertEquals(dependencyService.getItemsDependingOn(SITE, SHARED_COMPONENT, 1).size(), COMPONENTS);
+    }
+
+    @Test
+    public void updateTest() throws Exception {
+        add("/site/website/index.xml", "/site/components/item/a.xml");
+        add("/site/components/item/a.xml", "/site/components/shared/b.xml");
+        add("/site/components/shared/b.xml", "/static-assets/images/c.jpg");
+
+        assertEquals(dependencyService.getItemDependencies(SITE, "/site/website/index.xml", -1),
+                     set("/site/components/item/a.xml", "/site/components/shared/b.xml",
+                         "/static-assets/images/c.jpg"));
+        assertEquals(dependencyService.getItemDependencies(SITE, "/site/website/index.xml", 2),
+                     set("/site/components/item/a.xml", "/site/components/shared/b.xml"));
+
+        DependencyGraph graph = dependencyService.getDependencyGraphCache().getGraph(SITE);
+        graph.setDependencies("/site/website/index.xml", singletonList("/site/components/shared/b.xml"));
+        assertEquals(graph.getDependents(singletonList("/site/components/shared/b.xml"), -1),
+                     set("/site/components/item/a.xml", "/site/website/index.xml"));
+        assertEquals(graph.getEdgeCount(), 3);
+
+        graph.movePath("/site/components/shared/b.xml", "/site/components/shared/d.xml");
+        assertEquals(graph.getDependencies(singletonList("/site/website/index.xml"), -1, null),
+                     set("/site/components/shared/d.xml", "/static-assets/images/c.jpg"));
+        assertEquals(graph.getDependencies(singletonList("/site/website/index.xml"), -1,
+                                           path -> path.startsWith("/site/")),
+                     set("/site/components/shared/d.xml"));
+
+        graph.removePath("/site/components/shared/d.xml");
+        assertTrue(graph.getDependencies(singletonList("/site/website/index.xml"), -1, null).isEmpty());
+        assertFalse(graph.getDependents(singletonList("/static-assets/images/c.jpg"), -1)
+                .contains("/site/website/index.xml"));
+        assertEquals(graph.getEdgeCount(), 0);
+        assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void cycleTest() throws Exception {
+        // Components including each other
+        add("/site/components/item/a.xml", "/site/components/item/b.xml");
+        add("/site/components/item/b.xml", "/site/components/item/c.xml");
+        add("/site/components/item/c.xml", "/site/components/item/a.xml");
+
+        // The start path is never part of the result
+        assertEquals(dependencyService.getItemDependencies(SITE, "/site/components/item/a.xml", -1),
+                     set("/site/components/item/b.xml", "/site/components/item/c.xml"));
+        assertEquals(dependencyService.getItemDependencies(SITE, "/site/components/item/a.xml", 5),
+                     set("/site/components/item/b.xml", "/site/components/item/c.xml"));
+        assertEquals(dependencyService.getItemsDependingOn(SITE, "/site/components/item/a.xml", -1),
+                     set("/site/components/item/b.xml", "/site/components/item/c.xml"));
+    }
+
+    /**
+     * Same algorithm used before the graph, each level is a query that needs to scan all the dependencies of the
+     * site because there is no index on the target path
+     */
+    private Set<String> getItemsDependingOnPerLevel(String path, AtomicInteger queries) {
+        Set<String> result = new HashSet<>();
+        Set<String> level = new HashSet<>(singletonList(path));
+        while (!level.isEmpty()) {
+            queries.incrementAndGet();
+            Set<String> next = new HashSet<>();
+            for (DependencyEntity dependency : table) {
+                if (level.contains(dependency.getTargetPath()) && result.add(dependency.getSourcePath())) {
+                    next.add(dependency.getSourcePath());
+                }
+            }
+            level = next;
+        }
+        return result;
+    }
+
+    private void add(String sourcePath, String targetPath) {
+        DependencyEntity dependency = new DependencyEntity();
+        dependency.setSite(SITE);
+        dependency.setSourcePath(sourcePath);
+        dependency.setTargetPath(targetPath);
+        table.add(dependency);
+    }
+
+    private Set<String> set(String... paths) {
+        return new HashSet<>(Arrays.asList(paths));
+    }
+
+    private String getComponent(int i) {
+        return "/site/components/component" + i + ".xml";
+    }
+
+    private String getNestedComponent(int i) {
+        return "/site/components/nested/component" + i + ".xml";
+    }
+
+    private String getPage(int i) {
+        return "/site/website/page" + i + "/index.xml";
+    }
+
+}
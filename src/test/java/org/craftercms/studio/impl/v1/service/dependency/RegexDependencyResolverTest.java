@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.dependency;
+
+import com.google.common.cache.CacheBuilder;
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v2.service.config.ConfigurationService;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.dom4j.DocumentHelper;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_DEPENDENCY_RESOLVER_SINGLE_PASS_SCAN_ENABLED;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Resolves the same content scanning each find regex separately and in a single pass, and checks that both give the
+ * same dependencies
+ */
+public class RegexDependencyResolverTest {
+
+    public static final String SITE = "test";
+
+    public static final String CONFIG = "<dependency-resolver><item-types>" +
+            itemType("page", "/site/website/.*\\.xml") +
+            itemType("component", "/site/components/.*\\.xml") +
+            "</item-types></dependency-resolver>";
+
+    public static final String PAGE = "/site/website/index.xml";
+
+    public static final String ARTICLE = "/site/website/articles/index.xml";
+
+    public static final String COMPONENT = "/site/components/header.xml";
+
+    public static final String STYLES = "/static-assets/css/main.css";
+
+    private final Map<String, String> contents = new HashMap<>();
+
+    private StudioConfiguration studioConfiguration;
+
+    private RegexDependencyResolver resolver;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_DEPENDENCY_RESOLVER_CONFIG_FILE_NAME))
+                .thenReturn("dependency/resolver-config.xml");
+
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getCacheKey(eq(SITE), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(SITE + ":dependency-resolver");
+        when(configurationService.getConfigurationAsDocument(eq(SITE), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> DocumentHelper.parseText(CONFIG));
+
+        ContentService contentService = mock(ContentService.class);
+        when(contentService.getContentAsString(eq(SITE), anyString()))
+                .thenAnswer(invocation -> contents.get((String) invocation.getArguments()[1]));
+        // All the matched paths exist
+        when(contentService.getExistingPaths(eq(SITE), any(Collection.class)))
+                .thenAnswer(invocation -> new HashSet<>((Collection<?>) invocation.getArguments()[1]));
+
+        resolver = new RegexDependencyResolver();
+        resolver.setStudioConfiguration(studioConfiguration);
+        resolver.setConfigurationService(configurationService);
+        resolver.setContentService(contentService);
+        resolver.setConfigurationCache(CacheBuilder.newBuilder().build());
+
+        contents.put(PAGE, "<page><content-type>/page/home</content-type>" +
+                "<header><include>/site/components/header.xml</include></header>" +
+                "<link>/site/website/articles/index.xml</link><link>/site/website/articles/index.xml</link>" +
+                "<image>/static-assets/images/logo.png</image><video>/static-assets/videos/intro.mp4</video>" +
+                "<item>/site/taxonomy/categories.xml</item>" +
+                "<style>url('/static-assets/css/main.css')</style>" +
+                "<template>/templates/web/home.ftl</template></page>");
+        contents.put(ARTICLE, "<page><content-type>/page/article</content-type>" +
+                "<body>/static-assets/images/a.jpg/static-assets/images/b.jpg</body>" +
+                "<item>/site/website/index.xml</item></page>");
+        contents.put(COMPONENT, "<component><content-type>/component/header</content-type>" +
+                "<logo>/static-assets/images/logo.png</logo></component>");
+        contents.put(STYLES, "body { background: url('/static-assets/images/background.png') }");
+    }
+
+    @Test
+    public void singlePassMatchesPerRuleTest() {
+        List<String> paths = Arrays.asList(PAGE, ARTICLE, COMPONENT, STYLES);
+
+        setSinglePass(false);
+        Map<String, Map<String, Set<String>>> perRule = resolver.resolve(SITE, paths);
+        setSinglePass(true);
+        Map<String, Map<String, Set<String>>> singlePass = resolver.resolve(SITE, paths);
+
+        assertEquals(singlePass, perRule);
+        // Overlapping regexes report the same text for each dependency type
+        Map<String, Set<String>> page = perRule.get(PAGE);
+        assertEquals(page.get("image"), set("/static-assets/images/logo.png"));
+        assertTrue(page.get("asset").containsAll(set("/static-assets/images/logo.png",
+                "/static-assets/videos/intro.mp4", "/static-assets/css/main.css")));
+        assertEquals(page.get("script"), set("/scripts/pages/home.groovy"));
+        assertEquals(page.get("component"), set(COMPONENT));
+        assertEquals(page.get("page"), set(ARTICLE));
+        assertEquals(page.get("item"), set("/site/taxonomy/categories.xml"));
+        assertEquals(perRule.get(ARTICLE).get("image"), set("/static-assets/images/a.jpg",
+                "/static-assets/images/b.jpg"));
+        assertEquals(perRule.get(COMPONENT).get("script"), set("/scripts/components/header.groovy"));
+        // Paths that are not included by any item type have no dependencies
+        assertTrue(perRule.get(STYLES).isEmpty());
+    }
+
+    @Test
+    public void singleItemTest() {
+        setSinglePass(false);
+        Map<String, Set<String>> perRule = resolver.resolve(SITE, ARTICLE);
+        setSinglePass(true);
+
+        assertEquals(resolver.resolve(SITE, ARTICLE), perRule);
+        assertEquals(perRule.get("page"), set(PAGE));
+        assertTrue(perRule.get("rendering-template").isEmpty());
+    }
+
+    private void setSinglePass(boolean enabled) {
+        when(studioConfiguration.getProperty(CONFIGURATION_DEPENDENCY_RESOLVER_SINGLE_PASS_SCAN_ENABLED,
+                Boolean.class, false)).thenReturn(enabled);
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static String itemType(String name, String include) {
+        return "<item-type><name>" + name + "</name><includes><path-pattern>" + include + "</path-pattern>" +
+                "</includes><dependency-types>" +
+                dependencyType("page", "/site/website/([^&lt;]+)\\.xml") +
+                dependencyType("component", "/site/components/([^&lt;]+)\\.xml") +
+                dependencyType("item", "/site/(?!website/|components/)([^&lt;]+)\\.xml") +
+                dependencyType("asset", "/static-assets/([^&lt;\"'\\)\\?\\#]+)") +
+                // Overlaps with the asset regex
+                dependencyType("image", "/static-assets/images/([^&lt;\"'/]+)") +
+                dependencyType("rendering-template", "/templates/([^&lt;\"]+)\\.ftl") +
+                "<dependency-type><name>script</name><includes>" +
+                "<pattern><find-regex>/scripts/([^&lt;\"]+)\\.groovy</find-regex></pattern>" +
+                "<pattern><find-regex>&lt;content-type&gt;/(.*)/(.*)&lt;/content-type&gt;</find-regex>" +
+                "<transforms><transform><match>&lt;content-type&gt;/(.*)/(.*)&lt;/content-type&gt;</match>" +
+                "<replace>/scripts/$1s/$2.groovy</replace></transform></transforms></pattern>" +
+                "</includes></dependency-type>" +
+                "</dependency-types></item-type>";
+    }
+
+    private static String dependencyType(String name, String findRegex) {
+        return "<dependency-type><name>" + name + "</name><includes><pattern><find-regex>" + findRegex +
+                "</find-regex></pattern></includes></dependency-type>";
+    }
+
+}
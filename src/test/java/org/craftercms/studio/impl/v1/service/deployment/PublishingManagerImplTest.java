@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.deployment;
+
+import org.craftercms.studio.api.v1.dal.PublishRequest;
+import org.craftercms.studio.api.v1.dal.PublishRequestMapper;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.COMPLETED;
+import static org.craftercms.studio.api.v1.dal.PublishRequest.State.READY_FOR_LIVE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PUBLISHING_MANAGER_BATCH_SIZE;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Drains a large publishing queue backed by an in-memory table and counts the statements sent to the database
+ */
+public class PublishingManagerImplTest {
+
+    public static final String SITE = "site";
+
+    public static final String ENVIRONMENT = "live";
+
+    public static final int ITEMS = 20000;
+
+    public static final int BATCH_SIZE = 1000;
+
+    private final Map<Long, PublishRequest> table = new HashMap<>();
+
+    private final AtomicInteger selects = new AtomicInteger();
+
+    private final AtomicInteger updates = new AtomicInteger();
+
+    private PublishingManagerImpl publishingManager;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(eq(PUBLISHING_MANAGER_BATCH_SIZE), eq(Integer.class), anyInt()))
+                .thenReturn(BATCH_SIZE);
+
+        PublishRequestMapper publishRequestMapper = mock(PublishRequestMapper.class);
+        when(publishRequestMapper.getItemsReadyForDeployment(anyMap()))
+                .thenAnswer(invocation -> select((Map<String, Object>) invocation.getArguments()[0]));
+
+        RetryingDatabaseOperationFacade retryingDatabaseOperationFacade = mock(RetryingDatabaseOperationFacade.class);
+        doAnswer(invocation -> update((Map<String, Object>) invocation.getArguments()[0]))
+                .when(retryingDatabaseOperationFacade).updateItemsDeploymentState(anyMap());
+
+        publishingManager = new PublishingManagerImpl();
+        publishingManager.setStudioConfiguration(studioConfiguration);
+        publishingManager.setPublishRequestMapper(publishRequestMapper);
+        publishingManager.setRetryingDatabaseOperationFacade(retryingDatabaseOperationFacade);
+    }
+
+    @Test
+    public void bulkPublishTest() throws Exception {
+        // One big package followed by a lot of small ones with sizes that don't align with the batches
+        queue(0, "big", 2500);
+        int id = 2500;
+        for (int i = 0; id < ITEMS; i++) {
+            int size = Math.min(1 + i % 37, ITEMS - id);
+            queue(id, "package" + i, size);
+            id += size;
+        }
+
+        int batches = 0;
+        Map<String, Integer> batchByPackage = new HashMap<>();
+        List<PublishRequest> items = publishingManager.getItemsReadyForDeployment(SITE, ENVIRONMENT);
+        while (!items.isEmpty()) {
+            batches++;
+            assertTrue(items.size() <= BATCH_SIZE);
+            publishingManager.markItemsProcessing(SITE, ENVIRONMENT, items);
+            publishingManager.markItemsCompleted(SITE, ENVIRONMENT, items);
+            for (PublishRequest item : items) {
+                Integer previous = batchByPackage.put(item.getPackageId(), batches);
+                if (!"big".equals(item.getPackageId())) {
+                    assertTrue(previous == null || previous == batches,
+                               "Package " + item.getPackageId() + " was split");
+                }
+            }
+            items = publishingManager.getItemsReadyForDeployment(SITE, ENVIRONMENT);
+        }
+
+        assertTrue(table.values().stream().allMatch(item -> COMPLETED.equals(item.getState())));
+        // Each batch needs one select and one update for each state transition, plus the final empty select
+        assertEquals(selects.get(), batches + 1);
+        assertEquals(updates.get(), batches * 2);
+        assertTrue(batches <= ITEMS / BATCH_SIZE * 2, "Too many batches: " + batches);
+    }
+
+    private void queue(int firstId, String packageId, int count) {
+        ZonedDateTime scheduledDate = ZonedDateTime.now().minusMinutes(1);
+        for (long id = firstId; id < firstId + count; id++) {
+            PublishRequest item = new PublishRequest();
+            item.setId(id);
+            item.setSite(SITE);
+            item.setEnvironment(ENVIRONMENT);
+            item.setPath("/site/website/page" + id + "/index.xml");
+            item.setState(READY_FOR_LIVE);
+            item.setScheduledDate(scheduledDate);
+            item.setPackageId(packageId);
+            table.put(id, item);
+        }
+    }
+
+    private List<PublishRequest> select(Map<String, Object> params) {
+        selects.incrementAndGet();
+        return table.values().stream()
+                .filter(item -> item.getState().equals(params.get("state")))
+                .filter(item -> item.getEnvironment().equals(params.get("environment")))
+                .sorted(Comparator.comparing(PublishRequest::getScheduledDate)
+                        .thenComparing(PublishRequest::getPackageId)
+                        .thenComparing(PublishRequest::getId))
+                .limit((Integer) params.get("limit"))
+                .map(this::copy)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object update(Map<String, Object> params) {
+        updates.incrementAndGet();
+        for (Long id : (List<Long>) params.get("ids")) {
+            table.get(id).setState((String) params.get("state"));
+        }
+        return null;
+    }
+
+    private PublishRequest copy(PublishRequest item) {
+        PublishRequest copy = new PublishRequest();
+        copy.setId(item.getId());
+        copy.setSite(item.getSite());
+        copy.setEnvironment(item.getEnvironment());
+        copy.setPath(item.getPath());
+        copy.setState(item.getState());
+        copy.setScheduledDate(item.getScheduledDate());
+        copy.setPackageId(item.getPackageId());
+        return copy;
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.security;
+
+import com.google.common.cache.CacheBuilder;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.studio.api.v1.constant.StudioConstants;
+import org.craftercms.studio.api.v1.constant.StudioXmlConstants;
+import org.craftercms.studio.api.v1.service.content.ContentTypeService;
+import org.craftercms.studio.api.v1.to.ContentTypeConfigTO;
+import org.craftercms.studio.api.v1.to.PermissionsConfigTO;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.service.config.ConfigurationService;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Node;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.MODULE_STUDIO;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_CONFIG_BASE_PATH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_PERMISSION_MAPPINGS_FILE_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_GLOBAL_ROLE_MAPPINGS_FILE_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_PERMISSION_MAPPINGS_FILE_NAME;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONFIGURATION_SITE_ROLE_MAPPINGS_FILE_NAME;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares the compiled permissions with the original evaluation of the XML rules
+ */
+public class SecurityServiceImplTest {
+
+    public static final String SITE = "site";
+
+    public static final String USER = "author";
+
+    public static final String ROLE_MAPPINGS = "role-mappings-config.xml";
+
+    public static final String PERMISSION_MAPPINGS = "permission-mappings-config.xml";
+
+    public static final String GLOBAL_PATH = "/global";
+
+    public static final String[] ROLES = { "admin", "developer", "author", "reviewer", "publisher", "translator" };
+
+    public static final String[] PERMISSIONS = { "Read", "Write", "Delete", "Create Folder", "Create Content",
+            "Change Content Type", "Publish", "Cancel Publish", "Get Publishing Queue", "Edit Controller" };
+
+    public static final String[] FOLDERS = { "/site/website", "/site/components", "/static-assets/images",
+            "/static-assets/js", "/templates/web", "/scripts/rest", "/config/studio" };
+
+    public static final int RULES_PER_ROLE = 15;
+
+    public static final int CHECKS = 50000;
+
+    private final AtomicInteger groupLookups = new AtomicInteger();
+
+    private SecurityServiceImpl securityService;
+
+    private Document sitePermissions;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        sitePermissions = DocumentHelper.parseText(getPermissionsXml(random, ROLES.length - 1));
+        Document globalPermissions = DocumentHelper.parseText(getPermissionsXml(random, 2));
+        Document roleMappings = DocumentHelper.parseText(
+                "<role-mappings><groups>" +
+                "<group name=\"authors\"><role>author</role><role>translator</role></group>" +
+                "<group name=\"reviewers\"><role>reviewer</role><role>publisher</role></group>" +
+                "<group name=\"site_admin\"><role>admin</role></group>" +
+                "</groups></role-mappings>");
+
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_ROLE_MAPPINGS_FILE_NAME)).thenReturn(ROLE_MAPPINGS);
+        when(studioConfiguration.getProperty(CONFIGURATION_SITE_PERMISSION_MAPPINGS_FILE_NAME))
+                .thenReturn(PERMISSION_MAPPINGS);
+        when(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_CONFIG_BASE_PATH)).thenReturn(GLOBAL_PATH);
+        when(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_ROLE_MAPPINGS_FILE_NAME)).thenReturn(ROLE_MAPPINGS);
+        when(studioConfiguration.getProperty(CONFIGURATION_GLOBAL_PERMISSION_MAPPINGS_FILE_NAME))
+                .thenReturn(PERMISSION_MAPPINGS);
+
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getCacheKey(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> Arrays.toString(invocation.getArguments()));
+        when(configurationService.getConfigurationAsDocument(SITE, MODULE_STUDIO, ROLE_MAPPINGS, null))
+                .thenReturn(roleMappings);
+        when(configurationService.getConfigurationAsDocument(SITE, MODULE_STUDIO, PERMISSION_MAPPINGS, null))
+                .thenReturn(sitePermissions);
+        when(configurationService.getGlobalConfigurationAsDocument(GLOBAL_PATH + "/" + ROLE_MAPPINGS))
+                .thenReturn(roleMappings);
+        when(configurationService.getGlobalConfigurationAsDocument(GLOBAL_PATH + "/" + PERMISSION_MAPPINGS))
+                .thenReturn(globalPermissions);
+
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserGroups(-1, USER)).thenAnswer(invocation -> {
+            groupLookups.incrementAndGet();
+            return Arrays.asList(getGroup("authors"), getGroup("reviewers"));
+        });
+
+        ContentTypeService contentTypeService = mock(ContentTypeService.class);
+        when(contentTypeService.isUserAllowed(any(), any(ContentTypeConfigTO.class))).thenReturn(true);
+
+        securityService = new SecurityServiceImpl();
+        securityService.setStudioConfiguration(studioConfiguration);
+        securityService.setConfigurationService(configurationService);
+        securityService.setUserServiceInternal(userServiceInternal);
+        securityService.setContentTypeService(contentTypeService);
+        securityService.setCache(CacheBuilder.newBuilder().build());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        RequestContext.clear();
+    }
+
+    @Test
+    public void compiledMatchesOriginalTest() {
+        Random random = new Random(7);
+        PermissionsConfigTO config = securityService.loadConfiguration(SITE, PERMISSION_MAPPINGS);
+        for (int i = 0; i < CHECKS; i++) {
+            String path = getPath(random);
+            Set<String> roles = getRoles(random);
+            assertEquals(securityService.populateUserPermissions(SITE, path, roles, config),
+                         populateUserPermissionsOriginal(SITE, path, roles, config),
+                         "Wrong permissions for " + path + " and roles " + roles);
+        }
+        // Sites without rules and users without roles only get read
+        assertEquals(securityService.populateUserPermissions("other", "/site/website/index.xml",
+                                                             new HashSet<>(Arrays.asList(ROLES)), config),
+                     populateUserPermissionsOriginal("other", "/site/website/index.xml",
+                                                     new HashSet<>(Arrays.asList(ROLES)), config));
+        assertEquals(securityService.populateUserPermissions(SITE, "/site/website/index.xml", new HashSet<>(), config),
+                     new HashSet<>(Arrays.asList(StudioConstants.PERMISSION_VALUE_READ)));
+    }
+
+    @Test
+    public void requestMemoTest() {
+        Set<String> expected = securityService.getUserPermissions(SITE, "/site/website/index.xml", USER, null);
+        assertEquals(groupLookups.getAndSet(0), 2);
+
+        RequestContext.setCurrent(new RequestContext(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                                                     new MockServletContext()));
+        for (int i = 0; i < 100; i++) {
+            Set<String> permissions =
+                    securityService.getUserPermissions(SITE, "/site/website/index.xml", USER, null);
+            assertEquals(permissions, expected);
+            // Callers can change the returned set without affecting the next checks
+            permissions.clear();
+        }
+        assertEquals(groupLookups.getAndSet(0), 2);
+
+        securityService.getUserPermissions(SITE, "/site/components/header.xml", USER, null);
+        assertEquals(groupLookups.get(), 2);
+    }
+
+    /**
+     * Evaluation used before the rules were compiled, walks the XML nodes and compiles the regex on every check
+     */
+    protected Set<String> populateUserPermissionsOriginal(String site, String path, Set<String> roles,
+                                                          PermissionsConfigTO permissionsConfig) {
+        Set<String> permissions = new HashSet<String>();
+        if (roles != null && !roles.isEmpty()) {
+            for (String role : roles) {
+                Map<String, Map<String, List<Node>>> permissionsMap = permissionsConfig.getPermissions();
+                Map<String, List<Node>> siteRoles = permissionsMap.get(site);
+                if (siteRoles == null || siteRoles.isEmpty()) {
+                    siteRoles = permissionsMap.get("*");
+                }
+                if (siteRoles != null && !siteRoles.isEmpty()) {
+                    List<Node> ruleNodes = siteRoles.get(role);
+                    if (ruleNodes == null || ruleNodes.isEmpty()) {
+                        ruleNodes = siteRoles.get("*");
+                    }
+                    if (ruleNodes != null && !ruleNodes.isEmpty()) {
+                        for (Node ruleNode : ruleNodes) {
+                            String regex = ruleNode.valueOf(StudioXmlConstants.DOCUMENT_ATTR_REGEX);
+                            if (path.matches(regex)) {
+                                List<Node> permissionNodes = ruleNode.selectNodes(
+                                        StudioXmlConstants.DOCUMENT_ELM_ALLOWED_PERMISSIONS);
+                                for (Node permissionNode : permissionNodes) {
+                                    permissions.add(permissionNode.getText().toLowerCase());
+                                }
+                            }
+                        }
+                    } else {
+                        permissions.add(StudioConstants.PERMISSION_VALUE_READ);
+                    }
+                } else {
+                    permissions.add(StudioConstants.PERMISSION_VALUE_READ);
+                }
+            }
+        } else {
+            permissions.add(StudioConstants.PERMISSION_VALUE_READ);
+        }
+        return permissions;
+    }
+
+    /**
+     * Generates rules for the given number of roles plus the default role, using the same kind of regex found in
+     * the blueprints
+     */
+    private String getPermissionsXml(Random random, int roles) {
+        StringBuilder xml = new StringBuilder("<permissions><version>4</version>");
+        for (int i = 0; i <= roles; i++) {
+            xml.append("<role name=\"").append(i < roles? ROLES[i] : "*").append("\">");
+            xml.append("<rule regex=\"/\"><allowed-permissions><permission>Read</permission>")
+                    .append("</allowed-permissions></rule>");
+            for (int j = 0; j < RULES_PER_ROLE; j++) {
+                String folder = FOLDERS[random.nextInt(FOLDERS.length)];
+                String regex;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        regex = folder + "/.*";
+                        break;
+                    case 1:
+                        regex = "^" + folder + "/(?:[^/]+/)*[^/]+\\.(xml|ftl|groovy)$";
+                        break;
+                    default:
+                        regex = folder + "|" + folder + "/.*\\.xml";
+                }
+                xml.append("<rule regex=\"").append(regex).append("\"><allowed-permissions>");
+                for (int k = random.nextInt(PERMISSIONS.length); k < PERMISSIONS.length; k++) {
+                    xml.append("<permission>").append(PERMISSIONS[k]).append("</permission>");
+                }
+                xml.append("</allowed-permissions></rule>");
+            }
+            xml.append("</role>");
+        }
+        return xml.append("</permissions>").toString();
+    }
+
+    private String getPath(Random random) {
+        String folder = FOLDERS[random.nextInt(FOLDERS.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                return folder;
+            case 1:
+                return folder + "/item" + random.nextInt(100) + ".xml";
+            case 2:
+                return folder + "/nested/item" + random.nextInt(100) + ".ftl";
+            default:
+                return folder + "/item" + random.nextInt(100) + "/index.xml";
+        }
+    }
+
+    private Set<String> getRoles(Random random) {
+        Set<String> roles = new HashSet<>();
+        int count = random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            roles.add(random.nextInt(10) == 0? "unknown" : ROLES[random.nextInt(ROLES.length)]);
+        }
+        return roles;
+    }
+
+    private Group getGroup(String name) {
+        Group group = new Group();
+        group.setGroupName(name);
+        return group;
+    }
+
+}
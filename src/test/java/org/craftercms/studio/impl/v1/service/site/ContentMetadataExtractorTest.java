@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v1.service.site;
+
+import org.craftercms.studio.api.v1.service.content.ContentService;
+import org.craftercms.studio.api.v2.repository.ContentRepository;
+import org.craftercms.studio.api.v2.repository.ContentSnapshot;
+import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.impl.v1.service.site.ContentMetadataExtractor.ContentMetadata;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ContentMetadataExtractorTest {
+
+    public static final String SITE = "test";
+
+    public static final String PAGE = "/site/website/index.xml";
+
+    public static final String COMPONENT = "/site/components/header.xml";
+
+    public static final String IMAGE = "/static-assets/images/logo.png";
+
+    private final Map<String, byte[]> files = new HashMap<>();
+
+    private ContentMetadataExtractor extractor;
+
+    @BeforeMethod
+    public void setUp() {
+        ContentSnapshot snapshot = new ContentSnapshot() {
+
+            @Override
+            public boolean contentExists(String path) {
+                return files.containsKey(path);
+            }
+
+            @Override
+            public long getContentSize(String path) {
+                return files.containsKey(path) ? files.get(path).length : -1;
+            }
+
+            @Override
+            public InputStream getContent(String path) {
+                return files.containsKey(path) ? new ByteArrayInputStream(files.get(path)) : null;
+            }
+
+        };
+        ContentRepository contentRepository = mock(ContentRepository.class);
+        when(contentRepository.getContentSnapshot(eq(SITE), anyCollectionOf(String.class))).thenReturn(snapshot);
+        ContentService contentService = mock(ContentService.class);
+        when(contentService.getContentTypeClass(eq(SITE), anyString())).thenReturn("page");
+        ItemServiceInternal itemServiceInternal = mock(ItemServiceInternal.class);
+        when(itemServiceInternal.getBrowserUrl(SITE, PAGE)).thenReturn("/");
+
+        extractor = new ContentMetadataExtractor();
+        extractor.setContentRepository(contentRepository);
+        extractor.setContentService(contentService);
+        extractor.setItemServiceInternal(itemServiceInternal);
+        extractor.setParallelism(2);
+        extractor.init();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        extractor.shutdown();
+    }
+
+    @Test
+    public void extractFieldsTest() {
+        // Only the direct children of the root element are used
+        write(PAGE, "<page><sections><item><internal-name>Nested</internal-name></item></sections>" +
+                "<content-type>/page/home</content-type><internal-name>Home <![CDATA[Page]]></internal-name>" +
+                "<disabled>true</disabled><title>Welcome</title></page>");
+
+        ContentMetadata metadata = extractor.extract(SITE, PAGE);
+
+        assertEquals(metadata.getPath(), PAGE);
+        assertEquals(metadata.getLabel(), "Home Page");
+        assertEquals(metadata.getContentTypeId(), "/page/home");
+        assertTrue(metadata.isDisabled());
+        assertEquals(metadata.getPreviewUrl(), "/");
+        assertEquals(metadata.getSystemType(), "page");
+        assertEquals(metadata.getSize(), files.get(PAGE).length);
+    }
+
+    @Test
+    public void missingFieldsTest() {
+        write(COMPONENT, "<component><content-type>/component/header</content-type></component>");
+        write(IMAGE, "png");
+
+        ContentMetadata component = extractor.extract(SITE, COMPONENT);
+        assertEquals(component.getLabel(), "header.xml");
+        assertEquals(component.getContentTypeId(), "/component/header");
+        assertFalse(component.isDisabled());
+        assertNull(component.getPreviewUrl());
+
+        // Files that are not xml are not parsed
+        ContentMetadata image = extractor.extract(SITE, IMAGE);
+        assertEquals(image.getLabel(), "logo.png");
+        assertEquals(image.getContentTypeId(), "");
+        assertEquals(image.getSize(), 3);
+
+        ContentMetadata missing = extractor.extract(SITE, "/site/website/missing.xml");
+        assertEquals(missing.getLabel(), "missing.xml");
+        assertEquals(missing.getSize(), -1);
+    }
+
+    @Test
+    public void malformedXmlTest() {
+        write(PAGE, "<page><content-type>/page/home</content-type><internal-name>Home");
+        write(COMPONENT, "not xml");
+
+        ContentMetadata page = extractor.extract(SITE, PAGE);
+        assertEquals(page.getLabel(), "index.xml");
+        assertEquals(page.getContentTypeId(), "");
+        assertFalse(page.isDisabled());
+        // The rest of the metadata is still extracted
+        assertEquals(page.getPreviewUrl(), "/");
+        assertEquals(page.getSystemType(), "page");
+        assertEquals(page.getSize(), files.get(PAGE).length);
+
+        ContentMetadata component = extractor.extract(SITE, COMPONENT);
+        assertEquals(component.getLabel(), "header.xml");
+        assertEquals(component.getContentTypeId(), "");
+    }
+
+    @Test
+    public void batchTest() {
+        write(PAGE, "<page><internal-name>Home</internal-name></page>");
+        write(COMPONENT, "<component><internal-name>Header</internal-name></component>");
+        write(IMAGE, "png");
+
+        Map<String, ContentMetadata> metadata = extractor.extract(SITE, Arrays.asList(IMAGE, PAGE, COMPONENT, PAGE));
+
+        assertEquals(new ArrayList<>(metadata.keySet()), Arrays.asList(IMAGE, PAGE, COMPONENT));
+        assertEquals(metadata.get(PAGE).getLabel(), "Home");
+        assertEquals(metadata.get(COMPONENT).getLabel(), "Header");
+        assertEquals(metadata.get(IMAGE).getLabel(), "logo.png");
+        assertTrue(extractor.extract(SITE, new ArrayList<>()).isEmpty());
+    }
+
+    private void write(String path, String content) {
+        files.put(path, content.getBytes(UTF_8));
+    }
+
+}
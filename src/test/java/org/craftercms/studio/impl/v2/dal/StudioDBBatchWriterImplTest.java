@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.dal;
+
+import org.craftercms.studio.api.v2.dal.Item;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.DEPENDENCY_DELETE;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.DEPENDENCY_DELETE_SOURCE;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.DEPENDENCY_INSERT;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_DELETE;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_MOVE;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_SELECT_IDS;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_UPDATE;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_UPDATE_PARENT_ID;
+import static org.craftercms.studio.impl.v2.dal.StudioDBBatchWriterImpl.ITEM_UPSERT;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.fail;
+
+/**
+ * Checks the statements sent by the batch writer against a mocked connection
+ */
+public class StudioDBBatchWriterImplTest {
+
+    public static final long SITE_ID = 1;
+
+    public static final String SITE = "test";
+
+    public static final int BATCH_SIZE = 2;
+
+    private Connection connection;
+
+    private Map<String, PreparedStatement> statements;
+
+    private StudioDBBatchWriterImpl batchWriter;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        statements = new HashMap<>();
+        connection = mock(Connection.class);
+        // One statement per SQL, so all the batches of the same kind can be verified together
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation ->
+                statements.computeIfAbsent((String) invocation.getArguments()[0], sql -> mock(PreparedStatement.class)));
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        batchWriter = new StudioDBBatchWriterImpl(dataSource, BATCH_SIZE, SITE_ID, SITE);
+        batchWriter.openConnection();
+    }
+
+    @Test
+    public void itemBatchTest() throws Exception {
+        batchWriter.upsertItem(item("/site/website/index.xml"));
+        batchWriter.upsertItem(item("/site/website/about/index.xml"));
+        batchWriter.upsertItem(item("/site/website/contact/index.xml"));
+        batchWriter.updateItem("/site/website/index.xml", null, 1, 2, 3L, ZonedDateTime.now(), "Home",
+                "/page/home", "page", "application/xml", 100, "commit");
+        batchWriter.deleteItem("/site/website/old/index.xml");
+        batchWriter.upsertItem(item("/site/website/new/index.xml"));
+        batchWriter.commit();
+
+        PreparedStatement upsert = statements.get(ITEM_UPSERT);
+        PreparedStatement update = statements.get(ITEM_UPDATE);
+        PreparedStatement delete = statements.get(ITEM_DELETE);
+        // Statements are prepared once and reused when the kind of operation changes
+        verify(connection, times(1)).prepareStatement(ITEM_UPSERT);
+        verify(upsert, times(4)).addBatch();
+        verify(update).setString(14, "/site/website/index.xml");
+        verify(delete).setString(2, "/site/website/old/index.xml");
+        // Batches are flushed when full and every time the kind of operation changes, in the original order
+        InOrder order = inOrder(upsert, update, delete, connection);
+        order.verify(upsert).executeBatch();
+        order.verify(upsert).executeBatch();
+        order.verify(update).executeBatch();
+        order.verify(delete).executeBatch();
+        order.verify(upsert).executeBatch();
+        order.verify(connection).commit();
+    }
+
+    @Test
+    public void moveTest() throws Exception {
+        batchWriter.moveItem("/site/website/a", "/site/website/b", 1, 2);
+        batchWriter.commit();
+
+        PreparedStatement move = statements.get(ITEM_MOVE);
+        verify(move).setString(1, "/site/website/a");
+        verify(move).setString(2, "/site/website/b");
+        verify(move).setLong(5, SITE_ID);
+        verify(move).setString(7, "/site/website/a/%");
+        verify(move).executeBatch();
+    }
+
+    @Test
+    public void dependenciesTest() throws Exception {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        dependencies.put("page", Collections.singleton("/site/website/about/index.xml"));
+        dependencies.put("asset", Collections.singleton("/static-assets/images/logo.png"));
+        batchWriter.replaceDependencies("/site/website/old.xml", "/site/website/index.xml", dependencies);
+        batchWriter.deleteDependencies("/site/website/contact/index.xml");
+        batchWriter.commit();
+
+        PreparedStatement deleteSource = statements.get(DEPENDENCY_DELETE_SOURCE);
+        PreparedStatement insert = statements.get(DEPENDENCY_INSERT);
+        PreparedStatement delete = statements.get(DEPENDENCY_DELETE);
+        // Old rows are deleted using the previous path and inserted with the new one
+        verify(deleteSource).setString(2, "/site/website/old.xml");
+        verify(insert, times(2)).setString(2, "/site/website/index.xml");
+        verify(insert, times(2)).addBatch();
+        verify(delete).setString(2, "/site/website/contact/index.xml");
+        verify(delete).setString(3, "/site/website/contact/index.xml");
+        // Replacements are written before the delete that follows them
+        InOrder order = inOrder(deleteSource, insert, delete, connection);
+        order.verify(deleteSource).executeBatch();
+        order.verify(insert).executeBatch();
+        order.verify(delete).executeBatch();
+        order.verify(connection).commit();
+    }
+
+    @Test
+    public void parentIdTest() throws Exception {
+        ResultSet ids = resultSet(new Object[][] {
+                { 1L, "/site/website/index.xml" },
+                { 2L, "/site/website/about" },
+                { 3L, "/site/website/about/index.xml" },
+                { 4L, "/site/website/about/team.xml" }
+        });
+        ResultSet noIds = resultSet(new Object[0][]);
+        // The ids are looked up in chunks of the batch size, the last one is smaller
+        PreparedStatement selectIds = mock(PreparedStatement.class);
+        when(selectIds.executeQuery()).thenReturn(ids, noIds);
+        statements.put(String.format(ITEM_SELECT_IDS, "?, ?"), selectIds);
+        PreparedStatement selectLastIds = mock(PreparedStatement.class);
+        when(selectLastIds.executeQuery()).thenReturn(noIds);
+        statements.put(String.format(ITEM_SELECT_IDS, "?"), selectLastIds);
+
+        batchWriter.updateParentId("/site/website/about/index.xml");
+        batchWriter.updateParentId("/site/website/about/team.xml");
+        batchWriter.commit();
+
+        PreparedStatement update = statements.get(ITEM_UPDATE_PARENT_ID);
+        // The page of a folder is the parent of everything in it, including its subfolders
+        verify(update).setLong(2, 2L);
+        verify(update).setLong(2, 3L);
+        verify(update, times(2)).setLong(1, 1L);
+        verify(update).setLong(2, 4L);
+        verify(update).setLong(1, 3L);
+        // Ancestors that are not in the database are skipped
+        verify(update, times(3)).addBatch();
+        verify(update, times(2)).executeBatch();
+    }
+
+    @Test
+    public void rollbackTest() throws Exception {
+        batchWriter.upsertItem(item("/site/website/index.xml"));
+        when(statements.get(ITEM_UPSERT).executeBatch()).thenThrow(new SQLException("Duplicated entry"));
+
+        try {
+            batchWriter.commit();
+            fail("Commit should fail when a batch fails");
+        } catch (SQLException e) {
+            batchWriter.closeConnection();
+        }
+
+        verify(connection, never()).commit();
+        verify(connection).rollback();
+        verify(connection).close();
+    }
+
+    private Item item(String path) {
+        Item item = new Item();
+        item.setPath(path);
+        item.setLabel(path);
+        item.setSystemType("page");
+        item.setLocaleCode("en");
+        item.setCreatedOn(ZonedDateTime.now());
+        item.setLastModifiedOn(ZonedDateTime.now());
+        return item;
+    }
+
+    private ResultSet resultSet(Object[][] rows) throws SQLException {
+        AtomicInteger row = new AtomicInteger(-1);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenAnswer(invocation -> row.incrementAndGet() < rows.length);
+        when(resultSet.getLong(anyInt())).thenAnswer(invocation -> rows[row.get()][0]);
+        when(resultSet.getString(anyInt())).thenAnswer(invocation -> rows[row.get()][1]);
+        return resultSet;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.deployment;
+
+import com.sun.net.httpserver.HttpServer;
+import org.craftercms.studio.api.v1.ebus.PreviewEventContext;
+import org.craftercms.studio.api.v1.service.event.EventService;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.model.monitoring.PreviewSyncMetrics;
+import org.mockito.Mock;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_DEFAULT_PREVIEW_DEPLOYER_URL;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.PREVIEW_SYNC_COALESCE_WINDOW;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the preview sync coalescing of {@link PreviewDeployer} against a local stub of the Deployer API
+ */
+public class PreviewDeployerTest {
+
+    public static final String SITE_ID = "mySite";
+
+    public static final String ANOTHER_SITE_ID = "anotherSite";
+
+    public static final String DEPLOY_PATH = "/api/1/target/deploy/";
+
+    public static final long COALESCE_WINDOW = 200;
+
+    public static final int EVENTS = 500;
+
+    @Mock
+    private StudioConfiguration studioConfiguration;
+
+    @Mock
+    private EventService eventService;
+
+    private HttpServer deployerStub;
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    private PreviewDeployer deployer;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        initMocks(this);
+        requests.clear();
+
+        deployerStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        deployerStub.createContext(DEPLOY_PATH, exchange -> {
+            String target = exchange.getRequestURI().getPath().substring(DEPLOY_PATH.length());
+            requests.computeIfAbsent(target, key -> new AtomicInteger()).incrementAndGet();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        deployerStub.start();
+
+        when(studioConfiguration.getProperty(PREVIEW_DEFAULT_PREVIEW_DEPLOYER_URL))
+                .thenReturn("http://localhost:" + deployerStub.getAddress().getPort() + DEPLOY_PATH +
+                            "{siteEnv}/{siteName}");
+        when(studioConfiguration.getProperty(PREVIEW_SYNC_COALESCE_WINDOW, Long.class, 0L))
+                .thenReturn(COALESCE_WINDOW);
+
+        deployer = new PreviewDeployer();
+        deployer.setStudioConfiguration(studioConfiguration);
+        deployer.setEventService(eventService);
+        deployer.setBeanName("previewDeployer");
+        deployer.setSyncPoolSize(1);
+        deployer.subscribeToPreviewSyncEvents();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        deployer.shutdown();
+        deployerStub.stop(0);
+    }
+
+    @Test
+    public void bulkEventsAreCoalescedTest() throws InterruptedException {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < EVENTS; i++) {
+            callers.submit(() -> deployer.onPreviewSync(newContext(SITE_ID, false)));
+        }
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+
+        // The last event waits for the deployment that covers it
+        deployer.onPreviewSync(newContext(SITE_ID, true));
+
+        int authoringRequests = requests.get("authoring/" + SITE_ID).get();
+        int previewRequests = requests.get("preview/" + SITE_ID).get();
+        assertEquals(authoringRequests, previewRequests);
+        assertTrue(previewRequests < 10, "Expected the events to be coalesced but got " + previewRequests +
+                                         " deployments");
+        assertEquals(deployer.getQueuedCount(), EVENTS + 1);
+        assertEquals(deployer.getDispatchedCount(), previewRequests);
+        assertEquals(deployer.getCoalescedCount(), deployer.getQueuedCount() - deployer.getDispatchedCount());
+
+        PreviewSyncMetrics metrics = deployer.getMetrics();
+        assertEquals(metrics.getQueuedEvents(), EVENTS + 1);
+        assertEquals(metrics.getDispatchedDeployments(), previewRequests);
+        assertEquals(metrics.getCoalescedEvents(), deployer.getCoalescedCount());
+        assertEquals(metrics.getPendingSites(), 0);
+    }
+
+    @Test
+    public void sitesAreNotCoalescedTogetherTest() {
+        deployer.onPreviewSync(newContext(SITE_ID, false));
+        deployer.onPreviewSync(newContext(SITE_ID, true));
+        deployer.onPreviewSync(newContext(ANOTHER_SITE_ID, true));
+
+        assertEquals(requests.get("preview/" + SITE_ID).get(), 1);
+        assertEquals(requests.get("preview/" + ANOTHER_SITE_ID).get(), 1);
+        assertEquals(deployer.getCoalescedCount(), 1);
+    }
+
+    @Test
+    public void noWindowDeploysOnEveryEventTest() {
+        when(studioConfiguration.getProperty(PREVIEW_SYNC_COALESCE_WINDOW, Long.class, 0L)).thenReturn(0L);
+
+        deployer.onPreviewSync(newContext(SITE_ID, false));
+        deployer.onPreviewSync(newContext(SITE_ID, false));
+
+        assertEquals(requests.get("authoring/" + SITE_ID).get(), 2);
+        assertEquals(requests.get("preview/" + SITE_ID).get(), 2);
+        assertEquals(deployer.getCoalescedCount(), 0);
+    }
+
+    private PreviewEventContext newContext(String site, boolean waitTillDone) {
+        PreviewEventContext context = new PreviewEventContext(waitTillDone);
+        context.setSite(site);
+        return context;
+    }
+
+}
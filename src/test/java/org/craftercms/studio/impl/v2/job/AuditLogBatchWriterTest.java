@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.job;
+
+import org.craftercms.studio.api.v2.dal.AuditLog;
+import org.craftercms.studio.api.v2.repository.ContentRepository;
+import org.craftercms.studio.api.v2.service.audit.internal.AuditServiceInternal;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+
+public class AuditLogBatchWriterTest {
+
+    public static final String SITE_ID = "mySite";
+
+    @Mock
+    private AuditServiceInternal auditServiceInternal;
+
+    @Mock
+    private ContentRepository contentRepository;
+
+    @BeforeMethod
+    public void setUp() {
+        initMocks(this);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flushBySizeTest() {
+        AuditLogBatchWriter writer = new AuditLogBatchWriter(auditServiceInternal, contentRepository, SITE_ID, 3,
+                Long.MAX_VALUE);
+        for (int i = 0; i < 7; i++) {
+            writer.add(new AuditLog());
+        }
+        writer.commitAudited("commit1");
+        verify(auditServiceInternal, times(2)).insertAuditLogs(anyListOf(AuditLog.class));
+        verify(contentRepository, never()).markGitLogAuditedBulk(anyString(), anyListOf(String.class));
+
+        writer.flush();
+        ArgumentCaptor<List> auditLogs = ArgumentCaptor.forClass(List.class);
+        verify(auditServiceInternal, times(3)).insertAuditLogs(auditLogs.capture());
+        assertEquals(auditLogs.getAllValues().get(0).size(), 3);
+        assertEquals(auditLogs.getAllValues().get(2).size(), 1);
+        verify(contentRepository).markGitLogAuditedBulk(SITE_ID, Collections.singletonList("commit1"));
+    }
+
+    @Test
+    public void flushByTimeTest() {
+        AuditLogBatchWriter writer = new AuditLogBatchWriter(auditServiceInternal, contentRepository, SITE_ID,
+                Integer.MAX_VALUE, 0);
+        writer.add(new AuditLog());
+        writer.commitAudited("commit1");
+        verify(auditServiceInternal).insertAuditLogs(anyListOf(AuditLog.class));
+        verify(contentRepository).markGitLogAuditedBulk(SITE_ID, Collections.singletonList("commit1"));
+    }
+
+    @Test
+    public void commitsAreMarkedAfterTheirEntriesTest() {
+        AuditLogBatchWriter writer = new AuditLogBatchWriter(auditServiceInternal, contentRepository, SITE_ID, 100,
+                Long.MAX_VALUE);
+        writer.add(new AuditLog());
+        writer.commitAudited("commit1");
+        writer.commitAudited("commit2");
+        writer.flush();
+        writer.flush();
+
+        InOrder order = inOrder(auditServiceInternal, contentRepository);
+        order.verify(auditServiceInternal).insertAuditLogs(anyListOf(AuditLog.class));
+        order.verify(contentRepository).markGitLogAuditedBulk(SITE_ID, Arrays.asList("commit1", "commit2"));
+        order.verifyNoMoreInteractions();
+    }
+
+}
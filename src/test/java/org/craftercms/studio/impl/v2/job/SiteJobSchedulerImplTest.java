@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.job;
+
+import org.craftercms.studio.api.v2.job.SiteJob;
+import org.craftercms.studio.model.monitoring.SchedulerMetrics;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the jobs of a large number of sites with a manual executor and clock, the test decides when each job runs and
+ * when the next cycle starts so the results don't depend on the timing of the threads
+ */
+public class SiteJobSchedulerImplTest {
+
+    public static final int SITES = 500;
+
+    public static final int WORKERS = 8;
+
+    public static final long CYCLE_DURATION = 50;
+
+    /**
+     * Jobs submitted by the scheduler and not executed yet, in order
+     */
+    private final BlockingQueue<Runnable> submitted = new LinkedBlockingQueue<>();
+
+    /**
+     * Jobs taken from the queue that are considered to be running
+     */
+    private final List<Runnable> running = new ArrayList<>();
+
+    private final List<String> executions = new ArrayList<>();
+
+    private final AtomicLong time = new AtomicLong();
+
+    private SiteJobSchedulerImpl scheduler;
+
+    @BeforeMethod
+    public void setUp() {
+        scheduler = new SiteJobSchedulerImpl() {
+
+            @Override
+            protected long getNanoTime() {
+                return time.get();
+            }
+
+        };
+        scheduler.setTaskExecutor(submitted::add);
+        scheduler.setCycleDuration(CYCLE_DURATION);
+        scheduler.setMaxRunningJobs(WORKERS);
+        scheduler.setMaxRunningJobsPerSite(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    public void fairnessTest() throws Exception {
+        CountingJob first = new CountingJob();
+        CountingJob second = new CountingJob();
+        scheduler.setSiteJobs(Arrays.asList(first, second));
+        scheduler.init();
+
+        List<String> sites = getSites();
+        scheduler.setSites(sites);
+        for (int cycle = 1; cycle <= 3; cycle++) {
+            if (cycle > 1) {
+                nextCycle();
+            }
+            executions.clear();
+            execute(SITES * 2);
+
+            // Every site runs one of its jobs before any site runs the second one
+            assertEquals(new HashSet<>(executions.subList(0, SITES)).size(), SITES);
+            for (String site : sites) {
+                assertEquals(first.getCount(site), cycle);
+                assertEquals(second.getCount(site), cycle);
+            }
+        }
+
+        SchedulerMetrics metrics = scheduler.getMetrics();
+        assertEquals(metrics.getSites(), SITES);
+        assertEquals(metrics.getExecutedJobs(), SITES * 2 * 3);
+        assertEquals(metrics.getScheduledJobs(), SITES * 2);
+        assertEquals(metrics.getReadyJobs(), 0);
+        assertEquals(metrics.getRunningJobs(), 0);
+        assertEquals(metrics.getLag().getCount(), SITES * 2 * 3);
+        assertTrue(metrics.getQueueDepthBySite().isEmpty());
+    }
+
+    @Test
+    public void queueMetricsTest() throws Exception {
+        scheduler.setSiteJobs(Arrays.asList(new CountingJob(), new CountingJob()));
+        scheduler.init();
+        scheduler.setSites(getSites());
+        take(WORKERS);
+
+        SchedulerMetrics metrics = scheduler.getMetrics();
+        assertEquals(metrics.getRunningJobs(), WORKERS);
+        assertEquals(metrics.getReadyJobs(), SITES * 2 - WORKERS);
+        assertEquals(metrics.getScheduledJobs(), 0);
+        // The sites with running jobs can't start another one
+        assertEquals(metrics.getWaitingSites(), SITES - WORKERS);
+        assertEquals(metrics.getQueueDepthBySite().size(), SiteJobSchedulerImpl.MAX_REPORTED_SITES);
+        assertTrue(submitted.isEmpty(), "Too many running jobs");
+    }
+
+    @Test
+    public void wakeUpTest() throws Exception {
+        // The interval is much longer than the test so any execution after the first one comes from a wake up
+        SlowClockTask task = new SlowClockTask();
+        task.setExecuteEveryNCycles(10000);
+        scheduler.setSiteJobs(singletonList(task));
+        scheduler.init();
+
+        scheduler.setSites(singletonList("site"));
+        execute(1);
+        assertEquals(task.count.get(), 1);
+
+        scheduler.wakeUp("site", CountingJob.class);
+        assertEquals(scheduler.getMetrics().getReadyJobs() + scheduler.getMetrics().getRunningJobs(), 0,
+                "Only jobs of the given type should be woken up");
+
+        scheduler.wakeUp("site", SlowClockTask.class);
+        execute(1);
+        assertEquals(task.count.get(), 2);
+
+        // A job woken up while it is running runs again right after it finishes
+        scheduler.wakeUp("site", SlowClockTask.class);
+        take(1);
+        scheduler.wakeUp("site", SlowClockTask.class);
+        finish();
+        assertEquals(task.count.get(), 3);
+        execute(1);
+        assertEquals(task.count.get(), 4);
+
+        scheduler.wakeUp("unknown", SlowClockTask.class);
+        assertEquals(scheduler.getMetrics().getReadyJobs() + scheduler.getMetrics().getRunningJobs(), 0);
+        assertEquals(scheduler.getMetrics().getScheduledJobs(), 1);
+    }
+
+    @Test
+    public void removeSiteTest() throws Exception {
+        CountingJob job = new CountingJob();
+        scheduler.setSiteJobs(singletonList(job));
+        scheduler.init();
+
+        scheduler.setSites(Arrays.asList("site1", "site2"));
+        execute(2);
+
+        // The site is removed while its job is running
+        nextCycle();
+        take(2);
+        scheduler.setSites(singletonList("site1"));
+        finish();
+        assertEquals(job.getCount("site1"), 2);
+        assertEquals(job.getCount("site2"), 2);
+
+        nextCycle();
+        execute(1);
+        assertEquals(job.getCount("site1"), 3);
+        assertEquals(job.getCount("site2"), 2);
+
+        SchedulerMetrics metrics = scheduler.getMetrics();
+        assertEquals(metrics.getSites(), 1);
+        assertEquals(metrics.getScheduledJobs(), 1);
+        assertEquals(metrics.getReadyJobs() + metrics.getRunningJobs(), 0);
+        assertFalse(metrics.getQueueDepthBySite().containsKey("site2"));
+    }
+
+    private List<String> getSites() {
+        List<String> sites = new ArrayList<>();
+        for (int i = 0; i < SITES; i++) {
+            sites.add("site" + i);
+        }
+        return sites;
+    }
+
+    /**
+     * Moves the clock to the next cycle, making due all the jobs that finished in the current one
+     */
+    private void nextCycle() {
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(CYCLE_DURATION));
+        scheduler.lock.lock();
+        try {
+            scheduler.changed.signal();
+        } finally {
+            scheduler.lock.unlock();
+        }
+    }
+
+    /**
+     * Executes the given number of jobs keeping as many of them running as the scheduler allows, checking that the
+     * limits are never exceeded
+     */
+    private void execute(int jobs) throws Exception {
+        int executed = 0;
+        while (executed < jobs) {
+            take(Math.min(WORKERS, jobs - executed) - running.size());
+            assertRunningJobs();
+            running.remove(0).run();
+            executed++;
+        }
+    }
+
+    /**
+     * Waits for the scheduler to start the given number of jobs, without running them
+     */
+    private void take(int jobs) throws Exception {
+        for (int i = 0; i < jobs; i++) {
+            Runnable job = submitted.poll(5, TimeUnit.SECONDS);
+            assertNotNull(job, "Timeout waiting for the scheduler");
+            running.add(job);
+        }
+    }
+
+    /**
+     * Runs all the jobs taken from the queue
+     */
+    private void finish() {
+        while (!running.isEmpty()) {
+            running.remove(0).run();
+        }
+    }
+
+    private void assertRunningJobs() {
+        scheduler.lock.lock();
+        try {
+            assertTrue(scheduler.runningJobs <= WORKERS, "Too many running jobs: " + scheduler.runningJobs);
+            for (SiteJobSchedulerImpl.SiteQueue queue : scheduler.sites.values()) {
+                assertTrue(queue.running <= 1, "Too many running jobs for site " + queue.site);
+            }
+        } finally {
+            scheduler.lock.unlock();
+        }
+    }
+
+    private class CountingJob implements SiteJob {
+
+        private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+        @Override
+        public void execute(String site) {
+            executions.add(site);
+            counts.computeIfAbsent(site, key -> new AtomicLong()).incrementAndGet();
+        }
+
+        private long getCount(String site) {
+            AtomicLong count = counts.get(site);
+            return count != null? count.get() : 0;
+        }
+
+    }
+
+    private static class SlowClockTask extends StudioClockTask {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        protected void executeInternal(String site) {
+            count.incrementAndGet();
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v1.service.site.SiteService;
+import org.craftercms.studio.api.v1.to.DeploymentItemTO;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.item.internal.ItemServiceInternal;
+import org.craftercms.studio.api.v2.service.publish.internal.PublishingProgressServiceInternal;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_PUBLISHED_COMMIT_MESSAGE;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_PUBLISHED_INDEX_DIRECT_ENABLED;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.REPO_SANDBOX_BRANCH;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Publishes the same adds, moves and deletes with the checkout based publishing and with the index-direct
+ * publishing, and checks that both produce the same tree
+ */
+public class GitContentRepositoryPublishTest {
+
+    public static final String SITE = "test";
+
+    public static final String LIVE = "live";
+
+    public static final String AUTHOR = "jane";
+
+    private File dir;
+
+    private Git sandbox;
+
+    private StudioConfiguration studioConfiguration;
+
+    private GitRepositoryHelper helper;
+
+    private GitContentRepository contentRepository;
+
+    private File published;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("publish").toFile();
+        sandbox = Git.init().setDirectory(new File(dir, "sandbox")).call();
+        write("/site/website/index.xml", "<page/>");
+        commit("Initial commit.");
+        if (!MASTER.equals(sandbox.getRepository().getBranch())) {
+            sandbox.branchRename().setNewName(MASTER).call();
+        }
+
+        studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(REPO_SANDBOX_BRANCH)).thenReturn(MASTER);
+        when(studioConfiguration.getProperty(REPO_PUBLISHED_COMMIT_MESSAGE)).thenReturn("Publish {message}");
+
+        helper = spy(new GitRepositoryHelper());
+        helper.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+        doReturn("Initial commit.").when(helper).getCommitMessage(anyString());
+        // A new instance every time, the repository closes the ones it gets for lookups
+        doAnswer(invocation -> new FileRepositoryBuilder().setGitDir(new File(published, ".git")).build())
+                .when(helper).getRepository(SITE, PUBLISHED);
+
+        User user = new User();
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setEmail("jane@example.com");
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserByIdOrUsername(-1, AUTHOR)).thenReturn(user);
+
+        contentRepository = new GitContentRepository();
+        contentRepository.setHelper(helper);
+        contentRepository.setStudioConfiguration(studioConfiguration);
+        contentRepository.setUserServiceInternal(userServiceInternal);
+        contentRepository.setGeneralLockService(mock(GeneralLockService.class));
+        contentRepository.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+        contentRepository.setItemServiceInternal(mock(ItemServiceInternal.class));
+        contentRepository.setPublishingProgressServiceInternal(mock(PublishingProgressServiceInternal.class));
+        contentRepository.setSiteService(mock(SiteService.class));
+        contentRepository.setPublishingHistoryIndex(mock(GitPublishingHistoryIndex.class));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        sandbox.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void indexDirectMatchesCheckoutTest() throws Exception {
+        write("/site/website/articles/2021/index.xml", "<page>2021</page>");
+        write("/site/website/articles/2022/index.xml", "<page>2022</page>");
+        write("/static-assets/images/a.jpg", "a");
+        write("/static-assets/images/b.jpg", "b");
+        write("/static-assets/docs/guide.pdf", "guide");
+        write("/static-assets/docs/manual/intro.pdf", "intro");
+        String first = commit("Add content");
+        List<DeploymentItemTO> firstItems = new ArrayList<>();
+        for (String path : getFiles(sandbox.getRepository(), "HEAD")) {
+            firstItems.add(item("/" + path, first));
+        }
+
+        write("/site/website/index.xml", "<page><title>Home</title></page>");
+        write("/site/website/articles/2023/index.xml", "<page>2023</page>");
+        sandbox.rm().addFilepattern("site/website/articles/2021/index.xml").call();
+        sandbox.rm().addFilepattern("static-assets/docs").call();
+        write("/static-assets/photos/a.jpg", "a");
+        sandbox.rm().addFilepattern("static-assets/images/a.jpg").call();
+        String second = commit("Change content");
+        List<DeploymentItemTO> secondItems = new ArrayList<>();
+        secondItems.add(item("/site/website/index.xml", second));
+        secondItems.add(item("/site/website/articles/2023/index.xml", second));
+        DeploymentItemTO deletedPage = item("/site/website/articles/2021/index.xml", second);
+        deletedPage.setDelete(true);
+        secondItems.add(deletedPage);
+        // Deleting a folder removes everything under it
+        DeploymentItemTO deletedFolder = item("/static-assets/docs", second);
+        deletedFolder.setDelete(true);
+        secondItems.add(deletedFolder);
+        DeploymentItemTO moved = item("/static-assets/photos/a.jpg", second);
+        moved.setMove(true);
+        moved.setOldPath("/static-assets/images/a.jpg");
+        secondItems.add(moved);
+
+        ObjectId checkoutTree = publish("checkout", false, firstItems, secondItems);
+        ObjectId indexDirectTree = publish("index-direct", true, firstItems, secondItems);
+
+        assertEquals(indexDirectTree, checkoutTree);
+        assertEquals(checkoutTree, sandbox.getRepository().parseCommit(sandbox.getRepository().resolve(second))
+                .getTree().getId());
+    }
+
+    /**
+     * Creates a new published repository, publishes the first items with the checkout based publishing to create
+     * the environment branch and then the second items with the given mode
+     * @return the tree of the environment branch
+     */
+    private ObjectId publish(String name, boolean indexDirect, List<DeploymentItemTO> firstItems,
+                             List<DeploymentItemTO> secondItems) throws Exception {
+        published = new File(dir, name);
+        Git.cloneRepository().setURI(sandbox.getRepository().getDirectory().toURI().toString())
+                .setDirectory(published).call().close();
+
+        when(studioConfiguration.getProperty(REPO_PUBLISHED_INDEX_DIRECT_ENABLED)).thenReturn("false");
+        contentRepository.publish(SITE, MASTER, firstItems, LIVE, AUTHOR, "first");
+        when(studioConfiguration.getProperty(REPO_PUBLISHED_INDEX_DIRECT_ENABLED))
+                .thenReturn(Boolean.toString(indexDirect));
+        contentRepository.publish(SITE, MASTER, secondItems, LIVE, AUTHOR, "second");
+
+        try (Repository repo = new FileRepositoryBuilder().setGitDir(new File(published, ".git")).build()) {
+            return repo.parseCommit(repo.resolve(LIVE)).getTree().getId();
+        }
+    }
+
+    private DeploymentItemTO item(String path, String commitId) {
+        DeploymentItemTO item = new DeploymentItemTO();
+        item.setSite(SITE);
+        item.setPath(path);
+        item.setCommitId(commitId);
+        return item;
+    }
+
+    private Set<String> getFiles(Repository repo, String revision) throws Exception {
+        Set<String> files = new HashSet<>();
+        try (TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(repo.parseCommit(repo.resolve(revision)).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                files.add(treeWalk.getPathString());
+            }
+        }
+        return files;
+    }
+
+    private void write(String path, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(dir, "sandbox" + path), content, UTF_8);
+    }
+
+    private String commit(String message) throws Exception {
+        sandbox.add().addFilepattern(".").call();
+        RevCommit commit = sandbox.commit().setMessage(message).call();
+        return commit.getName();
+    }
+
+}
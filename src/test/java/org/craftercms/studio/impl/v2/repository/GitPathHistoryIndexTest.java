@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.dal.PathCommit;
+import org.craftercms.studio.api.v2.dal.PathCommitDAO;
+import org.craftercms.studio.api.v2.dal.PathCommitMarker;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Compares the commits returned by the index with the output of {@code git log <path>} for histories with merges,
+ * deletes and resets
+ */
+public class GitPathHistoryIndexTest {
+
+    public static final String SITE = "test";
+
+    public static final String PAGE = "site/website/index.xml";
+
+    public static final String ARTICLE = "site/website/article/index.xml";
+
+    public static final String COMPONENT = "site/components/header.xml";
+
+    private File dir;
+
+    private Git git;
+
+    private RevCommit initial;
+
+    private long time = 1600000000000L;
+
+    private final List<PathCommit> table = new ArrayList<>();
+
+    private final AtomicReference<PathCommitMarker> marker = new AtomicReference<>();
+
+    private RetryingDatabaseOperationFacade retryingDatabaseOperationFacade;
+
+    private GitPathHistoryIndex index;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("path-history").toFile();
+        git = Git.init().setDirectory(dir).call();
+        initial = commit("Initial commit.", PAGE, COMPONENT);
+        if (!MASTER.equals(git.getRepository().getBranch())) {
+            git.branchRename().setNewName(MASTER).call();
+        }
+
+        GitRepositoryHelper helper = spy(new GitRepositoryHelper());
+        doReturn(git.getRepository()).when(helper).getRepository(SITE, SANDBOX);
+
+        PathCommitDAO pathCommitDao = mock(PathCommitDAO.class);
+        when(pathCommitDao.getPathCommitMarker(SITE)).thenAnswer(invocation -> marker.get());
+        when(pathCommitDao.getPathCommitIds(eq(SITE), anyString(), anyLong())).thenAnswer(invocation -> {
+            String path = (String) invocation.getArguments()[1];
+            long seq = (Long) invocation.getArguments()[2];
+            return table.stream()
+                    .filter(entry -> entry.getPath().equals(path) && entry.getSeq() <= seq)
+                    .sorted((a, b) -> Long.compare(b.getSeq(), a.getSeq()))
+                    .map(PathCommit::getCommitId)
+                    .collect(Collectors.toList());
+        });
+
+        retryingDatabaseOperationFacade = mock(RetryingDatabaseOperationFacade.class);
+        doAnswer(invocation -> table.addAll((List<PathCommit>) invocation.getArguments()[1]))
+                .when(retryingDatabaseOperationFacade).insertPathCommitList(eq(SITE), anyListOf(PathCommit.class));
+        doAnswer(invocation -> {
+            PathCommitMarker updated = new PathCommitMarker();
+            updated.setSiteId(SITE);
+            updated.setCommitId((String) invocation.getArguments()[1]);
+            updated.setSeq((Long) invocation.getArguments()[2]);
+            marker.set(updated);
+            return null;
+        }).when(retryingDatabaseOperationFacade).upsertPathCommitMarker(eq(SITE), anyString(), anyLong());
+        doAnswer(invocation -> {
+            long seq = (Long) invocation.getArguments()[1];
+            table.removeIf(entry -> entry.getSeq() > seq);
+            return null;
+        }).when(retryingDatabaseOperationFacade).deletePathCommitsAfter(eq(SITE), anyLong());
+        doAnswer(invocation -> {
+            table.clear();
+            return null;
+        }).when(retryingDatabaseOperationFacade).deletePathCommitsForSite(SITE);
+        doAnswer(invocation -> {
+            marker.set(null);
+            return null;
+        }).when(retryingDatabaseOperationFacade).deletePathCommitMarker(SITE);
+
+        GeneralLockService generalLockService = mock(GeneralLockService.class);
+        when(generalLockService.tryLock(anyString())).thenReturn(true);
+
+        index = new GitPathHistoryIndex();
+        index.setHelper(helper);
+        index.setPathCommitDao(pathCommitDao);
+        index.setRetryingDatabaseOperationFacade(retryingDatabaseOperationFacade);
+        index.setGeneralLockService(generalLockService);
+        index.setBatchSize(3);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void linearHistoryTest() throws Exception {
+        // Sites are only indexed by the background task
+        assertNull(index.getCommitIds(SITE, "/" + PAGE));
+        index.update(SITE);
+
+        commit("Update page", PAGE);
+        commit("Add article", ARTICLE);
+        commit("Update page and component", PAGE, COMPONENT);
+        delete("Delete article", ARTICLE);
+        commit("Add article again", ARTICLE);
+
+        for (String path : new String[] { PAGE, ARTICLE, COMPONENT, "site/website/missing.xml" }) {
+            assertEquals(index.getCommitIds(SITE, "/" + path), log(path), path);
+        }
+    }
+
+    @Test
+    public void mergeTest() throws Exception {
+        index.update(SITE);
+        commit("Update page", PAGE);
+
+        git.checkout().setCreateBranch(true).setName("feature").call();
+        commit("Update component in feature", COMPONENT);
+        commit("Add article in feature", ARTICLE);
+        git.checkout().setName(MASTER).call();
+        commit("Update page in master", PAGE);
+        // Merge that takes the component and the article from the feature branch
+        merge("feature", null);
+
+        git.checkout().setName("feature").call();
+        commit("Update page in feature", PAGE);
+        git.checkout().setName(MASTER).call();
+        commit("Update page again in master", PAGE);
+        // Merge that conflicts and is resolved with a new version of the page
+        merge("feature", MergeStrategy.RESOLVE);
+        commit("Resolve conflict", PAGE);
+
+        for (String path : new String[] { PAGE, ARTICLE, COMPONENT }) {
+            assertEquals(new HashSet<>(index.getCommitIds(SITE, "/" + path)), new HashSet<>(log(path)), path);
+        }
+    }
+
+    @Test
+    public void discardingMergeTest() throws Exception {
+        index.update(SITE);
+        git.checkout().setCreateBranch(true).setName("feature").call();
+        RevCommit kept = commit("Update component in feature", COMPONENT);
+        git.checkout().setName(MASTER).call();
+        RevCommit discarded = commit("Update component in master", COMPONENT);
+        // Merge that discards the changes of master, git log only follows the feature branch
+        merge("feature", MergeStrategy.THEIRS);
+
+        Set<String> expected = new HashSet<>(log(COMPONENT));
+        assertTrue(expected.contains(kept.getName()));
+        assertFalse(expected.contains(discarded.getName()));
+        // The index doesn't simplify the history, so it still includes the discarded change
+        expected.add(discarded.getName());
+        assertEquals(new HashSet<>(index.getCommitIds(SITE, "/" + COMPONENT)), expected);
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE), log(PAGE));
+    }
+
+    @Test
+    public void resetTest() throws Exception {
+        RevCommit base = commit("Update page", PAGE);
+        commit("Update page again", PAGE);
+        index.update(SITE);
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE), log(PAGE));
+
+        // HEAD is not a descendant of the last indexed commit anymore
+        git.reset().setMode(ResetCommand.ResetType.HARD).setRef(base.getName()).call();
+        commit("Another update", PAGE);
+        int entries = table.size();
+
+        // Lookups fall back to git without touching the index
+        assertNull(index.getCommitIds(SITE, "/" + PAGE));
+        assertEquals(table.size(), entries);
+        verify(retryingDatabaseOperationFacade, never()).deletePathCommitsForSite(SITE);
+
+        // The background task rebuilds it
+        index.update(SITE);
+        verify(retryingDatabaseOperationFacade).deletePathCommitsForSite(SITE);
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE), log(PAGE));
+    }
+
+    @Test
+    public void maxLookupCommitsTest() throws Exception {
+        index.setMaxLookupCommits(2);
+        index.update(SITE);
+
+        // Small updates are indexed during the lookup
+        commit("Update page", PAGE);
+        commit("Update component", COMPONENT);
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE), log(PAGE));
+        String indexed = marker.get().getCommitId();
+
+        // Bigger updates are left to the background task
+        commit("Update page again", PAGE);
+        commit("Add article", ARTICLE);
+        commit("Update page once more", PAGE);
+        assertNull(index.getCommitIds(SITE, "/" + PAGE));
+        assertEquals(marker.get().getCommitId(), indexed);
+
+        index.update(SITE);
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE), log(PAGE));
+        assertEquals(index.getCommitIds(SITE, "/" + ARTICLE), log(ARTICLE));
+    }
+
+    @Test
+    public void rangeTest() throws Exception {
+        index.update(SITE);
+        commit("Update page", PAGE);
+        RevCommit from = commit("Update component", COMPONENT);
+        commit("Update page again", PAGE);
+        RevCommit to = commit("Add article", ARTICLE);
+        RevCommit head = commit("Update page once more", PAGE);
+
+        for (String path : new String[] { PAGE, ARTICLE, COMPONENT }) {
+            // The whole history can be resolved without walking it
+            assertEquals(index.getCommitIds(SITE, "/" + path, initial.getName(), head.getName()),
+                    log(path, initial, head), path);
+            assertEquals(index.getCommitIds(SITE, "/" + path, from.getName(), to.getName()), log(path, from, to),
+                    path);
+        }
+        assertTrue(index.getCommitIds(SITE, "/" + PAGE, head.getName(), head.getName()).isEmpty());
+        // Paths that are not in the index fall back to the repository
+        assertNull(index.getCommitIds(SITE, "/site/website", initial.getName(), head.getName()));
+    }
+
+    @Test
+    public void discardingMergeRangeTest() throws Exception {
+        index.update(SITE);
+        RevCommit from = commit("Update page", PAGE);
+        git.checkout().setCreateBranch(true).setName("feature").call();
+        RevCommit kept = commit("Update component in feature", COMPONENT);
+        git.checkout().setName(MASTER).call();
+        RevCommit discarded = commit("Update component in master", COMPONENT);
+        merge("feature", MergeStrategy.THEIRS);
+        RevCommit head = commit("Update page again", PAGE);
+
+        // Same as the whole history, git log only follows the feature branch but the index includes both changes
+        List<String> expected = log(COMPONENT, from, head);
+        assertEquals(expected, List.of(kept.getName()));
+        List<String> commitIds = index.getCommitIds(SITE, "/" + COMPONENT, from.getName(), head.getName());
+        assertEquals(new HashSet<>(commitIds), Set.of(kept.getName(), discarded.getName()));
+        assertEquals(index.getCommitIds(SITE, "/" + PAGE, from.getName(), head.getName()), log(PAGE, from, head));
+    }
+
+    @Test
+    public void maxLookupRangeTest() throws Exception {
+        index.setMaxLookupCommits(2);
+        RevCommit from = commit("Update component", COMPONENT);
+        commit("Update component again", COMPONENT);
+        commit("Add article", ARTICLE);
+        RevCommit head = commit("Update article", ARTICLE);
+        index.update(SITE);
+
+        // The initial version of the page is never found in the range, so the walk stops at the limit
+        assertNull(index.getCommitIds(SITE, "/" + PAGE, from.getName(), head.getName()));
+        // The walk stops as soon as all the changes of the article are found
+        assertEquals(index.getCommitIds(SITE, "/" + ARTICLE, from.getName(), head.getName()),
+                log(ARTICLE, from, head));
+    }
+
+    /**
+     * Returns the output of {@code git log <from>..<to> <path>}, oldest first
+     */
+    private List<String> log(String path, RevCommit from, RevCommit to) throws Exception {
+        List<String> commitIds = new ArrayList<>();
+        for (RevCommit commit : git.log().addRange(from, to).addPath(path).call()) {
+            commitIds.add(0, commit.getName());
+        }
+        return commitIds;
+    }
+
+    /**
+     * Returns the output of {@code git log <path>} from HEAD, newest first
+     */
+    private List<String> log(String path) throws Exception {
+        List<String> commitIds = new ArrayList<>();
+        for (RevCommit commit : git.log().add(git.getRepository().resolve("HEAD")).addPath(path).call()) {
+            commitIds.add(commit.getName());
+        }
+        return commitIds;
+    }
+
+    /**
+     * Changes the given files and commits them, each commit is one minute after the previous one so the order of
+     * {@code git log} is predictable
+     */
+    private RevCommit commit(String message, String... paths) throws Exception {
+        for (String path : paths) {
+            FileUtils.writeStringToFile(new File(dir, path), message, UTF_8);
+            git.add().addFilepattern(path).call();
+        }
+        return git.commit().setMessage(message).setAuthor(nextIdent()).setCommitter(nextIdent()).call();
+    }
+
+    private RevCommit delete(String message, String path) throws Exception {
+        git.rm().addFilepattern(path).call();
+        return git.commit().setMessage(message).setAuthor(nextIdent()).setCommitter(nextIdent()).call();
+    }
+
+    private void merge(String branch, MergeStrategy strategy) throws Exception {
+        MergeCommand merge = git.merge().include(git.getRepository().resolve(branch))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("Merge " + branch);
+        if (strategy != null) {
+            merge.setStrategy(strategy);
+        }
+        merge.call();
+    }
+
+    private PersonIdent nextIdent() {
+        time += 60000;
+        return new PersonIdent(new PersonIdent("Jane Doe", "jane@example.com"), new Date(time));
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.exception.security.UserNotFoundException;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryDAO;
+import org.craftercms.studio.api.v2.dal.PublishingHistoryItem;
+import org.craftercms.studio.api.v2.dal.RetryingDatabaseOperationFacade;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.PUBLISHED;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class GitPublishingHistoryIndexTest {
+
+    public static final String SITE = "test";
+
+    public static final String LIVE = "live";
+
+    public static final String STAGING = "staging";
+
+    private File dir;
+
+    private Git git;
+
+    private PublishingHistoryDAO publishingHistoryDao;
+
+    private final List<PublishingHistoryItem> table = new ArrayList<>();
+
+    private final AtomicReference<ZonedDateTime> marker = new AtomicReference<>();
+
+    private GitPublishingHistoryIndex index;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("publishing-history").toFile();
+        git = Git.init().setDirectory(dir).call();
+        commit("Sandbox", "/site/website/index.xml");
+        if (!MASTER.equals(git.getRepository().getBranch())) {
+            git.branchRename().setNewName(MASTER).call();
+        }
+
+        GitRepositoryHelper helper = spy(new GitRepositoryHelper());
+        helper.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+        doReturn(git.getRepository()).when(helper).getRepository(SITE, PUBLISHED);
+
+        publishingHistoryDao = mock(PublishingHistoryDAO.class);
+        when(publishingHistoryDao.getPublishingHistoryBackfillDate(SITE)).thenAnswer(invocation -> marker.get());
+
+        RetryingDatabaseOperationFacade retryingDatabaseOperationFacade = mock(RetryingDatabaseOperationFacade.class);
+        doAnswer(invocation -> table.addAll((List<PublishingHistoryItem>) invocation.getArguments()[1]))
+                .when(retryingDatabaseOperationFacade).insertPublishingHistoryList(eq(SITE),
+                        anyListOf(PublishingHistoryItem.class));
+        doAnswer(invocation -> {
+            marker.set(ZonedDateTime.now());
+            return null;
+        }).when(retryingDatabaseOperationFacade).insertPublishingHistoryMarker(SITE);
+        doAnswer(invocation -> {
+            table.clear();
+            return null;
+        }).when(retryingDatabaseOperationFacade).deletePublishingHistoryForSite(SITE);
+
+        GeneralLockService generalLockService = mock(GeneralLockService.class);
+        when(generalLockService.tryLock(anyString())).thenReturn(true);
+
+        User user = new User();
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserByIdOrUsername(-1, "jane")).thenReturn(user);
+        when(userServiceInternal.getUserByIdOrUsername(-1, "unknown")).thenThrow(new UserNotFoundException());
+
+        index = new GitPublishingHistoryIndex();
+        index.setHelper(helper);
+        index.setPublishingHistoryDao(publishingHistoryDao);
+        index.setRetryingDatabaseOperationFacade(retryingDatabaseOperationFacade);
+        index.setGeneralLockService(generalLockService);
+        index.setUserServiceInternal(userServiceInternal);
+        index.setBatchSize(3);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void backfillTest() throws Exception {
+        Set<String> expected = new HashSet<>();
+        for (String environment : new String[] { STAGING, LIVE }) {
+            git.checkout().setOrphan(true).setName(environment).call();
+            git.rm().addFilepattern("site").call();
+            git.commit().setMessage("Initial commit.").setAllowEmpty(true).call();
+            RevCommit first = commit("Jane Doe", "/site/website/index.xml", "/site/components/a.xml",
+                                     "/static-assets/images/.keep");
+            RevCommit second = commit("John Smith", "/site/website/about/index.xml", "/site/components/a.xml");
+            expected.add(key(environment, "/site/website/index.xml", first, "Jane Doe"));
+            expected.add(key(environment, "/site/components/a.xml", first, "Jane Doe"));
+            expected.add(key(environment, "/site/website/about/index.xml", second, "John Smith"));
+            expected.add(key(environment, "/site/components/a.xml", second, "John Smith"));
+        }
+
+        assertFalse(index.isAvailable(SITE));
+        // Commits published before the backfill are loaded by it
+        index.record(SITE, LIVE, git.getRepository(), commit("Jane Doe", "/site/website/skipped.xml"), null);
+        assertTrue(table.isEmpty());
+        expected.add(key(LIVE, "/site/website/skipped.xml", git.log().setMaxCount(1).call().iterator().next(),
+                         "Jane Doe"));
+
+        // An interrupted backfill is discarded
+        table.add(new PublishingHistoryItem());
+        index.backfill(SITE);
+        assertTrue(index.isAvailable(SITE));
+        assertEquals(keys(table), expected);
+
+        // Backfilled sites are not loaded again
+        int size = table.size();
+        index.backfill(SITE);
+        assertEquals(table.size(), size);
+
+        RevCommit third = commit("Jane Doe", "/site/website/index.xml", "/site/website/new/index.xml");
+        Map<String, String> packageIds = new HashMap<>();
+        packageIds.put("/site/website/new/index.xml", "package");
+        index.record(SITE, LIVE, git.getRepository(), third, packageIds);
+        assertEquals(table.size(), size + 2);
+        PublishingHistoryItem recorded = table.get(table.size() - 1);
+        assertEquals(recorded.getPath(), "/site/website/new/index.xml");
+        assertEquals(recorded.getPackageId(), "package");
+        assertEquals(recorded.getCommitId(), third.getName());
+        assertEquals(recorded.getEnvironment(), LIVE);
+        assertEquals(recorded.getPublishedDate().toEpochSecond(), third.getCommitTime());
+    }
+
+    @Test
+    public void queryTest() throws Exception {
+        index.getHistory(SITE, "", "/site/.*", "jane", null, null, "path", "asc", 20, 10);
+        verify(publishingHistoryDao).getPublishingHistory(SITE, null, "/site/.*", "Jane Doe", null, null, "path",
+                                                          "ASC", 20, 10);
+
+        index.getHistory(SITE, LIVE, null, null, null, null, "path; DROP TABLE item", null, 0, 10);
+        verify(publishingHistoryDao).getPublishingHistory(SITE, LIVE, null, null, null, null, "published_date",
+                                                          "DESC", 0, 10);
+
+        // Unknown publishers have no history
+        assertTrue(index.getHistory(SITE, null, null, "unknown", null, null, null, null, 0, 10).isEmpty());
+        assertEquals(index.getTotal(SITE, null, null, "unknown", null, null), 0);
+        verify(publishingHistoryDao, never()).getPublishingHistoryTotal(anyString(), anyString(), anyString(),
+                                                                        anyString(), any(ZonedDateTime.class),
+                                                                        any(ZonedDateTime.class));
+    }
+
+    private RevCommit commit(String author, String... paths) throws Exception {
+        for (String path : paths) {
+            File file = new File(dir, path);
+            file.getParentFile().mkdirs();
+            FileUtils.writeStringToFile(file, path + System.nanoTime(), UTF_8);
+            git.add().addFilepattern(path.substring(1)).call();
+        }
+        return git.commit().setMessage("Publish").setAuthor(new PersonIdent(author, "user@example.com")).call();
+    }
+
+    private String key(String environment, String path, RevCommit commit, String publisher) {
+        return environment + ":" + path + ":" + commit.getName() + ":" + publisher;
+    }
+
+    private Set<String> keys(List<PublishingHistoryItem> items) {
+        Set<String> keys = new HashSet<>();
+        for (PublishingHistoryItem item : items) {
+            keys.add(item.getEnvironment() + ":" + item.getPath() + ":" + item.getCommitId() + ":" +
+                     item.getPublisher());
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v1.service.GeneralLockService;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.impl.v2.repository.GitRepositoryMaintenance.MaintenanceReport;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Builds a repository with one commit per file, like the sandbox of a site, and checks that it is packed by the
+ * maintenance without losing any object
+ */
+public class GitRepositoryMaintenanceTest {
+
+    public static final String SITE = "test";
+
+    public static final int COMMITS = 2000;
+
+    public static final String SANDBOX_LOCK = SITE + "_SANDBOX_REPOSITORY_GIT_LOCK";
+
+    public static final String PUBLISHED_LOCK = SITE + "_PUBLISHED_REPOSITORY_GIT_LOCK";
+
+    private File dir;
+
+    private Git git;
+
+    private GitRepositoryHelper helper;
+
+    private GeneralLockService generalLockService;
+
+    private GitRepositoryMaintenance maintenance;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("maintenance").toFile();
+        git = Git.init().setDirectory(dir).call();
+        for (int i = 0; i < COMMITS; i++) {
+            FileUtils.writeStringToFile(new File(dir, "site/website/page" + i + ".xml"),
+                    "<page><internal-name>Page " + i + "</internal-name></page>", UTF_8);
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Page " + i).call();
+            if (i % 100 == 0) {
+                git.tag().setName("tag" + i).call();
+            }
+        }
+
+        helper = mock(GitRepositoryHelper.class);
+        when(helper.getRepository(SITE, SANDBOX)).thenReturn(git.getRepository());
+        when(helper.acquireRepository(SITE, SANDBOX)).thenReturn(git.getRepository());
+        generalLockService = mock(GeneralLockService.class);
+        when(generalLockService.tryLock(anyString())).thenReturn(true);
+
+        maintenance = new GitRepositoryMaintenance();
+        maintenance.setHelper(helper);
+        maintenance.setGeneralLockService(generalLockService);
+        maintenance.setRetryingRepositoryOperationFacade(new RetryingRepositoryOperationFacadeImpl());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void maintenanceTest() throws Exception {
+        RepoStatistics before = maintenance.getStatistics(git.getRepository());
+        assertTrue(maintenance.needsMaintenance(before));
+
+        List<MaintenanceReport> reports = maintenance.maintainAll(singletonList(SITE));
+
+        assertEquals(reports.size(), 1);
+        MaintenanceReport report = reports.get(0);
+
+        assertTrue(report.isCompleted());
+        assertEquals(report.getBefore().numberOfLooseObjects, before.numberOfLooseObjects);
+        assertEquals(report.getAfter().numberOfLooseObjects, 0);
+        assertEquals(report.getAfter().numberOfPackFiles, 1);
+        assertTrue(report.getAfter().numberOfLooseRefs < report.getBefore().numberOfLooseRefs);
+        assertReadable();
+        verify(helper).releaseRepository(SITE, SANDBOX, git.getRepository());
+        verify(generalLockService).unlock(SANDBOX_LOCK);
+        verify(generalLockService).unlock(PUBLISHED_LOCK);
+    }
+
+    @Test
+    public void busyRepositoryTest() throws Exception {
+        when(generalLockService.tryLock(PUBLISHED_LOCK)).thenReturn(false);
+        RepoStatistics before = maintenance.getStatistics(git.getRepository());
+
+        assertNull(maintenance.maintain(SITE, SANDBOX, Long.MAX_VALUE));
+
+        assertEquals(maintenance.getStatistics(git.getRepository()).numberOfLooseObjects,
+                before.numberOfLooseObjects);
+        verify(generalLockService).unlock(SANDBOX_LOCK);
+        verify(generalLockService, never()).unlock(PUBLISHED_LOCK);
+    }
+
+    @Test
+    public void thresholdsTest() throws Exception {
+        maintenance.setLooseObjectsThreshold(Long.MAX_VALUE);
+        maintenance.setPackFilesThreshold(Long.MAX_VALUE);
+
+        assertTrue(maintenance.maintainAll(singletonList(SITE)).isEmpty());
+        verify(generalLockService, never()).tryLock(anyString());
+    }
+
+    /**
+     * Reads all commits and the content of all files in HEAD with a new repository instance
+     */
+    private void assertReadable() throws Exception {
+        try (Repository repo = new FileRepository(git.getRepository().getDirectory());
+             ObjectReader reader = repo.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            revWalk.markStart(revWalk.parseCommit(repo.resolve("HEAD")));
+            int commits = 0;
+            for (RevCommit ignored : revWalk) {
+                commits++;
+            }
+            assertEquals(commits, COMMITS);
+            treeWalk.addTree(repo.parseCommit(repo.resolve("HEAD")).getTree());
+            treeWalk.setRecursive(true);
+            int files = 0;
+            while (treeWalk.next()) {
+                reader.open(treeWalk.getObjectId(0)).getBytes();
+                files++;
+            }
+            assertEquals(files, COMMITS);
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.model.monitoring.RepositoryMetrics;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Opens the repositories of 400 sites from 64 threads and checks that each repository is opened only once
+ */
+public class GitRepositoryRegistryTest {
+
+    public static final int SITES = 400;
+
+    public static final int THREADS = 64;
+
+    private File dir;
+
+    private GitRepositoryRegistry registry;
+
+    private Map<String, AtomicInteger> opens;
+
+    /**
+     * The repositories are only read by the tests, so they are created once for all of them
+     */
+    @BeforeClass
+    public void createRepositories() throws Exception {
+        dir = Files.createTempDirectory("registry").toFile();
+        for (int i = 0; i < SITES; i++) {
+            File siteDir = new File(dir, "site" + i);
+            try (Git git = Git.init().setDirectory(siteDir).call()) {
+                FileUtils.writeStringToFile(new File(siteDir, "index.xml"), "<page/>", UTF_8);
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("Initial commit.").call();
+            }
+        }
+    }
+
+    @AfterClass
+    public void deleteRepositories() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        opens = new ConcurrentHashMap<>();
+        registry = new GitRepositoryRegistry();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void concurrentOpenTest() throws Exception {
+        Map<String, Set<Repository>> instances = openFromAllThreads();
+
+        for (int i = 0; i < SITES; i++) {
+            String site = "site" + i;
+            assertEquals(opens.get(site).get(), 1, site + " was opened more than once");
+            assertEquals(instances.get(site).size(), 1, site + " returned different instances");
+        }
+        RepositoryMetrics metrics = registry.getMetrics();
+        assertEquals(metrics.getOpenTime().getCount(), SITES);
+        assertEquals(metrics.getOpenCount(), SITES);
+        assertEquals(metrics.getOpenRepositories(), SITES);
+        assertEquals(metrics.getRegisteredRepositories(), SITES);
+        assertEquals(metrics.getHitCount(), (long) SITES * THREADS - SITES);
+        assertEquals(metrics.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        registry.setMaxOpenRepositories(100);
+        registry.setIdleTimeout(0);
+        registry.setEvictionInterval(0);
+
+        Map<String, Set<Repository>> instances = openFromAllThreads();
+        RepositoryMetrics metrics = registry.getMetrics();
+
+        assertTrue(metrics.getOpenRepositories() <= 100 + THREADS,
+                metrics.getOpenRepositories() + " repositories are still open");
+        assertTrue(metrics.getEvictionCount() > 0);
+        assertEquals(metrics.getRegisteredRepositories(), SITES);
+        for (int i = 0; i < SITES; i++) {
+            String site = "site" + i;
+            assertEquals(opens.get(site).get(), 1, site + " was opened more than once");
+            assertEquals(instances.get(site).size(), 1, site + " returned different instances");
+            // Evicted repositories can still be used
+            assertNotNull(instances.get(site).iterator().next().resolve("HEAD"));
+        }
+    }
+
+    @Test
+    public void idleTimeoutTest() throws Exception {
+        registry.setMaxOpenRepositories(1);
+        Repository repo0 = get("site0");
+        Thread.sleep(10);
+        get("site1");
+
+        // The first repository was used right now, so it can't be evicted yet
+        assertEquals(registry.getMetrics().getOpenRepositories(), 2);
+        assertEquals(registry.evictIdle(), 0);
+
+        registry.setIdleTimeout(0);
+        assertEquals(registry.evictIdle(), 1);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 1);
+        assertSame(get("site0"), repo0);
+        assertEquals(registry.getMetrics().getReopenCount(), 1);
+        assertNotNull(repo0.resolve("HEAD"));
+    }
+
+    @Test
+    public void evictionIntervalTest() throws Exception {
+        registry.setMaxOpenRepositories(1);
+        registry.setIdleTimeout(0);
+        registry.setEvictionInterval(60);
+        get("site0");
+        Thread.sleep(10);
+        get("site1");
+        assertEquals(registry.getMetrics().getEvictionCount(), 1);
+
+        // The registry is over the limit again, but the last eviction was too recent
+        get("site0");
+        assertEquals(registry.getMetrics().getOpenRepositories(), 2);
+        assertEquals(registry.getMetrics().getEvictionCount(), 1);
+        // Explicit evictions are not limited
+        assertEquals(registry.evictIdle(), 1);
+    }
+
+    @Test
+    public void inUseTest() throws Exception {
+        registry.setMaxOpenRepositories(1);
+        registry.setIdleTimeout(0);
+        Repository repo0 = registry.acquire("site0", () -> open("site0"));
+        Repository repo1 = registry.acquire("site1", () -> open("site1"));
+        assertSame(registry.acquire("site0", () -> open("site0")), repo0);
+
+        // Acquired repositories are not evicted even if they are idle
+        assertEquals(registry.evictIdle(), 0);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 2);
+
+        registry.release("site1", repo1);
+        assertEquals(registry.evictIdle(), 1);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 1);
+
+        // site0 is still used by one caller
+        registry.release("site0", repo0);
+        assertSame(registry.acquire("site1", () -> open("site1")), repo1);
+        assertEquals(registry.evictIdle(), 0);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 2);
+        registry.release("site0", repo0);
+        assertEquals(registry.evictIdle(), 1);
+        assertEquals(registry.getMetrics().getEvictionCount(), 2);
+
+        // Releasing a repository that is no longer registered is ignored
+        registry.remove("site1");
+        registry.release("site1", repo1);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 0);
+    }
+
+    @Test
+    public void registerAndRemoveTest() throws Exception {
+        assertNull(registry.getRepository("missing", () -> null));
+        assertEquals(registry.getMetrics().getRegisteredRepositories(), 0);
+
+        Repository repo = get("site0");
+        assertSame(registry.remove("site0"), repo);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 0);
+        assertNotSame(get("site0"), repo);
+        assertEquals(opens.get("site0").get(), 2);
+
+        Repository created = open("site1");
+        registry.register("site1", created);
+        assertSame(get("site1"), created);
+        assertEquals(opens.get("site1").get(), 1);
+        assertEquals(registry.getMetrics().getOpenRepositories(), 2);
+    }
+
+    private Map<String, Set<Repository>> openFromAllThreads() throws Exception {
+        Map<String, Set<Repository>> instances = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < SITES; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i : order) {
+                    String site = "site" + i;
+                    Repository repo = get(site);
+                    assertNotNull(repo.resolve("HEAD"));
+                    instances.computeIfAbsent(site, k -> ConcurrentHashMap.newKeySet()).add(repo);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return instances;
+    }
+
+    private Repository get(String site) throws Exception {
+        return registry.getRepository(site, () -> open(site));
+    }
+
+    private Repository open(String site) throws IOException {
+        opens.computeIfAbsent(site, k -> new AtomicInteger()).incrementAndGet();
+        return new FileRepositoryBuilder().setGitDir(new File(dir, site + "/.git")).build();
+    }
+
+}
@@ -34,8 +34,10 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import static java.time.ZonedDateTime.now;
@@ -89,6 +91,9 @@ public class BlobAwareContentRepositoryTest {
     @Mock
     private StudioBlobStoreResolver resolver;
 
+    @Mock
+    private BlobPointerIndex pointerIndex;
+
     @Captor
     private ArgumentCaptor<List<DeploymentItemTO>> itemsCaptor;
 
@@ -104,12 +109,14 @@ public class BlobAwareContentRepositoryTest {
         when(resolver.getByPaths(SITE, FOLDER_PATH, NEW_FOLDER_PATH)).thenReturn(store);
         when(resolver.getByPaths(SITE, NO_EXT_PATH)).thenReturn(store);
         when(resolver.getByPaths(SITE, CONFIG_PATH)).thenReturn(null);
+        when(resolver.hasBlobStores(SITE)).thenReturn(true);
 
         when(localV1.isFolder(SITE, FOLDER_PATH)).thenReturn(true);
         when(localV1.isFolder(SITE, NEW_FOLDER_PATH)).thenReturn(true);
 
         when(localV1.contentExists(SITE, ORIGINAL_PATH)).thenReturn(false);
         when(localV1.contentExists(SITE, POINTER_PATH)).thenReturn(true);
+        when(pointerIndex.contains(SITE, POINTER_PATH)).thenReturn(true);
         when(localV1.getContent(SITE, POINTER_PATH)).thenReturn(POINTER);
         when(localV1.isFolder(SITE, PARENT_PATH)).thenReturn(true);
 
@@ -142,6 +149,28 @@ public class BlobAwareContentRepositoryTest {
         assertTrue(proxy.contentExists(SITE, ORIGINAL_PATH), "original path should exist");
     }
 
+    @Test
+    public void siteWithoutBlobStoresTest() throws Exception {
+        when(resolver.hasBlobStores(SITE)).thenReturn(false);
+        when(localV1.getContent(SITE, ORIGINAL_PATH)).thenReturn(CONTENT);
+
+        assertEquals(proxy.getContent(SITE, ORIGINAL_PATH), CONTENT);
+        verify(pointerIndex, never()).contains(anyString(), anyString());
+        verify(resolver, never()).getByPaths(anyString(), anyVararg());
+    }
+
+    @Test
+    public void getExistingPathsTest() {
+        when(localV1.getExistingPaths(eq(SITE), anyCollection()))
+                .thenReturn(new HashSet<>(Arrays.asList(POINTER_PATH, LOCAL_PATH)));
+
+        Set<String> existing = proxy.getExistingPaths(SITE, Arrays.asList(ORIGINAL_PATH, LOCAL_PATH, CONFIG_PATH));
+
+        assertEquals(existing, new HashSet<>(Arrays.asList(ORIGINAL_PATH, LOCAL_PATH)));
+        verify(localV1, times(1)).getExistingPaths(eq(SITE), anyCollection());
+        verify(localV1, never()).contentExists(anyString(), anyString());
+    }
+
     @Test
     public void getContentTest() throws ContentNotFoundException {
         assertEquals(proxy.getContent(SITE, ORIGINAL_PATH), CONTENT, "original path should return the original content");
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository.blob;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.impl.v1.repository.git.GitObjectCache;
+import org.eclipse.jgit.api.Git;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BlobPointerIndexTest {
+
+    public static final String SITE = "test";
+
+    public static final String IMAGE = "/static-assets/images/logo.png.blob";
+
+    public static final String VIDEO = "/static-assets/videos/intro.mp4.blob";
+
+    public static final String DOCUMENT = "/static-assets/docs/guide.pdf.blob";
+
+    private File dir;
+
+    private Git git;
+
+    private BlobPointerIndex index;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("pointers").toFile();
+        git = Git.init().setDirectory(dir).call();
+
+        GitRepositoryHelper helper = spy(new GitRepositoryHelper());
+        doReturn(git.getRepository()).when(helper).getRepository(SITE, SANDBOX);
+        doReturn(null).when(helper).getRepository("missing", SANDBOX);
+
+        GitObjectCache objectCache = new GitObjectCache();
+        objectCache.init();
+
+        index = new BlobPointerIndex();
+        index.setHelper(helper);
+        index.setObjectCache(objectCache);
+        index.setFileExtension("blob");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void addPointersTest() throws Exception {
+        write(IMAGE, "v1");
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+        assertFalse(index.contains(SITE, VIDEO));
+
+        // New pointers are found after the next commit
+        write(VIDEO, "v1");
+        write(DOCUMENT, "v1");
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+        assertTrue(index.contains(SITE, VIDEO));
+        assertTrue(index.contains(SITE, DOCUMENT));
+    }
+
+    @Test
+    public void updatePointersTest() throws Exception {
+        write(IMAGE, "v1");
+        write(VIDEO, "v1");
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+
+        write(IMAGE, "v2");
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+        assertTrue(index.contains(SITE, VIDEO));
+    }
+
+    @Test
+    public void removePointersTest() throws Exception {
+        write(IMAGE, "v1");
+        write(VIDEO, "v1");
+        write(DOCUMENT, "v1");
+        commit();
+        assertTrue(index.contains(SITE, VIDEO));
+
+        git.rm().addFilepattern(getGitPath(VIDEO)).call();
+        // Removing the whole folder removes the pointers under it
+        git.rm().addFilepattern("static-assets/docs").call();
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+        assertFalse(index.contains(SITE, VIDEO));
+        assertFalse(index.contains(SITE, DOCUMENT));
+
+        // The same path can be added back
+        write(VIDEO, "v2");
+        commit();
+        assertTrue(index.contains(SITE, VIDEO));
+    }
+
+    @Test
+    public void lookupMissTest() throws Exception {
+        // Repositories without commits have no pointers
+        assertFalse(index.contains(SITE, IMAGE));
+        assertFalse(index.contains("missing", IMAGE));
+
+        write("/static-assets/images/logo.png", "png");
+        write("/site/website/index.xml", "<page/>");
+        write(IMAGE, "v1");
+        commit();
+        assertFalse(index.contains(SITE, "/static-assets/images/logo.png"));
+        assertFalse(index.contains(SITE, "/site/website/index.xml"));
+        assertFalse(index.contains(SITE, "/static-assets/images/unknown.png.blob"));
+        assertTrue(index.contains(SITE, IMAGE));
+    }
+
+    @Test
+    public void removeSiteTest() throws Exception {
+        write(IMAGE, "v1");
+        commit();
+        assertTrue(index.contains(SITE, IMAGE));
+
+        // The index is built again from the current tree
+        index.remove(SITE);
+        git.rm().addFilepattern(getGitPath(IMAGE)).call();
+        write(VIDEO, "v1");
+        commit();
+        assertFalse(index.contains(SITE, IMAGE));
+        assertTrue(index.contains(SITE, VIDEO));
+    }
+
+    private String getGitPath(String path) {
+        return path.substring(1);
+    }
+
+    private void write(String path, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(dir, path), content, UTF_8);
+    }
+
+    private void commit() throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Update pointers").call();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository.blob;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BulkOperationExecutorTest {
+
+    public static final int ITEMS = 100;
+
+    public static final int CONCURRENCY = 4;
+
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    private BulkOperationExecutor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(10);
+        taskExecutor.initialize();
+
+        executor = new BulkOperationExecutor();
+        executor.setTaskExecutor(taskExecutor);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        taskExecutor.shutdown();
+    }
+
+    @Test
+    public void concurrencyIsBoundedTest() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+
+        Map<String, Exception> failures = executor.execute(getItems(), CONCURRENCY, String::valueOf, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            processed.add(item);
+            running.decrementAndGet();
+        });
+
+        assertTrue(failures.isEmpty());
+        assertEquals(processed.size(), ITEMS);
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= CONCURRENCY);
+    }
+
+    @Test
+    public void allFailuresAreReportedTest() {
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+
+        Map<String, Exception> failures = executor.execute(getItems(), CONCURRENCY, String::valueOf, item -> {
+            processed.add(item);
+            if (item % 10 == 0) {
+                throw new IllegalStateException("Error for " + item);
+            }
+        });
+
+        assertEquals(processed.size(), ITEMS);
+        assertEquals(failures.size(), ITEMS / 10);
+        assertEquals(failures.get("50").getMessage(), "Error for 50");
+    }
+
+    @Test
+    public void callerThreadIsUsedWithoutExecutorTest() {
+        executor.setTaskExecutor(null);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        Map<String, Exception> failures = executor.execute(getItems(), CONCURRENCY, String::valueOf,
+                item -> threads.add(Thread.currentThread()));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(threads.size(), 1);
+        assertTrue(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void exceptionReportsFailedItemsTest() {
+        Map<String, Exception> failures = executor.execute(getItems(), CONCURRENCY, String::valueOf,
+                item -> { throw new IllegalStateException("failed"); });
+        BulkOperationException e = new BulkOperationException("Error copying content", failures);
+
+        assertEquals(e.getFailures().size(), ITEMS);
+        assertTrue(e.getMessage().startsWith("Error copying content, 100 items failed: "));
+        assertTrue(e.getMessage().endsWith(", ..."));
+    }
+
+    private List<Integer> getItems() {
+        return IntStream.range(0, ITEMS).boxed().collect(toList());
+    }
+
+}
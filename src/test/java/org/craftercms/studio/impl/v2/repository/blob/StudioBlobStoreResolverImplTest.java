@@ -53,6 +53,8 @@ public class StudioBlobStoreResolverImplTest {
 
     public static final String SITE_ID = "mySite";
 
+    public static final String LOCAL_SITE_ID = "localSite";
+
     public static final String STORE_ID = "myBlobStore";
 
     public static final String BLOB_STORE_TYPE = "s3BlobStore";
@@ -114,6 +116,8 @@ public class StudioBlobStoreResolverImplTest {
 
         when(configurationService.getCacheKey(SITE_ID, CONFIG_MODULE, CONFIG_FILENAME, ENVIRONMENT))
                 .thenReturn(CACHE_KEY_CONFIG);
+        when(configurationService.getCacheKey(LOCAL_SITE_ID, CONFIG_MODULE, CONFIG_FILENAME, ENVIRONMENT))
+                .thenReturn(LOCAL_SITE_ID + ":" + CACHE_KEY_CONFIG);
 
         ConfigurationResolver configResolver = new ConfigurationResolverImpl(ENVIRONMENT, "/config/{module}",
                 null, new EncryptionAwareConfigurationReader(new NoOpTextEncryptor()));
@@ -152,4 +156,10 @@ public class StudioBlobStoreResolverImplTest {
         assertTrue(resolver.isBlob(SITE_ID, REMOTE_PATH));
     }
 
+    @Test
+    public void hasBlobStoresTest() throws ServiceLayerException {
+        assertTrue(resolver.hasBlobStores(SITE_ID));
+        assertFalse(resolver.hasBlobStores(LOCAL_SITE_ID));
+    }
+
 }
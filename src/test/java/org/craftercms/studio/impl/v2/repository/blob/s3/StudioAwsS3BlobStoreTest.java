@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.repository.blob.s3;
+
+import org.craftercms.studio.api.v1.to.DeploymentItemTO;
+import org.craftercms.studio.impl.v2.repository.blob.BulkOperationExecutor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+/**
+ * Publishes packages that change the same keys more than once against an in-memory bucket, and checks that the
+ * result is the same as applying the items in order
+ */
+public class StudioAwsS3BlobStoreTest {
+
+    public static final String PREVIEW_BUCKET = "preview";
+
+    public static final String LIVE_BUCKET = "live";
+
+    public static final String PAGE_IMAGE = "/static-assets/images/page.png";
+
+    public static final String ARCHIVED_IMAGE = "/static-assets/images/archive/page.png";
+
+    public static final String LOGO = "/static-assets/images/logo.png";
+
+    /**
+     * Content of all the objects, keyed by bucket and key
+     */
+    private final Map<String, String> objects = new HashMap<>();
+
+    private StudioAwsS3BlobStore.Mapping previewMapping;
+
+    private StudioAwsS3BlobStore.Mapping liveMapping;
+
+    private StudioAwsS3BlobStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        objects.clear();
+        store = new StudioAwsS3BlobStore() {
+
+            @Override
+            protected void copyObject(String sourceBucket, String sourceKey, String targetBucket, String targetKey,
+                                      long size) {
+                String content = objects.get(sourceBucket + "/" + sourceKey);
+                if (content == null) {
+                    throw new IllegalStateException("Missing object " + sourceBucket + "/" + sourceKey);
+                }
+                objects.put(targetBucket + "/" + targetKey, content);
+            }
+
+            @Override
+            protected Map<String, Exception> deleteObjects(String bucket, List<String> keys) {
+                keys.forEach(key -> objects.remove(bucket + "/" + key));
+                return emptyMap();
+            }
+
+        };
+        store.setBulkOperationExecutor(new BulkOperationExecutor());
+
+        previewMapping = mapping(PREVIEW_BUCKET);
+        liveMapping = mapping(LIVE_BUCKET);
+    }
+
+    @Test
+    public void moveAndPublishOldPathTest() {
+        put(liveMapping, PAGE_IMAGE, "old image");
+        put(previewMapping, PAGE_IMAGE, "new image");
+
+        store.publish(previewMapping, liveMapping, Arrays.asList(
+                move(PAGE_IMAGE, ARCHIVED_IMAGE),
+                copy(PAGE_IMAGE)));
+
+        assertEquals(get(liveMapping, ARCHIVED_IMAGE), "old image");
+        assertEquals(get(liveMapping, PAGE_IMAGE), "new image");
+    }
+
+    @Test
+    public void deleteAndPublishAgainTest() {
+        put(liveMapping, PAGE_IMAGE, "old image");
+        put(liveMapping, LOGO, "logo");
+        put(previewMapping, PAGE_IMAGE, "new image");
+
+        store.publish(previewMapping, liveMapping, Arrays.asList(
+                delete(PAGE_IMAGE),
+                delete(LOGO),
+                copy(PAGE_IMAGE)));
+
+        assertEquals(get(liveMapping, PAGE_IMAGE), "new image");
+        assertFalse(objects.containsKey(store.getFullKey(liveMapping, LOGO)));
+    }
+
+    private StudioAwsS3BlobStore.Mapping mapping(String bucket) {
+        StudioAwsS3BlobStore.Mapping mapping = new StudioAwsS3BlobStore.Mapping();
+        mapping.target = bucket;
+        mapping.prefix = "site";
+        return mapping;
+    }
+
+    private void put(StudioAwsS3BlobStore.Mapping mapping, String path, String content) {
+        objects.put(store.getFullKey(mapping, path), content);
+    }
+
+    private String get(StudioAwsS3BlobStore.Mapping mapping, String path) {
+        return objects.get(store.getFullKey(mapping, path));
+    }
+
+    private DeploymentItemTO copy(String path) {
+        DeploymentItemTO item = new DeploymentItemTO();
+        item.setPath(path);
+        return item;
+    }
+
+    private DeploymentItemTO move(String oldPath, String path) {
+        DeploymentItemTO item = copy(path);
+        item.setOldPath(oldPath);
+        item.setMove(true);
+        return item;
+    }
+
+    private DeploymentItemTO delete(String path) {
+        DeploymentItemTO item = copy(path);
+        item.setDelete(true);
+        return item;
+    }
+
+}
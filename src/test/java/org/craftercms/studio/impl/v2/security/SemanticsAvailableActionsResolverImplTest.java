@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.craftercms.studio.api.v1.service.configuration.ServicesConfig;
+import org.craftercms.studio.api.v2.dal.Group;
+import org.craftercms.studio.api.v2.dal.Item;
+import org.craftercms.studio.api.v2.dal.User;
+import org.craftercms.studio.api.v2.dal.WorkflowItem;
+import org.craftercms.studio.api.v2.dal.security.RolePermissionMappings;
+import org.craftercms.studio.api.v2.dal.security.SitePermissionMappings;
+import org.craftercms.studio.api.v2.repository.blob.StudioBlobStoreResolver;
+import org.craftercms.studio.api.v2.service.security.internal.UserServiceInternal;
+import org.craftercms.studio.api.v2.service.workflow.internal.WorkflowServiceInternal;
+import org.craftercms.studio.api.v2.utils.PathClassifier;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.craftercms.studio.impl.v2.service.content.internal.ContentServiceInternalImpl;
+import org.craftercms.studio.impl.v2.service.security.SecurityServiceImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_ASSET;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_COMPONENT;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_FOLDER;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.CONTENT_TYPE_PAGE;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.HOME_PAGE_PATH;
+import static org.craftercms.studio.api.v1.constant.StudioConstants.SYSTEM_ADMIN_GROUP;
+import static org.craftercms.studio.api.v2.dal.ItemState.IN_WORKFLOW;
+import static org.craftercms.studio.api.v2.dal.ItemState.LIVE;
+import static org.craftercms.studio.api.v2.dal.ItemState.MODIFIED;
+import static org.craftercms.studio.api.v2.dal.ItemState.NEW;
+import static org.craftercms.studio.api.v2.dal.ItemState.SCHEDULED;
+import static org.craftercms.studio.api.v2.dal.ItemState.USER_LOCKED;
+import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsConstants.CONTENT_DELETE;
+import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsConstants.CONTENT_EDIT;
+import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsConstants.CONTENT_READ;
+import static org.craftercms.studio.api.v2.security.ContentItemAvailableActionsConstants.PUBLISH;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CONTENT_ITEM_EDITABLE_TYPES;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Compares the available actions calculated for a page of items with the ones calculated for each item
+ */
+public class SemanticsAvailableActionsResolverImplTest {
+
+    public static final String SITE = "site";
+
+    public static final String AUTHOR = "author";
+
+    public static final String ADMIN = "admin";
+
+    public static final long AUTHOR_ID = 7;
+
+    public static final int ITEMS = 1000;
+
+    private final Map<String, WorkflowItem> workflows = new HashMap<>();
+
+    private final AtomicInteger groupLookups = new AtomicInteger();
+
+    private final AtomicInteger workflowLookups = new AtomicInteger();
+
+    private SemanticsAvailableActionsResolverImpl resolver;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getArray(CONTENT_ITEM_EDITABLE_TYPES, String.class))
+                .thenReturn(new String[] { "application/xml", "text/plain" });
+
+        UserServiceInternal userServiceInternal = mock(UserServiceInternal.class);
+        when(userServiceInternal.getUserGroups(-1, AUTHOR)).thenAnswer(invocation -> {
+            groupLookups.incrementAndGet();
+            return Arrays.asList(getGroup("authors"), getGroup("reviewers"));
+        });
+        when(userServiceInternal.getUserGroups(-1, ADMIN)).thenAnswer(invocation -> {
+            groupLookups.incrementAndGet();
+            return Collections.singletonList(getGroup(SYSTEM_ADMIN_GROUP));
+        });
+        User user = new User();
+        user.setId(AUTHOR_ID);
+        when(userServiceInternal.getUserByIdOrUsername(-1, AUTHOR)).thenReturn(user);
+        User admin = new User();
+        admin.setId(1);
+        when(userServiceInternal.getUserByIdOrUsername(-1, ADMIN)).thenReturn(admin);
+
+        Cache<String, SitePermissionMappings> cache = CacheBuilder.newBuilder().build();
+        cache.put(SITE + AvailableActionsResolverImpl.CACHE_KEY, getPermissionMappings());
+        SecurityServiceImpl securityService = new SecurityServiceImpl();
+        securityService.setAvailableActionsResolver(
+                new AvailableActionsResolverImpl(studioConfiguration, null, userServiceInternal, cache));
+
+        Map<String, List<String>> patterns = new LinkedHashMap<>();
+        patterns.put(CONTENT_TYPE_ASSET, Collections.singletonList("/static-assets/([^<]+)"));
+        patterns.put(PathClassifier.PROTECTED_FOLDER, Arrays.asList("/site/website", "/site/components"));
+        ServicesConfig servicesConfig = mock(ServicesConfig.class);
+        when(servicesConfig.getPathClassifier(SITE)).thenReturn(new PathClassifier(patterns));
+        when(servicesConfig.isRequirePeerReview(SITE)).thenReturn(true);
+
+        StudioBlobStoreResolver blobStoreResolver = mock(StudioBlobStoreResolver.class);
+        when(blobStoreResolver.hasBlobStores(SITE)).thenReturn(true);
+        when(blobStoreResolver.isBlob(eq(SITE), anyString()))
+                .thenAnswer(invocation -> ((String) invocation.getArguments()[1]).startsWith("/static-assets/blob/"));
+
+        WorkflowServiceInternal workflowServiceInternal = mock(WorkflowServiceInternal.class);
+        when(workflowServiceInternal.getWorkflowEntry(eq(SITE), anyString())).thenAnswer(invocation -> {
+            workflowLookups.incrementAndGet();
+            return workflows.get((String) invocation.getArguments()[1]);
+        });
+        when(workflowServiceInternal.getWorkflowEntries(eq(SITE), anyListOf(String.class))).thenAnswer(invocation -> {
+            workflowLookups.incrementAndGet();
+            Map<String, WorkflowItem> entries = new HashMap<>();
+            for (Object path : (List<?>) invocation.getArguments()[1]) {
+                entries.put((String) path, workflows.get(path));
+            }
+            return entries;
+        });
+
+        ContentServiceInternalImpl contentServiceInternal = new ContentServiceInternalImpl();
+        contentServiceInternal.setStudioConfiguration(studioConfiguration);
+
+        resolver = new SemanticsAvailableActionsResolverImpl();
+        resolver.setSecurityService(securityService);
+        resolver.setContentServiceInternal(contentServiceInternal);
+        resolver.setServicesConfig(servicesConfig);
+        resolver.setWorkflowServiceInternal(workflowServiceInternal);
+        resolver.setUserServiceInternal(userServiceInternal);
+        resolver.setStudioBlobStoreResolver(blobStoreResolver);
+        resolver.setStudioConfiguration(studioConfiguration);
+    }
+
+    @Test
+    public void bulkMatchesSingleItemTest() throws Exception {
+        List<Item> items = getItems(new Random(42));
+
+        for (String username : Arrays.asList(AUTHOR, ADMIN)) {
+            groupLookups.set(0);
+            workflowLookups.set(0);
+            Map<String, Long> expected = new HashMap<>();
+            for (Item item : items) {
+                expected.put(item.getPath(), resolver.calculateContentItemAvailableActions(username, SITE, item));
+            }
+            int singleGroupLookups = groupLookups.getAndSet(0);
+            int singleWorkflowLookups = workflowLookups.getAndSet(0);
+
+            Map<String, Long> actual = resolver.calculateContentItemAvailableActions(username, SITE, items);
+
+            assertEquals(actual.size(), items.size());
+            for (Item item : items) {
+                assertEquals(actual.get(item.getPath()), expected.get(item.getPath()),
+                             "Wrong actions for " + item.getPath() + " and user " + username);
+            }
+            assertEquals(singleGroupLookups, ITEMS);
+            assertTrue(singleWorkflowLookups > 1);
+            assertEquals(groupLookups.get(), 1);
+            assertEquals(workflowLookups.get(), 1);
+        }
+    }
+
+    private List<Item> getItems(Random random) {
+        List<String> paths = new ArrayList<>();
+        paths.add(HOME_PAGE_PATH);
+        paths.add("/site/website");
+        paths.add("/site/components");
+        while (paths.size() < ITEMS) {
+            int i = paths.size();
+            switch (random.nextInt(5)) {
+                case 0:
+                    paths.add("/site/website/page" + i + "/index.xml");
+                    break;
+                case 1:
+                    paths.add("/site/components/component" + i + ".xml");
+                    break;
+                case 2:
+                    paths.add("/static-assets/images/image" + i + ".png");
+                    break;
+                case 3:
+                    paths.add("/static-assets/blob/video" + i + ".mp4");
+                    break;
+                default:
+                    paths.add("/site/website/folder" + i);
+            }
+        }
+
+        long[] states = { NEW.value, MODIFIED.value, LIVE.value, MODIFIED.value + USER_LOCKED.value,
+                NEW.value + IN_WORKFLOW.value, MODIFIED.value + IN_WORKFLOW.value + SCHEDULED.value };
+        List<Item> items = new ArrayList<>();
+        for (String path : paths) {
+            Item item = new Item();
+            item.setPath(path);
+            item.setState(states[random.nextInt(states.length)]);
+            item.setOwner(random.nextBoolean()? AUTHOR : "other");
+            item.setModifier(random.nextBoolean()? AUTHOR : "other");
+            if (path.endsWith(".xml")) {
+                item.setSystemType(path.startsWith("/site/website")? CONTENT_TYPE_PAGE : CONTENT_TYPE_COMPONENT);
+                item.setMimeType(random.nextBoolean()? "application/xml" : null);
+            } else if (path.startsWith("/static-assets")) {
+                item.setSystemType(CONTENT_TYPE_ASSET);
+                item.setMimeType(random.nextBoolean()? "text/plain" : "image/png");
+            } else {
+                item.setSystemType(CONTENT_TYPE_FOLDER);
+            }
+            if ((item.getState() & IN_WORKFLOW.value) > 0) {
+                WorkflowItem workflow = new WorkflowItem();
+                workflow.setId(random.nextBoolean()? AUTHOR_ID : AUTHOR_ID + 1);
+                workflow.setItem(item);
+                workflows.put(path, workflow);
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private SitePermissionMappings getPermissionMappings() {
+        SitePermissionMappings mappings = new SitePermissionMappings();
+        mappings.setSiteId(SITE);
+        mappings.addGroupToRolesMapping("authors", Collections.singletonList("author"));
+        mappings.addGroupToRolesMapping("reviewers", Arrays.asList("reviewer", "author"));
+
+        RolePermissionMappings author = new RolePermissionMappings();
+        author.setRole("author");
+        author.addRuleContentItemPermissionsMapping("~DASHBOARD~", CONTENT_READ);
+        author.addRuleContentItemPermissionsMapping("/site/website/.*", -1L & ~PUBLISH);
+        author.addRuleContentItemPermissionsMapping("/static-assets/.*", CONTENT_READ | CONTENT_EDIT);
+        mappings.addRolePermissionMapping("author", author);
+
+        RolePermissionMappings reviewer = new RolePermissionMappings();
+        reviewer.setRole("reviewer");
+        reviewer.addRuleContentItemPermissionsMapping("/site/.*", CONTENT_READ | PUBLISH | CONTENT_DELETE);
+        mappings.addRolePermissionMapping("reviewer", reviewer);
+        return mappings;
+    }
+
+    private Group getGroup(String name) {
+        Group group = new Group();
+        group.setGroupName(name);
+        return group;
+    }
+
+}
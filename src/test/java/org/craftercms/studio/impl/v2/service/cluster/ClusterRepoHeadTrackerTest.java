@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2021 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.studio.impl.v2.service.cluster;
+
+import org.apache.commons.io.FileUtils;
+import org.craftercms.studio.api.v2.dal.ClusterDAO;
+import org.craftercms.studio.api.v2.dal.ClusterRepoHead;
+import org.craftercms.studio.api.v2.utils.GitRepositoryHelper;
+import org.craftercms.studio.api.v2.utils.StudioConfiguration;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.craftercms.studio.api.v1.constant.GitRepositories.SANDBOX;
+import static org.craftercms.studio.api.v2.utils.StudioConfiguration.CLUSTERING_SYNC_FULL_SYNC_EVERY_N_RUNS;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClusterRepoHeadTrackerTest {
+
+    public static final String SITE = "test";
+
+    public static final long LOCAL_NODE = 1;
+
+    public static final long REMOTE_NODE = 2;
+
+    private File dir;
+
+    private Git git;
+
+    private ClusterDAO clusterDao;
+
+    private ClusterRepoHeadTracker tracker;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("repo-head").toFile();
+        git = Git.init().setDirectory(dir).call();
+
+        clusterDao = mock(ClusterDAO.class);
+        StudioConfiguration studioConfiguration = mock(StudioConfiguration.class);
+        when(studioConfiguration.getProperty(CLUSTERING_SYNC_FULL_SYNC_EVERY_N_RUNS, Integer.class, 1))
+                .thenReturn(3);
+        GitRepositoryHelper gitRepositoryHelper = mock(GitRepositoryHelper.class);
+        when(gitRepositoryHelper.getRepository(SITE, SANDBOX)).thenReturn(git.getRepository());
+
+        tracker = new ClusterRepoHeadTracker();
+        tracker.setClusterDao(clusterDao);
+        tracker.setStudioConfiguration(studioConfiguration);
+        tracker.setGitRepositoryHelper(gitRepositoryHelper);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        git.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void headVersionTest() throws Exception {
+        Repository repo = git.getRepository();
+        ObjectId first = commit();
+        assertEquals(tracker.getHeadVersion(repo), first.name());
+
+        git.branchCreate().setName("live").call();
+        String multipleBranches = tracker.getHeadVersion(repo);
+        assertNotEquals(multipleBranches, first.name());
+
+        commit();
+        assertNotEquals(tracker.getHeadVersion(repo), multipleBranches);
+    }
+
+    @Test
+    public void remoteHeadsTest() throws Exception {
+        Repository repo = git.getRepository();
+        ObjectId first = commit();
+        ObjectId second = commit();
+
+        // Already in the local repository
+        assertFalse(tracker.isSyncRequired(repo, SITE, SANDBOX, REMOTE_NODE, first.name()));
+        assertFalse(tracker.isSyncRequired(repo, SITE, SANDBOX, REMOTE_NODE, second.name()));
+
+        // Unknown or missing heads
+        String unknown = ObjectId.zeroId().name();
+        assertTrue(tracker.isSyncRequired(repo, SITE, SANDBOX, REMOTE_NODE, unknown));
+        assertTrue(tracker.isSyncRequired(repo, SITE, SANDBOX, REMOTE_NODE, null));
+
+        tracker.markSynced(SITE, SANDBOX, REMOTE_NODE, unknown);
+        assertFalse(tracker.isSyncRequired(repo, SITE, SANDBOX, REMOTE_NODE, unknown));
+    }
+
+    @Test
+    public void fullSyncTest() throws Exception {
+        ObjectId head = commit();
+        when(clusterDao.getRepoHeads(eq(SITE), eq(SANDBOX.name()), anyString()))
+                .thenReturn(Arrays.asList(getRepoHead(LOCAL_NODE, head), getRepoHead(REMOTE_NODE, head)));
+
+        assertTrue(tracker.isSyncRequired(LOCAL_NODE, SITE, SANDBOX));
+        assertFalse(tracker.isSyncRequired(LOCAL_NODE, SITE, SANDBOX));
+        assertFalse(tracker.isSyncRequired(LOCAL_NODE, SITE, SANDBOX));
+        assertTrue(tracker.isSyncRequired(LOCAL_NODE, SITE, SANDBOX));
+    }
+
+    @Test
+    public void notificationTest() {
+        tracker.notifyChange(SITE, SANDBOX);
+        assertTrue(tracker.consumeNotification(SITE, SANDBOX));
+        assertFalse(tracker.consumeNotification(SITE, SANDBOX));
+    }
+
+    private ClusterRepoHead getRepoHead(long clusterNodeId, ObjectId head) {
+        ClusterRepoHead repoHead = new ClusterRepoHead();
+        repoHead.setClusterNodeId(clusterNodeId);
+        repoHead.setSiteId(SITE);
+        repoHead.setRepository(SANDBOX.name());
+        repoHead.setHeadVersion(head.name());
+        return repoHead;
+    }
+
+    private ObjectId commit() throws Exception {
+        return git.commit().setAllowEmpty(true).setMessage("Test").call();
+    }
+
+}